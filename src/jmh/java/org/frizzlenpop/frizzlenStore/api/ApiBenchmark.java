@@ -0,0 +1,113 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import org.frizzlenpop.frizzlenStore.benchmark.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end request throughput through the HTTP API, backed by an embedded SQLite database.
+ * Runs with several client threads so the executor and connection pool see concurrent load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class ApiBenchmark {
+
+    private BenchmarkEnvironment environment;
+    private HttpClient client;
+    private HttpRequest products;
+    private HttpRequest productsGzip;
+    private HttpRequest product;
+    private HttpRequest categories;
+    private HttpRequest status;
+
+    @Setup
+    public void setup() throws Exception {
+        environment = BenchmarkEnvironment.createWithApi();
+        environment.seedCatalog(10, 1000);
+
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+
+        products = request("/api/products").build();
+        productsGzip = request("/api/products").header("Accept-Encoding", "gzip").build();
+        product = request("/api/products/500").build();
+        categories = request("/api/categories").build();
+        status = request("/api/status").build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public int getProducts() throws IOException, InterruptedException {
+        return send(products);
+    }
+
+    @Benchmark
+    public int getProductsGzip() throws IOException, InterruptedException {
+        return send(productsGzip);
+    }
+
+    @Benchmark
+    public int getProduct() throws IOException, InterruptedException {
+        return send(product);
+    }
+
+    @Benchmark
+    public int getCategories() throws IOException, InterruptedException {
+        return send(categories);
+    }
+
+    @Benchmark
+    public int getStatus() throws IOException, InterruptedException {
+        return send(status);
+    }
+
+    /**
+     * Start an authorized request
+     * @param path The request path
+     * @return The request builder
+     */
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(environment.getApiUrl() + path))
+                .header("Authorization", "Bearer " + BenchmarkEnvironment.API_TOKEN);
+    }
+
+    /**
+     * Send a request and read the whole body
+     * @param request The request
+     * @return The body length
+     */
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " for " + request.uri());
+        }
+        return response.body().length;
+    }
+}
\ No newline at end of file
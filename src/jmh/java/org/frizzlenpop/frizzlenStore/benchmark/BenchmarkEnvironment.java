@@ -0,0 +1,364 @@
+package org.frizzlenpop.frizzlenStore.benchmark;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.api.ApiManager;
+import org.frizzlenpop.frizzlenStore.catalog.CatalogCache;
+import org.frizzlenpop.frizzlenStore.config.ConfigManager;
+import org.frizzlenpop.frizzlenStore.config.DatabaseConfig;
+import org.frizzlenpop.frizzlenStore.coupon.CouponManager;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
+import org.frizzlenpop.frizzlenStore.player.PlayerSpendCache;
+import org.frizzlenpop.frizzlenStore.purchase.PurchaseManager;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A FrizzlenStore instance running outside a Minecraft server.
+ * The plugin, server and players are stubs, the managers and handlers are the real
+ * classes running against an embedded SQLite database in a temporary folder.
+ */
+public final class BenchmarkEnvironment implements AutoCloseable {
+    public static final String API_TOKEN = "benchmark-token";
+
+    // Commands handed to the stubbed server
+    private static final AtomicLong DISPATCHED = new AtomicLong();
+
+    // Online players by UUID
+    private static final Map<UUID, Player> PLAYERS = new ConcurrentHashMap<>();
+
+    private static Server server;
+
+    private final Path dataFolder;
+    private final FrizzlenStore plugin;
+    private final DatabaseManager databaseManager;
+    private final CatalogCache catalogCache;
+    private final PurchaseManager purchaseManager;
+    private ApiManager apiManager;
+    private int apiPort;
+
+    private BenchmarkEnvironment(Path dataFolder, int apiPort) throws SQLException {
+        this.dataFolder = dataFolder;
+        this.apiPort = apiPort;
+        installServer();
+
+        plugin = mock(FrizzlenStore.class, withSettings().stubOnly());
+        java.util.logging.Logger logger = java.util.logging.Logger.getLogger("FrizzlenStore-Benchmark");
+        logger.setLevel(Level.WARNING);
+        when(plugin.getLogger()).thenReturn(logger);
+        when(plugin.getDataFolder()).thenReturn(dataFolder.toFile());
+        when(plugin.getDescription()).thenReturn(
+                new PluginDescriptionFile("FrizzlenStore", "benchmark", FrizzlenStore.class.getName()));
+        when(plugin.getMetrics()).thenReturn(new MetricsRegistry());
+
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("api.token", API_TOKEN);
+        when(plugin.getConfig()).thenReturn(config);
+
+        ConfigManager configManager = mock(ConfigManager.class, withSettings().stubOnly());
+        when(configManager.getConfig()).thenReturn(config);
+        when(configManager.getApiAdminTokens()).thenReturn(List.of(API_TOKEN));
+        when(configManager.getCustomConfig(anyString())).thenReturn(new YamlConfiguration());
+        when(configManager.getDatabaseConfig()).thenReturn(new DatabaseConfig("sqlite", "", 0,
+                dataFolder.resolve("database.db").toString(), "", "", 1, 1, 30000L, 1800000L,
+                true, 4, 268435456L, 64));
+        when(configManager.getDeliveryTickBudget()).thenReturn(50L);
+        when(configManager.getApiPort()).thenReturn(apiPort);
+        when(configManager.getApiUrl()).thenReturn("http://localhost:" + apiPort);
+        when(configManager.getApiExecutorMode()).thenReturn("bounded-virtual");
+        when(configManager.getApiExecutorThreads()).thenReturn(8);
+        when(configManager.getApiMaxConcurrentRequests()).thenReturn(20);
+        when(configManager.getCouponFlushInterval()).thenReturn(5);
+        when(configManager.getPlayerSyncChunkSize()).thenReturn(1000);
+        when(configManager.getPlayerActivityFlushInterval()).thenReturn(5);
+        when(configManager.isPlayerSearchIndexEnabled()).thenReturn(true);
+        when(configManager.getPlayerSpendCacheSize()).thenReturn(10000);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+
+        Logger.init(plugin);
+
+        databaseManager = new DatabaseManager(plugin);
+        if (!databaseManager.initialize()) {
+            throw new IllegalStateException("Failed to open the benchmark database");
+        }
+        when(plugin.getDatabaseManager()).thenReturn(databaseManager);
+
+        catalogCache = new CatalogCache(plugin);
+        when(plugin.getCatalogCache()).thenReturn(catalogCache);
+
+        CouponManager couponManager = new CouponManager(plugin);
+        when(plugin.getCouponManager()).thenReturn(couponManager);
+
+        PlayerSpendCache playerSpendCache = new PlayerSpendCache(plugin);
+        when(plugin.getPlayerSpendCache()).thenReturn(playerSpendCache);
+
+        purchaseManager = new PurchaseManager(plugin);
+        when(plugin.getPurchaseManager()).thenReturn(purchaseManager);
+    }
+
+    /**
+     * Create an environment without the HTTP API
+     * @return The environment
+     * @throws Exception If the database can't be set up
+     */
+    public static BenchmarkEnvironment create() throws Exception {
+        return new BenchmarkEnvironment(Files.createTempDirectory("frizzlenstore-bench"), 0);
+    }
+
+    /**
+     * Create an environment and start the HTTP API on a free local port
+     * @return The environment
+     * @throws Exception If the database or server can't be set up
+     */
+    public static BenchmarkEnvironment createWithApi() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        BenchmarkEnvironment environment = new BenchmarkEnvironment(
+                Files.createTempDirectory("frizzlenstore-bench"), port);
+        environment.apiManager = new ApiManager(environment.plugin);
+        when(environment.plugin.getApiManager()).thenReturn(environment.apiManager);
+        environment.apiManager.startApiServer();
+        return environment;
+    }
+
+    /**
+     * Get the stubbed plugin
+     * @return The plugin
+     */
+    public FrizzlenStore getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Get the base URL of the HTTP API
+     * @return The base URL
+     */
+    public String getApiUrl() {
+        return "http://127.0.0.1:" + apiPort;
+    }
+
+    /**
+     * Insert categories and products and reload the catalog cache.
+     * Products are spread evenly over the categories and each runs three commands.
+     * @param categories The number of categories
+     * @param products The number of products
+     * @throws SQLException If an insert fails
+     */
+    public void seedCatalog(int categories, int products) throws SQLException {
+        try (Connection connection = databaseManager.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO categories (name, description, display_order) VALUES (?, ?, ?)")) {
+                for (int i = 1; i <= categories; i++) {
+                    statement.setString(1, "Category " + i);
+                    statement.setString(2, "Benchmark category " + i);
+                    statement.setInt(3, i);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO products (name, description, price, sale_price, is_on_sale, category_id, " +
+                    "commands, display_order, enabled) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 1)")) {
+                for (int i = 1; i <= products; i++) {
+                    statement.setString(1, "Product " + i);
+                    statement.setString(2, "Benchmark product " + i + " with a description of typical length");
+                    statement.setDouble(3, 4.99 + i % 50);
+                    statement.setDouble(4, 3.99 + i % 50);
+                    statement.setBoolean(5, i % 5 == 0);
+                    statement.setInt(6, 1 + i % categories);
+                    statement.setString(7, "[\"lp user %player% parent add vip\",\"give %player% diamond 1\"," +
+                                           "\"broadcast %player% bought product " + i + "\"]");
+                    statement.setInt(8, i);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+
+        catalogCache.reload();
+    }
+
+    /**
+     * Insert undelivered purchases of the first product for a player
+     * @param player The player
+     * @param count The number of purchases
+     * @throws SQLException If an insert fails
+     */
+    public void seedPendingPurchases(Player player, int count) throws SQLException {
+        try (Connection connection = databaseManager.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO purchases (transaction_id, player_name, player_uuid, product_id, price_paid, " +
+                    "payment_method, payment_status, delivered) VALUES (?, ?, ?, 1, 4.99, 'paypal', 'completed', 0)")) {
+                for (int i = 0; i < count; i++) {
+                    statement.setString(1, "BENCH-" + UUID.randomUUID());
+                    statement.setString(2, player.getName());
+                    statement.setString(3, player.getUniqueId().toString());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Mark every purchase as undelivered again
+     * @throws SQLException If the update fails
+     */
+    public void resetDeliveries() throws SQLException {
+        try (Connection connection = databaseManager.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE purchases SET delivered = 0, delivery_time = NULL");
+        }
+    }
+
+    /**
+     * Insert an unlimited coupon
+     * @param code The coupon code
+     * @param discountType The discount type, percentage or fixed
+     * @param discountValue The discount value
+     * @throws SQLException If the insert fails
+     */
+    public void seedCoupon(String code, String discountType, double discountValue) throws SQLException {
+        try (Connection connection = databaseManager.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO coupons (code, discount_type, discount_value) VALUES (?, ?, ?)")) {
+            statement.setString(1, code);
+            statement.setString(2, discountType);
+            statement.setDouble(3, discountValue);
+            statement.executeUpdate();
+        }
+
+        // Checkout reads coupons from the cache
+        plugin.getCouponManager().reload();
+    }
+
+    /**
+     * Create an online player known to the stubbed server
+     * @param name The player name
+     * @return The player
+     */
+    public static Player joinPlayer(String name) {
+        UUID uuid = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes());
+        Player player = mock(Player.class, withSettings().stubOnly());
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(uuid);
+        when(player.isOnline()).thenReturn(true);
+        PLAYERS.put(uuid, player);
+        return player;
+    }
+
+    /**
+     * Get the number of commands dispatched to the stubbed server
+     * @return The command count
+     */
+    public static long getDispatchedCommands() {
+        return DISPATCHED.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (apiManager != null) {
+            apiManager.stopApiServer();
+        }
+
+        purchaseManager.shutdown();
+        databaseManager.shutdown();
+
+        try (Stream<Path> files = Files.walk(dataFolder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Install the stubbed server behind the static Bukkit accessors.
+     * The field is set directly because Bukkit.setServer also reads server build information.
+     */
+    private static synchronized void installServer() {
+        if (server != null) {
+            return;
+        }
+
+        Server stub = mock(Server.class, withSettings().stubOnly());
+        when(stub.getLogger()).thenReturn(java.util.logging.Logger.getLogger("Server"));
+        when(stub.getPlayer(any(UUID.class))).thenAnswer(invocation -> PLAYERS.get(invocation.<UUID>getArgument(0)));
+        when(stub.getPlayerExact(anyString())).thenAnswer(invocation -> PLAYERS.values().stream()
+                .filter(player -> player.getName().equalsIgnoreCase(invocation.getArgument(0)))
+                .findFirst()
+                .orElse(null));
+        doReturn(PLAYERS.values()).when(stub).getOnlinePlayers();
+        when(stub.getConsoleSender()).thenReturn(mock(ConsoleCommandSender.class, withSettings().stubOnly()));
+
+        // The command dispatcher only counts, so delivery cost is the plugin's own overhead
+        when(stub.dispatchCommand(any(), anyString())).thenAnswer(invocation -> {
+            DISPATCHED.incrementAndGet();
+            return true;
+        });
+
+        BukkitScheduler scheduler = mock(BukkitScheduler.class, withSettings().stubOnly());
+        BukkitTask task = mock(BukkitTask.class, withSettings().stubOnly());
+        when(scheduler.runTaskTimer(any(), any(Runnable.class), anyLong(), anyLong())).thenReturn(task);
+        when(scheduler.runTaskTimerAsynchronously(any(), any(Runnable.class), anyLong(), anyLong())).thenReturn(task);
+        when(scheduler.runTask(any(), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return task;
+        });
+        when(stub.getScheduler()).thenReturn(scheduler);
+
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, stub);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to install the benchmark server", e);
+        }
+
+        server = stub;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package org.frizzlenpop.frizzlenStore.catalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product list serialization at different catalog sizes.
+ * productList is the cost of building the JSON body, snapshot adds indexing and
+ * the gzip copy that a catalog reload pays once per change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogSerializerBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int products;
+
+    private List<Product> productList;
+    private List<Category> categoryList;
+
+    @Setup
+    public void setup() {
+        categoryList = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            categoryList.add(new Category(i, "Category " + i, "Benchmark category " + i, i, null));
+        }
+
+        productList = new ArrayList<>(products);
+        for (int i = 1; i <= products; i++) {
+            int categoryId = 1 + i % categoryList.size();
+            productList.add(new Product(i, "Product " + i,
+                    "Benchmark product " + i + " with a description of typical length",
+                    4.99 + i % 50, 3.99 + i % 50, i % 5 == 0, categoryId, "Category " + categoryId,
+                    "https://example.com/images/" + i + ".png", i, true,
+                    "[\"lp user %player% parent add vip\",\"give %player% diamond 1\"]"));
+        }
+    }
+
+    @Benchmark
+    public String productList() {
+        return CatalogSerializer.productList(productList).toString();
+    }
+
+    @Benchmark
+    public CatalogSnapshot snapshot() {
+        return new CatalogSnapshot(1, productList, categoryList);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package org.frizzlenpop.frizzlenStore.coupon;
+
+import org.frizzlenpop.frizzlenStore.benchmark.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coupon application at checkout, for a valid coupon and for an unknown code
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CouponBenchmark {
+
+    private BenchmarkEnvironment environment;
+    private CouponManager couponManager;
+
+    @Setup
+    public void setup() throws Exception {
+        environment = BenchmarkEnvironment.create();
+        environment.seedCoupon("BENCH10", "percentage", 10);
+        environment.seedCoupon("BENCH5OFF", "fixed", 5);
+        couponManager = environment.getPlugin().getCouponManager();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public double applyPercentageCoupon() {
+        return couponManager.applyCoupon("BENCH10", 49.99);
+    }
+
+    @Benchmark
+    public double applyFixedCoupon() {
+        return couponManager.applyCoupon("BENCH5OFF", 49.99);
+    }
+
+    @Benchmark
+    public double applyUnknownCoupon() {
+        return couponManager.applyCoupon("NOTACOUPON", 49.99);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package org.frizzlenpop.frizzlenStore.purchase;
+
+import org.bukkit.entity.Player;
+import org.frizzlenpop.frizzlenStore.benchmark.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivering a backlog of pending purchases when a player joins.
+ * Covers marking the purchases in the database and running every command through
+ * the delivery queue. Commands go to a stubbed dispatcher that only counts them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeliveryBenchmark {
+
+    // Upper bound for one delivery, a stuck benchmark fails instead of hanging
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Param({"10", "100", "1000"})
+    private int purchases;
+
+    private BenchmarkEnvironment environment;
+    private Player player;
+    private PurchaseManager purchaseManager;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception {
+        environment = BenchmarkEnvironment.create();
+        environment.seedCatalog(1, 1);
+
+        player = BenchmarkEnvironment.joinPlayer("BenchPlayer");
+        environment.seedPendingPurchases(player, purchases);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() throws Exception {
+        environment.resetDeliveries();
+
+        // A new manager loads the pending purchases again
+        purchaseManager = new PurchaseManager(environment.getPlugin());
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        purchaseManager.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public long deliverPendingPurchases() {
+        DeliveryQueue queue = purchaseManager.getDeliveryQueue();
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+
+        purchaseManager.deliverPendingPurchases(player);
+
+        // Purchases reach the queue once the database executor has marked them
+        while (queue.size() < purchases) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Purchases were not queued for delivery");
+            }
+            Thread.onSpinWait();
+        }
+
+        // Stand in for the server ticks that run the queue
+        while (queue.size() > 0) {
+            queue.run();
+        }
+
+        return BenchmarkEnvironment.getDispatchedCommands();
+    }
+}
\ No newline at end of file
@@ -3,11 +3,18 @@ package org.frizzlenpop.frizzlenStore;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.frizzlenpop.frizzlenStore.api.ApiManager;
+import org.frizzlenpop.frizzlenStore.catalog.CatalogCache;
 import org.frizzlenpop.frizzlenStore.commands.CommandManager;
 import org.frizzlenpop.frizzlenStore.config.ConfigManager;
+import org.frizzlenpop.frizzlenStore.coupon.CouponManager;
 import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
 import org.frizzlenpop.frizzlenStore.listeners.PlayerListener;
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
 import org.frizzlenpop.frizzlenStore.payment.PaymentManager;
+import org.frizzlenpop.frizzlenStore.player.PlayerActivityBuffer;
+import org.frizzlenpop.frizzlenStore.player.PlayerNameIndex;
+import org.frizzlenpop.frizzlenStore.player.PlayerSpendCache;
+import org.frizzlenpop.frizzlenStore.player.PlayerSync;
 import org.frizzlenpop.frizzlenStore.purchase.PurchaseManager;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 
@@ -15,7 +22,14 @@ public final class FrizzlenStore extends JavaPlugin {
     
     private static FrizzlenStore instance;
     private ConfigManager configManager;
+    private MetricsRegistry metrics;
     private DatabaseManager databaseManager;
+    private CatalogCache catalogCache;
+    private CouponManager couponManager;
+    private PlayerSync playerSync;
+    private PlayerActivityBuffer playerActivity;
+    private PlayerNameIndex playerNameIndex;
+    private PlayerSpendCache playerSpendCache;
     private ApiManager apiManager;
     private PaymentManager paymentManager;
     private PurchaseManager purchaseManager;
@@ -34,6 +48,11 @@ public final class FrizzlenStore extends JavaPlugin {
         configManager = new ConfigManager(this);
         configManager.loadConfigs();
         
+        // Collect request, database and gateway metrics from the start
+        metrics = new MetricsRegistry();
+        metrics.counter("frizzlenstore_log_dropped_total",
+                "Log messages dropped because the log buffer was full", Logger::getDropped);
+        
         // Initialize database connection
         databaseManager = new DatabaseManager(this);
         if (!databaseManager.initialize()) {
@@ -42,6 +61,22 @@ public final class FrizzlenStore extends JavaPlugin {
             return;
         }
         
+        // Load the product catalog into memory
+        catalogCache = new CatalogCache(this);
+        catalogCache.reload();
+        
+        // Initialize coupon redemption
+        couponManager = new CouponManager(this);
+        
+        // Index player names in the background, searches use the database until it's loaded
+        playerNameIndex = new PlayerNameIndex(this);
+        databaseManager.getExecutor().execute(playerNameIndex::load);
+        
+        // Initialize player sync and join/quit tracking
+        playerSync = new PlayerSync(this);
+        playerActivity = new PlayerActivityBuffer(this);
+        playerSpendCache = new PlayerSpendCache(this);
+        
         // Initialize API manager (for web communication)
         apiManager = new ApiManager(this);
         apiManager.startApiServer();
@@ -71,12 +106,40 @@ public final class FrizzlenStore extends JavaPlugin {
             apiManager.stopApiServer();
         }
         
+        // Stop reading players for a running sync
+        if (playerSync != null) {
+            playerSync.cancel();
+        }
+        
+        // Close gateway HTTP connections
+        if (paymentManager != null) {
+            paymentManager.shutdown();
+        }
+        
+        // Finish queued deliveries while the database is still available
+        if (purchaseManager != null) {
+            purchaseManager.shutdown();
+        }
+        
+        // Save coupon redemptions not yet written
+        if (couponManager != null) {
+            couponManager.shutdown();
+        }
+        
+        // Save player joins and quits not yet written
+        if (playerActivity != null) {
+            playerActivity.shutdown();
+        }
+        
         // Close database connections
         if (databaseManager != null) {
             databaseManager.shutdown();
         }
         
         Logger.info("FrizzlenStore has been disabled.");
+        
+        // Write out buffered log messages
+        Logger.shutdown();
     }
     
     /**
@@ -91,10 +154,38 @@ public final class FrizzlenStore extends JavaPlugin {
         return configManager;
     }
     
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+    
     public DatabaseManager getDatabaseManager() {
         return databaseManager;
     }
     
+    public CatalogCache getCatalogCache() {
+        return catalogCache;
+    }
+    
+    public CouponManager getCouponManager() {
+        return couponManager;
+    }
+    
+    public PlayerNameIndex getPlayerNameIndex() {
+        return playerNameIndex;
+    }
+    
+    public PlayerSync getPlayerSync() {
+        return playerSync;
+    }
+    
+    public PlayerActivityBuffer getPlayerActivity() {
+        return playerActivity;
+    }
+    
+    public PlayerSpendCache getPlayerSpendCache() {
+        return playerSpendCache;
+    }
+    
     public ApiManager getApiManager() {
         return apiManager;
     }
@@ -0,0 +1,30 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+/**
+ * Who may call an API route, from least to most access
+ */
+public enum Access {
+    /**
+     * Anyone, no token needed
+     */
+    PUBLIC,
+
+    /**
+     * Callers with a read or admin token
+     */
+    READ,
+
+    /**
+     * Callers with an admin token
+     */
+    ADMIN;
+
+    /**
+     * Check if this access level is enough for a route
+     * @param required The access the route requires
+     * @return True if this level includes the required one
+     */
+    public boolean covers(Access required) {
+        return ordinal() >= required.ordinal();
+    }
+}
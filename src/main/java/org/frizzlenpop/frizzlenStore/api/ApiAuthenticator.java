@@ -0,0 +1,146 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.frizzlenpop.frizzlenStore.config.ConfigManager;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks the bearer token sent with API requests.
+ * Tokens are read from the config when the API starts and on reload, and kept as SHA-256 digests
+ * of their Authorization header. A request's header is hashed and compared against every token
+ * with {@link MessageDigest#isEqual}, so the time taken doesn't depend on how much of a token matched.
+ * The result is cached per connection, so keep-alive clients only pay for the hash once.
+ */
+public class ApiAuthenticator {
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    // Cached connections are dropped all at once past this size, closed ones are never removed otherwise
+    private static final int MAX_CACHED_CONNECTIONS = 1024;
+
+    private final ConfigManager config;
+    private final Map<InetSocketAddress, Decision> connections;
+    private volatile Token[] tokens;
+
+    /**
+     * Create a new authenticator and load the tokens
+     * @param config The config manager to read tokens from
+     */
+    public ApiAuthenticator(ConfigManager config) {
+        this.config = config;
+        this.connections = new ConcurrentHashMap<>();
+        reload();
+    }
+
+    /**
+     * Load the tokens from the config again and forget cached decisions
+     */
+    public void reload() {
+        List<String> adminTokens = config.getApiAdminTokens();
+        List<String> readTokens = config.getApiReadTokens();
+
+        Token[] loaded = new Token[adminTokens.size() + readTokens.size()];
+        int index = 0;
+        for (String token : adminTokens) {
+            loaded[index++] = new Token(digest(BEARER_PREFIX + token), Access.ADMIN);
+        }
+        for (String token : readTokens) {
+            loaded[index++] = new Token(digest(BEARER_PREFIX + token), Access.READ);
+        }
+
+        tokens = loaded;
+        connections.clear();
+    }
+
+    /**
+     * Find the access a request's token grants
+     * @param exchange The HTTP exchange
+     * @return The access granted, PUBLIC if the token is missing or unknown
+     */
+    public Access authenticate(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null) {
+            return Access.PUBLIC;
+        }
+
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        InetSocketAddress connection = exchange.getRemoteAddress();
+
+        // A connection can be reused by another client behind a proxy, so compare headers in constant time too
+        Decision cached = connections.get(connection);
+        if (cached != null && MessageDigest.isEqual(cached.header, headerBytes)) {
+            return cached.access;
+        }
+
+        Access access = check(headerBytes);
+
+        if (connections.size() >= MAX_CACHED_CONNECTIONS) {
+            connections.clear();
+        }
+        connections.put(connection, new Decision(headerBytes, access));
+        return access;
+    }
+
+    /**
+     * Compare a header against every token without stopping at the first match
+     * @param header The Authorization header
+     * @return The highest access granted
+     */
+    private Access check(byte[] header) {
+        byte[] digest = digest(header);
+        Access access = Access.PUBLIC;
+
+        for (Token token : tokens) {
+            if (MessageDigest.isEqual(token.digest, digest) && token.access.covers(access)) {
+                access = token.access;
+            }
+        }
+
+        return access;
+    }
+
+    private static byte[] digest(String value) {
+        return digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] digest(byte[] value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java runtime is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A configured token
+     */
+    private static final class Token {
+        final byte[] digest;
+        final Access access;
+
+        Token(byte[] digest, Access access) {
+            this.digest = digest;
+            this.access = access;
+        }
+    }
+
+    /**
+     * The last header seen on a connection and the access it granted
+     */
+    private static final class Decision {
+        final byte[] header;
+        final Access access;
+
+        Decision(byte[] header, Access access) {
+            this.header = header;
+            this.access = access;
+        }
+    }
+}
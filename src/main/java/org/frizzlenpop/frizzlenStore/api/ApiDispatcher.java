@@ -0,0 +1,127 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * The single entry point for API requests.
+ * Sets the CORS headers, answers preflight requests and checks the API token scope once for every
+ * route, then runs the route matched by the router. Each path is instrumented under its route
+ * pattern so IDs in the URL don't create a new metric series per resource.
+ */
+class ApiDispatcher implements HttpHandler {
+    private static final String PARAMS_ATTRIBUTE = "frizzlenstore.path_params";
+    private static final String ALL_METHODS = "GET, POST, PUT, DELETE, OPTIONS";
+
+    private final Router router;
+    private final ApiAuthenticator authenticator;
+    private final HttpHandler notFound;
+
+    /**
+     * Create a new dispatcher
+     * @param plugin The plugin instance
+     * @param router The router with all routes registered
+     * @param authenticator The authenticator for API tokens
+     */
+    ApiDispatcher(FrizzlenStore plugin, Router router, ApiAuthenticator authenticator) {
+        this.router = router;
+        this.authenticator = authenticator;
+
+        for (Router.Node node : router.getRouteNodes()) {
+            node.handler = new InstrumentedHandler(node.getPattern(), exchange -> dispatch(node, exchange),
+                    plugin.getMetrics());
+        }
+        this.notFound = new InstrumentedHandler("unmatched", this::handleNotFound, plugin.getMetrics());
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Allow-Methods", ALL_METHODS);
+        headers.set("Access-Control-Allow-Headers", "Content-Type, Authorization");
+
+        Router.Match match = router.match(exchange.getRequestURI().getPath());
+        if (match == null) {
+            notFound.handle(exchange);
+            return;
+        }
+
+        exchange.setAttribute(PARAMS_ATTRIBUTE, match.getParams());
+        match.getNode().handler.handle(exchange);
+    }
+
+    /**
+     * Run the route for a request method on a matched path
+     * @param node The matched path
+     * @param exchange The HTTP exchange
+     * @throws IOException If an I/O error occurs
+     */
+    private void dispatch(Router.Node node, HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+
+        if (method.equalsIgnoreCase("OPTIONS")) {
+            exchange.getResponseHeaders().set("Access-Control-Allow-Methods", node.getAllowedMethods());
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+
+        Router.Endpoint endpoint = node.find(method);
+        if (endpoint == null) {
+            exchange.getResponseHeaders().set("Allow", node.getAllowedMethods());
+            sendError(exchange, 405, "Method not allowed");
+            return;
+        }
+
+        if (endpoint.access != Access.PUBLIC) {
+            Access granted = authenticator.authenticate(exchange);
+            if (granted == Access.PUBLIC) {
+                sendError(exchange, 401, "Unauthorized");
+                return;
+            }
+            if (!granted.covers(endpoint.access)) {
+                sendError(exchange, 403, "Forbidden");
+                return;
+            }
+        }
+
+        try {
+            endpoint.route.handle(exchange, (PathParams) exchange.getAttribute(PARAMS_ATTRIBUTE));
+        } catch (Exception e) {
+            Logger.severe("Error handling " + method + " " + node.getPattern(), e);
+
+            // Only report the error if the route hadn't started its response
+            if (exchange.getResponseCode() == -1) {
+                sendError(exchange, 500, "Internal server error");
+            }
+        }
+    }
+
+    /**
+     * Answer a request for a path without routes
+     * @param exchange The HTTP exchange
+     * @throws IOException If an I/O error occurs
+     */
+    private void handleNotFound(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+
+        sendError(exchange, 404, "Not found");
+    }
+
+    private static void sendError(HttpExchange exchange, int statusCode, String error) throws IOException {
+        String response = new JSONObject()
+                .put("success", false)
+                .put("error", error)
+                .toString();
+        ResponseWriter.send(exchange, statusCode, response);
+    }
+}
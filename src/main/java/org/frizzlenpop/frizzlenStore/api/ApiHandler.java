@@ -0,0 +1,13 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+/**
+ * A group of API endpoints that registers its routes with the router
+ */
+public interface ApiHandler {
+
+    /**
+     * Register this handler's routes
+     * @param router The router to add them to
+     */
+    void registerRoutes(Router router);
+}
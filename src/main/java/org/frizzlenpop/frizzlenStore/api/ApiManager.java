@@ -1,12 +1,11 @@
 package org.frizzlenpop.frizzlenStore.api;
 
 import com.sun.net.httpserver.HttpServer;
-import com.sun.net.httpserver.HttpHandler;
-import com.sun.net.httpserver.HttpExchange;
 import org.bukkit.Bukkit;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
 import org.frizzlenpop.frizzlenStore.api.handlers.CategoryHandler;
 import org.frizzlenpop.frizzlenStore.api.handlers.CouponHandler;
+import org.frizzlenpop.frizzlenStore.api.handlers.MetricsHandler;
 import org.frizzlenpop.frizzlenStore.api.handlers.PaymentHandler;
 import org.frizzlenpop.frizzlenStore.api.handlers.ProductHandler;
 import org.frizzlenpop.frizzlenStore.api.handlers.PurchaseHandler;
@@ -15,10 +14,11 @@ import org.frizzlenpop.frizzlenStore.api.handlers.StatusHandler;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
@@ -27,7 +27,9 @@ import java.util.concurrent.Executors;
 public class ApiManager {
     private final FrizzlenStore plugin;
     private HttpServer server;
-    private final Map<String, HttpHandler> handlers;
+    private ExecutorService executorService;
+    private final List<ApiHandler> handlers;
+    private final ApiAuthenticator authenticator;
     
     /**
      * Create a new API manager
@@ -35,7 +37,8 @@ public class ApiManager {
      */
     public ApiManager(FrizzlenStore plugin) {
         this.plugin = plugin;
-        this.handlers = new HashMap<>();
+        this.handlers = new ArrayList<>();
+        this.authenticator = new ApiAuthenticator(plugin.getConfigManager());
         registerHandlers();
     }
     
@@ -44,13 +47,14 @@ public class ApiManager {
      */
     private void registerHandlers() {
         // Add handlers for different API endpoints
-        handlers.put("/api/status", new StatusHandler(plugin));
-        handlers.put("/api/products", new ProductHandler(plugin));
-        handlers.put("/api/categories", new CategoryHandler(plugin));
-        handlers.put("/api/purchases", new PurchaseHandler(plugin));
-        handlers.put("/api/coupons", new CouponHandler(plugin));
-        handlers.put("/api/players", new PlayerHandler(plugin));
-        handlers.put("/api/payment", new PaymentHandler(plugin));
+        handlers.add(new StatusHandler(plugin));
+        handlers.add(new MetricsHandler(plugin));
+        handlers.add(new ProductHandler(plugin));
+        handlers.add(new CategoryHandler(plugin));
+        handlers.add(new PurchaseHandler(plugin));
+        handlers.add(new CouponHandler(plugin));
+        handlers.add(new PlayerHandler(plugin));
+        handlers.add(new PaymentHandler(plugin));
     }
     
     /**
@@ -61,25 +65,56 @@ public class ApiManager {
             int port = plugin.getConfigManager().getApiPort();
             server = HttpServer.create(new InetSocketAddress(port), 0);
             
-            // Register API endpoint handlers
-            for (Map.Entry<String, HttpHandler> entry : handlers.entrySet()) {
-                server.createContext(entry.getKey(), entry.getValue());
+            // Compile every endpoint's routes and send all requests through one dispatcher
+            Router router = new Router();
+            for (ApiHandler handler : handlers) {
+                handler.registerRoutes(router);
             }
-            
-            // Add a CORS handler for preflight requests
-            server.createContext("/", new CorsHandler());
+            server.createContext("/", new ApiDispatcher(plugin, router, authenticator));
             
             // Set executor
-            server.setExecutor(Executors.newFixedThreadPool(10));
+            server.setExecutor(createExecutor());
             server.start();
             
-            Logger.info("API server started on port " + port);
+            Logger.info("API server started on port " + port + " using " + 
+                        plugin.getConfigManager().getApiExecutorMode() + " executor");
         } catch (IOException e) {
-            Logger.severe("Failed to start API server: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Failed to start API server", e);
         }
     }
     
+    /**
+     * Create the request executor for the configured mode
+     * @return The executor to hand to the HTTP server
+     */
+    private Executor createExecutor() {
+        String mode = plugin.getConfigManager().getApiExecutorMode();
+        
+        switch (mode) {
+            case "virtual":
+                executorService = Executors.newVirtualThreadPerTaskExecutor();
+                return executorService;
+            case "bounded-virtual":
+                executorService = Executors.newVirtualThreadPerTaskExecutor();
+                BoundedExecutor executor = new BoundedExecutor(executorService, 
+                        plugin.getConfigManager().getApiMaxConcurrentRequests());
+                
+                plugin.getMetrics().gauge("frizzlenstore_http_requests_running", 
+                        "API requests currently being handled", executor::getRunning);
+                plugin.getMetrics().gauge("frizzlenstore_http_requests_waiting", 
+                        "API requests waiting for a free slot", executor::getWaiting);
+                return executor;
+            case "fixed":
+                break;
+            default:
+                Logger.warning("Unknown API executor mode '" + mode + "', using fixed");
+                break;
+        }
+        
+        executorService = Executors.newFixedThreadPool(plugin.getConfigManager().getApiExecutorThreads());
+        return executorService;
+    }
+    
     /**
      * Stop the API server
      */
@@ -88,34 +123,19 @@ public class ApiManager {
             server.stop(0);
             Logger.info("API server stopped");
         }
+        
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
     }
     
     /**
-     * Handle CORS for API requests
+     * Get the authenticator for API tokens
+     * @return The authenticator
      */
-    private static class CorsHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            // Set CORS headers
-            exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-            exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-            exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type, Authorization");
-            
-            // Handle preflight requests
-            if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-                exchange.sendResponseHeaders(204, -1);
-                return;
-            }
-            
-            // Send 404 for unknown endpoints
-            String response = "{\"error\": \"Not Found\"}";
-            exchange.getResponseHeaders().add("Content-Type", "application/json");
-            exchange.sendResponseHeaders(404, response.length());
-            
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(response.getBytes());
-            }
-        }
+    public ApiAuthenticator getAuthenticator() {
+        return authenticator;
     }
     
     /**
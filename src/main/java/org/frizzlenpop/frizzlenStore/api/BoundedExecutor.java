@@ -0,0 +1,70 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs tasks on a delegate executor while limiting how many run at once.
+ * Meant for virtual threads: a task waiting for a permit parks cheaply instead of
+ * holding a platform thread, and at most the configured number reach the database pool.
+ */
+public class BoundedExecutor implements Executor {
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int limit;
+
+    /**
+     * Create a new bounded executor
+     * @param delegate The executor that runs the tasks
+     * @param limit The maximum number of tasks running at once
+     */
+    public BoundedExecutor(ExecutorService delegate, int limit) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(limit, true);
+        this.limit = limit;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                // Executor is shutting down
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                command.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Get the number of tasks currently running
+     * @return The running task count
+     */
+    public int getRunning() {
+        return limit - permits.availablePermits();
+    }
+
+    /**
+     * Get the number of tasks waiting for a permit
+     * @return The waiting task count
+     */
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Get the underlying executor
+     * @return The delegate executor
+     */
+    public ExecutorService getDelegate() {
+        return delegate;
+    }
+}
\ No newline at end of file
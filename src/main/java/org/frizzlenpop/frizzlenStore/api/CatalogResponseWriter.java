@@ -0,0 +1,105 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.frizzlenpop.frizzlenStore.catalog.CatalogResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes pre-serialized catalog responses.
+ * Answers conditional requests with 304 and serves the precompressed gzip body to clients that accept it.
+ * Each content encoding is a different representation, so each gets its own strong ETag.
+ */
+public final class CatalogResponseWriter {
+
+    private CatalogResponseWriter() {
+    }
+
+    /**
+     * Send a catalog response
+     * @param exchange The HTTP exchange
+     * @param response The pre-serialized response
+     * @throws IOException If an I/O error occurs
+     */
+    public static void send(HttpExchange exchange, CatalogResponse response) throws IOException {
+        ResponseWriter.Encoding encoding = ResponseWriter.negotiate(exchange.getRequestHeaders().get("Accept-Encoding"));
+
+        // The shared writer sends small bodies uncompressed whatever the client accepts
+        if (encoding == ResponseWriter.Encoding.DEFLATE && response.getBody().length < ResponseWriter.COMPRESSION_THRESHOLD) {
+            encoding = ResponseWriter.Encoding.IDENTITY;
+        }
+
+        String etag = etag(response.getEtag(), encoding);
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Cache-Control", "no-cache");
+        headers.set("Vary", "Accept-Encoding");
+
+        if (matchesEtag(exchange.getRequestHeaders().get("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        // The gzip body is compressed once per catalog version, anything else goes through the shared writer
+        if (encoding == ResponseWriter.Encoding.GZIP) {
+            byte[] body = response.getGzipBody();
+            headers.set("Content-Encoding", "gzip");
+            headers.set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+            return;
+        }
+
+        ResponseWriter.send(exchange, 200, "application/json", response.getBody());
+    }
+
+    /**
+     * Get the ETag of one encoding of a response, the identity body keeps the catalog ETag
+     * @param etag The catalog ETag, including quotes
+     * @param encoding The content encoding being sent
+     * @return The ETag for that encoding, e.g. "123-products-gzip"
+     */
+    private static String etag(String etag, ResponseWriter.Encoding encoding) {
+        if (encoding == ResponseWriter.Encoding.IDENTITY) {
+            return etag;
+        }
+
+        return etag.substring(0, etag.length() - 1) + "-" + encoding.getToken() + "\"";
+    }
+
+    /**
+     * Check if an If-None-Match header matches the current ETag
+     * @param values The header values, may be null
+     * @param etag The current ETag
+     * @return True if the client already has this version
+     */
+    private static boolean matchesEtag(List<String> values, String etag) {
+        if (values == null) {
+            return false;
+        }
+
+        for (String value : values) {
+            for (String candidate : value.split(",")) {
+                candidate = candidate.trim();
+
+                // If-None-Match uses weak comparison
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
\ No newline at end of file
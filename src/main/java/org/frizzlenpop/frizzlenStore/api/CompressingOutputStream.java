@@ -0,0 +1,161 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a response body with gzip or deflate as it is written.
+ * Deflaters and output buffers are expensive to create, so they are taken from a pool
+ * and returned when the stream is closed instead of being allocated per response.
+ */
+final class CompressingOutputStream extends OutputStream {
+    // Fastest level, larger levels barely shrink JSON further but cost much more CPU
+    private static final int LEVEL = Deflater.BEST_SPEED;
+    private static final int BUFFER_SIZE = 8192;
+
+    // Most idle deflaters and buffers kept per kind
+    private static final int POOL_SIZE = 32;
+
+    private static final Queue<Deflater> GZIP_DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final Queue<Deflater> ZLIB_DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final Queue<byte[]> BUFFERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    // Fixed gzip header: magic, deflate method, no flags, no mtime, no extra flags, unknown OS
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final boolean gzip;
+    private final Deflater deflater;
+    private final byte[] buffer;
+    private final CRC32 crc;
+    private boolean closed;
+
+    /**
+     * Create a new compressing stream
+     * @param out The stream to write compressed data to
+     * @param gzip True for gzip, false for deflate (zlib format)
+     * @throws IOException If the gzip header can't be written
+     */
+    CompressingOutputStream(OutputStream out, boolean gzip) throws IOException {
+        this.out = out;
+        this.gzip = gzip;
+        this.deflater = takeDeflater(gzip);
+        this.buffer = takeBuffer();
+        this.crc = gzip ? new CRC32() : null;
+
+        if (gzip) {
+            out.write(GZIP_HEADER);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return;
+        }
+
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+
+        // The deflater keeps a reference to the input, so consume all of it before returning
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            deflate(Deflater.NO_FLUSH);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        // Sync flush emits everything written so far so a streaming client can decode it
+        while (deflate(Deflater.SYNC_FLUSH) == buffer.length) {
+            // Output filled the buffer, there may be more
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate(Deflater.NO_FLUSH);
+            }
+
+            if (gzip) {
+                writeIntLE((int) crc.getValue());
+                writeIntLE((int) deflater.getBytesRead());
+            }
+        } finally {
+            release();
+            out.close();
+        }
+    }
+
+    /**
+     * Run the deflater once and write its output
+     * @param flush The flush mode
+     * @return The number of bytes written
+     * @throws IOException If an I/O error occurs
+     */
+    private int deflate(int flush) throws IOException {
+        int length = deflater.deflate(buffer, 0, buffer.length, flush);
+        if (length > 0) {
+            out.write(buffer, 0, length);
+        }
+        return length;
+    }
+
+    private void writeIntLE(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+
+    /**
+     * Return the deflater and buffer to the pools
+     */
+    private void release() {
+        deflater.reset();
+        if (!(gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).offer(deflater)) {
+            deflater.end();
+        }
+        BUFFERS.offer(buffer);
+    }
+
+    private static Deflater takeDeflater(boolean gzip) {
+        Deflater deflater = (gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).poll();
+        if (deflater == null) {
+            // gzip wraps raw deflate data in its own header and trailer
+            deflater = new Deflater(LEVEL, gzip);
+        }
+        return deflater;
+    }
+
+    private static byte[] takeBuffer() {
+        byte[] buffer = BUFFERS.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.frizzlenpop.frizzlenStore.metrics.LatencyHistogram;
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps an API handler to record request counts and latencies.
+ * Requests are labelled with the registered route rather than the full path so
+ * IDs in the URL don't create a new series per resource.
+ */
+public class InstrumentedHandler implements HttpHandler {
+    private static final Set<String> METHODS = Set.of("GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS");
+
+    private final String route;
+    private final HttpHandler delegate;
+    private final MetricsRegistry metrics;
+
+    // Metric references by method and by method and status, resolved once per combination
+    private final Map<String, LatencyHistogram> latencies;
+    private final Map<String, LongAdder> requests;
+
+    /**
+     * Create a new instrumented handler
+     * @param route The route the handler is registered under
+     * @param delegate The handler to wrap
+     * @param metrics The registry to record into
+     */
+    public InstrumentedHandler(String route, HttpHandler delegate, MetricsRegistry metrics) {
+        this.route = route;
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.latencies = new ConcurrentHashMap<>();
+        this.requests = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String status = "error";
+
+        try {
+            delegate.handle(exchange);
+
+            int code = exchange.getResponseCode();
+            status = code > 0 ? Integer.toString(code) : "none";
+        } finally {
+            String method = method(exchange.getRequestMethod());
+
+            latencies.computeIfAbsent(method, key -> metrics.histogram("frizzlenstore_http_request_duration_seconds",
+                    "Time taken to handle API requests", "route", route, "method", key))
+                    .recordSince(start);
+
+            String finalStatus = status;
+            requests.computeIfAbsent(method + ' ' + status, key -> metrics.counter("frizzlenstore_http_requests_total",
+                    "API requests handled", "route", route, "method", method, "status", finalStatus))
+                    .increment();
+        }
+    }
+
+    /**
+     * Normalize a request method, folding unknown methods together
+     * @param method The request method
+     * @return The method label
+     */
+    private static String method(String method) {
+        String upper = method.toUpperCase(Locale.ROOT);
+        return METHODS.contains(upper) ? upper : "OTHER";
+    }
+}
\ No newline at end of file
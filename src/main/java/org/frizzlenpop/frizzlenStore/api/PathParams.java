@@ -0,0 +1,51 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+/**
+ * Parameters taken from a request path, such as {id} in /api/products/{id:int}.
+ * Int parameters are parsed while matching, so reading them never fails.
+ */
+public final class PathParams {
+    static final PathParams EMPTY = new PathParams(new String[0], new String[0], new int[0]);
+
+    private final String[] names;
+    private final String[] values;
+    private final int[] ints;
+
+    PathParams(String[] names, String[] values, int[] ints) {
+        this.names = names;
+        this.values = values;
+        this.ints = ints;
+    }
+
+    /**
+     * Get a parameter
+     * @param name The parameter name
+     * @return The value as it appeared in the path
+     */
+    public String get(String name) {
+        int index = indexOf(name);
+        return values[index] != null ? values[index] : Integer.toString(ints[index]);
+    }
+
+    /**
+     * Get an int parameter
+     * @param name The parameter name, declared as {name:int}
+     * @return The value
+     */
+    public int getInt(String name) {
+        int index = indexOf(name);
+        if (values[index] != null) {
+            throw new IllegalArgumentException("Path parameter " + name + " is not an int");
+        }
+        return ints[index];
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No path parameter named " + name);
+    }
+}
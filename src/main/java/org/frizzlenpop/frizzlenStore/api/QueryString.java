@@ -0,0 +1,55 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses URL query strings.
+ */
+public final class QueryString {
+
+    private QueryString() {
+    }
+
+    /**
+     * Parse a raw query string into its decoded parameters.
+     * When a parameter is repeated the first value wins.
+     * @param rawQuery The raw query from the request URI, may be null
+     * @return The parameters by name
+     */
+    public static Map<String, String> parse(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+
+            int separator = pair.indexOf('=');
+            String name = decode(separator >= 0 ? pair.substring(0, separator) : pair);
+            String value = separator >= 0 ? decode(pair.substring(separator + 1)) : "";
+            params.putIfAbsent(name, value);
+        }
+
+        return params;
+    }
+
+    /**
+     * Decode a URL-encoded component
+     * @param value The encoded value
+     * @return The decoded value
+     */
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // Malformed escape, use the value as sent
+            return value;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,190 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes API responses.
+ * Bodies of at least {@link #COMPRESSION_THRESHOLD} bytes are compressed with gzip or deflate
+ * when the client accepts it, and sent chunked as they are compressed. Smaller bodies aren't
+ * worth the CPU and are sent as-is with a Content-Length.
+ */
+public final class ResponseWriter {
+    /**
+     * Smallest body in bytes that is compressed
+     */
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
+    private static final String JSON_TYPE = "application/json";
+
+    private ResponseWriter() {
+    }
+
+    /**
+     * Send a JSON response
+     * @param exchange The HTTP exchange
+     * @param statusCode The HTTP status code
+     * @param response The response body
+     * @throws IOException If an I/O error occurs
+     */
+    public static void send(HttpExchange exchange, int statusCode, String response) throws IOException {
+        send(exchange, statusCode, JSON_TYPE, response);
+    }
+
+    /**
+     * Send a response
+     * @param exchange The HTTP exchange
+     * @param statusCode The HTTP status code
+     * @param contentType The response content type
+     * @param response The response body
+     * @throws IOException If an I/O error occurs
+     */
+    public static void send(HttpExchange exchange, int statusCode, String contentType, String response) throws IOException {
+        send(exchange, statusCode, contentType, response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send a response
+     * @param exchange The HTTP exchange
+     * @param statusCode The HTTP status code
+     * @param contentType The response content type
+     * @param body The response body
+     * @throws IOException If an I/O error occurs
+     */
+    public static void send(HttpExchange exchange, int statusCode, String contentType, byte[] body) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", contentType);
+
+        Encoding encoding = Encoding.IDENTITY;
+        if (body.length >= COMPRESSION_THRESHOLD) {
+            headers.set("Vary", "Accept-Encoding");
+            encoding = negotiate(exchange.getRequestHeaders().get("Accept-Encoding"));
+        }
+
+        if (encoding == Encoding.IDENTITY) {
+            exchange.sendResponseHeaders(statusCode, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+            return;
+        }
+
+        headers.set("Content-Encoding", encoding.token);
+        exchange.sendResponseHeaders(statusCode, 0);
+        try (OutputStream os = new CompressingOutputStream(exchange.getResponseBody(), encoding == Encoding.GZIP)) {
+            os.write(body);
+        }
+    }
+
+    /**
+     * Start a chunked response for a body that is written as it is produced.
+     * The body is compressed if the client accepts it, flushing the stream sends what has been written so far.
+     * @param exchange The HTTP exchange
+     * @param statusCode The HTTP status code
+     * @param contentType The response content type
+     * @return The stream to write the body to, must be closed to finish the response
+     * @throws IOException If an I/O error occurs
+     */
+    public static OutputStream stream(HttpExchange exchange, int statusCode, String contentType) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", contentType);
+        headers.set("Vary", "Accept-Encoding");
+
+        Encoding encoding = negotiate(exchange.getRequestHeaders().get("Accept-Encoding"));
+        if (encoding != Encoding.IDENTITY) {
+            headers.set("Content-Encoding", encoding.token);
+        }
+
+        exchange.sendResponseHeaders(statusCode, 0);
+        OutputStream body = exchange.getResponseBody();
+        return encoding == Encoding.IDENTITY ? body : new CompressingOutputStream(body, encoding == Encoding.GZIP);
+    }
+
+    /**
+     * Pick the encoding with the highest quality from an Accept-Encoding header, preferring gzip on ties
+     * @param values The header values, may be null
+     * @return The encoding to use
+     */
+    static Encoding negotiate(List<String> values) {
+        if (values == null) {
+            return Encoding.IDENTITY;
+        }
+
+        // -1 means the coding wasn't listed
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+
+        for (String value : values) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.trim().split(";");
+                String name = parts[0].trim();
+                double quality = parts.length < 2 ? 1 : quality(parts[1].trim());
+
+                if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                    gzip = Math.max(gzip, quality);
+                } else if (name.equalsIgnoreCase("deflate")) {
+                    deflate = Math.max(deflate, quality);
+                } else if (name.equals("*")) {
+                    wildcard = quality;
+                }
+            }
+        }
+
+        // * covers codings that weren't listed
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+
+        if (gzip > 0 && gzip >= deflate) {
+            return Encoding.GZIP;
+        }
+        return deflate > 0 ? Encoding.DEFLATE : Encoding.IDENTITY;
+    }
+
+    /**
+     * Parse a q= parameter
+     * @param parameter The parameter
+     * @return The quality, 0 if it can't be parsed
+     */
+    private static double quality(String parameter) {
+        if (!parameter.startsWith("q=")) {
+            return 1;
+        }
+
+        try {
+            return Double.parseDouble(parameter.substring(2));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Content encodings the writer supports
+     */
+    enum Encoding {
+        IDENTITY("identity"), GZIP("gzip"), DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        /**
+         * Get the Content-Encoding token
+         * @return The token
+         */
+        String getToken() {
+            return token;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+
+/**
+ * Handles requests matched to a route
+ */
+@FunctionalInterface
+public interface Route {
+
+    /**
+     * Handle a request
+     * @param exchange The HTTP exchange
+     * @param params The parameters taken from the path
+     * @throws IOException If an I/O error occurs
+     */
+    void handle(HttpExchange exchange, PathParams params) throws IOException;
+}
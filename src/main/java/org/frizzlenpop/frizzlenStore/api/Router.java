@@ -0,0 +1,406 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Matches request paths to routes.
+ * Routes such as {@code GET /api/products/{id:int}} are compiled into a trie of path segments
+ * when they are registered. Matching walks the request path once, comparing segments in place,
+ * so it takes time proportional to the path length no matter how many routes there are.
+ * Literal segments win over parameters, so /api/purchases/pending is not read as a purchase id.
+ */
+public class Router {
+    private final Node root;
+    private final List<Node> routeNodes;
+    private int maxParams;
+
+    /**
+     * Create a new, empty router
+     */
+    public Router() {
+        this.root = new Node();
+        this.routeNodes = new ArrayList<>();
+    }
+
+    /**
+     * Register a GET route
+     * @param pattern The path pattern, e.g. /api/products/{id:int}
+     * @param access Who may call the route
+     * @param route The route handler
+     */
+    public void get(String pattern, Access access, Route route) {
+        add("GET", pattern, access, route);
+    }
+
+    /**
+     * Register a POST route
+     * @param pattern The path pattern
+     * @param access Who may call the route
+     * @param route The route handler
+     */
+    public void post(String pattern, Access access, Route route) {
+        add("POST", pattern, access, route);
+    }
+
+    /**
+     * Register a PUT route
+     * @param pattern The path pattern
+     * @param access Who may call the route
+     * @param route The route handler
+     */
+    public void put(String pattern, Access access, Route route) {
+        add("PUT", pattern, access, route);
+    }
+
+    /**
+     * Register a DELETE route
+     * @param pattern The path pattern
+     * @param access Who may call the route
+     * @param route The route handler
+     */
+    public void delete(String pattern, Access access, Route route) {
+        add("DELETE", pattern, access, route);
+    }
+
+    /**
+     * Register a GET route that takes no path parameters
+     * @param pattern The path pattern
+     * @param access Who may call the route
+     * @param handler The route handler
+     */
+    public void get(String pattern, Access access, HttpHandler handler) {
+        add("GET", pattern, access, (exchange, params) -> handler.handle(exchange));
+    }
+
+    /**
+     * Register a POST route that takes no path parameters
+     * @param pattern The path pattern
+     * @param access Who may call the route
+     * @param handler The route handler
+     */
+    public void post(String pattern, Access access, HttpHandler handler) {
+        add("POST", pattern, access, (exchange, params) -> handler.handle(exchange));
+    }
+
+    /**
+     * Register a PUT route that takes no path parameters
+     * @param pattern The path pattern
+     * @param access Who may call the route
+     * @param handler The route handler
+     */
+    public void put(String pattern, Access access, HttpHandler handler) {
+        add("PUT", pattern, access, (exchange, params) -> handler.handle(exchange));
+    }
+
+    /**
+     * Register a route.
+     * Parameters are written as {name} for any segment or {name:int} for a non-negative int.
+     * @param method The request method
+     * @param pattern The path pattern
+     * @param access Who may call the route
+     * @param route The route handler
+     * @throws IllegalArgumentException If the pattern is invalid or the route is already registered
+     */
+    public void add(String method, String pattern, Access access, Route route) {
+        Node node = root;
+        List<String> names = new ArrayList<>();
+        List<Boolean> ints = new ArrayList<>();
+
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String[] parts = segment.substring(1, segment.length() - 1).split(":", 2);
+                boolean isInt = parts.length > 1 && parts[1].equals("int");
+                if (parts.length > 1 && !isInt) {
+                    throw new IllegalArgumentException("Unknown parameter type in route " + pattern);
+                }
+
+                node = node.paramChild(parts[0], isInt, pattern);
+                names.add(parts[0]);
+                ints.add(isInt);
+            } else {
+                node = node.literalChild(segment);
+            }
+        }
+
+        if (node.pattern == null) {
+            node.pattern = pattern;
+            node.paramNames = names.toArray(new String[0]);
+            node.paramInts = new boolean[ints.size()];
+            for (int i = 0; i < ints.size(); i++) {
+                node.paramInts[i] = ints.get(i);
+            }
+            routeNodes.add(node);
+            maxParams = Math.max(maxParams, names.size());
+        }
+
+        node.addEndpoint(new Endpoint(method.toUpperCase(Locale.ROOT), access, route), pattern);
+    }
+
+    /**
+     * Find the route for a request path, ignoring a trailing slash
+     * @param path The request path
+     * @return The match, or null if no route has this path
+     */
+    public Match match(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.length();
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+
+        // Start and end of each parameter segment on the current branch
+        int[] bounds = new int[maxParams * 2];
+        Node node = find(root, path, start, end, bounds, 0);
+        if (node == null) {
+            return null;
+        }
+
+        int count = node.paramNames.length;
+        if (count == 0) {
+            return new Match(node, PathParams.EMPTY);
+        }
+
+        String[] values = new String[count];
+        int[] parsed = new int[count];
+        for (int i = 0; i < count; i++) {
+            int from = bounds[i * 2];
+            int to = bounds[i * 2 + 1];
+            if (node.paramInts[i]) {
+                parsed[i] = parseInt(path, from, to);
+            } else {
+                values[i] = path.substring(from, to);
+            }
+        }
+
+        return new Match(node, new PathParams(node.paramNames, values, parsed));
+    }
+
+    /**
+     * Get the nodes that have routes
+     * @return The route nodes, in registration order
+     */
+    List<Node> getRouteNodes() {
+        return routeNodes;
+    }
+
+    /**
+     * Match the rest of a path below a node
+     * @param node The node matched so far
+     * @param path The request path
+     * @param position The start of the next segment
+     * @param end The end of the path
+     * @param bounds Parameter bounds, filled in while matching
+     * @param params The number of parameters matched so far
+     * @return The node with the route, or null if the path doesn't match
+     */
+    private static Node find(Node node, String path, int position, int end, int[] bounds, int params) {
+        if (position >= end) {
+            return node.endpoints.length > 0 ? node : null;
+        }
+
+        int slash = path.indexOf('/', position);
+        if (slash < 0 || slash > end) {
+            slash = end;
+        }
+        int length = slash - position;
+        int next = Math.min(slash + 1, end);
+
+        for (int i = 0; i < node.literals.length; i++) {
+            String literal = node.literals[i];
+            if (literal.length() == length && path.regionMatches(position, literal, 0, length)) {
+                Node found = find(node.literalChildren[i], path, next, end, bounds, params);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+
+        if (node.param != null && length > 0 && (!node.paramInt || parseInt(path, position, slash) >= 0)) {
+            bounds[params * 2] = position;
+            bounds[params * 2 + 1] = slash;
+            return find(node.param, path, next, end, bounds, params + 1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Parse a non-negative int from part of a string
+     * @param text The string
+     * @param from The first character
+     * @param to The end of the number
+     * @return The value, or -1 if it isn't a valid int
+     */
+    private static int parseInt(String text, int from, int to) {
+        if (to <= from || to - from > 10) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        return value <= Integer.MAX_VALUE ? (int) value : -1;
+    }
+
+    /**
+     * The result of matching a path
+     */
+    public static final class Match {
+        private final Node node;
+        private final PathParams params;
+
+        private Match(Node node, PathParams params) {
+            this.node = node;
+            this.params = params;
+        }
+
+        /**
+         * Get the node with the route
+         * @return The node
+         */
+        Node getNode() {
+            return node;
+        }
+
+        /**
+         * Get the parameters taken from the path
+         * @return The parameters
+         */
+        public PathParams getParams() {
+            return params;
+        }
+
+        /**
+         * Get the pattern of the matched route
+         * @return The pattern
+         */
+        public String getPattern() {
+            return node.pattern;
+        }
+    }
+
+    /**
+     * A route handler for one request method
+     */
+    static final class Endpoint {
+        final String method;
+        final Access access;
+        final Route route;
+
+        private Endpoint(String method, Access access, Route route) {
+            this.method = method;
+            this.access = access;
+            this.route = route;
+        }
+    }
+
+    /**
+     * A path segment in the trie
+     */
+    static final class Node {
+        // Literal children, kept as parallel arrays so matching doesn't allocate
+        private String[] literals = new String[0];
+        private Node[] literalChildren = new Node[0];
+
+        // The parameter child, if any
+        private Node param;
+        private String paramName;
+        private boolean paramInt;
+
+        // Set on nodes that end a route
+        private String pattern;
+        private String[] paramNames;
+        private boolean[] paramInts;
+        private Endpoint[] endpoints = new Endpoint[0];
+        private String allowedMethods;
+
+        // The instrumented handler the dispatcher runs for this path
+        HttpHandler handler;
+
+        /**
+         * Find the endpoint for a request method
+         * @param method The request method
+         * @return The endpoint, or null if the method isn't allowed
+         */
+        Endpoint find(String method) {
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.method.equalsIgnoreCase(method)) {
+                    return endpoint;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get the methods allowed on this path, for Allow and CORS headers
+         * @return The methods, comma separated
+         */
+        String getAllowedMethods() {
+            return allowedMethods;
+        }
+
+        /**
+         * Get the pattern of the route ending at this node
+         * @return The pattern
+         */
+        String getPattern() {
+            return pattern;
+        }
+
+        private Node literalChild(String segment) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(segment)) {
+                    return literalChildren[i];
+                }
+            }
+
+            Node child = new Node();
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalChildren.length + 1);
+            literals[literals.length - 1] = segment;
+            literalChildren[literalChildren.length - 1] = child;
+            return child;
+        }
+
+        private Node paramChild(String name, boolean isInt, String pattern) {
+            if (param == null) {
+                param = new Node();
+                paramName = name;
+                paramInt = isInt;
+            } else if (!paramName.equals(name) || paramInt != isInt) {
+                throw new IllegalArgumentException("Route " + pattern + " conflicts with parameter {" + paramName + "}");
+            }
+            return param;
+        }
+
+        private void addEndpoint(Endpoint endpoint, String pattern) {
+            if (find(endpoint.method) != null) {
+                throw new IllegalArgumentException("Route " + endpoint.method + " " + pattern + " is already registered");
+            }
+
+            endpoints = Arrays.copyOf(endpoints, endpoints.length + 1);
+            endpoints[endpoints.length - 1] = endpoint;
+
+            StringBuilder methods = new StringBuilder();
+            for (Endpoint existing : endpoints) {
+                methods.append(existing.method).append(", ");
+            }
+            allowedMethods = methods.append("OPTIONS").toString();
+        }
+    }
+}
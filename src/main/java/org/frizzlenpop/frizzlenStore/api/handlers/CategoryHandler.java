@@ -1,24 +1,20 @@
 package org.frizzlenpop.frizzlenStore.api.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
-import org.frizzlenpop.frizzlenStore.util.Logger;
+import org.frizzlenpop.frizzlenStore.api.Access;
+import org.frizzlenpop.frizzlenStore.api.ApiHandler;
+import org.frizzlenpop.frizzlenStore.api.CatalogResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.Router;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 
 /**
  * Handles API requests for store categories
  */
-public class CategoryHandler implements HttpHandler {
+public class CategoryHandler implements ApiHandler {
 
     private final FrizzlenStore plugin;
 
@@ -31,38 +27,8 @@ public class CategoryHandler implements HttpHandler {
     }
 
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Set CORS headers
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type,Authorization");
-        
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
-        }
-
-        try {
-            // Handle different request methods
-            if (exchange.getRequestMethod().equalsIgnoreCase("GET")) {
-                handleGetCategories(exchange);
-            } else {
-                // Method not allowed
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Method not allowed")
-                        .toString();
-                sendResponse(exchange, 405, response);
-            }
-        } catch (Exception e) {
-            Logger.severe("Error handling category request: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Internal server error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+    public void registerRoutes(Router router) {
+        router.get("/api/categories", Access.PUBLIC, this::handleGetCategories);
     }
 
     /**
@@ -71,55 +37,6 @@ public class CategoryHandler implements HttpHandler {
      * @throws IOException If an I/O error occurs
      */
     private void handleGetCategories(HttpExchange exchange) throws IOException {
-        try {
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT * FROM categories ORDER BY display_order ASC";
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet resultSet = statement.executeQuery();
-
-            JSONArray categories = new JSONArray();
-            while (resultSet.next()) {
-                JSONObject category = new JSONObject();
-                category.put("id", resultSet.getInt("id"));
-                category.put("name", resultSet.getString("name"));
-                category.put("description", resultSet.getString("description"));
-                category.put("display_order", resultSet.getInt("display_order"));
-                category.put("image_url", resultSet.getString("image_url"));
-                categories.put(category);
-            }
-
-            resultSet.close();
-            statement.close();
-
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("categories", categories);
-            
-            sendResponse(exchange, 200, response.toString());
-        } catch (SQLException e) {
-            Logger.severe("Database error while getting categories: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Database error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
-    }
-
-    /**
-     * Send HTTP response
-     * @param exchange The HTTP exchange
-     * @param statusCode The HTTP status code
-     * @param response The response body
-     * @throws IOException If an I/O error occurs
-     */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        byte[] responseBytes = response.getBytes();
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
-        }
+        CatalogResponseWriter.send(exchange, plugin.getCatalogCache().getSnapshot().getCategoriesResponse());
     }
 } 
\ No newline at end of file
@@ -1,8 +1,14 @@
 package org.frizzlenpop.frizzlenStore.api.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.api.Access;
+import org.frizzlenpop.frizzlenStore.api.ApiHandler;
+import org.frizzlenpop.frizzlenStore.api.PathParams;
+import org.frizzlenpop.frizzlenStore.api.ResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.Router;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -10,80 +16,48 @@ import org.json.JSONObject;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * Handles API requests for coupons
  */
-public class CouponHandler implements HttpHandler {
+public class CouponHandler implements ApiHandler {
 
     private final FrizzlenStore plugin;
 
+    // Registered queries
+    private final Query getCoupons;
+    private final Query insertCoupon;
+    private final Query deleteCoupon;
+
     /**
      * Constructor
      * @param plugin The plugin instance
      */
     public CouponHandler(FrizzlenStore plugin) {
         this.plugin = plugin;
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.getCoupons = database.register("coupon.list", 
+                "SELECT * FROM coupons");
+        this.insertCoupon = database.register("coupon.insert", 
+                "INSERT INTO coupons (code, discount_value, discount_type, expiry_date, max_uses, uses) VALUES (?, ?, ?, ?, ?, 0)");
+        this.deleteCoupon = database.register("coupon.delete", 
+                "DELETE FROM coupons WHERE id = ?");
     }
 
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Set CORS headers
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type,Authorization");
-        
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
-        }
-
-        try {
-            // Verify API token
-            String token = exchange.getRequestHeaders().getFirst("Authorization");
-            if (token == null || !token.equals("Bearer " + plugin.getConfig().getString("api.token"))) {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Unauthorized")
-                        .toString();
-                sendResponse(exchange, 401, response);
-                return;
-            }
-
-            // Handle different request methods
-            if (exchange.getRequestMethod().equalsIgnoreCase("GET")) {
-                handleGetCoupons(exchange);
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("POST")) {
-                handleCreateCoupon(exchange);
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("PUT")) {
-                handleUpdateCoupon(exchange);
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("DELETE")) {
-                handleDeleteCoupon(exchange);
-            } else {
-                // Method not allowed
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Method not allowed")
-                        .toString();
-                sendResponse(exchange, 405, response);
-            }
-        } catch (Exception e) {
-            Logger.severe("Error handling coupon request: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Internal server error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+    public void registerRoutes(Router router) {
+        router.get("/api/coupons", Access.READ, this::handleGetCoupons);
+        router.post("/api/coupons", Access.ADMIN, this::handleCreateCoupon);
+        router.put("/api/coupons", Access.ADMIN, this::handleUpdateCoupon);
+        router.delete("/api/coupons/{id:int}", Access.ADMIN, this::handleDeleteCoupon);
     }
 
     /**
@@ -92,41 +66,34 @@ public class CouponHandler implements HttpHandler {
      * @throws IOException If an I/O error occurs
      */
     private void handleGetCoupons(HttpExchange exchange) throws IOException {
-        try {
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT * FROM coupons";
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet resultSet = statement.executeQuery();
+        // Write pending redemptions so the listed use counts are current
+        plugin.getCouponManager().flush();
 
-            JSONArray coupons = new JSONArray();
-            while (resultSet.next()) {
+        try {
+            List<JSONObject> coupons = plugin.getDatabaseManager().query(getCoupons, resultSet -> {
                 JSONObject coupon = new JSONObject();
                 coupon.put("id", resultSet.getInt("id"));
                 coupon.put("code", resultSet.getString("code"));
-                coupon.put("discount", resultSet.getDouble("discount"));
-                coupon.put("is_percentage", resultSet.getBoolean("is_percentage"));
-                coupon.put("expires_at", resultSet.getString("expires_at"));
+                coupon.put("discount", resultSet.getDouble("discount_value"));
+                coupon.put("is_percentage", "percentage".equalsIgnoreCase(resultSet.getString("discount_type")));
+                coupon.put("expires_at", resultSet.getString("expiry_date"));
                 coupon.put("max_uses", resultSet.getInt("max_uses"));
                 coupon.put("uses", resultSet.getInt("uses"));
-                coupons.put(coupon);
-            }
-
-            resultSet.close();
-            statement.close();
+                return coupon;
+            });
 
             JSONObject response = new JSONObject();
             response.put("success", true);
-            response.put("coupons", coupons);
+            response.put("coupons", new JSONArray(coupons));
             
-            sendResponse(exchange, 200, response.toString());
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while getting coupons: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while getting coupons", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
@@ -148,7 +115,7 @@ public class CouponHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Missing required fields")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
 
@@ -156,32 +123,26 @@ public class CouponHandler implements HttpHandler {
             double discount = requestJson.getDouble("discount");
             boolean isPercentage = requestJson.optBoolean("is_percentage", true);
             String expiresAt = requestJson.optString("expires_at", null);
-            int maxUses = requestJson.optInt("max_uses", -1);
+            int maxUses = requestJson.optInt("max_uses", 0);
+
+            plugin.getDatabaseManager().update(insertCoupon, code, discount, 
+                    isPercentage ? "percentage" : "fixed", expiresAt, maxUses);
 
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "INSERT INTO coupons (code, discount, is_percentage, expires_at, max_uses, uses) VALUES (?, ?, ?, ?, ?, 0)";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setString(1, code);
-            statement.setDouble(2, discount);
-            statement.setBoolean(3, isPercentage);
-            statement.setString(4, expiresAt);
-            statement.setInt(5, maxUses);
-            statement.executeUpdate();
-            statement.close();
+            // Refresh the coupons used at checkout
+            reloadCoupons();
 
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Coupon created successfully");
             
-            sendResponse(exchange, 201, response.toString());
+            ResponseWriter.send(exchange, 201, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while creating coupon: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while creating coupon", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
@@ -203,7 +164,7 @@ public class CouponHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Missing coupon ID")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
 
@@ -219,17 +180,17 @@ public class CouponHandler implements HttpHandler {
             }
             
             if (requestJson.has("discount")) {
-                queryBuilder.append("discount = ?, ");
+                queryBuilder.append("discount_value = ?, ");
                 hasUpdates = true;
             }
             
             if (requestJson.has("is_percentage")) {
-                queryBuilder.append("is_percentage = ?, ");
+                queryBuilder.append("discount_type = ?, ");
                 hasUpdates = true;
             }
             
             if (requestJson.has("expires_at")) {
-                queryBuilder.append("expires_at = ?, ");
+                queryBuilder.append("expiry_date = ?, ");
                 hasUpdates = true;
             }
             
@@ -243,139 +204,111 @@ public class CouponHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "No fields to update")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
             
             // Remove trailing comma and space
             String query = queryBuilder.substring(0, queryBuilder.length() - 2) + " WHERE id = ?";
             
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            PreparedStatement statement = connection.prepareStatement(query);
+            DatabaseManager database = plugin.getDatabaseManager();
+            try (Connection connection = database.getConnection()) {
+                List<Object> params = new ArrayList<>();
             
-            int paramIndex = 1;
+                if (requestJson.has("code")) {
+                    params.add(requestJson.getString("code"));
+                }
             
-            if (requestJson.has("code")) {
-                statement.setString(paramIndex++, requestJson.getString("code"));
-            }
+                if (requestJson.has("discount")) {
+                    params.add(requestJson.getDouble("discount"));
+                }
             
-            if (requestJson.has("discount")) {
-                statement.setDouble(paramIndex++, requestJson.getDouble("discount"));
-            }
+                if (requestJson.has("is_percentage")) {
+                    params.add(requestJson.getBoolean("is_percentage") ? "percentage" : "fixed");
+                }
             
-            if (requestJson.has("is_percentage")) {
-                statement.setBoolean(paramIndex++, requestJson.getBoolean("is_percentage"));
-            }
+                if (requestJson.has("expires_at")) {
+                    params.add(requestJson.getString("expires_at"));
+                }
             
-            if (requestJson.has("expires_at")) {
-                statement.setString(paramIndex++, requestJson.getString("expires_at"));
-            }
+                if (requestJson.has("max_uses")) {
+                    params.add(requestJson.getInt("max_uses"));
+                }
             
-            if (requestJson.has("max_uses")) {
-                statement.setInt(paramIndex++, requestJson.getInt("max_uses"));
-            }
-            
-            statement.setInt(paramIndex, id);
-            int rowsAffected = statement.executeUpdate();
-            statement.close();
+                params.add(id);
+                int rowsAffected = database.updateDynamic(connection, query, params.toArray());
             
-            if (rowsAffected == 0) {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Coupon not found")
-                        .toString();
-                sendResponse(exchange, 404, response);
-                return;
-            }
+                if (rowsAffected == 0) {
+                    String response = new JSONObject()
+                            .put("success", false)
+                            .put("error", "Coupon not found")
+                            .toString();
+                    ResponseWriter.send(exchange, 404, response);
+                    return;
+                }
 
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("message", "Coupon updated successfully");
+                // Refresh the coupons used at checkout
+                reloadCoupons();
+
+                JSONObject response = new JSONObject();
+                response.put("success", true);
+                response.put("message", "Coupon updated successfully");
             
-            sendResponse(exchange, 200, response.toString());
+                ResponseWriter.send(exchange, 200, response.toString());
+            }
         } catch (SQLException e) {
-            Logger.severe("Database error while updating coupon: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while updating coupon", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
      * Handle DELETE request to delete a coupon
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleDeleteCoupon(HttpExchange exchange) throws IOException {
-        // Get coupon id from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid path")
-                    .toString();
-            sendResponse(exchange, 400, response);
-            return;
-        }
-        
+    private void handleDeleteCoupon(HttpExchange exchange, PathParams params) throws IOException {
         try {
-            int id = Integer.parseInt(parts[3]);
+            int id = params.getInt("id");
             
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "DELETE FROM coupons WHERE id = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, id);
-            int rowsAffected = statement.executeUpdate();
-            statement.close();
+            int rowsAffected = plugin.getDatabaseManager().update(deleteCoupon, id);
             
             if (rowsAffected == 0) {
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Coupon not found")
                         .toString();
-                sendResponse(exchange, 404, response);
+                ResponseWriter.send(exchange, 404, response);
                 return;
             }
 
+            // Refresh the coupons used at checkout
+            reloadCoupons();
+
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Coupon deleted successfully");
             
-            sendResponse(exchange, 200, response.toString());
-        } catch (NumberFormatException e) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid coupon ID")
-                    .toString();
-            sendResponse(exchange, 400, response);
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while deleting coupon: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while deleting coupon", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
-     * Send HTTP response
-     * @param exchange The HTTP exchange
-     * @param statusCode The HTTP status code
-     * @param response The response body
-     * @throws IOException If an I/O error occurs
+     * Reload the coupon cache on the database executor, once the caller has returned its connection
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        byte[] responseBytes = response.getBytes();
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
-        }
+    private void reloadCoupons() {
+        plugin.getDatabaseManager().getExecutor().execute(() -> plugin.getCouponManager().reload());
     }
 } 
\ No newline at end of file
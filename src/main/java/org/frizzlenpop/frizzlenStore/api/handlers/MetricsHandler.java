@@ -0,0 +1,41 @@
+package org.frizzlenpop.frizzlenStore.api.handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.api.Access;
+import org.frizzlenpop.frizzlenStore.api.ApiHandler;
+import org.frizzlenpop.frizzlenStore.api.ResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.Router;
+
+import java.io.IOException;
+
+/**
+ * Handles the /api/metrics endpoint
+ * Returns request, database and gateway metrics in the Prometheus text format
+ */
+public class MetricsHandler implements ApiHandler {
+    private final FrizzlenStore plugin;
+
+    /**
+     * Create a new metrics handler
+     * @param plugin The plugin instance
+     */
+    public MetricsHandler(FrizzlenStore plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void registerRoutes(Router router) {
+        // Prometheus sends the API token with bearer_token
+        router.get("/api/metrics", Access.READ, this::handleGetMetrics);
+    }
+
+    /**
+     * Handle GET request to scrape the metrics
+     * @param exchange The HTTP exchange
+     * @throws IOException If an I/O error occurs
+     */
+    private void handleGetMetrics(HttpExchange exchange) throws IOException {
+        ResponseWriter.send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", plugin.getMetrics().scrape());
+    }
+}
\ No newline at end of file
@@ -1,21 +1,26 @@
 package org.frizzlenpop.frizzlenStore.api.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.api.Access;
+import org.frizzlenpop.frizzlenStore.api.ApiHandler;
+import org.frizzlenpop.frizzlenStore.api.QueryString;
+import org.frizzlenpop.frizzlenStore.api.ResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.Router;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
+import org.frizzlenpop.frizzlenStore.payment.webhook.WebhookVerifier;
+import org.frizzlenpop.frizzlenStore.purchase.Purchase;
+import org.frizzlenpop.frizzlenStore.purchase.PurchaseManager;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -23,71 +28,46 @@ import java.util.stream.Collectors;
 /**
  * Handles payment-related API requests
  */
-public class PaymentHandler implements HttpHandler {
+public class PaymentHandler implements ApiHandler {
     private final FrizzlenStore plugin;
     
+    // Registered queries
+    private final Query getProductPrice;
+    private final Query insertPayment;
+    private final Query getPaymentStatus;
+    private final Query updatePaymentStatus;
+    private final Query getPaymentPlayer;
+    
     /**
      * Create a new payment handler
      * @param plugin The plugin instance
      */
     public PaymentHandler(FrizzlenStore plugin) {
         this.plugin = plugin;
+        
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.getProductPrice = database.register("product.get_price", 
+                "SELECT name, price FROM products WHERE id = ?");
+        this.insertPayment = database.register("payment.insert", 
+                "INSERT INTO payments (player_uuid, product_id, amount, gateway, status, created_at) " +
+                "VALUES (?, ?, ?, ?, 'pending', CURRENT_TIMESTAMP)");
+        this.getPaymentStatus = database.register("payment.get_status", 
+                "SELECT status FROM payments WHERE id = ?");
+        this.updatePaymentStatus = database.register("payment.update_status", 
+                "UPDATE payments SET status = ? WHERE id = ?");
+        this.getPaymentPlayer = database.register("payment.get_player", 
+                "SELECT player_uuid FROM payments WHERE id = ?");
     }
     
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Set CORS headers
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type,Authorization");
-        
-        // Handle preflight OPTIONS request
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
-        }
-        
-        // Check API token
-        String token = exchange.getRequestHeaders().getFirst("Authorization");
-        if (token == null || !token.equals("Bearer " + plugin.getConfig().getString("api.token"))) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Unauthorized")
-                    .toString();
-            sendResponse(exchange, 401, response);
-            return;
-        }
-        
-        String path = exchange.getRequestURI().getPath();
-        String method = exchange.getRequestMethod();
+    public void registerRoutes(Router router) {
+        router.post("/api/payments/create", Access.ADMIN, this::handleCreatePayment);
+        router.post("/api/payments/verify", Access.ADMIN, this::handleVerifyPayment);
         
-        try {
-            if (path.matches("/api/payments/create") && method.equalsIgnoreCase("POST")) {
-                handleCreatePayment(exchange);
-            } else if (path.matches("/api/payments/verify") && method.equalsIgnoreCase("POST")) {
-                handleVerifyPayment(exchange);
-            } else if (path.matches("/api/payments/ipn/paypal") && method.equalsIgnoreCase("POST")) {
-                handlePayPalIPN(exchange);
-            } else if (path.matches("/api/payments/ipn/stripe") && method.equalsIgnoreCase("POST")) {
-                handleStripeIPN(exchange);
-            } else if (path.matches("/api/payments/ipn/crypto") && method.equalsIgnoreCase("POST")) {
-                handleCryptoIPN(exchange);
-            } else {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Endpoint not found")
-                        .toString();
-                sendResponse(exchange, 404, response);
-            }
-        } catch (Exception e) {
-            Logger.severe("Error handling payment request: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Internal server error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+        // Gateways can't send an API token, their notifications are verified by signature instead
+        router.post("/api/payments/ipn/paypal", Access.PUBLIC, this::handlePayPalIPN);
+        router.post("/api/payments/ipn/stripe", Access.PUBLIC, this::handleStripeIPN);
+        router.post("/api/payments/ipn/crypto", Access.PUBLIC, this::handleCryptoIPN);
     }
     
     /**
@@ -110,7 +90,7 @@ public class PaymentHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Missing required fields")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
             
@@ -125,77 +105,43 @@ public class PaymentHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Payment gateway not enabled")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
             
             // Check if product exists and get price
-            double price = 0;
-            String productName = null;
+            Double productPrice = plugin.getDatabaseManager().queryFirst(getProductPrice, 
+                    resultSet -> resultSet.getDouble("price"), productId);
             
-            try (Connection connection = plugin.getDatabaseManager().getConnection()) {
-                String sql = "SELECT name, price FROM products WHERE id = ?";
-                PreparedStatement statement = connection.prepareStatement(sql);
-                statement.setInt(1, productId);
-                
-                ResultSet resultSet = statement.executeQuery();
-                
-                if (resultSet.next()) {
-                    price = resultSet.getDouble("price");
-                    productName = resultSet.getString("name");
-                } else {
-                    String response = new JSONObject()
-                            .put("success", false)
-                            .put("error", "Product not found")
-                            .toString();
-                    sendResponse(exchange, 404, response);
-                    return;
-                }
-                
-                resultSet.close();
-                statement.close();
+            if (productPrice == null) {
+                String response = new JSONObject()
+                        .put("success", false)
+                        .put("error", "Product not found")
+                        .toString();
+                ResponseWriter.send(exchange, 404, response);
+                return;
             }
             
+            double price = productPrice;
+            
             // Apply coupon if provided
             if (couponCode != null && !couponCode.isEmpty()) {
-                double discountedPrice = applyCoupon(couponCode, price);
+                double discountedPrice = plugin.getCouponManager().applyCoupon(couponCode, price);
                 if (discountedPrice < price) {
                     price = discountedPrice;
                 }
             }
             
             // Create payment record in database
-            int paymentId = -1;
-            
-            try (Connection connection = plugin.getDatabaseManager().getConnection()) {
-                String sql = "INSERT INTO payments (player_uuid, product_id, amount, gateway, status, created_at) " +
-                             "VALUES (?, ?, ?, ?, 'pending', CURRENT_TIMESTAMP)";
-                
-                PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-                statement.setString(1, playerUuid);
-                statement.setInt(2, productId);
-                statement.setDouble(3, price);
-                statement.setString(4, gateway);
-                
-                int result = statement.executeUpdate();
-                
-                if (result > 0) {
-                    ResultSet generatedKeys = statement.getGeneratedKeys();
-                    if (generatedKeys.next()) {
-                        paymentId = generatedKeys.getInt(1);
-                    }
-                    generatedKeys.close();
-                }
-                
-                statement.close();
-            }
+            int paymentId = (int) plugin.getDatabaseManager().insert(insertPayment, 
+                    playerUuid, productId, price, gateway);
             
             if (paymentId == -1) {
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Failed to create payment record")
                         .toString();
-                sendResponse(exchange, 500, response);
+                ResponseWriter.send(exchange, 500, response);
                 return;
             }
             
@@ -216,7 +162,7 @@ public class PaymentHandler implements HttpHandler {
                             .put("success", false)
                             .put("error", "Unsupported payment gateway")
                             .toString();
-                    sendResponse(exchange, 400, response);
+                    ResponseWriter.send(exchange, 400, response);
                     return;
             }
             
@@ -228,15 +174,14 @@ public class PaymentHandler implements HttpHandler {
             response.put("gateway", gateway);
             response.put("payment_data", paymentData);
             
-            sendResponse(exchange, 200, response.toString());
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while creating payment: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while creating payment", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
     
@@ -260,7 +205,7 @@ public class PaymentHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Missing required fields")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
             
@@ -285,86 +230,120 @@ public class PaymentHandler implements HttpHandler {
                             .put("success", false)
                             .put("error", "Unsupported payment gateway")
                             .toString();
-                    sendResponse(exchange, 400, response);
+                    ResponseWriter.send(exchange, 400, response);
                     return;
             }
             
             // Update payment status in database
-            try (Connection connection = plugin.getDatabaseManager().getConnection()) {
-                String sql = "UPDATE payments SET status = ? WHERE id = ?";
-                PreparedStatement updateStatement = connection.prepareStatement(sql);
-                updateStatement.setString(1, status);
-                updateStatement.setInt(2, paymentId);
-                updateStatement.executeUpdate();
-                updateStatement.close();
+            DatabaseManager database = plugin.getDatabaseManager();
+            PurchaseManager purchaseManager = plugin.getPurchaseManager();
+            Purchase purchase = null;
+            
+            try (Connection connection = database.getConnection()) {
+                connection.setAutoCommit(false);
                 
-                // If payment is completed, create purchase
-                if (status.equals("completed")) {
-                    // Fetch payment details
-                    String paymentQuery = "SELECT * FROM payments WHERE id = ?";
-                    PreparedStatement paymentStatement = connection.prepareStatement(paymentQuery);
-                    paymentStatement.setInt(1, paymentId);
-                    ResultSet paymentResultSet = paymentStatement.executeQuery();
+                try {
+                    // A payment already completed by a webhook or an earlier verify keeps its purchase
+                    String current = database.queryFirst(connection, getPaymentStatus, 
+                            resultSet -> resultSet.getString("status"), paymentId);
                     
-                    if (paymentResultSet.next()) {
-                        String playerUuid = paymentResultSet.getString("player_uuid");
-                        int productId = paymentResultSet.getInt("product_id");
+                    if ("completed".equalsIgnoreCase(current)) {
+                        status = "completed";
+                    } else {
+                        database.update(connection, updatePaymentStatus, status, paymentId);
                         
-                        // Create purchase record
-                        plugin.getPurchaseManager().createPurchase(playerUuid, productId, paymentId);
+                        // If payment is completed, create purchase
+                        if (status.equals("completed")) {
+                            purchase = createPurchase(connection, purchaseManager, paymentId);
+                        }
                     }
                     
-                    paymentResultSet.close();
-                    paymentStatement.close();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
                 }
             }
             
+            // Only hand the purchase to delivery once it is committed
+            if (purchase != null) {
+                purchaseManager.queuePurchase(purchase);
+            }
+            
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("payment_id", paymentId);
             response.put("status", status);
             
-            sendResponse(exchange, 200, response.toString());
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while verifying payment: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while verifying payment", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
+        }
+    }
+    
+    /**
+     * Insert the purchase for a payment that was just completed
+     * @param connection The connection, not in auto-commit mode
+     * @param purchaseManager The purchase manager
+     * @param paymentId The payment ID
+     * @return The purchase, or null if the payment can't produce one
+     * @throws SQLException If a query fails
+     */
+    private Purchase createPurchase(Connection connection, PurchaseManager purchaseManager, 
+                                    int paymentId) throws SQLException {
+        // Fetch payment details
+        String playerUuid = plugin.getDatabaseManager().queryFirst(connection, getPaymentPlayer, 
+                resultSet -> resultSet.getString("player_uuid"), paymentId);
+        
+        if (playerUuid == null) {
+            return null;
+        }
+        
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(playerUuid);
+        } catch (IllegalArgumentException e) {
+            Logger.warning("Invalid player UUID for payment " + paymentId + ": " + playerUuid);
+            return null;
         }
+        
+        return purchaseManager.insertPaymentPurchase(connection, uuid, paymentId);
     }
     
     /**
      * Handle PayPal IPN (Instant Payment Notification)
      */
     private void handlePayPalIPN(HttpExchange exchange) throws IOException {
-        // Get the request body (IPN data)
-        String ipnData = new BufferedReader(
-                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                .lines()
-                .collect(Collectors.joining("\n"));
+        // Keep the exact bytes, PayPal verifies the message as it was sent
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String ipnData = new String(body, StandardCharsets.UTF_8);
         
         try {
             // Verify IPN message is legitimate
-            if (!verifyPayPalIPN(ipnData)) {
+            if (!getWebhookVerifier().verifyPayPal(body)) {
                 Logger.warning("Received invalid PayPal IPN");
-                sendResponse(exchange, 400, "INVALID");
+                ResponseWriter.send(exchange, 400, "INVALID");
                 return;
             }
             
             // Parse the IPN data
-            JSONObject ipnJson = parsePayPalIPN(ipnData);
+            Map<String, String> ipn = QueryString.parse(ipnData);
             
             // Check payment status
-            String paymentStatus = ipnJson.has("payment_status") ? ipnJson.getString("payment_status") : "";
-            String txnId = ipnJson.has("txn_id") ? ipnJson.getString("txn_id") : "";
-            String custom = ipnJson.has("custom") ? ipnJson.getString("custom") : "";
+            String paymentStatus = ipn.getOrDefault("payment_status", "");
+            String txnId = ipn.getOrDefault("txn_id", "");
+            String custom = ipn.getOrDefault("custom", "");
             
             // Skip if not a completed payment
             if (!paymentStatus.equalsIgnoreCase("Completed")) {
-                sendResponse(exchange, 200, "OK");
+                ResponseWriter.send(exchange, 200, "OK");
                 return;
             }
             
@@ -372,46 +351,25 @@ public class PaymentHandler implements HttpHandler {
             String[] customParts = custom.split(":");
             if (customParts.length < 2) {
                 Logger.warning("Invalid custom parameter in PayPal IPN: " + custom);
-                sendResponse(exchange, 200, "OK");
+                ResponseWriter.send(exchange, 200, "OK");
                 return;
             }
             
             int paymentId = Integer.parseInt(customParts[0]);
             String playerUuid = customParts[1];
             
-            // Update payment in database
-            try (Connection connection = plugin.getDatabaseManager().getConnection()) {
-                // Update the payment status
-                String sql = "UPDATE payments SET status = 'completed', transaction_id = ? WHERE id = ?";
-                PreparedStatement updateStatement = connection.prepareStatement(sql);
-                updateStatement.setString(1, txnId);
-                updateStatement.setInt(2, paymentId);
-                updateStatement.executeUpdate();
-                updateStatement.close();
-                
-                // Fetch payment details to create purchase
-                String paymentQuery = "SELECT * FROM payments WHERE id = ?";
-                PreparedStatement paymentStatement = connection.prepareStatement(paymentQuery);
-                paymentStatement.setInt(1, paymentId);
-                ResultSet paymentResultSet = paymentStatement.executeQuery();
-                
-                if (paymentResultSet.next()) {
-                    int productId = paymentResultSet.getInt("product_id");
-                    
-                    // Create purchase record
-                    plugin.getPurchaseManager().createPurchase(playerUuid, productId, paymentId);
-                }
-                
-                paymentResultSet.close();
-                paymentStatement.close();
-            }
+            // PayPal resends the same txn_id on retries
+            String eventId = txnId.isEmpty() ? "payment-" + paymentId : txnId;
+            
+            // Store the event, it is turned into a purchase in the background
+            plugin.getPaymentManager().getWebhookInbox()
+                    .append("paypal", eventId, paymentId, playerUuid, txnId, ipnData);
             
             // Respond to PayPal
-            sendResponse(exchange, 200, "OK");
+            ResponseWriter.send(exchange, 200, "OK");
         } catch (Exception e) {
-            Logger.severe("Error processing PayPal IPN: " + e.getMessage());
-            e.printStackTrace();
-            sendResponse(exchange, 500, "ERROR");
+            Logger.severe("Error processing PayPal IPN", e);
+            ResponseWriter.send(exchange, 500, "ERROR");
         }
     }
     
@@ -419,20 +377,18 @@ public class PaymentHandler implements HttpHandler {
      * Handle Stripe webhook
      */
     private void handleStripeIPN(HttpExchange exchange) throws IOException {
-        // Get the webhook payload
-        String webhookData = new BufferedReader(
-                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                .lines()
-                .collect(Collectors.joining("\n"));
+        // Keep the exact bytes, the signature covers the raw payload
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String webhookData = new String(body, StandardCharsets.UTF_8);
         
         // Get the Stripe signature header
         String signature = exchange.getRequestHeaders().getFirst("Stripe-Signature");
         
         try {
             // Verify webhook signature
-            if (!verifyStripeWebhook(webhookData, signature)) {
+            if (!getWebhookVerifier().verifyStripe(body, signature)) {
                 Logger.warning("Received invalid Stripe webhook signature");
-                sendResponse(exchange, 400, "Invalid signature");
+                ResponseWriter.send(exchange, 400, "Invalid signature");
                 return;
             }
             
@@ -444,7 +400,7 @@ public class PaymentHandler implements HttpHandler {
             
             // We only care about charge.succeeded events
             if (!eventType.equals("charge.succeeded")) {
-                sendResponse(exchange, 200, "OK");
+                ResponseWriter.send(exchange, 200, "OK");
                 return;
             }
             
@@ -458,7 +414,7 @@ public class PaymentHandler implements HttpHandler {
             // Extract payment ID and player UUID from metadata
             if (!metadata.has("payment_id") || !metadata.has("player_uuid")) {
                 Logger.warning("Missing metadata in Stripe webhook");
-                sendResponse(exchange, 200, "OK");
+                ResponseWriter.send(exchange, 200, "OK");
                 return;
             }
             
@@ -466,39 +422,18 @@ public class PaymentHandler implements HttpHandler {
             String playerUuid = metadata.getString("player_uuid");
             String stripeId = object.getString("id");
             
-            // Update payment in database
-            try (Connection connection = plugin.getDatabaseManager().getConnection()) {
-                // Update the payment status
-                String sql = "UPDATE payments SET status = 'completed', transaction_id = ? WHERE id = ?";
-                PreparedStatement updateStatement = connection.prepareStatement(sql);
-                updateStatement.setString(1, stripeId);
-                updateStatement.setInt(2, paymentId);
-                updateStatement.executeUpdate();
-                updateStatement.close();
-                
-                // Fetch payment details to create purchase
-                String paymentQuery = "SELECT * FROM payments WHERE id = ?";
-                PreparedStatement paymentStatement = connection.prepareStatement(paymentQuery);
-                paymentStatement.setInt(1, paymentId);
-                ResultSet paymentResultSet = paymentStatement.executeQuery();
-                
-                if (paymentResultSet.next()) {
-                    int productId = paymentResultSet.getInt("product_id");
-                    
-                    // Create purchase record
-                    plugin.getPurchaseManager().createPurchase(playerUuid, productId, paymentId);
-                }
-                
-                paymentResultSet.close();
-                paymentStatement.close();
-            }
+            // Stripe resends the same event ID on retries
+            String eventId = webhookJson.optString("id", stripeId);
+            
+            // Store the event, it is turned into a purchase in the background
+            plugin.getPaymentManager().getWebhookInbox()
+                    .append("stripe", eventId, paymentId, playerUuid, stripeId, webhookData);
             
             // Respond to Stripe
-            sendResponse(exchange, 200, "OK");
+            ResponseWriter.send(exchange, 200, "OK");
         } catch (Exception e) {
-            Logger.severe("Error processing Stripe webhook: " + e.getMessage());
-            e.printStackTrace();
-            sendResponse(exchange, 500, "ERROR");
+            Logger.severe("Error processing Stripe webhook", e);
+            ResponseWriter.send(exchange, 500, "ERROR");
         }
     }
     
@@ -506,17 +441,18 @@ public class PaymentHandler implements HttpHandler {
      * Handle Crypto payment notification
      */
     private void handleCryptoIPN(HttpExchange exchange) throws IOException {
-        // Get the notification data
-        String ipnData = new BufferedReader(
-                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                .lines()
-                .collect(Collectors.joining("\n"));
+        // Keep the exact bytes, the signature covers the raw payload
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String ipnData = new String(body, StandardCharsets.UTF_8);
+        
+        // Get the notification signature header
+        String signature = exchange.getRequestHeaders().getFirst("HMAC");
         
         try {
             // Verify notification signature
-            if (!verifyCryptoIPN(ipnData)) {
+            if (!getWebhookVerifier().verifyCrypto(body, signature)) {
                 Logger.warning("Received invalid crypto payment notification");
-                sendResponse(exchange, 400, "Invalid notification");
+                ResponseWriter.send(exchange, 400, "Invalid notification");
                 return;
             }
             
@@ -528,7 +464,7 @@ public class PaymentHandler implements HttpHandler {
             
             // Skip if not a completed payment
             if (!status.equalsIgnoreCase("confirmed")) {
-                sendResponse(exchange, 200, "OK");
+                ResponseWriter.send(exchange, 200, "OK");
                 return;
             }
             
@@ -538,47 +474,24 @@ public class PaymentHandler implements HttpHandler {
             // Extract payment ID and player UUID from metadata
             if (!metadata.has("payment_id") || !metadata.has("player_uuid")) {
                 Logger.warning("Missing metadata in crypto payment notification");
-                sendResponse(exchange, 200, "OK");
+                ResponseWriter.send(exchange, 200, "OK");
                 return;
             }
             
             int paymentId = metadata.getInt("payment_id");
             String playerUuid = metadata.getString("player_uuid");
             String txnId = ipnJson.has("txn_id") ? ipnJson.getString("txn_id") : "";
+            String eventId = txnId.isEmpty() ? "payment-" + paymentId : txnId;
             
-            // Update payment in database
-            try (Connection connection = plugin.getDatabaseManager().getConnection()) {
-                // Update the payment status
-                String sql = "UPDATE payments SET status = 'completed', transaction_id = ? WHERE id = ?";
-                PreparedStatement updateStatement = connection.prepareStatement(sql);
-                updateStatement.setString(1, txnId);
-                updateStatement.setInt(2, paymentId);
-                updateStatement.executeUpdate();
-                updateStatement.close();
-                
-                // Fetch payment details to create purchase
-                String paymentQuery = "SELECT * FROM payments WHERE id = ?";
-                PreparedStatement paymentStatement = connection.prepareStatement(paymentQuery);
-                paymentStatement.setInt(1, paymentId);
-                ResultSet paymentResultSet = paymentStatement.executeQuery();
-                
-                if (paymentResultSet.next()) {
-                    int productId = paymentResultSet.getInt("product_id");
-                    
-                    // Create purchase record
-                    plugin.getPurchaseManager().createPurchase(playerUuid, productId, paymentId);
-                }
-                
-                paymentResultSet.close();
-                paymentStatement.close();
-            }
+            // Store the event, it is turned into a purchase in the background
+            plugin.getPaymentManager().getWebhookInbox()
+                    .append("crypto", eventId, paymentId, playerUuid, txnId, ipnData);
             
             // Respond to notification
-            sendResponse(exchange, 200, "OK");
+            ResponseWriter.send(exchange, 200, "OK");
         } catch (Exception e) {
-            Logger.severe("Error processing crypto payment notification: " + e.getMessage());
-            e.printStackTrace();
-            sendResponse(exchange, 500, "ERROR");
+            Logger.severe("Error processing crypto payment notification", e);
+            ResponseWriter.send(exchange, 500, "ERROR");
         }
     }
     
@@ -592,62 +505,6 @@ public class PaymentHandler implements HttpHandler {
         return plugin.getConfig().getBoolean("payment-gateways." + gateway + ".enabled", false);
     }
     
-    /**
-     * Apply a coupon code to a price
-     * @param couponCode The coupon code
-     * @param amount The original amount
-     * @return The discounted amount
-     */
-    private double applyCoupon(String couponCode, double amount) {
-        try (Connection connection = plugin.getDatabaseManager().getConnection()) {
-            String sql = "SELECT discount_type, discount_value, min_purchase FROM coupons " +
-                         "WHERE code = ? AND (expiry_date IS NULL OR expiry_date > CURRENT_TIMESTAMP) " +
-                         "AND (max_uses = 0 OR uses < max_uses)";
-            
-            PreparedStatement statement = connection.prepareStatement(sql);
-            statement.setString(1, couponCode);
-            
-            ResultSet resultSet = statement.executeQuery();
-            
-            if (resultSet.next()) {
-                String discountType = resultSet.getString("discount_type");
-                double discountValue = resultSet.getDouble("discount_value");
-                double minPurchase = resultSet.getDouble("min_purchase");
-                
-                // Check minimum purchase requirement
-                if (amount < minPurchase) {
-                    return amount;
-                }
-                
-                double discountedAmount;
-                if (discountType.equals("percentage")) {
-                    discountedAmount = amount * (1 - (discountValue / 100.0));
-                } else { // fixed amount
-                    discountedAmount = Math.max(0, amount - discountValue);
-                }
-                
-                // Update uses count
-                PreparedStatement updateStatement = connection.prepareStatement(
-                        "UPDATE coupons SET uses = uses + 1 WHERE code = ?");
-                updateStatement.setString(1, couponCode);
-                updateStatement.executeUpdate();
-                updateStatement.close();
-                
-                resultSet.close();
-                statement.close();
-                
-                return discountedAmount;
-            }
-            
-            resultSet.close();
-            statement.close();
-        } catch (SQLException e) {
-            Logger.severe("Error applying coupon: " + e.getMessage());
-        }
-        
-        return amount;
-    }
-    
     /**
      * Create a PayPal payment
      * @param paymentId The payment ID in our system
@@ -752,74 +609,10 @@ public class PaymentHandler implements HttpHandler {
     }
     
     /**
-     * Verify a PayPal IPN message
-     * @param ipnData The IPN data
-     * @return True if verified
-     */
-    private boolean verifyPayPalIPN(String ipnData) {
-        // This would normally verify the IPN with PayPal
-        // For now, we'll just return true
-        
-        return true;
-    }
-    
-    /**
-     * Parse PayPal IPN data
-     * @param ipnData The IPN data
-     * @return Parsed IPN data as JSON
-     */
-    private JSONObject parsePayPalIPN(String ipnData) {
-        // Parse the IPN data into a map
-        Map<String, String> ipnMap = new HashMap<>();
-        
-        for (String keyValue : ipnData.split("&")) {
-            String[] parts = keyValue.split("=", 2);
-            ipnMap.put(parts[0], parts.length > 1 ? parts[1] : "");
-        }
-        
-        // Convert to JSON
-        return new JSONObject(ipnMap);
-    }
-    
-    /**
-     * Verify Stripe webhook signature
-     * @param webhookData The webhook data
-     * @param signature The signature header
-     * @return True if verified
-     */
-    private boolean verifyStripeWebhook(String webhookData, String signature) {
-        // This would normally verify the webhook signature with Stripe
-        // For now, we'll just return true
-        
-        return true;
-    }
-    
-    /**
-     * Verify crypto payment notification
-     * @param ipnData The notification data
-     * @return True if verified
-     */
-    private boolean verifyCryptoIPN(String ipnData) {
-        // This would normally verify the notification with the payment processor
-        // For now, we'll just return true
-        
-        return true;
-    }
-    
-    /**
-     * Send an HTTP response
-     * @param exchange The HTTP exchange
-     * @param statusCode The status code
-     * @param response The response body
-     * @throws IOException If an I/O error occurs
+     * Get the verifier for gateway notifications
+     * @return The webhook verifier
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
-        
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
-        }
+    private WebhookVerifier getWebhookVerifier() {
+        return plugin.getPaymentManager().getWebhookVerifier();
     }
-} 
\ No newline at end of file
+}
@@ -1,10 +1,22 @@
 package org.frizzlenpop.frizzlenStore.api.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.api.Access;
+import org.frizzlenpop.frizzlenStore.api.ApiHandler;
+import org.frizzlenpop.frizzlenStore.api.PathParams;
+import org.frizzlenpop.frizzlenStore.api.QueryString;
+import org.frizzlenpop.frizzlenStore.api.ResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.Router;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
+import org.frizzlenpop.frizzlenStore.database.RowMapper;
+import org.frizzlenpop.frizzlenStore.player.PlayerNameIndex;
+import org.frizzlenpop.frizzlenStore.player.PlayerSpend;
+import org.frizzlenpop.frizzlenStore.player.PlayerSpendCache;
+import org.frizzlenpop.frizzlenStore.player.PlayerSync;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -12,99 +24,79 @@ import org.json.JSONObject;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * Handles API requests for players
  */
-public class PlayerHandler implements HttpHandler {
+public class PlayerHandler implements ApiHandler {
 
     private final FrizzlenStore plugin;
 
+    // Registered queries
+    private final Query getRecentPlayers;
+    private final Query getPlayer;
+    private final Query getPlayerWithSpend;
+    private final Query searchPlayers;
+
+    // Maps a players row to its JSON form in search results, which leave out the address
+    private static final RowMapper<JSONObject> SEARCH_ROW = resultSet -> {
+        JSONObject player = new JSONObject();
+        player.put("uuid", resultSet.getString("uuid"));
+        player.put("name", resultSet.getString("name"));
+        player.put("first_join", resultSet.getString("first_join"));
+        player.put("last_seen", resultSet.getString("last_seen"));
+        player.put("banned", resultSet.getBoolean("banned"));
+        return player;
+    };
+
+    // Maps a players row to its JSON form
+    private static final RowMapper<JSONObject> PLAYER_ROW = resultSet -> 
+            SEARCH_ROW.map(resultSet).put("last_ip", resultSet.getString("last_ip"));
+
+    // Players returned per search
+    private static final int SEARCH_LIMIT = 20;
+
+    // Players whose stats can be requested at once
+    private static final int MAX_STATS_PLAYERS = 100;
+
     /**
      * Constructor
      * @param plugin The plugin instance
      */
     public PlayerHandler(FrizzlenStore plugin) {
         this.plugin = plugin;
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.getRecentPlayers = database.register("player.list_recent", 
+                "SELECT * FROM players ORDER BY last_seen DESC LIMIT 100");
+        this.getPlayer = database.register("player.get", 
+                "SELECT * FROM players WHERE uuid = ?");
+        this.getPlayerWithSpend = database.register("player.get_with_spend", 
+                "SELECT p.*, s.purchase_count, s.total_spent, s.last_purchase FROM players p " +
+                "LEFT JOIN (SELECT player_uuid, " + PlayerSpend.columns(database.isSqlite()) + " FROM purchases " +
+                "WHERE player_uuid = ? AND " + PlayerSpend.counted() + " GROUP BY player_uuid) s " +
+                "ON s.player_uuid = p.uuid WHERE p.uuid = ?");
+        this.searchPlayers = database.register("player.search", 
+                "SELECT uuid, name, first_join, last_seen, banned FROM players " +
+                "WHERE name LIKE ? ORDER BY last_seen DESC LIMIT ?");
     }
 
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Set CORS headers
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type,Authorization");
-        
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
-        }
-
-        try {
-            // Verify API token
-            String token = exchange.getRequestHeaders().getFirst("Authorization");
-            if (token == null || !token.equals("Bearer " + plugin.getConfig().getString("api.token"))) {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Unauthorized")
-                        .toString();
-                sendResponse(exchange, 401, response);
-                return;
-            }
-
-            // Handle different request methods and paths
-            String path = exchange.getRequestURI().getPath();
-            
-            if (exchange.getRequestMethod().equalsIgnoreCase("GET")) {
-                if (path.endsWith("/players") || path.endsWith("/players/")) {
-                    handleGetPlayers(exchange);
-                } else if (path.contains("/players/search")) {
-                    handleSearchPlayers(exchange);
-                } else if (path.contains("/players/")) {
-                    handleGetPlayer(exchange);
-                } else {
-                    // Not found
-                    String response = new JSONObject()
-                            .put("success", false)
-                            .put("error", "Not found")
-                            .toString();
-                    sendResponse(exchange, 404, response);
-                }
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("POST")) {
-                if (path.contains("/players/sync")) {
-                    handleSyncPlayers(exchange);
-                } else {
-                    // Method not allowed
-                    String response = new JSONObject()
-                            .put("success", false)
-                            .put("error", "Method not allowed")
-                            .toString();
-                    sendResponse(exchange, 405, response);
-                }
-            } else {
-                // Method not allowed
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Method not allowed")
-                        .toString();
-                sendResponse(exchange, 405, response);
-            }
-        } catch (Exception e) {
-            Logger.severe("Error handling player request: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Internal server error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+    public void registerRoutes(Router router) {
+        router.get("/api/players", Access.READ, this::handleGetPlayers);
+        router.get("/api/players/search", Access.READ, this::handleSearchPlayers);
+        router.get("/api/players/stats", Access.READ, this::handleGetPlayerStats);
+        router.get("/api/players/{uuid}", Access.READ, this::handleGetPlayer);
+        router.get("/api/players/sync", Access.READ, this::handleGetSyncStatus);
+        router.post("/api/players/sync", Access.ADMIN, this::handleSyncPlayers);
+        router.delete("/api/players/sync", Access.ADMIN, this::handleCancelSync);
     }
 
     /**
@@ -114,160 +106,184 @@ public class PlayerHandler implements HttpHandler {
      */
     private void handleGetPlayers(HttpExchange exchange) throws IOException {
         try {
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT * FROM players ORDER BY last_seen DESC LIMIT 100";
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet resultSet = statement.executeQuery();
-
-            JSONArray players = new JSONArray();
-            while (resultSet.next()) {
-                JSONObject player = new JSONObject();
-                player.put("uuid", resultSet.getString("uuid"));
-                player.put("name", resultSet.getString("name"));
-                player.put("first_join", resultSet.getString("first_join"));
-                player.put("last_seen", resultSet.getString("last_seen"));
-                player.put("banned", resultSet.getBoolean("banned"));
-                players.put(player);
-            }
-
-            resultSet.close();
-            statement.close();
+            List<JSONObject> players = plugin.getDatabaseManager().query(getRecentPlayers, PLAYER_ROW);
 
             JSONObject response = new JSONObject();
             response.put("success", true);
-            response.put("players", players);
+            response.put("players", new JSONArray(players));
             
-            sendResponse(exchange, 200, response.toString());
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while getting players: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while getting players", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
      * Handle GET request to fetch a single player
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleGetPlayer(HttpExchange exchange) throws IOException {
-        // Get player UUID from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid path")
-                    .toString();
-            sendResponse(exchange, 400, response);
-            return;
-        }
-        
+    private void handleGetPlayer(HttpExchange exchange, PathParams params) throws IOException {
         try {
-            String playerUuid = parts[3];
+            String playerUuid = params.get("uuid");
             
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT * FROM players WHERE uuid = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setString(1, playerUuid);
-            ResultSet resultSet = statement.executeQuery();
-
-            if (!resultSet.next()) {
-                resultSet.close();
-                statement.close();
+            UUID uuid = null;
+            try {
+                uuid = UUID.fromString(playerUuid);
+            } catch (IllegalArgumentException e) {
+                // Not a valid UUID
+            }
+            
+            // Only read the purchases when the player's spend isn't cached
+            PlayerSpendCache spendCache = plugin.getPlayerSpendCache();
+            PlayerSpend spend = uuid != null ? spendCache.getIfPresent(uuid) : null;
+            JSONObject player;
+            
+            if (spend != null) {
+                player = plugin.getDatabaseManager().queryFirst(getPlayer, PLAYER_ROW, playerUuid);
+            } else {
+                long loadedAt = spendCache.getVersion();
+                Map.Entry<JSONObject, PlayerSpend> row = plugin.getDatabaseManager().queryFirst(getPlayerWithSpend, 
+                        resultSet -> Map.entry(PLAYER_ROW.map(resultSet), PlayerSpend.read(resultSet)), 
+                        playerUuid, playerUuid);
                 
-                // If not in database, try to look up from server
-                OfflinePlayer offlinePlayer = null;
-                try {
-                    UUID uuid = UUID.fromString(playerUuid);
-                    offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-                } catch (IllegalArgumentException e) {
-                    // Not a valid UUID
+                player = row != null ? row.getKey() : null;
+                if (row != null) {
+                    spend = row.getValue();
+                    if (uuid != null) {
+                        spendCache.put(uuid, spend, loadedAt);
+                    }
                 }
-                
+            }
+
+            if (player == null) {
+                // If not in database, try to look up from server
+                OfflinePlayer offlinePlayer = uuid != null ? Bukkit.getOfflinePlayer(uuid) : null;
+            
                 if (offlinePlayer != null && offlinePlayer.hasPlayedBefore()) {
-                    JSONObject player = new JSONObject();
-                    player.put("uuid", offlinePlayer.getUniqueId().toString());
-                    player.put("name", offlinePlayer.getName());
-                    player.put("first_join", offlinePlayer.getFirstPlayed());
-                    player.put("last_seen", offlinePlayer.getLastPlayed());
-                    player.put("banned", offlinePlayer.isBanned());
-                    player.put("online", offlinePlayer.isOnline());
-                    
+                    JSONObject serverPlayer = new JSONObject();
+                    serverPlayer.put("uuid", offlinePlayer.getUniqueId().toString());
+                    serverPlayer.put("name", offlinePlayer.getName());
+                    serverPlayer.put("first_join", offlinePlayer.getFirstPlayed());
+                    serverPlayer.put("last_seen", offlinePlayer.getLastPlayed());
+                    serverPlayer.put("banned", offlinePlayer.isBanned());
+                    serverPlayer.put("online", offlinePlayer.isOnline());
+                
                     JSONObject response = new JSONObject();
                     response.put("success", true);
-                    response.put("player", player);
-                    
-                    sendResponse(exchange, 200, response.toString());
+                    response.put("player", serverPlayer);
+                
+                    ResponseWriter.send(exchange, 200, response.toString());
                     return;
                 }
-                
+            
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Player not found")
                         .toString();
-                sendResponse(exchange, 404, response);
+                ResponseWriter.send(exchange, 404, response);
                 return;
             }
-            
-            JSONObject player = new JSONObject();
-            player.put("uuid", resultSet.getString("uuid"));
-            player.put("name", resultSet.getString("name"));
-            player.put("first_join", resultSet.getString("first_join"));
-            player.put("last_seen", resultSet.getString("last_seen"));
-            player.put("banned", resultSet.getBoolean("banned"));
-            
+        
             // Check if player is currently online
-            player.put("online", false);
+            player.put("online", uuid != null && Bukkit.getOfflinePlayer(uuid).isOnline());
+            putSpend(player, spend);
+
+            JSONObject response = new JSONObject();
+            response.put("success", true);
+            response.put("player", player);
+        
+            ResponseWriter.send(exchange, 200, response.toString());
+        } catch (SQLException e) {
+            Logger.severe("Database error while getting player", e);
+            String response = new JSONObject()
+                    .put("success", false)
+                    .put("error", "Database error")
+                    .toString();
+            ResponseWriter.send(exchange, 500, response);
+        }
+    }
+
+    /**
+     * Handle GET request to fetch the purchase stats of many players at once.
+     * Players are passed as comma-separated UUIDs in {@code uuids}, players without purchases get zeroes.
+     * @param exchange The HTTP exchange
+     * @throws IOException If an I/O error occurs
+     */
+    private void handleGetPlayerStats(HttpExchange exchange) throws IOException {
+        String uuidList = QueryString.parse(exchange.getRequestURI().getRawQuery()).get("uuids");
+        if (uuidList == null || uuidList.isBlank()) {
+            String response = new JSONObject()
+                    .put("success", false)
+                    .put("error", "Missing uuids")
+                    .toString();
+            ResponseWriter.send(exchange, 400, response);
+            return;
+        }
+        
+        Set<UUID> uuids = new LinkedHashSet<>();
+        for (String value : uuidList.split(",")) {
             try {
-                UUID uuid = UUID.fromString(playerUuid);
-                OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-                player.put("online", offlinePlayer.isOnline());
+                uuids.add(UUID.fromString(value.trim()));
             } catch (IllegalArgumentException e) {
-                // Not a valid UUID
+                String response = new JSONObject()
+                        .put("success", false)
+                        .put("error", "Invalid player UUID: " + value.trim())
+                        .toString();
+                ResponseWriter.send(exchange, 400, response);
+                return;
             }
-            
-            resultSet.close();
-            statement.close();
-
-            // Get purchase stats
-            String statsQuery = "SELECT COUNT(*) as purchase_count, SUM(price) as total_spent " +
-                              "FROM purchases WHERE player_uuid = ?";
-            PreparedStatement statsStatement = connection.prepareStatement(statsQuery);
-            statsStatement.setString(1, playerUuid);
-            ResultSet statsResultSet = statsStatement.executeQuery();
-            
-            if (statsResultSet.next()) {
-                player.put("purchase_count", statsResultSet.getInt("purchase_count"));
-                player.put("total_spent", statsResultSet.getDouble("total_spent"));
-            } else {
-                player.put("purchase_count", 0);
-                player.put("total_spent", 0.0);
+        }
+        
+        if (uuids.size() > MAX_STATS_PLAYERS) {
+            String response = new JSONObject()
+                    .put("success", false)
+                    .put("error", "At most " + MAX_STATS_PLAYERS + " players per request")
+                    .toString();
+            ResponseWriter.send(exchange, 400, response);
+            return;
+        }
+        
+        try {
+            JSONObject stats = new JSONObject();
+            for (Map.Entry<UUID, PlayerSpend> entry : plugin.getPlayerSpendCache().getAll(uuids).entrySet()) {
+                stats.put(entry.getKey().toString(), putSpend(new JSONObject(), entry.getValue()));
             }
             
-            statsResultSet.close();
-            statsStatement.close();
-
             JSONObject response = new JSONObject();
             response.put("success", true);
-            response.put("player", player);
+            response.put("stats", stats);
             
-            sendResponse(exchange, 200, response.toString());
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while getting player: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while getting player stats", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
+    /**
+     * Add a player's purchase stats to a JSON object
+     * @param json The JSON object
+     * @param spend The player's spend
+     * @return The JSON object
+     */
+    private static JSONObject putSpend(JSONObject json, PlayerSpend spend) {
+        json.put("purchase_count", spend.getPurchaseCount());
+        json.put("total_spent", spend.getTotalSpent());
+        json.put("last_purchase", spend.getLastPurchase() > 0 ? spend.getLastPurchase() : JSONObject.NULL);
+        return json;
+    }
+
     /**
      * Handle GET request to search players
      * @param exchange The HTTP exchange
@@ -281,7 +297,7 @@ public class PlayerHandler implements HttpHandler {
                     .put("success", false)
                     .put("error", "Missing search query")
                     .toString();
-            sendResponse(exchange, 400, response);
+            ResponseWriter.send(exchange, 400, response);
             return;
         }
         
@@ -291,132 +307,132 @@ public class PlayerHandler implements HttpHandler {
                     .put("success", false)
                     .put("error", "Empty search query")
                     .toString();
-            sendResponse(exchange, 400, response);
+            ResponseWriter.send(exchange, 400, response);
             return;
         }
         
-        try {
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String sql = "SELECT * FROM players WHERE name LIKE ? ORDER BY last_seen DESC LIMIT 20";
-            PreparedStatement statement = connection.prepareStatement(sql);
-            statement.setString(1, "%" + searchQuery + "%");
-            ResultSet resultSet = statement.executeQuery();
-
+        // Serve from the name index once it has loaded
+        PlayerNameIndex index = plugin.getPlayerNameIndex();
+        if (index.isReady()) {
             JSONArray players = new JSONArray();
-            while (resultSet.next()) {
+            for (PlayerNameIndex.Entry entry : index.search(searchQuery, SEARCH_LIMIT)) {
                 JSONObject player = new JSONObject();
-                player.put("uuid", resultSet.getString("uuid"));
-                player.put("name", resultSet.getString("name"));
-                player.put("first_join", resultSet.getString("first_join"));
-                player.put("last_seen", resultSet.getString("last_seen"));
-                player.put("banned", resultSet.getBoolean("banned"));
+                player.put("uuid", entry.getUuid().toString());
+                player.put("name", entry.getName());
+                player.put("first_join", String.valueOf(entry.getFirstJoin()));
+                player.put("last_seen", String.valueOf(entry.getLastSeen()));
+                player.put("banned", entry.isBanned());
                 players.put(player);
             }
-
-            resultSet.close();
-            statement.close();
-
+            
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("query", searchQuery);
             response.put("players", players);
             
-            sendResponse(exchange, 200, response.toString());
+            ResponseWriter.send(exchange, 200, response.toString());
+            return;
+        }
+        
+        try {
+            List<JSONObject> players = plugin.getDatabaseManager().query(searchPlayers, SEARCH_ROW, 
+                    "%" + searchQuery + "%", SEARCH_LIMIT);
+
+            JSONObject response = new JSONObject();
+            response.put("success", true);
+            response.put("query", searchQuery);
+            response.put("players", new JSONArray(players));
+            
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while searching players: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while searching players", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
-     * Handle POST request to sync players from server to database
+     * Handle POST request to start syncing players from server to database.
+     * The sync runs in the background, its progress is read with GET /api/players/sync.
      * @param exchange The HTTP exchange
      * @throws IOException If an I/O error occurs
      */
     private void handleSyncPlayers(HttpExchange exchange) throws IOException {
-        try {
-            int syncCount = 0;
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            
-            for (OfflinePlayer offlinePlayer : Bukkit.getOfflinePlayers()) {
-                if (offlinePlayer.hasPlayedBefore()) {
-                    String playerUuid = offlinePlayer.getUniqueId().toString();
-                    String playerName = offlinePlayer.getName();
-                    long firstJoin = offlinePlayer.getFirstPlayed();
-                    long lastSeen = offlinePlayer.getLastPlayed();
-                    boolean banned = offlinePlayer.isBanned();
-                    
-                    // Check if player exists in database
-                    String checkQuery = "SELECT * FROM players WHERE uuid = ?";
-                    PreparedStatement checkStatement = connection.prepareStatement(checkQuery);
-                    checkStatement.setString(1, playerUuid);
-                    ResultSet checkResultSet = checkStatement.executeQuery();
-                    
-                    if (checkResultSet.next()) {
-                        // Update existing player
-                        String updateQuery = "UPDATE players SET name = ?, first_join = ?, last_seen = ?, banned = ? WHERE uuid = ?";
-                        PreparedStatement updateStatement = connection.prepareStatement(updateQuery);
-                        updateStatement.setString(1, playerName);
-                        updateStatement.setLong(2, firstJoin);
-                        updateStatement.setLong(3, lastSeen);
-                        updateStatement.setBoolean(4, banned);
-                        updateStatement.setString(5, playerUuid);
-                        updateStatement.executeUpdate();
-                        updateStatement.close();
-                    } else {
-                        // Insert new player
-                        String insertQuery = "INSERT INTO players (uuid, name, first_join, last_seen, banned) VALUES (?, ?, ?, ?, ?)";
-                        PreparedStatement insertStatement = connection.prepareStatement(insertQuery);
-                        insertStatement.setString(1, playerUuid);
-                        insertStatement.setString(2, playerName);
-                        insertStatement.setLong(3, firstJoin);
-                        insertStatement.setLong(4, lastSeen);
-                        insertStatement.setBoolean(5, banned);
-                        insertStatement.executeUpdate();
-                        insertStatement.close();
-                    }
-                    
-                    checkResultSet.close();
-                    checkStatement.close();
-                    syncCount++;
-                }
-            }
-
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("message", "Players synchronized successfully");
-            response.put("sync_count", syncCount);
-            
-            sendResponse(exchange, 200, response.toString());
-        } catch (SQLException e) {
-            Logger.severe("Database error while syncing players: " + e.getMessage());
-            e.printStackTrace();
+        PlayerSync.Job job = plugin.getPlayerSync().start();
+        
+        if (job == null) {
             String response = new JSONObject()
                     .put("success", false)
-                    .put("error", "Database error")
+                    .put("error", "Player sync already running")
+                    .put("sync", toJson(plugin.getPlayerSync().getJob()))
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 409, response);
+            return;
         }
+        
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("message", "Player sync started");
+        response.put("sync", toJson(job));
+        
+        ResponseWriter.send(exchange, 202, response.toString());
+    }
+
+    /**
+     * Handle GET request to fetch the progress of the last player sync
+     * @param exchange The HTTP exchange
+     * @throws IOException If an I/O error occurs
+     */
+    private void handleGetSyncStatus(HttpExchange exchange) throws IOException {
+        PlayerSync.Job job = plugin.getPlayerSync().getJob();
+        
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("sync", job != null ? toJson(job) : JSONObject.NULL);
+        
+        ResponseWriter.send(exchange, 200, response.toString());
     }
 
     /**
-     * Send HTTP response
+     * Handle DELETE request to cancel a running player sync
      * @param exchange The HTTP exchange
-     * @param statusCode The HTTP status code
-     * @param response The response body
      * @throws IOException If an I/O error occurs
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        byte[] responseBytes = response.getBytes();
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
+    private void handleCancelSync(HttpExchange exchange) throws IOException {
+        if (!plugin.getPlayerSync().cancel()) {
+            String response = new JSONObject()
+                    .put("success", false)
+                    .put("error", "No player sync running")
+                    .toString();
+            ResponseWriter.send(exchange, 409, response);
+            return;
         }
+        
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("message", "Player sync cancelled");
+        response.put("sync", toJson(plugin.getPlayerSync().getJob()));
+        
+        ResponseWriter.send(exchange, 200, response.toString());
+    }
+
+    /**
+     * Convert a sync job's progress to JSON
+     * @param job The job
+     * @return The JSON object
+     */
+    private static JSONObject toJson(PlayerSync.Job job) {
+        JSONObject sync = new JSONObject();
+        sync.put("state", job.getState().name().toLowerCase());
+        sync.put("total", job.getTotal());
+        sync.put("read", job.getRead());
+        sync.put("synced", job.getSynced());
+        sync.put("started_at", job.getStartedAt());
+        sync.put("finished_at", job.getFinishedAt() > 0 ? job.getFinishedAt() : JSONObject.NULL);
+        sync.put("error", job.getError() != null ? job.getError() : JSONObject.NULL);
+        return sync;
     }
 } 
\ No newline at end of file
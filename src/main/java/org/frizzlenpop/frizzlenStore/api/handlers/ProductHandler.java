@@ -1,8 +1,18 @@
 package org.frizzlenpop.frizzlenStore.api.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.api.Access;
+import org.frizzlenpop.frizzlenStore.api.ApiHandler;
+import org.frizzlenpop.frizzlenStore.api.CatalogResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.PathParams;
+import org.frizzlenpop.frizzlenStore.api.ResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.Router;
+import org.frizzlenpop.frizzlenStore.catalog.CatalogSerializer;
+import org.frizzlenpop.frizzlenStore.catalog.CatalogSnapshot;
+import org.frizzlenpop.frizzlenStore.catalog.Product;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -10,94 +20,53 @@ import org.json.JSONObject;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * Handles API requests for store products
  */
-public class ProductHandler implements HttpHandler {
+public class ProductHandler implements ApiHandler {
 
     private final FrizzlenStore plugin;
 
+    // Registered queries
+    private final Query categoryExists;
+    private final Query insertProduct;
+    private final Query countProductPurchases;
+    private final Query deleteProduct;
+
     /**
      * Constructor
      * @param plugin The plugin instance
      */
     public ProductHandler(FrizzlenStore plugin) {
         this.plugin = plugin;
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.categoryExists = database.register("category.exists", 
+                "SELECT 1 FROM categories WHERE id = ?");
+        this.insertProduct = database.register("product.insert", 
+                "INSERT INTO products (name, description, price, sale_price, is_on_sale, " +
+                "category_id, image_url, display_order, enabled, commands) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        this.countProductPurchases = database.register("product.count_purchases", 
+                "SELECT COUNT(*) FROM purchases WHERE product_id = ?");
+        this.deleteProduct = database.register("product.delete", 
+                "DELETE FROM products WHERE id = ?");
     }
 
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Set CORS headers
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type,Authorization");
-        
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
-        }
-
-        try {
-            // Verify API token for non-public endpoints
-            String path = exchange.getRequestURI().getPath();
-            if (!(exchange.getRequestMethod().equalsIgnoreCase("GET") && !path.contains("/admin"))) {
-                String token = exchange.getRequestHeaders().getFirst("Authorization");
-                if (token == null || !token.equals("Bearer " + plugin.getConfig().getString("api.token"))) {
-                    String response = new JSONObject()
-                            .put("success", false)
-                            .put("error", "Unauthorized")
-                            .toString();
-                    sendResponse(exchange, 401, response);
-                    return;
-                }
-            }
-
-            // Handle different request methods
-            if (exchange.getRequestMethod().equalsIgnoreCase("GET")) {
-                if (path.endsWith("/products") || path.endsWith("/products/")) {
-                    handleGetProducts(exchange);
-                } else if (path.contains("/products/category/")) {
-                    handleGetProductsByCategory(exchange);
-                } else if (path.contains("/products/")) {
-                    handleGetProduct(exchange);
-                } else {
-                    // Not found
-                    String response = new JSONObject()
-                            .put("success", false)
-                            .put("error", "Not found")
-                            .toString();
-                    sendResponse(exchange, 404, response);
-                }
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("POST")) {
-                handleCreateProduct(exchange);
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("PUT")) {
-                handleUpdateProduct(exchange);
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("DELETE")) {
-                handleDeleteProduct(exchange);
-            } else {
-                // Method not allowed
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Method not allowed")
-                        .toString();
-                sendResponse(exchange, 405, response);
-            }
-        } catch (Exception e) {
-            Logger.severe("Error handling product request: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Internal server error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+    public void registerRoutes(Router router) {
+        router.get("/api/products", Access.PUBLIC, this::handleGetProducts);
+        router.get("/api/products/category/{id:int}", Access.PUBLIC, this::handleGetProductsByCategory);
+        router.get("/api/products/{id:int}", Access.PUBLIC, this::handleGetProduct);
+        router.post("/api/products", Access.ADMIN, this::handleCreateProduct);
+        router.put("/api/products", Access.ADMIN, this::handleUpdateProduct);
+        router.delete("/api/products/{id:int}", Access.ADMIN, this::handleDeleteProduct);
     }
 
     /**
@@ -106,202 +75,46 @@ public class ProductHandler implements HttpHandler {
      * @throws IOException If an I/O error occurs
      */
     private void handleGetProducts(HttpExchange exchange) throws IOException {
-        try {
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT p.*, c.name as category_name FROM products p " +
-                          "JOIN categories c ON p.category_id = c.id " +
-                          "ORDER BY p.display_order ASC";
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet resultSet = statement.executeQuery();
-
-            JSONArray products = new JSONArray();
-            while (resultSet.next()) {
-                JSONObject product = new JSONObject();
-                product.put("id", resultSet.getInt("id"));
-                product.put("name", resultSet.getString("name"));
-                product.put("description", resultSet.getString("description"));
-                product.put("price", resultSet.getDouble("price"));
-                product.put("sale_price", resultSet.getDouble("sale_price"));
-                product.put("is_on_sale", resultSet.getBoolean("is_on_sale"));
-                product.put("category_id", resultSet.getInt("category_id"));
-                product.put("category_name", resultSet.getString("category_name"));
-                product.put("image_url", resultSet.getString("image_url"));
-                product.put("display_order", resultSet.getInt("display_order"));
-                product.put("enabled", resultSet.getBoolean("enabled"));
-                product.put("commands", new JSONArray(resultSet.getString("commands")));
-                products.put(product);
-            }
-
-            resultSet.close();
-            statement.close();
-
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("products", products);
-            
-            sendResponse(exchange, 200, response.toString());
-        } catch (SQLException e) {
-            Logger.severe("Database error while getting products: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Database error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+        CatalogResponseWriter.send(exchange, plugin.getCatalogCache().getSnapshot().getProductsResponse());
     }
 
     /**
      * Handle GET request to fetch products by category
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleGetProductsByCategory(HttpExchange exchange) throws IOException {
-        // Get category id from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 5) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid path")
-                    .toString();
-            sendResponse(exchange, 400, response);
-            return;
-        }
+    private void handleGetProductsByCategory(HttpExchange exchange, PathParams params) throws IOException {
+        int categoryId = params.getInt("id");
+        CatalogSnapshot catalog = plugin.getCatalogCache().getSnapshot();
         
-        try {
-            int categoryId = Integer.parseInt(parts[4]);
-            
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT p.*, c.name as category_name FROM products p " +
-                          "JOIN categories c ON p.category_id = c.id " +
-                          "WHERE p.category_id = ? AND p.enabled = true " +
-                          "ORDER BY p.display_order ASC";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, categoryId);
-            ResultSet resultSet = statement.executeQuery();
-
-            JSONArray products = new JSONArray();
-            while (resultSet.next()) {
-                JSONObject product = new JSONObject();
-                product.put("id", resultSet.getInt("id"));
-                product.put("name", resultSet.getString("name"));
-                product.put("description", resultSet.getString("description"));
-                product.put("price", resultSet.getDouble("price"));
-                product.put("sale_price", resultSet.getDouble("sale_price"));
-                product.put("is_on_sale", resultSet.getBoolean("is_on_sale"));
-                product.put("category_id", resultSet.getInt("category_id"));
-                product.put("category_name", resultSet.getString("category_name"));
-                product.put("image_url", resultSet.getString("image_url"));
-                product.put("display_order", resultSet.getInt("display_order"));
-                product.put("enabled", resultSet.getBoolean("enabled"));
-                product.put("commands", new JSONArray(resultSet.getString("commands")));
-                products.put(product);
-            }
-
-            resultSet.close();
-            statement.close();
-
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("category_id", categoryId);
-            response.put("products", products);
-            
-            sendResponse(exchange, 200, response.toString());
-        } catch (NumberFormatException e) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid category ID")
-                    .toString();
-            sendResponse(exchange, 400, response);
-        } catch (SQLException e) {
-            Logger.severe("Database error while getting products by category: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Database error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+        CatalogResponseWriter.send(exchange, catalog.getCategoryProductsResponse(categoryId));
     }
 
     /**
      * Handle GET request to fetch a single product
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleGetProduct(HttpExchange exchange) throws IOException {
-        // Get product id from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
+    private void handleGetProduct(HttpExchange exchange, PathParams params) throws IOException {
+        int productId = params.getInt("id");
+        Product product = plugin.getCatalogCache().getSnapshot().getProduct(productId);
+
+        if (product == null) {
             String response = new JSONObject()
                     .put("success", false)
-                    .put("error", "Invalid path")
+                    .put("error", "Product not found")
                     .toString();
-            sendResponse(exchange, 400, response);
+            ResponseWriter.send(exchange, 404, response);
             return;
         }
-        
-        try {
-            int productId = Integer.parseInt(parts[3]);
-            
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT p.*, c.name as category_name FROM products p " +
-                          "JOIN categories c ON p.category_id = c.id " +
-                          "WHERE p.id = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, productId);
-            ResultSet resultSet = statement.executeQuery();
 
-            if (!resultSet.next()) {
-                resultSet.close();
-                statement.close();
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Product not found")
-                        .toString();
-                sendResponse(exchange, 404, response);
-                return;
-            }
-            
-            JSONObject product = new JSONObject();
-            product.put("id", resultSet.getInt("id"));
-            product.put("name", resultSet.getString("name"));
-            product.put("description", resultSet.getString("description"));
-            product.put("price", resultSet.getDouble("price"));
-            product.put("sale_price", resultSet.getDouble("sale_price"));
-            product.put("is_on_sale", resultSet.getBoolean("is_on_sale"));
-            product.put("category_id", resultSet.getInt("category_id"));
-            product.put("category_name", resultSet.getString("category_name"));
-            product.put("image_url", resultSet.getString("image_url"));
-            product.put("display_order", resultSet.getInt("display_order"));
-            product.put("enabled", resultSet.getBoolean("enabled"));
-            product.put("commands", new JSONArray(resultSet.getString("commands")));
-            
-            resultSet.close();
-            statement.close();
-
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("product", product);
-            
-            sendResponse(exchange, 200, response.toString());
-        } catch (NumberFormatException e) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid product ID")
-                    .toString();
-            sendResponse(exchange, 400, response);
-        } catch (SQLException e) {
-            Logger.severe("Database error while getting product: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Database error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("product", CatalogSerializer.toJson(product));
+        
+        ResponseWriter.send(exchange, 200, response.toString());
     }
 
     /**
@@ -322,7 +135,7 @@ public class ProductHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Missing required fields")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
 
@@ -338,65 +151,39 @@ public class ProductHandler implements HttpHandler {
             JSONArray commands = requestJson.getJSONArray("commands");
 
             // Verify category exists
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String categoryQuery = "SELECT * FROM categories WHERE id = ?";
-            PreparedStatement categoryStatement = connection.prepareStatement(categoryQuery);
-            categoryStatement.setInt(1, categoryId);
-            ResultSet categoryResultSet = categoryStatement.executeQuery();
-            
-            if (!categoryResultSet.next()) {
-                categoryResultSet.close();
-                categoryStatement.close();
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Category not found")
-                        .toString();
-                sendResponse(exchange, 404, response);
-                return;
-            }
-            
-            categoryResultSet.close();
-            categoryStatement.close();
+            DatabaseManager database = plugin.getDatabaseManager();
+            int productId;
+            try (Connection connection = database.getConnection()) {
+                if (!categoryExists(connection, categoryId)) {
+                    String response = new JSONObject()
+                            .put("success", false)
+                            .put("error", "Category not found")
+                            .toString();
+                    ResponseWriter.send(exchange, 404, response);
+                    return;
+                }
 
-            // Create product record
-            String insertQuery = "INSERT INTO products (name, description, price, sale_price, is_on_sale, " +
-                                "category_id, image_url, display_order, enabled, commands) " +
-                                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            PreparedStatement insertStatement = connection.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS);
-            insertStatement.setString(1, name);
-            insertStatement.setString(2, description);
-            insertStatement.setDouble(3, price);
-            insertStatement.setDouble(4, salePrice);
-            insertStatement.setBoolean(5, isOnSale);
-            insertStatement.setInt(6, categoryId);
-            insertStatement.setString(7, imageUrl);
-            insertStatement.setInt(8, displayOrder);
-            insertStatement.setBoolean(9, enabled);
-            insertStatement.setString(10, commands.toString());
-            insertStatement.executeUpdate();
-            
-            ResultSet generatedKeys = insertStatement.getGeneratedKeys();
-            int productId = -1;
-            if (generatedKeys.next()) {
-                productId = generatedKeys.getInt(1);
+                // Create product record
+                productId = (int) database.insert(connection, insertProduct, name, description, price, 
+                        salePrice, isOnSale, categoryId, imageUrl, displayOrder, enabled, commands.toString());
             }
-            generatedKeys.close();
-            insertStatement.close();
+
+            // Reload after the connection is returned, the reload borrows one of its own
+            plugin.getCatalogCache().reload();
 
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Product created successfully");
             response.put("product_id", productId);
-            
-            sendResponse(exchange, 201, response.toString());
+        
+            ResponseWriter.send(exchange, 201, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while creating product: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while creating product", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
@@ -418,7 +205,7 @@ public class ProductHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Missing product ID")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
 
@@ -483,204 +270,166 @@ public class ProductHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "No fields to update")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
             
             // Remove trailing comma and space
             String query = queryBuilder.substring(0, queryBuilder.length() - 2) + " WHERE id = ?";
             
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            PreparedStatement statement = connection.prepareStatement(query);
-            
-            int paramIndex = 1;
+            DatabaseManager database = plugin.getDatabaseManager();
+            try (Connection connection = database.getConnection()) {
+                List<Object> params = new ArrayList<>();
             
-            if (requestJson.has("name")) {
-                statement.setString(paramIndex++, requestJson.getString("name"));
-            }
+                if (requestJson.has("name")) {
+                    params.add(requestJson.getString("name"));
+                }
             
-            if (requestJson.has("description")) {
-                statement.setString(paramIndex++, requestJson.getString("description"));
-            }
+                if (requestJson.has("description")) {
+                    params.add(requestJson.getString("description"));
+                }
             
-            if (requestJson.has("price")) {
-                statement.setDouble(paramIndex++, requestJson.getDouble("price"));
-            }
+                if (requestJson.has("price")) {
+                    params.add(requestJson.getDouble("price"));
+                }
             
-            if (requestJson.has("sale_price")) {
-                statement.setDouble(paramIndex++, requestJson.getDouble("sale_price"));
-            }
+                if (requestJson.has("sale_price")) {
+                    params.add(requestJson.getDouble("sale_price"));
+                }
             
-            if (requestJson.has("is_on_sale")) {
-                statement.setBoolean(paramIndex++, requestJson.getBoolean("is_on_sale"));
-            }
+                if (requestJson.has("is_on_sale")) {
+                    params.add(requestJson.getBoolean("is_on_sale"));
+                }
             
-            if (requestJson.has("category_id")) {
-                int categoryId = requestJson.getInt("category_id");
+                if (requestJson.has("category_id")) {
+                    int categoryId = requestJson.getInt("category_id");
                 
-                // Verify category exists
-                String categoryQuery = "SELECT * FROM categories WHERE id = ?";
-                PreparedStatement categoryStatement = connection.prepareStatement(categoryQuery);
-                categoryStatement.setInt(1, categoryId);
-                ResultSet categoryResultSet = categoryStatement.executeQuery();
+                    // Verify category exists
+                    if (!categoryExists(connection, categoryId)) {
+                        String response = new JSONObject()
+                                .put("success", false)
+                                .put("error", "Category not found")
+                                .toString();
+                        ResponseWriter.send(exchange, 404, response);
+                        return;
+                    }
                 
-                if (!categoryResultSet.next()) {
-                    categoryResultSet.close();
-                    categoryStatement.close();
-                    statement.close();
-                    String response = new JSONObject()
-                            .put("success", false)
-                            .put("error", "Category not found")
-                            .toString();
-                    sendResponse(exchange, 404, response);
-                    return;
+                    params.add(categoryId);
                 }
-                
-                categoryResultSet.close();
-                categoryStatement.close();
-                
-                statement.setInt(paramIndex++, categoryId);
-            }
             
-            if (requestJson.has("image_url")) {
-                statement.setString(paramIndex++, requestJson.getString("image_url"));
-            }
+                if (requestJson.has("image_url")) {
+                    params.add(requestJson.getString("image_url"));
+                }
             
-            if (requestJson.has("display_order")) {
-                statement.setInt(paramIndex++, requestJson.getInt("display_order"));
-            }
+                if (requestJson.has("display_order")) {
+                    params.add(requestJson.getInt("display_order"));
+                }
             
-            if (requestJson.has("enabled")) {
-                statement.setBoolean(paramIndex++, requestJson.getBoolean("enabled"));
-            }
+                if (requestJson.has("enabled")) {
+                    params.add(requestJson.getBoolean("enabled"));
+                }
             
-            if (requestJson.has("commands")) {
-                statement.setString(paramIndex++, requestJson.getJSONArray("commands").toString());
-            }
+                if (requestJson.has("commands")) {
+                    params.add(requestJson.getJSONArray("commands").toString());
+                }
             
-            statement.setInt(paramIndex, id);
-            int rowsAffected = statement.executeUpdate();
-            statement.close();
+                params.add(id);
+                int rowsAffected = database.updateDynamic(connection, query, params.toArray());
             
-            if (rowsAffected == 0) {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Product not found")
-                        .toString();
-                sendResponse(exchange, 404, response);
-                return;
+                if (rowsAffected == 0) {
+                    String response = new JSONObject()
+                            .put("success", false)
+                            .put("error", "Product not found")
+                            .toString();
+                    ResponseWriter.send(exchange, 404, response);
+                    return;
+                }
             }
 
+            // Reload after the connection is returned, the reload borrows one of its own
+            plugin.getCatalogCache().reload();
+
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Product updated successfully");
-            
-            sendResponse(exchange, 200, response.toString());
+        
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while updating product: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while updating product", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
      * Handle DELETE request to delete a product
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleDeleteProduct(HttpExchange exchange) throws IOException {
-        // Get product id from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid path")
-                    .toString();
-            sendResponse(exchange, 400, response);
-            return;
-        }
-        
+    private void handleDeleteProduct(HttpExchange exchange, PathParams params) throws IOException {
         try {
-            int id = Integer.parseInt(parts[3]);
+            int id = params.getInt("id");
             
-            Connection connection = plugin.getDatabaseManager().getConnection();
+            DatabaseManager database = plugin.getDatabaseManager();
+            try (Connection connection = database.getConnection()) {
             
-            // Check if product has purchases
-            String purchaseQuery = "SELECT COUNT(*) FROM purchases WHERE product_id = ?";
-            PreparedStatement purchaseStatement = connection.prepareStatement(purchaseQuery);
-            purchaseStatement.setInt(1, id);
-            ResultSet purchaseResultSet = purchaseStatement.executeQuery();
-            
-            if (purchaseResultSet.next() && purchaseResultSet.getInt(1) > 0) {
-                purchaseResultSet.close();
-                purchaseStatement.close();
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Cannot delete product with existing purchases")
-                        .toString();
-                sendResponse(exchange, 400, response);
-                return;
-            }
+                // Check if product has purchases
+                Integer purchases = database.queryFirst(connection, countProductPurchases, 
+                        resultSet -> resultSet.getInt(1), id);
             
-            purchaseResultSet.close();
-            purchaseStatement.close();
+                if (purchases != null && purchases > 0) {
+                    String response = new JSONObject()
+                            .put("success", false)
+                            .put("error", "Cannot delete product with existing purchases")
+                            .toString();
+                    ResponseWriter.send(exchange, 400, response);
+                    return;
+                }
             
-            // Delete product
-            String query = "DELETE FROM products WHERE id = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, id);
-            int rowsAffected = statement.executeUpdate();
-            statement.close();
+                // Delete product
+                int rowsAffected = database.update(connection, deleteProduct, id);
             
-            if (rowsAffected == 0) {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Product not found")
-                        .toString();
-                sendResponse(exchange, 404, response);
-                return;
+                if (rowsAffected == 0) {
+                    String response = new JSONObject()
+                            .put("success", false)
+                            .put("error", "Product not found")
+                            .toString();
+                    ResponseWriter.send(exchange, 404, response);
+                    return;
+                }
             }
 
+            // Reload after the connection is returned, the reload borrows one of its own
+            plugin.getCatalogCache().reload();
+
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Product deleted successfully");
-            
-            sendResponse(exchange, 200, response.toString());
-        } catch (NumberFormatException e) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid product ID")
-                    .toString();
-            sendResponse(exchange, 400, response);
+        
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while deleting product: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while deleting product", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
-     * Send HTTP response
-     * @param exchange The HTTP exchange
-     * @param statusCode The HTTP status code
-     * @param response The response body
-     * @throws IOException If an I/O error occurs
+     * Check if a category exists
+     * @param connection The connection to query with
+     * @param categoryId The category ID
+     * @return True if the category exists
+     * @throws SQLException If the query fails
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        byte[] responseBytes = response.getBytes();
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
-        }
+    private boolean categoryExists(Connection connection, int categoryId) throws SQLException {
+        return plugin.getDatabaseManager().queryFirst(connection, categoryExists, 
+                resultSet -> Boolean.TRUE, categoryId) != null;
     }
 } 
\ No newline at end of file
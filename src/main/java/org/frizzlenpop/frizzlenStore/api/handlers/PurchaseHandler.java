@@ -1,362 +1,403 @@
 package org.frizzlenpop.frizzlenStore.api.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import org.bukkit.Bukkit;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.api.Access;
+import org.frizzlenpop.frizzlenStore.api.ApiHandler;
+import org.frizzlenpop.frizzlenStore.api.PathParams;
+import org.frizzlenpop.frizzlenStore.api.ResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.QueryString;
+import org.frizzlenpop.frizzlenStore.api.Router;
+import org.frizzlenpop.frizzlenStore.catalog.Product;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
+import org.frizzlenpop.frizzlenStore.database.RowMapper;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * Handles API requests for purchases
  */
-public class PurchaseHandler implements HttpHandler {
+public class PurchaseHandler implements ApiHandler {
 
     private final FrizzlenStore plugin;
 
+    // Registered queries
+    private final Query getRecentPurchases;
+    private final Query getRecentPurchasesAfter;
+    private final Query getPurchase;
+    private final Query getPlayerPurchases;
+    private final Query getPlayerPurchasesAfter;
+    private final Query getPendingPurchases;
+    private final Query getPendingPurchasesAfter;
+    private final Query getPurchaseStatus;
+    private final Query getPurchasePlayer;
+    private final Query updatePurchaseStatus;
+    private final Query deletePurchase;
+
+    // Page sizes for purchase lists
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // Rows read per query while streaming, the connection is returned between pages
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    private static final String NDJSON_TYPE = "application/x-ndjson";
+
+    private static final String SELECT_PURCHASE_DETAILS = 
+            "SELECT pu.id, pu.transaction_id, pu.player_name, pu.player_uuid, pu.product_id, " +
+            "pr.name as product_name, pu.price_paid, pu.payment_method, pu.payment_status, " +
+            "pu.purchase_time, pu.delivered, pu.delivery_time " +
+            "FROM purchases pu " +
+            "LEFT JOIN products pr ON pu.product_id = pr.id ";
+
+    // Keyset conditions continuing after a cursor's purchase time and id, newest or oldest first.
+    // The cursor carries both values, so it stays valid if its purchase is deleted between pages.
+    private static final String BEFORE_CURSOR = 
+            "(pu.purchase_time < ? OR (pu.purchase_time = ? AND pu.id < ?)) ";
+
+    private static final String AFTER_CURSOR = 
+            "(pu.purchase_time > ? OR (pu.purchase_time = ? AND pu.id > ?)) ";
+
+    private static final String NEWEST_FIRST = "ORDER BY pu.purchase_time DESC, pu.id DESC LIMIT ?";
+    private static final String OLDEST_FIRST = "ORDER BY pu.purchase_time ASC, pu.id ASC LIMIT ?";
+
+    // Maps a purchase row joined with its product to its JSON form
+    private static final RowMapper<JSONObject> PURCHASE_ROW = resultSet -> {
+        JSONObject purchase = new JSONObject();
+        String transactionId = resultSet.getString("transaction_id");
+        
+        purchase.put("id", resultSet.getInt("id"));
+        purchase.put("transaction_id", transactionId);
+        purchase.put("player_uuid", resultSet.getString("player_uuid"));
+        purchase.put("player_name", resultSet.getString("player_name"));
+        purchase.put("product_id", resultSet.getInt("product_id"));
+        purchase.put("product_name", resultSet.getString("product_name"));
+        purchase.put("price", resultSet.getDouble("price_paid"));
+        purchase.put("payment_method", resultSet.getString("payment_method"));
+        purchase.put("status", resultSet.getString("payment_status"));
+        purchase.put("created_at", resultSet.getString("purchase_time"));
+        purchase.put("delivered", resultSet.getBoolean("delivered"));
+        purchase.put("delivered_at", resultSet.getString("delivery_time"));
+        
+        // Purchases made through a payment carry its ID in the transaction ID
+        if (transactionId != null && transactionId.startsWith("PAY-")) {
+            try {
+                purchase.put("payment_id", Integer.parseInt(transactionId.substring(4)));
+            } catch (NumberFormatException e) {
+                // Not a payment transaction
+            }
+        }
+        return purchase;
+    };
+
     /**
      * Constructor
      * @param plugin The plugin instance
      */
     public PurchaseHandler(FrizzlenStore plugin) {
         this.plugin = plugin;
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.getRecentPurchases = database.register("purchase.list_recent", 
+                SELECT_PURCHASE_DETAILS + NEWEST_FIRST);
+        this.getRecentPurchasesAfter = database.register("purchase.list_recent_after", 
+                SELECT_PURCHASE_DETAILS + "WHERE " + BEFORE_CURSOR + NEWEST_FIRST);
+        this.getPurchase = database.register("purchase.get", 
+                "SELECT pu.id, pu.transaction_id, pu.player_name, pu.player_uuid, pu.product_id, " +
+                "pr.name as product_name, pr.commands, pu.price_paid, pu.payment_method, pu.payment_status, " +
+                "pu.purchase_time, pu.delivered, pu.delivery_time " +
+                "FROM purchases pu " +
+                "JOIN products pr ON pu.product_id = pr.id " +
+                "WHERE pu.id = ?");
+        this.getPlayerPurchases = database.register("purchase.list_by_player", 
+                SELECT_PURCHASE_DETAILS + "WHERE pu.player_uuid = ? " + NEWEST_FIRST);
+        this.getPlayerPurchasesAfter = database.register("purchase.list_by_player_after", 
+                SELECT_PURCHASE_DETAILS + "WHERE pu.player_uuid = ? AND " + BEFORE_CURSOR + NEWEST_FIRST);
+        this.getPendingPurchases = database.register("purchase.list_pending", 
+                SELECT_PURCHASE_DETAILS + "WHERE pu.delivered = 0 " + OLDEST_FIRST);
+        this.getPendingPurchasesAfter = database.register("purchase.list_pending_after", 
+                SELECT_PURCHASE_DETAILS + "WHERE pu.delivered = 0 AND " + AFTER_CURSOR + OLDEST_FIRST);
+        this.getPurchaseStatus = database.register("purchase.get_status", 
+                "SELECT delivered FROM purchases WHERE id = ?");
+        this.getPurchasePlayer = database.register("purchase.get_player", 
+                "SELECT player_uuid FROM purchases WHERE id = ?");
+        this.updatePurchaseStatus = database.register("purchase.update_status", 
+                "UPDATE purchases SET payment_status = ? WHERE id = ?");
+        this.deletePurchase = database.register("purchase.delete", 
+                "DELETE FROM purchases WHERE id = ?");
     }
 
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Set CORS headers
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type,Authorization");
-        
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
-        }
-
-        try {
-            // Verify API token
-            String token = exchange.getRequestHeaders().getFirst("Authorization");
-            if (token == null || !token.equals("Bearer " + plugin.getConfig().getString("api.token"))) {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Unauthorized")
-                        .toString();
-                sendResponse(exchange, 401, response);
-                return;
-            }
-
-            // Handle different request methods and paths
-            String path = exchange.getRequestURI().getPath();
-            
-            if (exchange.getRequestMethod().equalsIgnoreCase("GET")) {
-                if (path.endsWith("/purchases") || path.endsWith("/purchases/")) {
-                    handleGetPurchases(exchange);
-                } else if (path.contains("/purchases/player/")) {
-                    handleGetPlayerPurchases(exchange);
-                } else if (path.contains("/purchases/pending")) {
-                    handleGetPendingPurchases(exchange);
-                } else if (path.contains("/purchases/")) {
-                    handleGetPurchase(exchange);
-                } else {
-                    // Not found
-                    String response = new JSONObject()
-                            .put("success", false)
-                            .put("error", "Not found")
-                            .toString();
-                    sendResponse(exchange, 404, response);
-                }
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("POST")) {
-                if (path.contains("/purchases/deliver/")) {
-                    handleDeliverPurchase(exchange);
-                } else {
-                    handleCreatePurchase(exchange);
-                }
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("PUT")) {
-                handleUpdatePurchase(exchange);
-            } else if (exchange.getRequestMethod().equalsIgnoreCase("DELETE")) {
-                handleDeletePurchase(exchange);
-            } else {
-                // Method not allowed
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Method not allowed")
-                        .toString();
-                sendResponse(exchange, 405, response);
-            }
-        } catch (Exception e) {
-            Logger.severe("Error handling purchase request: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Internal server error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+    public void registerRoutes(Router router) {
+        router.get("/api/purchases", Access.READ, this::handleGetPurchases);
+        router.get("/api/purchases/pending", Access.READ, this::handleGetPendingPurchases);
+        router.get("/api/purchases/player/{uuid}", Access.READ, this::handleGetPlayerPurchases);
+        router.get("/api/purchases/{id:int}", Access.READ, this::handleGetPurchase);
+        router.post("/api/purchases", Access.ADMIN, this::handleCreatePurchase);
+        router.post("/api/purchases/deliver/{id:int}", Access.ADMIN, this::handleDeliverPurchase);
+        router.put("/api/purchases", Access.ADMIN, this::handleUpdatePurchase);
+        router.delete("/api/purchases/{id:int}", Access.ADMIN, this::handleDeletePurchase);
     }
 
     /**
-     * Handle GET request to fetch all purchases
+     * Handle GET request to fetch all purchases, newest first
      * @param exchange The HTTP exchange
      * @throws IOException If an I/O error occurs
      */
     private void handleGetPurchases(HttpExchange exchange) throws IOException {
-        try {
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT pu.*, pr.name as product_name, pl.name as player_name " +
-                           "FROM purchases pu " +
-                           "JOIN products pr ON pu.product_id = pr.id " +
-                           "LEFT JOIN players pl ON pu.player_uuid = pl.uuid " +
-                           "ORDER BY pu.created_at DESC LIMIT 100";
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet resultSet = statement.executeQuery();
-
-            JSONArray purchases = new JSONArray();
-            while (resultSet.next()) {
-                JSONObject purchase = new JSONObject();
-                purchase.put("id", resultSet.getInt("id"));
-                purchase.put("player_uuid", resultSet.getString("player_uuid"));
-                purchase.put("player_name", resultSet.getString("player_name"));
-                purchase.put("product_id", resultSet.getInt("product_id"));
-                purchase.put("product_name", resultSet.getString("product_name"));
-                purchase.put("price", resultSet.getDouble("price"));
-                purchase.put("payment_id", resultSet.getInt("payment_id"));
-                purchase.put("status", resultSet.getString("status"));
-                purchase.put("created_at", resultSet.getString("created_at"));
-                purchase.put("delivered_at", resultSet.getString("delivered_at"));
-                purchases.put(purchase);
-            }
-
-            resultSet.close();
-            statement.close();
-
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("purchases", purchases);
-            
-            sendResponse(exchange, 200, response.toString());
-        } catch (SQLException e) {
-            Logger.severe("Database error while getting purchases: " + e.getMessage());
-            e.printStackTrace();
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Database error")
-                    .toString();
-            sendResponse(exchange, 500, response);
-        }
+        handleListPurchases(exchange, getRecentPurchases, getRecentPurchasesAfter, null, "purchases");
     }
 
     /**
      * Handle GET request to fetch a single purchase
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleGetPurchase(HttpExchange exchange) throws IOException {
-        // Get purchase id from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid path")
-                    .toString();
-            sendResponse(exchange, 400, response);
-            return;
-        }
-        
+    private void handleGetPurchase(HttpExchange exchange, PathParams params) throws IOException {
         try {
-            int purchaseId = Integer.parseInt(parts[3]);
-            
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT pu.*, pr.name as product_name, pr.commands, pl.name as player_name " +
-                           "FROM purchases pu " +
-                           "JOIN products pr ON pu.product_id = pr.id " +
-                           "LEFT JOIN players pl ON pu.player_uuid = pl.uuid " +
-                           "WHERE pu.id = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, purchaseId);
-            ResultSet resultSet = statement.executeQuery();
-
-            if (!resultSet.next()) {
-                resultSet.close();
-                statement.close();
+            int purchaseId = params.getInt("id");
+            JSONObject purchase = plugin.getDatabaseManager().queryFirst(getPurchase, resultSet -> 
+                    PURCHASE_ROW.map(resultSet).put("commands", new JSONArray(resultSet.getString("commands"))), 
+                    purchaseId);
+
+            if (purchase == null) {
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Purchase not found")
                         .toString();
-                sendResponse(exchange, 404, response);
+                ResponseWriter.send(exchange, 404, response);
                 return;
             }
-            
-            JSONObject purchase = new JSONObject();
-            purchase.put("id", resultSet.getInt("id"));
-            purchase.put("player_uuid", resultSet.getString("player_uuid"));
-            purchase.put("player_name", resultSet.getString("player_name"));
-            purchase.put("product_id", resultSet.getInt("product_id"));
-            purchase.put("product_name", resultSet.getString("product_name"));
-            purchase.put("price", resultSet.getDouble("price"));
-            purchase.put("payment_id", resultSet.getInt("payment_id"));
-            purchase.put("status", resultSet.getString("status"));
-            purchase.put("created_at", resultSet.getString("created_at"));
-            purchase.put("delivered_at", resultSet.getString("delivered_at"));
-            purchase.put("commands", new JSONArray(resultSet.getString("commands")));
-            
-            resultSet.close();
-            statement.close();
 
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("purchase", purchase);
             
-            sendResponse(exchange, 200, response.toString());
-        } catch (NumberFormatException e) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid purchase ID")
-                    .toString();
-            sendResponse(exchange, 400, response);
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while getting purchase: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while getting purchase", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
-     * Handle GET request to fetch purchases for a player
+     * Handle GET request to fetch purchases for a player, newest first
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleGetPlayerPurchases(HttpExchange exchange) throws IOException {
-        // Get player UUID from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 5) {
+    private void handleGetPlayerPurchases(HttpExchange exchange, PathParams params) throws IOException {
+        handleListPurchases(exchange, getPlayerPurchases, getPlayerPurchasesAfter, params.get("uuid"), 
+                "player purchases");
+    }
+
+    /**
+     * Handle GET request to fetch undelivered purchases, oldest first
+     * @param exchange The HTTP exchange
+     * @throws IOException If an I/O error occurs
+     */
+    private void handleGetPendingPurchases(HttpExchange exchange) throws IOException {
+        handleListPurchases(exchange, getPendingPurchases, getPendingPurchasesAfter, null, "pending purchases");
+    }
+
+    /**
+     * List purchases one keyset page at a time.
+     * Clients pass the {@code next_after} cursor of a page as {@code after} to get the next page,
+     * which stays fast at any depth because the database seeks straight to the cursor.
+     * With {@code format=ndjson} or an {@code Accept: application/x-ndjson} header the purchases are
+     * streamed one per line instead, up to {@code limit} rows or all of them if no limit is given.
+     * @param exchange The HTTP exchange
+     * @param firstPage The query for the first page
+     * @param nextPage The query for pages after a cursor
+     * @param playerUuid The player the queries filter on, or null if they don't
+     * @param description What is being listed, for error logs
+     * @throws IOException If an I/O error occurs
+     */
+    private void handleListPurchases(HttpExchange exchange, Query firstPage, Query nextPage, 
+                                     String playerUuid, String description) throws IOException {
+        Map<String, String> params = QueryString.parse(exchange.getRequestURI().getRawQuery());
+        
+        int limit;
+        try {
+            limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : 0;
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        
+        String afterParam = params.getOrDefault("after", "");
+        Cursor after = afterParam.isEmpty() ? null : Cursor.parse(afterParam);
+        
+        if (limit < 0 || (!afterParam.isEmpty() && after == null)) {
             String response = new JSONObject()
                     .put("success", false)
-                    .put("error", "Invalid path")
+                    .put("error", "Invalid after or limit")
                     .toString();
-            sendResponse(exchange, 400, response);
+            ResponseWriter.send(exchange, 400, response);
             return;
         }
         
+        if (wantsNdjson(exchange, params)) {
+            streamPurchases(exchange, firstPage, nextPage, playerUuid, after, limit, description);
+            return;
+        }
+        
+        int pageSize = limit == 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        
         try {
-            String playerUuid = parts[4];
-            
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT pu.*, pr.name as product_name, pl.name as player_name " +
-                           "FROM purchases pu " +
-                           "JOIN products pr ON pu.product_id = pr.id " +
-                           "LEFT JOIN players pl ON pu.player_uuid = pl.uuid " +
-                           "WHERE pu.player_uuid = ? " +
-                           "ORDER BY pu.created_at DESC";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setString(1, playerUuid);
-            ResultSet resultSet = statement.executeQuery();
-
-            JSONArray purchases = new JSONArray();
-            while (resultSet.next()) {
-                JSONObject purchase = new JSONObject();
-                purchase.put("id", resultSet.getInt("id"));
-                purchase.put("player_uuid", resultSet.getString("player_uuid"));
-                purchase.put("player_name", resultSet.getString("player_name"));
-                purchase.put("product_id", resultSet.getInt("product_id"));
-                purchase.put("product_name", resultSet.getString("product_name"));
-                purchase.put("price", resultSet.getDouble("price"));
-                purchase.put("payment_id", resultSet.getInt("payment_id"));
-                purchase.put("status", resultSet.getString("status"));
-                purchase.put("created_at", resultSet.getString("created_at"));
-                purchase.put("delivered_at", resultSet.getString("delivered_at"));
-                purchases.put(purchase);
-            }
-
-            resultSet.close();
-            statement.close();
+            List<JSONObject> purchases = loadPage(firstPage, nextPage, playerUuid, after, pageSize);
 
             JSONObject response = new JSONObject();
             response.put("success", true);
-            response.put("player_uuid", playerUuid);
-            response.put("purchases", purchases);
+            if (playerUuid != null) {
+                response.put("player_uuid", playerUuid);
+            }
+            response.put("purchases", new JSONArray(purchases));
             
-            sendResponse(exchange, 200, response.toString());
+            // A full page means there may be more, hand out the cursor for the next one
+            if (purchases.size() == pageSize) {
+                response.put("next_after", Cursor.of(purchases.get(purchases.size() - 1)).encode());
+            }
+            
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while getting player purchases: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while getting " + description, e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
-     * Handle GET request to fetch pending purchases
+     * Stream purchases as newline-delimited JSON.
+     * Rows are read in pages of STREAM_PAGE_SIZE and written as they arrive, so memory use doesn't
+     * grow with the result and a slow client never holds a database connection.
+     * If a later page fails the stream ends with an {"error": ...} line, since the status is already sent.
      * @param exchange The HTTP exchange
+     * @param firstPage The query for the first page
+     * @param nextPage The query for pages after a cursor
+     * @param playerUuid The player the queries filter on, or null if they don't
+     * @param after The cursor to start after, or null to start from the beginning
+     * @param limit The maximum number of purchases to send, or 0 for all of them
+     * @param description What is being listed, for error logs
      * @throws IOException If an I/O error occurs
      */
-    private void handleGetPendingPurchases(HttpExchange exchange) throws IOException {
+    private void streamPurchases(HttpExchange exchange, Query firstPage, Query nextPage, String playerUuid, 
+                                 Cursor after, int limit, String description) throws IOException {
+        long remaining = limit == 0 ? Long.MAX_VALUE : limit;
+        int pageSize = (int) Math.min(STREAM_PAGE_SIZE, remaining);
+        
+        // Load the first page before sending headers so a failure can still be reported as a 500
+        List<JSONObject> page;
         try {
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT pu.*, pr.name as product_name, pl.name as player_name " +
-                           "FROM purchases pu " +
-                           "JOIN products pr ON pu.product_id = pr.id " +
-                           "LEFT JOIN players pl ON pu.player_uuid = pl.uuid " +
-                           "WHERE pu.status = 'pending' " +
-                           "ORDER BY pu.created_at ASC";
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet resultSet = statement.executeQuery();
-
-            JSONArray purchases = new JSONArray();
-            while (resultSet.next()) {
-                JSONObject purchase = new JSONObject();
-                purchase.put("id", resultSet.getInt("id"));
-                purchase.put("player_uuid", resultSet.getString("player_uuid"));
-                purchase.put("player_name", resultSet.getString("player_name"));
-                purchase.put("product_id", resultSet.getInt("product_id"));
-                purchase.put("product_name", resultSet.getString("product_name"));
-                purchase.put("price", resultSet.getDouble("price"));
-                purchase.put("payment_id", resultSet.getInt("payment_id"));
-                purchase.put("status", resultSet.getString("status"));
-                purchase.put("created_at", resultSet.getString("created_at"));
-                purchases.put(purchase);
-            }
-
-            resultSet.close();
-            statement.close();
-
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("purchases", purchases);
-            
-            sendResponse(exchange, 200, response.toString());
+            page = loadPage(firstPage, nextPage, playerUuid, after, pageSize);
         } catch (SQLException e) {
-            Logger.severe("Database error while getting pending purchases: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while streaming " + description + ": " + e.getMessage());
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
+            return;
+        }
+        
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(ResponseWriter.stream(exchange, 200, NDJSON_TYPE), StandardCharsets.UTF_8))) {
+            while (true) {
+                for (JSONObject purchase : page) {
+                    writer.write(purchase.toString());
+                    writer.write('\n');
+                }
+                
+                remaining -= page.size();
+                if (page.size() < pageSize || remaining <= 0) {
+                    break;
+                }
+                
+                // Send what we have before going back to the database
+                writer.flush();
+                
+                after = Cursor.of(page.get(page.size() - 1));
+                pageSize = (int) Math.min(STREAM_PAGE_SIZE, remaining);
+                
+                try {
+                    page = loadPage(firstPage, nextPage, playerUuid, after, pageSize);
+                } catch (SQLException e) {
+                    Logger.severe("Database error while streaming " + description + ": " + e.getMessage());
+                    writer.write(new JSONObject().put("error", "Database error").toString());
+                    writer.write('\n');
+                    break;
+                }
+            }
         }
     }
 
+    /**
+     * Load one page of purchases
+     * @param firstPage The query for the first page
+     * @param nextPage The query for pages after a cursor
+     * @param playerUuid The player the queries filter on, or null if they don't
+     * @param after The cursor to continue after, or null for the first page
+     * @param pageSize The maximum number of purchases to load
+     * @return The purchases in list order
+     * @throws SQLException If the query fails
+     */
+    private List<JSONObject> loadPage(Query firstPage, Query nextPage, String playerUuid, 
+                                      Cursor after, int pageSize) throws SQLException {
+        List<Object> params = new ArrayList<>(5);
+        if (playerUuid != null) {
+            params.add(playerUuid);
+        }
+        if (after != null) {
+            // The purchase time appears twice in the keyset condition
+            params.add(after.purchaseTime);
+            params.add(after.purchaseTime);
+            params.add(after.id);
+        }
+        params.add(pageSize);
+        
+        return plugin.getDatabaseManager().query(after != null ? nextPage : firstPage, PURCHASE_ROW, params.toArray());
+    }
+
+    /**
+     * Check if the client asked for newline-delimited JSON
+     * @param exchange The HTTP exchange
+     * @param params The query parameters
+     * @return True if the purchases should be streamed
+     */
+    private static boolean wantsNdjson(HttpExchange exchange, Map<String, String> params) {
+        if ("ndjson".equalsIgnoreCase(params.get("format"))) {
+            return true;
+        }
+        
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return accept != null && accept.contains(NDJSON_TYPE);
+    }
+
     /**
      * Handle POST request to create a new purchase
      * @param exchange The HTTP exchange
@@ -368,197 +409,137 @@ public class PurchaseHandler implements HttpHandler {
                 .lines().collect(Collectors.joining("\n"));
         JSONObject requestJson = new JSONObject(requestBody);
 
-        try {
-            // Validate required fields
-            if (!requestJson.has("player_uuid") || !requestJson.has("product_id")) {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Missing required fields")
-                        .toString();
-                sendResponse(exchange, 400, response);
-                return;
-            }
-
-            String playerUuid = requestJson.getString("player_uuid");
-            int productId = requestJson.getInt("product_id");
-            int paymentId = requestJson.optInt("payment_id", -1);
-            
-            // Verify product exists and get details
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String productQuery = "SELECT * FROM products WHERE id = ?";
-            PreparedStatement productStatement = connection.prepareStatement(productQuery);
-            productStatement.setInt(1, productId);
-            ResultSet productResultSet = productStatement.executeQuery();
-            
-            if (!productResultSet.next()) {
-                productResultSet.close();
-                productStatement.close();
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Product not found")
-                        .toString();
-                sendResponse(exchange, 404, response);
-                return;
-            }
-            
-            double price = requestJson.optDouble("price", productResultSet.getDouble("price"));
-            if (productResultSet.getBoolean("is_on_sale")) {
-                price = productResultSet.getDouble("sale_price");
-            }
-            
-            String productName = productResultSet.getString("name");
-            String commands = productResultSet.getString("commands");
-            productResultSet.close();
-            productStatement.close();
-            
-            // Create the purchase through the purchase manager
-            boolean purchaseSuccess = plugin.getPurchaseManager().createPurchase(
-                playerUuid, 
-                productId, 
-                price, 
-                productName, 
-                "API", 
-                paymentId > 0 ? String.valueOf(paymentId) : null
-            );
-            
-            if (!purchaseSuccess) {
-                String response = new JSONObject()
-                        .put("success", false)
-                        .put("error", "Failed to create purchase")
-                        .toString();
-                sendResponse(exchange, 500, response);
-                return;
-            }
+        // Validate required fields
+        if (!requestJson.has("player_uuid") || !requestJson.has("product_id")) {
+            String response = new JSONObject()
+                    .put("success", false)
+                    .put("error", "Missing required fields")
+                    .toString();
+            ResponseWriter.send(exchange, 400, response);
+            return;
+        }
 
-            // Get the purchase ID after creating it successfully
-            int purchaseId = -1;
-            PreparedStatement idStatement = null;
-            ResultSet idResultSet = null;
-            try {
-                String sql = "SELECT id FROM purchases WHERE player_uuid = ? AND product_id = ? ORDER BY id DESC LIMIT 1";
-                idStatement = connection.prepareStatement(sql);
-                idStatement.setString(1, playerUuid);
-                idStatement.setInt(2, productId);
-                idResultSet = idStatement.executeQuery();
-                if (idResultSet.next()) {
-                    purchaseId = idResultSet.getInt("id");
-                }
-            } catch (SQLException e) {
-                Logger.warning("Could not retrieve purchase ID: " + e.getMessage());
-            } finally {
-                try {
-                    if (idResultSet != null) idResultSet.close();
-                    if (idStatement != null) idStatement.close();
-                } catch (SQLException e) {
-                    Logger.severe("Error closing resources: " + e.getMessage());
-                }
-            }
-            
-            JSONObject response = new JSONObject();
-            response.put("success", true);
-            response.put("message", "Purchase created successfully");
-            response.put("purchase_id", purchaseId);
-            
-            sendResponse(exchange, 201, response.toString());
-        } catch (SQLException e) {
-            Logger.severe("Database error while creating purchase: " + e.getMessage());
-            e.printStackTrace();
+        String playerUuid = requestJson.getString("player_uuid");
+        int productId = requestJson.getInt("product_id");
+        int paymentId = requestJson.optInt("payment_id", -1);
+        
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(playerUuid);
+        } catch (IllegalArgumentException e) {
             String response = new JSONObject()
                     .put("success", false)
-                    .put("error", "Database error")
+                    .put("error", "Invalid player UUID")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 400, response);
+            return;
+        }
+        
+        // Verify product exists and get details from the catalog
+        Product product = plugin.getCatalogCache().getSnapshot().getProduct(productId);
+        if (product == null) {
+            String response = new JSONObject()
+                    .put("success", false)
+                    .put("error", "Product not found")
+                    .toString();
+            ResponseWriter.send(exchange, 404, response);
+            return;
+        }
+        
+        double price = requestJson.optDouble("price", product.getPrice());
+        if (product.isOnSale()) {
+            price = product.getSalePrice();
+        }
+        
+        String playerName = Bukkit.getOfflinePlayer(uuid).getName();
+        String transactionId = paymentId > 0 
+                ? "PAY-" + paymentId 
+                : "API-" + UUID.randomUUID().toString().replace("-", "");
+        
+        // Create the purchase through the purchase manager
+        int purchaseId = plugin.getPurchaseManager().createPurchase(
+            playerName != null ? playerName : "Unknown", 
+            uuid, 
+            productId, 
+            price, 
+            "API", 
+            "completed", 
+            transactionId
+        );
+        
+        if (purchaseId < 0) {
+            String response = new JSONObject()
+                    .put("success", false)
+                    .put("error", "Failed to create purchase")
+                    .toString();
+            ResponseWriter.send(exchange, 500, response);
+            return;
         }
+        
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("message", "Purchase created successfully");
+        response.put("purchase_id", purchaseId);
+        
+        ResponseWriter.send(exchange, 201, response.toString());
     }
 
     /**
      * Handle POST request to deliver a purchase
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleDeliverPurchase(HttpExchange exchange) throws IOException {
-        // Get purchase id from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 5) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid path")
-                    .toString();
-            sendResponse(exchange, 400, response);
-            return;
-        }
-        
+    private void handleDeliverPurchase(HttpExchange exchange, PathParams params) throws IOException {
         try {
-            int purchaseId = Integer.parseInt(parts[4]);
+            int purchaseId = params.getInt("id");
             
             // Get purchase details
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "SELECT pu.*, pr.commands FROM purchases pu " +
-                          "JOIN products pr ON pu.product_id = pr.id " +
-                          "WHERE pu.id = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, purchaseId);
-            ResultSet resultSet = statement.executeQuery();
+            Boolean alreadyDelivered = plugin.getDatabaseManager().queryFirst(getPurchaseStatus, 
+                    resultSet -> resultSet.getBoolean("delivered"), purchaseId);
             
-            if (!resultSet.next()) {
-                resultSet.close();
-                statement.close();
+            if (alreadyDelivered == null) {
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Purchase not found")
                         .toString();
-                sendResponse(exchange, 404, response);
+                ResponseWriter.send(exchange, 404, response);
                 return;
             }
             
-            String playerUuid = resultSet.getString("player_uuid");
-            String status = resultSet.getString("status");
-            String commands = resultSet.getString("commands");
-            
-            resultSet.close();
-            statement.close();
-            
-            if (status.equals("delivered")) {
+            if (alreadyDelivered) {
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Purchase already delivered")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
-            
+        
             // Try to deliver the purchase
             boolean delivered = plugin.getPurchaseManager().deliverPurchase(purchaseId);
-            
+        
             if (!delivered) {
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Failed to deliver purchase. Player may be offline.")
                         .toString();
-                sendResponse(exchange, 500, response);
+                ResponseWriter.send(exchange, 500, response);
                 return;
             }
 
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Purchase delivered successfully");
-            
-            sendResponse(exchange, 200, response.toString());
-        } catch (NumberFormatException e) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid purchase ID")
-                    .toString();
-            sendResponse(exchange, 400, response);
+        
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while delivering purchase: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while delivering purchase", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
@@ -580,7 +561,7 @@ public class PurchaseHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Missing required fields")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
 
@@ -593,116 +574,156 @@ public class PurchaseHandler implements HttpHandler {
                         .put("success", false)
                         .put("error", "Invalid status")
                         .toString();
-                sendResponse(exchange, 400, response);
+                ResponseWriter.send(exchange, 400, response);
                 return;
             }
             
             // Update purchase status
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String updateQuery = "UPDATE purchases SET status = ? WHERE id = ?";
-            PreparedStatement updateStatement = connection.prepareStatement(updateQuery);
-            updateStatement.setString(1, status);
-            updateStatement.setInt(2, id);
-            int rowsAffected = updateStatement.executeUpdate();
-            updateStatement.close();
+            String playerUuid = getPurchasePlayer(id);
+            int rowsAffected = plugin.getDatabaseManager().update(updatePurchaseStatus, status, id);
             
             if (rowsAffected == 0) {
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Purchase not found")
                         .toString();
-                sendResponse(exchange, 404, response);
+                ResponseWriter.send(exchange, 404, response);
                 return;
             }
+            
+            // A refund or cancellation changes what the player has spent
+            invalidateSpend(playerUuid);
 
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Purchase updated successfully");
             
-            sendResponse(exchange, 200, response.toString());
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while updating purchase: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while updating purchase", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
      * Handle DELETE request to delete a purchase
      * @param exchange The HTTP exchange
+     * @param params The path parameters
      * @throws IOException If an I/O error occurs
      */
-    private void handleDeletePurchase(HttpExchange exchange) throws IOException {
-        // Get purchase id from path
-        String path = exchange.getRequestURI().getPath();
-        String[] parts = path.split("/");
-        if (parts.length < 4) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid path")
-                    .toString();
-            sendResponse(exchange, 400, response);
-            return;
-        }
-        
+    private void handleDeletePurchase(HttpExchange exchange, PathParams params) throws IOException {
         try {
-            int id = Integer.parseInt(parts[3]);
-            
-            Connection connection = plugin.getDatabaseManager().getConnection();
-            String query = "DELETE FROM purchases WHERE id = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, id);
-            int rowsAffected = statement.executeUpdate();
-            statement.close();
+            int id = params.getInt("id");
+            String playerUuid = getPurchasePlayer(id);
+            int rowsAffected = plugin.getDatabaseManager().update(deletePurchase, id);
             
             if (rowsAffected == 0) {
                 String response = new JSONObject()
                         .put("success", false)
                         .put("error", "Purchase not found")
                         .toString();
-                sendResponse(exchange, 404, response);
+                ResponseWriter.send(exchange, 404, response);
                 return;
             }
+            
+            invalidateSpend(playerUuid);
 
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Purchase deleted successfully");
             
-            sendResponse(exchange, 200, response.toString());
-        } catch (NumberFormatException e) {
-            String response = new JSONObject()
-                    .put("success", false)
-                    .put("error", "Invalid purchase ID")
-                    .toString();
-            sendResponse(exchange, 400, response);
+            ResponseWriter.send(exchange, 200, response.toString());
         } catch (SQLException e) {
-            Logger.severe("Database error while deleting purchase: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Database error while deleting purchase", e);
             String response = new JSONObject()
                     .put("success", false)
                     .put("error", "Database error")
                     .toString();
-            sendResponse(exchange, 500, response);
+            ResponseWriter.send(exchange, 500, response);
         }
     }
 
     /**
-     * Send HTTP response
-     * @param exchange The HTTP exchange
-     * @param statusCode The HTTP status code
-     * @param response The response body
-     * @throws IOException If an I/O error occurs
+     * Get the player who made a purchase
+     * @param purchaseId The purchase ID
+     * @return The player's UUID, or null if the purchase doesn't exist
+     * @throws SQLException If the query fails
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        byte[] responseBytes = response.getBytes();
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
+    private String getPurchasePlayer(int purchaseId) throws SQLException {
+        return plugin.getDatabaseManager().queryFirst(getPurchasePlayer, 
+                resultSet -> resultSet.getString("player_uuid"), purchaseId);
+    }
+
+    /**
+     * Drop a player's cached spend after one of their purchases changed, it's reloaded on the next lookup
+     * @param playerUuid The player's UUID, or null if unknown
+     */
+    private void invalidateSpend(String playerUuid) {
+        if (playerUuid == null) {
+            return;
+        }
+        
+        try {
+            plugin.getPlayerSpendCache().invalidate(UUID.fromString(playerUuid));
+        } catch (IllegalArgumentException e) {
+            // Not a valid UUID, so never cached
+        }
+    }
+
+    /**
+     * A position in a purchase listing, the purchase time and id of the last purchase sent.
+     * Clients get it as an opaque URL-safe string and hand it back unchanged.
+     */
+    private static final class Cursor {
+        private final String purchaseTime;
+        private final int id;
+
+        private Cursor(String purchaseTime, int id) {
+            this.purchaseTime = purchaseTime;
+            this.id = id;
+        }
+
+        /**
+         * Get the cursor continuing after a purchase
+         * @param purchase The purchase in its JSON form
+         * @return The cursor
+         */
+        private static Cursor of(JSONObject purchase) {
+            return new Cursor(purchase.optString("created_at", ""), purchase.getInt("id"));
+        }
+
+        /**
+         * Parse a cursor sent by a client
+         * @param value The encoded cursor
+         * @return The cursor, or null if it isn't valid
+         */
+        private static Cursor parse(String value) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+                int separator = decoded.lastIndexOf('|');
+                if (separator <= 0) {
+                    return null;
+                }
+
+                int id = Integer.parseInt(decoded.substring(separator + 1));
+                return id > 0 ? new Cursor(decoded.substring(0, separator), id) : null;
+            } catch (IllegalArgumentException e) {
+                // Not base64 or not a number
+                return null;
+            }
+        }
+
+        /**
+         * Encode the cursor for a client
+         * @return The opaque cursor
+         */
+        private String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((purchaseTime + "|" + id).getBytes(StandardCharsets.UTF_8));
         }
     }
-} 
\ No newline at end of file
+}
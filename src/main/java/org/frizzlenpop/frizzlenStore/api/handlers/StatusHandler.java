@@ -1,20 +1,22 @@
 package org.frizzlenpop.frizzlenStore.api.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import org.bukkit.Bukkit;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
-import org.frizzlenpop.frizzlenStore.util.Logger;
+import org.frizzlenpop.frizzlenStore.api.Access;
+import org.frizzlenpop.frizzlenStore.api.ApiHandler;
+import org.frizzlenpop.frizzlenStore.api.ResponseWriter;
+import org.frizzlenpop.frizzlenStore.api.Router;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.purchase.DeliveryEngine;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 
 /**
  * Handles the /api/status endpoint
  * Returns server status and plugin information
  */
-public class StatusHandler implements HttpHandler {
+public class StatusHandler implements ApiHandler {
     private final FrizzlenStore plugin;
     
     /**
@@ -26,34 +28,17 @@ public class StatusHandler implements HttpHandler {
     }
     
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        // Set CORS headers
-        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, OPTIONS");
-        exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type, Authorization");
-        
-        // Handle preflight requests
-        if (exchange.getRequestMethod().equalsIgnoreCase("OPTIONS")) {
-            exchange.sendResponseHeaders(204, -1);
-            return;
-        }
-        
-        // Only allow GET requests
-        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
-            sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
-            return;
-        }
-        
-        try {
-            // Build status response
-            String response = buildStatusResponse();
-            
-            // Send response
-            sendResponse(exchange, 200, response);
-        } catch (Exception e) {
-            Logger.severe("Error handling status request: " + e.getMessage());
-            sendResponse(exchange, 500, "{\"error\": \"Internal server error\"}");
-        }
+    public void registerRoutes(Router router) {
+        router.get("/api/status", Access.PUBLIC, this::handleGetStatus);
+    }
+    
+    /**
+     * Handle GET request to fetch the server status
+     * @param exchange The HTTP exchange
+     * @throws IOException If an I/O error occurs
+     */
+    private void handleGetStatus(HttpExchange exchange) throws IOException {
+        ResponseWriter.send(exchange, 200, buildStatusResponse());
     }
     
     /**
@@ -66,7 +51,9 @@ public class StatusHandler implements HttpHandler {
         String apiVersion = plugin.getDescription().getAPIVersion();
         int onlinePlayers = Bukkit.getOnlinePlayers().size();
         int maxPlayers = Bukkit.getMaxPlayers();
-        boolean databaseConnected = plugin.getDatabaseManager().getConnection() != null;
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        boolean databaseConnected = databaseManager.isConnected();
+        DeliveryEngine deliveryEngine = plugin.getPurchaseManager().getDeliveryEngine();
         
         return String.format(
                 "{" +
@@ -84,27 +71,24 @@ public class StatusHandler implements HttpHandler {
                 "\"apiVersion\": \"%s\"" +
                 "}," +
                 "\"database\": {" +
-                "\"connected\": %b" +
+                "\"connected\": %b," +
+                "\"pool\": {" +
+                "\"active\": %d," +
+                "\"idle\": %d," +
+                "\"total\": %d," +
+                "\"waiting\": %d" +
+                "}" +
+                "}," +
+                "\"delivery\": {" +
+                "\"rows_marked\": %d," +
+                "\"batches\": %d," +
+                "\"rows_per_second\": %d" +
                 "}" +
                 "}",
-                serverVersion, onlinePlayers, maxPlayers, pluginVersion, apiVersion, databaseConnected
+                serverVersion, onlinePlayers, maxPlayers, pluginVersion, apiVersion, databaseConnected,
+                databaseManager.getActiveConnections(), databaseManager.getIdleConnections(),
+                databaseManager.getTotalConnections(), databaseManager.getThreadsAwaitingConnection(),
+                deliveryEngine.getRowsMarked(), deliveryEngine.getBatchesRun(), deliveryEngine.getRowsPerSecond()
         );
     }
-    
-    /**
-     * Send an HTTP response
-     * @param exchange The HTTP exchange
-     * @param statusCode The HTTP status code
-     * @param response The response body
-     * @throws IOException If an I/O error occurs
-     */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
-        exchange.getResponseHeaders().add("Content-Type", "application/json");
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
-        
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
-        }
-    }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,134 @@
+package org.frizzlenpop.frizzlenStore.catalog;
+
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.metrics.LatencyHistogram;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps an in-memory copy of the products and categories.
+ * Readers get an immutable snapshot and never touch the database. Writers rebuild
+ * the snapshot after changing the catalog and swap it in atomically.
+ */
+public class CatalogCache {
+    private final FrizzlenStore plugin;
+    private final AtomicLong versionCounter;
+    private final LatencyHistogram reloadTimings;
+    private volatile CatalogSnapshot snapshot;
+
+    // SQL queries
+    private static final String LOAD_PRODUCTS =
+            "SELECT p.*, c.name as category_name FROM products p " +
+            "JOIN categories c ON p.category_id = c.id " +
+            "ORDER BY p.display_order ASC";
+
+    private static final String LOAD_CATEGORIES =
+            "SELECT * FROM categories ORDER BY display_order ASC";
+
+    /**
+     * Create a new catalog cache
+     * @param plugin The plugin instance
+     */
+    public CatalogCache(FrizzlenStore plugin) {
+        this.plugin = plugin;
+        // Start from the clock so ETags from before a restart are never reused
+        this.versionCounter = new AtomicLong(System.currentTimeMillis());
+        this.snapshot = CatalogSnapshot.empty();
+        this.reloadTimings = plugin.getMetrics().histogram("frizzlenstore_db_query_duration_seconds",
+                "Time taken by database queries", "query", "catalog_load");
+    }
+
+    /**
+     * Get the current catalog snapshot
+     * @return The snapshot
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Rebuild the snapshot from the database.
+     * Call this after any change to the products or categories tables.
+     * If loading fails the previous snapshot stays in place.
+     * @return True if the snapshot was rebuilt
+     */
+    public synchronized boolean reload() {
+        long start = System.nanoTime();
+        
+        try (Connection connection = plugin.getDatabaseManager().getReadConnection()) {
+            List<Category> categories = loadCategories(connection);
+            List<Product> products = loadProducts(connection);
+
+            reloadTimings.recordSince(start);
+            snapshot = new CatalogSnapshot(versionCounter.incrementAndGet(), products, categories);
+
+            Logger.debug("Catalog reloaded with {} products and {} categories", products.size(), categories.size());
+            return true;
+        } catch (SQLException e) {
+            Logger.severe("Failed to load catalog: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Load all categories
+     * @param connection The connection to query with
+     * @return The categories in display order
+     * @throws SQLException If the query fails
+     */
+    private List<Category> loadCategories(Connection connection) throws SQLException {
+        List<Category> categories = new ArrayList<>();
+
+        try (PreparedStatement statement = connection.prepareStatement(LOAD_CATEGORIES);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                categories.add(new Category(
+                        resultSet.getInt("id"),
+                        resultSet.getString("name"),
+                        resultSet.getString("description"),
+                        resultSet.getInt("display_order"),
+                        resultSet.getString("image_url")));
+            }
+        }
+
+        return categories;
+    }
+
+    /**
+     * Load all products
+     * @param connection The connection to query with
+     * @return The products in display order
+     * @throws SQLException If the query fails
+     */
+    private List<Product> loadProducts(Connection connection) throws SQLException {
+        List<Product> products = new ArrayList<>();
+
+        try (PreparedStatement statement = connection.prepareStatement(LOAD_PRODUCTS);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                products.add(new Product(
+                        resultSet.getInt("id"),
+                        resultSet.getString("name"),
+                        resultSet.getString("description"),
+                        resultSet.getDouble("price"),
+                        resultSet.getDouble("sale_price"),
+                        resultSet.getBoolean("is_on_sale"),
+                        resultSet.getInt("category_id"),
+                        resultSet.getString("category_name"),
+                        resultSet.getString("image_url"),
+                        resultSet.getInt("display_order"),
+                        resultSet.getBoolean("enabled"),
+                        resultSet.getString("commands")));
+            }
+        }
+
+        return products;
+    }
+}
\ No newline at end of file
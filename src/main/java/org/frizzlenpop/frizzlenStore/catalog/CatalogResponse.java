@@ -0,0 +1,70 @@
+package org.frizzlenpop.frizzlenStore.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A catalog response body encoded once and served many times.
+ * Holds the UTF-8 bytes, a gzip copy and a strong ETag for the catalog version it was built from.
+ */
+public class CatalogResponse {
+    private final byte[] body;
+    private final byte[] gzipBody;
+    private final String etag;
+
+    /**
+     * Encode a response body
+     * @param json The JSON body
+     * @param etag The strong ETag, including quotes
+     */
+    public CatalogResponse(String json, String etag) {
+        this.body = json.getBytes(StandardCharsets.UTF_8);
+        this.gzipBody = gzip(body);
+        this.etag = etag;
+    }
+
+    /**
+     * Get the UTF-8 encoded body
+     * @return The body bytes, must not be modified
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Get the gzip compressed body
+     * @return The compressed bytes, must not be modified
+     */
+    public byte[] getGzipBody() {
+        return gzipBody;
+    }
+
+    /**
+     * Get the strong ETag for this body
+     * @return The ETag, including quotes
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Compress bytes with gzip
+     * @param data The bytes to compress
+     * @return The compressed bytes
+     */
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            // Writing to memory can't fail
+            throw new UncheckedIOException(e);
+        }
+
+        return output.toByteArray();
+    }
+}
\ No newline at end of file
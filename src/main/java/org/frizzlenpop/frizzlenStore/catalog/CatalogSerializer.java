@@ -0,0 +1,131 @@
+package org.frizzlenpop.frizzlenStore.catalog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Converts catalog entries into the JSON returned by the API
+ */
+public final class CatalogSerializer {
+
+    private CatalogSerializer() {
+    }
+
+    /**
+     * Build the body for the product list endpoint
+     * @param products The products to list
+     * @return The response JSON
+     */
+    public static JSONObject productList(List<Product> products) {
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("products", toJson(products));
+        return response;
+    }
+
+    /**
+     * Build the body for the products by category endpoint
+     * @param categoryId The category ID
+     * @param products The products in the category
+     * @return The response JSON
+     */
+    public static JSONObject categoryProductList(int categoryId, List<Product> products) {
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("category_id", categoryId);
+        response.put("products", toJson(products));
+        return response;
+    }
+
+    /**
+     * Build the body for the category list endpoint
+     * @param categories The categories to list
+     * @return The response JSON
+     */
+    public static JSONObject categoryList(List<Category> categories) {
+        JSONArray array = new JSONArray();
+        for (Category category : categories) {
+            array.put(toJson(category));
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("categories", array);
+        return response;
+    }
+
+    /**
+     * Convert products to a JSON array
+     * @param products The products
+     * @return The JSON array
+     */
+    public static JSONArray toJson(List<Product> products) {
+        JSONArray array = new JSONArray();
+        for (Product product : products) {
+            array.put(toJson(product));
+        }
+        return array;
+    }
+
+    /**
+     * Convert a product to JSON
+     * @param product The product
+     * @return The product JSON
+     */
+    public static JSONObject toJson(Product product) {
+        JSONObject json = new JSONObject();
+        json.put("id", product.getId());
+        json.put("name", product.getName());
+        json.put("description", product.getDescription());
+        json.put("price", product.getPrice());
+        json.put("sale_price", product.getSalePrice());
+        json.put("is_on_sale", product.isOnSale());
+        json.put("category_id", product.getCategoryId());
+        json.put("category_name", product.getCategoryName());
+        json.put("image_url", product.getImageUrl());
+        json.put("display_order", product.getDisplayOrder());
+        json.put("enabled", product.isEnabled());
+        json.put("commands", commandsToJson(product.getCommands()));
+        return json;
+    }
+
+    /**
+     * Convert a category to JSON
+     * @param category The category
+     * @return The category JSON
+     */
+    public static JSONObject toJson(Category category) {
+        JSONObject json = new JSONObject();
+        json.put("id", category.getId());
+        json.put("name", category.getName());
+        json.put("description", category.getDescription());
+        json.put("display_order", category.getDisplayOrder());
+        json.put("image_url", category.getImageUrl());
+        return json;
+    }
+
+    /**
+     * Convert stored commands to a JSON array.
+     * Commands are normally stored as a JSON array, older rows use one command per line.
+     * @param commands The stored commands
+     * @return The commands as a JSON array
+     */
+    private static JSONArray commandsToJson(String commands) {
+        if (commands == null || commands.isEmpty()) {
+            return new JSONArray();
+        }
+
+        try {
+            return new JSONArray(commands);
+        } catch (JSONException e) {
+            JSONArray array = new JSONArray();
+            for (String command : commands.split("\\n")) {
+                array.put(command);
+            }
+            return array;
+        }
+    }
+}
\ No newline at end of file
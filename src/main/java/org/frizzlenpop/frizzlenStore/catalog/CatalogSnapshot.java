@@ -0,0 +1,178 @@
+package org.frizzlenpop.frizzlenStore.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of the store catalog at one point in time.
+ * The list responses are serialized once when the snapshot is built.
+ */
+public class CatalogSnapshot {
+    private final long version;
+    private final List<Product> products;
+    private final List<Category> categories;
+    private final Map<Integer, Product> productsById;
+    private final Map<Integer, Category> categoriesById;
+    private final Map<Integer, List<Product>> enabledProductsByCategory;
+    private final CatalogResponse productsResponse;
+    private final CatalogResponse categoriesResponse;
+    private final Map<Integer, CatalogResponse> categoryProductsResponses;
+
+    /**
+     * Create a new snapshot
+     * @param version The catalog version
+     * @param products All products, in display order
+     * @param categories All categories, in display order
+     */
+    public CatalogSnapshot(long version, List<Product> products, List<Category> categories) {
+        this.version = version;
+        this.products = Collections.unmodifiableList(new ArrayList<>(products));
+        this.categories = Collections.unmodifiableList(new ArrayList<>(categories));
+
+        Map<Integer, Product> productIndex = new HashMap<>();
+        Map<Integer, List<Product>> categoryIndex = new HashMap<>();
+
+        for (Product product : this.products) {
+            productIndex.put(product.getId(), product);
+
+            if (product.isEnabled()) {
+                categoryIndex.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>()).add(product);
+            }
+        }
+
+        categoryIndex.replaceAll((id, list) -> Collections.unmodifiableList(list));
+
+        Map<Integer, Category> categoryById = new HashMap<>();
+        for (Category category : this.categories) {
+            categoryById.put(category.getId(), category);
+        }
+
+        this.productsById = Collections.unmodifiableMap(productIndex);
+        this.enabledProductsByCategory = Collections.unmodifiableMap(categoryIndex);
+        this.categoriesById = Collections.unmodifiableMap(categoryById);
+
+        // Serialize the list responses up front so requests only copy bytes
+        this.productsResponse = new CatalogResponse(
+                CatalogSerializer.productList(this.products).toString(), etag("products"));
+        this.categoriesResponse = new CatalogResponse(
+                CatalogSerializer.categoryList(this.categories).toString(), etag("categories"));
+
+        Map<Integer, CatalogResponse> categoryResponses = new HashMap<>();
+        for (Category category : this.categories) {
+            categoryResponses.put(category.getId(), buildCategoryProductsResponse(category.getId()));
+        }
+        for (Integer categoryId : categoryIndex.keySet()) {
+            categoryResponses.computeIfAbsent(categoryId, this::buildCategoryProductsResponse);
+        }
+        this.categoryProductsResponses = Collections.unmodifiableMap(categoryResponses);
+    }
+
+    /**
+     * Create an empty snapshot
+     * @return A snapshot with no products or categories
+     */
+    public static CatalogSnapshot empty() {
+        return new CatalogSnapshot(0, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Get the catalog version, which increases every time the catalog is rebuilt
+     * @return The catalog version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get all products in display order
+     * @return The products
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Get all categories in display order
+     * @return The categories
+     */
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    /**
+     * Get a product by ID
+     * @param id The product ID
+     * @return The product, or null if not found
+     */
+    public Product getProduct(int id) {
+        return productsById.get(id);
+    }
+
+    /**
+     * Get a category by ID
+     * @param id The category ID
+     * @return The category, or null if not found
+     */
+    public Category getCategory(int id) {
+        return categoriesById.get(id);
+    }
+
+    /**
+     * Get the enabled products in a category, in display order
+     * @param categoryId The category ID
+     * @return The products, empty if none
+     */
+    public List<Product> getEnabledProducts(int categoryId) {
+        return enabledProductsByCategory.getOrDefault(categoryId, Collections.emptyList());
+    }
+
+    /**
+     * Get the serialized product list response
+     * @return The response
+     */
+    public CatalogResponse getProductsResponse() {
+        return productsResponse;
+    }
+
+    /**
+     * Get the serialized category list response
+     * @return The response
+     */
+    public CatalogResponse getCategoriesResponse() {
+        return categoriesResponse;
+    }
+
+    /**
+     * Get the serialized response listing the enabled products in a category.
+     * Unknown categories are serialized on demand and not kept.
+     * @param categoryId The category ID
+     * @return The response
+     */
+    public CatalogResponse getCategoryProductsResponse(int categoryId) {
+        CatalogResponse response = categoryProductsResponses.get(categoryId);
+        return response != null ? response : buildCategoryProductsResponse(categoryId);
+    }
+
+    /**
+     * Serialize the enabled products in a category
+     * @param categoryId The category ID
+     * @return The response
+     */
+    private CatalogResponse buildCategoryProductsResponse(int categoryId) {
+        return new CatalogResponse(
+                CatalogSerializer.categoryProductList(categoryId, getEnabledProducts(categoryId)).toString(),
+                etag("category-" + categoryId));
+    }
+
+    /**
+     * Build a strong ETag for a resource in this catalog version
+     * @param resource The resource name
+     * @return The quoted ETag
+     */
+    private String etag(String resource) {
+        return "\"" + version + "-" + resource + "\"";
+    }
+}
\ No newline at end of file
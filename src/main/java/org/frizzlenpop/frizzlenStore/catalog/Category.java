@@ -0,0 +1,68 @@
+package org.frizzlenpop.frizzlenStore.catalog;
+
+/**
+ * Represents a store category as stored in the catalog cache
+ */
+public class Category {
+    private final int id;
+    private final String name;
+    private final String description;
+    private final int displayOrder;
+    private final String imageUrl;
+
+    /**
+     * Create a new category
+     * @param id The category ID
+     * @param name The category name
+     * @param description The category description
+     * @param displayOrder The display order
+     * @param imageUrl The image URL
+     */
+    public Category(int id, String name, String description, int displayOrder, String imageUrl) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.displayOrder = displayOrder;
+        this.imageUrl = imageUrl;
+    }
+
+    /**
+     * Get the category ID
+     * @return The category ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the category name
+     * @return The category name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the category description
+     * @return The category description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Get the display order
+     * @return The display order
+     */
+    public int getDisplayOrder() {
+        return displayOrder;
+    }
+
+    /**
+     * Get the image URL
+     * @return The image URL
+     */
+    public String getImageUrl() {
+        return imageUrl;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+package org.frizzlenpop.frizzlenStore.catalog;
+
+/**
+ * Represents a store product as stored in the catalog cache
+ */
+public class Product {
+    private final int id;
+    private final String name;
+    private final String description;
+    private final double price;
+    private final double salePrice;
+    private final boolean onSale;
+    private final int categoryId;
+    private final String categoryName;
+    private final String imageUrl;
+    private final int displayOrder;
+    private final boolean enabled;
+    private final String commands;
+
+    /**
+     * Create a new product
+     * @param id The product ID
+     * @param name The product name
+     * @param description The product description
+     * @param price The regular price
+     * @param salePrice The sale price
+     * @param onSale Whether the sale price applies
+     * @param categoryId The category ID
+     * @param categoryName The category name
+     * @param imageUrl The image URL
+     * @param displayOrder The display order
+     * @param enabled Whether the product can be bought
+     * @param commands The commands as a JSON array string
+     */
+    public Product(int id, String name, String description, double price, double salePrice, boolean onSale,
+                   int categoryId, String categoryName, String imageUrl, int displayOrder, boolean enabled,
+                   String commands) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.salePrice = salePrice;
+        this.onSale = onSale;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.imageUrl = imageUrl;
+        this.displayOrder = displayOrder;
+        this.enabled = enabled;
+        this.commands = commands;
+    }
+
+    /**
+     * Get the product ID
+     * @return The product ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the product name
+     * @return The product name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the product description
+     * @return The product description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Get the regular price
+     * @return The regular price
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Get the sale price
+     * @return The sale price
+     */
+    public double getSalePrice() {
+        return salePrice;
+    }
+
+    /**
+     * Check if the sale price applies
+     * @return True if the product is on sale
+     */
+    public boolean isOnSale() {
+        return onSale;
+    }
+
+    /**
+     * Get the category ID
+     * @return The category ID
+     */
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * Get the category name
+     * @return The category name
+     */
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    /**
+     * Get the image URL
+     * @return The image URL
+     */
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    /**
+     * Get the display order
+     * @return The display order
+     */
+    public int getDisplayOrder() {
+        return displayOrder;
+    }
+
+    /**
+     * Check if the product can be bought
+     * @return True if the product is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the commands to execute on delivery
+     * @return The commands as a JSON array string
+     */
+    public String getCommands() {
+        return commands;
+    }
+}
\ No newline at end of file
@@ -31,6 +31,13 @@ public class ReloadCommand implements SubCommand {
         
         // Reload configuration
         plugin.getConfigManager().loadConfigs();
+        plugin.getApiManager().getAuthenticator().reload();
+        
+        // Pick up catalog and coupon changes made directly in the database
+        plugin.getDatabaseManager().getExecutor().execute(() -> {
+            plugin.getCatalogCache().reload();
+            plugin.getCouponManager().reload();
+        });
         
         sender.sendMessage("§6[FrizzlenStore] §aConfiguration reloaded successfully!");
     }
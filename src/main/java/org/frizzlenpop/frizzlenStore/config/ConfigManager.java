@@ -9,7 +9,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,7 +31,25 @@ public class ConfigManager {
     private static final String DEFAULT_DATABASE_NAME = "frizzlenstore";
     private static final String DEFAULT_DATABASE_USER = "root";
     private static final String DEFAULT_DATABASE_PASSWORD = "";
+    private static final int DEFAULT_POOL_MIN_CONNECTIONS = 2;
+    private static final int DEFAULT_POOL_MAX_CONNECTIONS = 10;
+    private static final long DEFAULT_POOL_TIMEOUT = 30000L;
+    private static final long DEFAULT_POOL_MAX_LIFETIME = 1800000L;
+    private static final boolean DEFAULT_SQLITE_WAL = true;
+    private static final int DEFAULT_SQLITE_READ_CONNECTIONS = 4;
+    private static final long DEFAULT_SQLITE_MMAP_SIZE = 268435456L;
+    private static final int DEFAULT_SQLITE_WRITE_BATCH_SIZE = 64;
+    private static final String DEFAULT_API_EXECUTOR_MODE = "bounded-virtual";
+    private static final int DEFAULT_API_EXECUTOR_THREADS = 10;
+    private static final int DEFAULT_API_MAX_CONCURRENT_REQUESTS = 20;
     private static final boolean DEFAULT_DEBUG_MODE = false;
+    private static final long DEFAULT_DELIVERY_TICK_BUDGET = 5L;
+    private static final int DEFAULT_COUPON_FLUSH_INTERVAL = 5;
+    private static final int DEFAULT_PLAYER_SYNC_CHUNK_SIZE = 1000;
+    private static final int DEFAULT_PLAYER_ACTIVITY_FLUSH_INTERVAL = 5;
+    private static final boolean DEFAULT_PLAYER_SEARCH_INDEX = true;
+    private static final int DEFAULT_PLAYER_SPEND_CACHE_SIZE = 10000;
+    private static final String DEFAULT_LOG_JSON_FILE = "";
     
     public ConfigManager(FrizzlenStore plugin) {
         this.plugin = plugin;
@@ -49,6 +69,9 @@ public class ConfigManager {
         loadCustomConfig("messages.yml");
         loadCustomConfig("store-categories.yml");
         
+        // Apply the log level and JSON log file
+        Logger.configure(isDebugEnabled(), getLogJsonFile());
+        
         Logger.info("All configuration files loaded successfully");
     }
     
@@ -153,6 +176,52 @@ public class ConfigManager {
         return config.getInt("api.port", DEFAULT_API_PORT);
     }
     
+    /**
+     * Get the API tokens with full access, api.token followed by api.tokens.admin
+     * @return The admin tokens, empty ones left out
+     */
+    public List<String> getApiAdminTokens() {
+        List<String> tokens = new ArrayList<>();
+        tokens.add(config.getString("api.token", ""));
+        tokens.addAll(config.getStringList("api.tokens.admin"));
+        tokens.removeIf(token -> token == null || token.isEmpty());
+        return tokens;
+    }
+    
+    /**
+     * Get the API tokens that may only call read routes
+     * @return The read tokens, empty ones left out
+     */
+    public List<String> getApiReadTokens() {
+        List<String> tokens = new ArrayList<>(config.getStringList("api.tokens.read"));
+        tokens.removeIf(token -> token == null || token.isEmpty());
+        return tokens;
+    }
+    
+    /**
+     * Get the API executor mode from config
+     * @return The executor mode (fixed, virtual or bounded-virtual)
+     */
+    public String getApiExecutorMode() {
+        return config.getString("api.executor.mode", DEFAULT_API_EXECUTOR_MODE).toLowerCase();
+    }
+    
+    /**
+     * Get the number of API threads for the fixed executor mode
+     * @return The thread count
+     */
+    public int getApiExecutorThreads() {
+        return Math.max(1, config.getInt("api.executor.threads", DEFAULT_API_EXECUTOR_THREADS));
+    }
+    
+    /**
+     * Get the maximum number of API requests handled at once in bounded-virtual mode
+     * @return The request limit
+     */
+    public int getApiMaxConcurrentRequests() {
+        return Math.max(1, config.getInt("api.executor.max_concurrent_requests", DEFAULT_API_MAX_CONCURRENT_REQUESTS));
+    }
+    
     /**
      * Check if debug mode is enabled
      * @return True if debug mode is enabled
@@ -161,6 +230,68 @@ public class ConfigManager {
         return config.getBoolean("debug", DEFAULT_DEBUG_MODE);
     }
     
+    /**
+     * Get the file that log messages are also written to as JSON lines
+     * @return The file, or null if disabled
+     */
+    public File getLogJsonFile() {
+        String path = config.getString("logging.json_file", DEFAULT_LOG_JSON_FILE);
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(plugin.getDataFolder(), path);
+    }
+    
+    /**
+     * Get the time budget for delivering purchases on each server tick
+     * @return The budget in milliseconds
+     */
+    public long getDeliveryTickBudget() {
+        return Math.max(1L, config.getLong("delivery.tick_budget_ms", DEFAULT_DELIVERY_TICK_BUDGET));
+    }
+    
+    /**
+     * Get how often coupon redemptions are written to the database
+     * @return The flush interval in seconds
+     */
+    public int getCouponFlushInterval() {
+        return Math.max(1, config.getInt("coupons.flush_interval_seconds", DEFAULT_COUPON_FLUSH_INTERVAL));
+    }
+    
+    /**
+     * Get the number of players read and written together by a player sync
+     * @return The chunk size
+     */
+    public int getPlayerSyncChunkSize() {
+        return Math.max(1, config.getInt("players.sync_chunk_size", DEFAULT_PLAYER_SYNC_CHUNK_SIZE));
+    }
+    
+    /**
+     * Get how often player joins and quits are written to the database
+     * @return The flush interval in seconds
+     */
+    public int getPlayerActivityFlushInterval() {
+        return Math.max(1, config.getInt("players.activity_flush_interval_seconds", DEFAULT_PLAYER_ACTIVITY_FLUSH_INTERVAL));
+    }
+    
+    /**
+     * Check if player name searches are served from memory
+     * @return True if the search index is enabled
+     */
+    public boolean isPlayerSearchIndexEnabled() {
+        return config.getBoolean("players.search_index", DEFAULT_PLAYER_SEARCH_INDEX);
+    }
+    
+    /**
+     * Get how many players' spend summaries are kept in memory
+     * @return The maximum number of cached summaries
+     */
+    public int getPlayerSpendCacheSize() {
+        return Math.max(1, config.getInt("players.spend_cache_size", DEFAULT_PLAYER_SPEND_CACHE_SIZE));
+    }
+    
     /**
      * Get database configuration
      * @return DatabaseConfig object with all database settings
@@ -175,6 +306,18 @@ public class ConfigManager {
         String user = dbConfig.getString("username", DEFAULT_DATABASE_USER);
         String password = dbConfig.getString("password", DEFAULT_DATABASE_PASSWORD);
         
-        return new DatabaseConfig(type, host, port, name, user, password);
+        int minConnections = dbConfig.getInt("pool.min_connections", DEFAULT_POOL_MIN_CONNECTIONS);
+        int maxConnections = dbConfig.getInt("pool.max_connections", DEFAULT_POOL_MAX_CONNECTIONS);
+        long timeout = dbConfig.getLong("pool.timeout", DEFAULT_POOL_TIMEOUT);
+        long maxLifetime = dbConfig.getLong("pool.max_lifetime", DEFAULT_POOL_MAX_LIFETIME);
+        
+        boolean sqliteWal = dbConfig.getBoolean("sqlite.wal", DEFAULT_SQLITE_WAL);
+        int readConnections = Math.max(1, dbConfig.getInt("sqlite.read_connections", DEFAULT_SQLITE_READ_CONNECTIONS));
+        long mmapSize = Math.max(0L, dbConfig.getLong("sqlite.mmap_size", DEFAULT_SQLITE_MMAP_SIZE));
+        int writeBatchSize = Math.max(1, dbConfig.getInt("sqlite.write_batch_size", DEFAULT_SQLITE_WRITE_BATCH_SIZE));
+        
+        return new DatabaseConfig(type, host, port, name, user, password,
+                minConnections, maxConnections, timeout, maxLifetime,
+                sqliteWal, readConnections, mmapSize, writeBatchSize);
     }
 } 
\ No newline at end of file
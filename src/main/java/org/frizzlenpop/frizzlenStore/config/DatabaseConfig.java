@@ -10,6 +10,14 @@ public class DatabaseConfig {
     private final String database;
     private final String username;
     private final String password;
+    private final int minConnections;
+    private final int maxConnections;
+    private final long connectionTimeout;
+    private final long maxLifetime;
+    private final boolean sqliteWal;
+    private final int sqliteReadConnections;
+    private final long sqliteMmapSize;
+    private final int sqliteWriteBatchSize;
     
     /**
      * Create a new database configuration
@@ -19,14 +27,32 @@ public class DatabaseConfig {
      * @param database The database name
      * @param username The database username
      * @param password The database password
+     * @param minConnections The minimum number of idle pooled connections
+     * @param maxConnections The maximum number of pooled connections
+     * @param connectionTimeout The time to wait for a pooled connection in milliseconds
+     * @param maxLifetime The maximum lifetime of a pooled connection in milliseconds
+     * @param sqliteWal Whether SQLite uses write-ahead logging with separate read connections
+     * @param sqliteReadConnections The number of read-only SQLite connections
+     * @param sqliteMmapSize The bytes of the SQLite file to memory-map, 0 to disable
+     * @param sqliteWriteBatchSize The most SQLite writes committed in one transaction
      */
-    public DatabaseConfig(String type, String host, int port, String database, String username, String password) {
+    public DatabaseConfig(String type, String host, int port, String database, String username, String password,
+                          int minConnections, int maxConnections, long connectionTimeout, long maxLifetime,
+                          boolean sqliteWal, int sqliteReadConnections, long sqliteMmapSize, int sqliteWriteBatchSize) {
         this.type = type;
         this.host = host;
         this.port = port;
         this.database = database;
         this.username = username;
         this.password = password;
+        this.minConnections = minConnections;
+        this.maxConnections = maxConnections;
+        this.connectionTimeout = connectionTimeout;
+        this.maxLifetime = maxLifetime;
+        this.sqliteWal = sqliteWal;
+        this.sqliteReadConnections = sqliteReadConnections;
+        this.sqliteMmapSize = sqliteMmapSize;
+        this.sqliteWriteBatchSize = sqliteWriteBatchSize;
     }
     
     /**
@@ -77,6 +103,79 @@ public class DatabaseConfig {
         return password;
     }
     
+    /**
+     * Get the minimum number of idle pooled connections
+     * @return The minimum number of connections
+     */
+    public int getMinConnections() {
+        return minConnections;
+    }
+    
+    /**
+     * Get the maximum number of pooled connections
+     * @return The maximum number of connections
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+    
+    /**
+     * Get the time to wait for a pooled connection
+     * @return The connection timeout in milliseconds
+     */
+    public long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+    
+    /**
+     * Get the maximum lifetime of a pooled connection
+     * @return The maximum lifetime in milliseconds
+     */
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+    
+    /**
+     * Check if SQLite should use write-ahead logging.
+     * Reads then run on their own connections while the writer commits.
+     * @return True if WAL mode is enabled
+     */
+    public boolean isSqliteWal() {
+        return sqliteWal;
+    }
+    
+    /**
+     * Get the number of read-only SQLite connections used in WAL mode
+     * @return The number of read connections
+     */
+    public int getSqliteReadConnections() {
+        return sqliteReadConnections;
+    }
+    
+    /**
+     * Get the number of bytes of the SQLite file to memory-map
+     * @return The mmap size in bytes, 0 if disabled
+     */
+    public long getSqliteMmapSize() {
+        return sqliteMmapSize;
+    }
+    
+    /**
+     * Get the most SQLite writes the writer thread commits in one transaction
+     * @return The write batch size
+     */
+    public int getSqliteWriteBatchSize() {
+        return sqliteWriteBatchSize;
+    }
+    
+    /**
+     * Check if this configuration targets SQLite
+     * @return True if the database type is sqlite
+     */
+    public boolean isSqlite() {
+        return "sqlite".equalsIgnoreCase(type);
+    }
+    
     /**
      * Get the JDBC URL for this database configuration
      * @return The JDBC URL
@@ -0,0 +1,164 @@
+package org.frizzlenpop.frizzlenStore.coupon;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Represents a coupon, its discount and its redemption limit
+ */
+public class Coupon {
+    private final String code;
+    private final String discountType;
+    private final double discountValue;
+    private final double minPurchase;
+    private final int maxUses;
+    private final long expiresAt;
+    private final CouponUsage usage;
+
+    /**
+     * Create a new coupon
+     * @param code The coupon code
+     * @param discountType The discount type, percentage or fixed
+     * @param discountValue The discount value
+     * @param minPurchase The minimum amount the coupon applies to
+     * @param maxUses The redemption limit, 0 for unlimited
+     * @param expiresAt When the coupon expires in epoch milliseconds, 0 if it never does
+     * @param usage The redemption counter
+     */
+    Coupon(String code, String discountType, double discountValue, double minPurchase,
+           int maxUses, long expiresAt, CouponUsage usage) {
+        this.code = code;
+        this.discountType = discountType;
+        this.discountValue = discountValue;
+        this.minPurchase = minPurchase;
+        this.maxUses = maxUses;
+        this.expiresAt = expiresAt;
+        this.usage = usage;
+    }
+
+    /**
+     * Read a coupon from the current result set row
+     * @param resultSet The result set
+     * @param usage The redemption counter to keep, or null to start one from the stored count
+     * @param now The time the row was read in epoch milliseconds
+     * @return The coupon
+     * @throws SQLException If a column can't be read
+     */
+    static Coupon read(ResultSet resultSet, CouponUsage usage, long now) throws SQLException {
+        int storedUses = resultSet.getInt("uses");
+        if (usage == null) {
+            usage = new CouponUsage(storedUses);
+        } else {
+            usage.sync(storedUses);
+        }
+
+        // Seconds until expiry, worked out by the database so both use the same clock
+        long expiresIn = resultSet.getLong("expires_in");
+        long expiresAt = resultSet.wasNull() ? 0L : now + expiresIn * 1000L;
+
+        return new Coupon(
+                resultSet.getString("code"),
+                resultSet.getString("discount_type"),
+                resultSet.getDouble("discount_value"),
+                resultSet.getDouble("min_purchase"),
+                resultSet.getInt("max_uses"),
+                expiresAt,
+                usage
+        );
+    }
+
+    /**
+     * Get the coupon code
+     * @return The code
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Get the discount type
+     * @return The discount type, percentage or fixed
+     */
+    public String getDiscountType() {
+        return discountType;
+    }
+
+    /**
+     * Get the discount value
+     * @return The percentage or fixed amount taken off
+     */
+    public double getDiscountValue() {
+        return discountValue;
+    }
+
+    /**
+     * Get the minimum purchase amount
+     * @return The minimum amount the coupon applies to
+     */
+    public double getMinPurchase() {
+        return minPurchase;
+    }
+
+    /**
+     * Get the redemption limit
+     * @return The maximum number of uses, 0 for unlimited
+     */
+    public int getMaxUses() {
+        return maxUses;
+    }
+
+    /**
+     * Get the number of redemptions, including those not yet written to the database
+     * @return The number of uses
+     */
+    public int getUses() {
+        return usage.getUses();
+    }
+
+    /**
+     * Get the redemption counter
+     * @return The usage counter
+     */
+    CouponUsage getUsage() {
+        return usage;
+    }
+
+    /**
+     * Check if the coupon has expired
+     * @param now The current time in epoch milliseconds
+     * @return True if the coupon has an expiry date in the past
+     */
+    public boolean isExpired(long now) {
+        return expiresAt > 0 && now >= expiresAt;
+    }
+
+    /**
+     * Check if the coupon applies to an amount
+     * @param amount The amount
+     * @return True if the amount meets the minimum purchase
+     */
+    public boolean appliesTo(double amount) {
+        return amount >= minPurchase;
+    }
+
+    /**
+     * Reserve one redemption of the coupon
+     * @return True if reserved, false if the coupon has been used up
+     */
+    public boolean tryRedeem() {
+        return usage.tryReserve(maxUses);
+    }
+
+    /**
+     * Apply the discount to an amount
+     * @param amount The original amount
+     * @return The discounted amount, never below zero
+     */
+    public double discount(double amount) {
+        if (discountType.equals("percentage")) {
+            return amount * (1 - (discountValue / 100.0));
+        } else { // fixed amount
+            return Math.max(0, amount - discountValue);
+        }
+    }
+}
\ No newline at end of file
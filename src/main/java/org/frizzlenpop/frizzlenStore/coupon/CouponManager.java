@@ -0,0 +1,217 @@
+package org.frizzlenpop.frizzlenStore.coupon;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Manages coupon redemption.
+ * Coupons are cached by code and redeemed against in-memory counters, so a checkout
+ * costs no database round trip. Redemptions are written to the database in batches
+ * by a periodic flush.
+ */
+public class CouponManager {
+    private final FrizzlenStore plugin;
+
+    // Coupons that haven't expired, by upper-case code. Replaced as a whole on reload.
+    private volatile Map<String, Coupon> coupons;
+
+    private final long flushIntervalTicks;
+    private BukkitTask flushTask;
+
+    // Registered queries
+    private final Query loadCoupons;
+    private final Query addUses;
+
+    // Redemption metrics
+    private final LongAdder redeemed;
+    private final LongAdder rejected;
+
+    // SQL queries
+    private static final String LOAD_COUPONS_MYSQL =
+            "SELECT code, discount_type, discount_value, min_purchase, max_uses, uses, " +
+            "TIMESTAMPDIFF(SECOND, CURRENT_TIMESTAMP, expiry_date) AS expires_in FROM coupons " +
+            "WHERE expiry_date IS NULL OR expiry_date > CURRENT_TIMESTAMP";
+
+    private static final String LOAD_COUPONS_SQLITE =
+            "SELECT code, discount_type, discount_value, min_purchase, max_uses, uses, " +
+            "CAST((julianday(expiry_date) - julianday('now')) * 86400 AS INTEGER) AS expires_in FROM coupons " +
+            "WHERE expiry_date IS NULL OR expiry_date > CURRENT_TIMESTAMP";
+
+    private static final String ADD_USES =
+            "UPDATE coupons SET uses = uses + ? WHERE code = ?";
+
+    /**
+     * Create a new coupon manager, load the coupons and start the periodic flush
+     * @param plugin The plugin instance
+     */
+    public CouponManager(FrizzlenStore plugin) {
+        this.plugin = plugin;
+        this.coupons = Map.of();
+        this.flushIntervalTicks = plugin.getConfigManager().getCouponFlushInterval() * 20L;
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.loadCoupons = database.register("coupon.load_active", 
+                database.isSqlite() ? LOAD_COUPONS_SQLITE : LOAD_COUPONS_MYSQL);
+        this.addUses = database.register("coupon.add_uses", ADD_USES);
+
+        this.redeemed = plugin.getMetrics().counter("frizzlenstore_coupon_redemptions_total",
+                "Coupon checks", "result", "redeemed");
+        this.rejected = plugin.getMetrics().counter("frizzlenstore_coupon_redemptions_total",
+                "Coupon checks", "result", "rejected");
+        plugin.getMetrics().gauge("frizzlenstore_coupons_cached",
+                "Active coupons held in memory", () -> coupons.size());
+
+        reload();
+        start();
+    }
+
+    /**
+     * Start the periodic flush
+     */
+    private void start() {
+        if (flushTask == null) {
+            flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flush,
+                    flushIntervalTicks, flushIntervalTicks);
+        }
+    }
+
+    /**
+     * Stop the periodic flush and write any remaining redemptions
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+
+        flush();
+    }
+
+    /**
+     * Reload the coupons from the database.
+     * Pending redemptions are written first and redemption counts carry over, so a
+     * reload never lets a coupon be used more than its limit.
+     * @return True if the coupons were reloaded
+     */
+    public synchronized boolean reload() {
+        flush();
+
+        Map<String, Coupon> previous = coupons;
+        long now = System.currentTimeMillis();
+
+        try {
+            List<Coupon> loaded = plugin.getDatabaseManager().query(loadCoupons, resultSet -> {
+                Coupon existing = previous.get(key(resultSet.getString("code")));
+                return Coupon.read(resultSet, existing != null ? existing.getUsage() : null, now);
+            });
+
+            Map<String, Coupon> byCode = new HashMap<>();
+            for (Coupon coupon : loaded) {
+                byCode.put(key(coupon.getCode()), coupon);
+            }
+            coupons = byCode;
+        } catch (SQLException e) {
+            Logger.severe("Failed to load coupons: " + e.getMessage());
+            return false;
+        }
+
+        // Kept coupons share their counters, only dropped ones can still hold redemptions made during the load
+        List<Coupon> dropped = new ArrayList<>();
+        for (Map.Entry<String, Coupon> entry : previous.entrySet()) {
+            if (!coupons.containsKey(entry.getKey())) {
+                dropped.add(entry.getValue());
+            }
+        }
+        flush(dropped);
+
+        return true;
+    }
+
+    /**
+     * Apply a coupon to an amount, using up one redemption
+     * @param couponCode The coupon code
+     * @param amount The original amount
+     * @return The discounted amount, or the original amount if the coupon doesn't apply
+     */
+    public double applyCoupon(String couponCode, double amount) {
+        Coupon coupon = couponCode != null ? coupons.get(key(couponCode)) : null;
+
+        // Check the coupon exists, hasn't expired and the minimum purchase requirement
+        if (coupon == null || coupon.isExpired(System.currentTimeMillis()) || !coupon.appliesTo(amount)) {
+            rejected.increment();
+            return amount;
+        }
+
+        // Reserve a use, fails once max_uses is reached
+        if (!coupon.tryRedeem()) {
+            rejected.increment();
+            return amount;
+        }
+
+        redeemed.increment();
+        return coupon.discount(amount);
+    }
+
+    /**
+     * Write the redemptions made since the last flush in one batch
+     */
+    public synchronized void flush() {
+        flush(coupons.values());
+    }
+
+    /**
+     * Write the unflushed redemptions of some coupons in one batch
+     * @param candidates The coupons to check
+     */
+    private void flush(Collection<Coupon> candidates) {
+        List<Coupon> flushed = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+
+        for (Coupon coupon : candidates) {
+            int count = coupon.getUsage().takeUnflushed();
+            if (count > 0) {
+                flushed.add(coupon);
+                counts.add(count);
+                rows.add(new Object[]{count, coupon.getCode()});
+            }
+        }
+
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            plugin.getDatabaseManager().batch(addUses, rows);
+        } catch (SQLException e) {
+            Logger.severe("Failed to save coupon redemptions: " + e.getMessage());
+
+            // Keep them for the next flush
+            for (int i = 0; i < flushed.size(); i++) {
+                flushed.get(i).getUsage().restoreUnflushed(counts.get(i));
+            }
+        }
+    }
+
+    /**
+     * Normalize a coupon code for lookups
+     * @param code The code
+     * @return The upper-case code
+     */
+    private static String key(String code) {
+        return code.toUpperCase(Locale.ROOT);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package org.frizzlenpop.frizzlenStore.coupon;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the redemptions of one coupon.
+ * Redemptions are reserved with compare-and-set, so a coupon is never redeemed more
+ * than its limit even when many checkouts use it at once. Redemptions not yet written
+ * to the database are tracked separately and taken by the periodic flush.
+ */
+class CouponUsage {
+    private final AtomicInteger uses;
+    private final AtomicInteger unflushed;
+
+    /**
+     * Create a new usage counter
+     * @param uses The redemptions already stored in the database
+     */
+    CouponUsage(int uses) {
+        this.uses = new AtomicInteger(uses);
+        this.unflushed = new AtomicInteger();
+    }
+
+    /**
+     * Reserve one redemption
+     * @param maxUses The redemption limit, 0 or less for unlimited
+     * @return True if reserved, false if the limit has been reached
+     */
+    boolean tryReserve(int maxUses) {
+        while (true) {
+            int current = uses.get();
+            if (maxUses > 0 && current >= maxUses) {
+                return false;
+            }
+            if (uses.compareAndSet(current, current + 1)) {
+                unflushed.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get the number of redemptions, including those not yet written
+     * @return The redemption count
+     */
+    int getUses() {
+        return uses.get();
+    }
+
+    /**
+     * Take the redemptions not yet written to the database
+     * @return The number of redemptions to write
+     */
+    int takeUnflushed() {
+        return unflushed.getAndSet(0);
+    }
+
+    /**
+     * Put back redemptions whose write failed, so the next flush retries them
+     * @param count The number of redemptions
+     */
+    void restoreUnflushed(int count) {
+        unflushed.addAndGet(count);
+    }
+
+    /**
+     * Catch up with the database after a reload.
+     * The count only moves up, redemptions made in memory are never forgotten.
+     * @param storedUses The redemptions stored in the database
+     */
+    void sync(int storedUses) {
+        uses.accumulateAndGet(storedUses + unflushed.get(), Math::max);
+    }
+}
\ No newline at end of file
@@ -1,18 +1,33 @@
 package org.frizzlenpop.frizzlenStore.database;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
 import org.frizzlenpop.frizzlenStore.config.DatabaseConfig;
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
+import org.frizzlenpop.frizzlenStore.metrics.PoolMetricsTrackerFactory;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages database connections and operations
@@ -20,69 +35,26 @@ import java.util.concurrent.Executors;
 public class DatabaseManager {
     private final FrizzlenStore plugin;
     private DatabaseConfig dbConfig;
-    private Connection connection;
+    private HikariDataSource dataSource;
+    private HikariDataSource readDataSource;
+    private SqliteWriter writer;
     private ExecutorService executor;
+    private final Map<String, Query> queries;
     
-    // SQL statements for table creation
-    private static final String CREATE_PRODUCTS_TABLE = 
-            "CREATE TABLE IF NOT EXISTS products (" +
-            "id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "name VARCHAR(128) NOT NULL, " +
-            "description TEXT, " +
-            "price DECIMAL(10, 2) NOT NULL, " +
-            "sale_price DECIMAL(10, 2), " +
-            "category_id INT, " +
-            "commands TEXT NOT NULL, " +
-            "image_url VARCHAR(255), " +
-            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
-            "active BOOLEAN DEFAULT TRUE" +
-            ")";
-    
-    private static final String CREATE_CATEGORIES_TABLE = 
-            "CREATE TABLE IF NOT EXISTS categories (" +
-            "id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "name VARCHAR(64) NOT NULL, " +
-            "description TEXT, " +
-            "display_order INT DEFAULT 0, " +
-            "image_url VARCHAR(255), " +
-            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
-            "active BOOLEAN DEFAULT TRUE" +
-            ")";
-    
-    private static final String CREATE_PURCHASES_TABLE = 
-            "CREATE TABLE IF NOT EXISTS purchases (" +
-            "id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "transaction_id VARCHAR(64) NOT NULL UNIQUE, " +
-            "player_name VARCHAR(32) NOT NULL, " +
-            "player_uuid VARCHAR(36), " +
-            "product_id INT NOT NULL, " +
-            "price_paid DECIMAL(10, 2) NOT NULL, " +
-            "payment_method VARCHAR(32) NOT NULL, " +
-            "payment_status VARCHAR(16) NOT NULL, " +
-            "purchase_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-            "ip_address VARCHAR(45), " +
-            "delivered BOOLEAN DEFAULT FALSE, " +
-            "delivery_time TIMESTAMP NULL" +
-            ")";
-    
-    private static final String CREATE_COUPONS_TABLE = 
-            "CREATE TABLE IF NOT EXISTS coupons (" +
-            "id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "code VARCHAR(32) NOT NULL UNIQUE, " +
-            "discount_type ENUM('percentage', 'fixed') NOT NULL, " +
-            "discount_value DECIMAL(10, 2) NOT NULL, " +
-            "start_date TIMESTAMP NULL, " +
-            "end_date TIMESTAMP NULL, " +
-            "uses_limit INT DEFAULT 0, " +
-            "used_count INT DEFAULT 0, " +
-            "minimum_purchase DECIMAL(10, 2) DEFAULT 0, " +
-            "product_ids TEXT, " +
-            "category_ids TEXT, " +
-            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-            "active BOOLEAN DEFAULT TRUE" +
-            ")";
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    
+    // Prepared statements cached per MySQL connection, enough for every registered query
+    private static final int STATEMENT_CACHE_SIZE = 250;
+    private static final int STATEMENT_CACHE_SQL_LIMIT = 2048;
+    
+    // How long SQLite waits for a lock before returning SQLITE_BUSY
+    private static final int SQLITE_BUSY_TIMEOUT = 5000;
+    
+    // How long shutdown waits for queued SQLite writes to commit
+    private static final long WRITER_SHUTDOWN_TIMEOUT = 10000L;
+    
+    // How long shutdown waits for database tasks still on the executor
+    private static final long EXECUTOR_SHUTDOWN_TIMEOUT = 10000L;
     
     /**
      * Create a new database manager
@@ -90,7 +62,12 @@ public class DatabaseManager {
      */
     public DatabaseManager(FrizzlenStore plugin) {
         this.plugin = plugin;
-        this.executor = Executors.newFixedThreadPool(4);
+        this.queries = new ConcurrentHashMap<>();
+        this.executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "FrizzlenStore-DB-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
     /**
@@ -107,108 +84,598 @@ public class DatabaseManager {
                 return false;
             }
             
-            // Create tables
-            createTables();
-            
-            return true;
+            // Bring the schema up to date
+            return migrate();
         } catch (Exception e) {
-            Logger.severe("Failed to initialize database: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Failed to initialize database", e);
             return false;
         }
     }
     
     /**
-     * Connect to the database
+     * Create the connection pool
      * @return True if successful, false otherwise
      */
     private boolean connect() {
         try {
-            // Load driver
-            if ("mysql".equalsIgnoreCase(dbConfig.getType())) {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-            } else if ("sqlite".equalsIgnoreCase(dbConfig.getType())) {
-                Class.forName("org.sqlite.JDBC");
+            HikariConfig hikariConfig = new HikariConfig();
+            hikariConfig.setPoolName("FrizzlenStore-DB");
+            hikariConfig.setJdbcUrl(dbConfig.getJdbcUrl());
+            
+            if (dbConfig.isSqlite()) {
+                hikariConfig.setDriverClassName("org.sqlite.JDBC");
+                
+                // SQLite allows a single writer at a time, extra connections only produce SQLITE_BUSY
+                hikariConfig.setMinimumIdle(1);
+                hikariConfig.setMaximumPoolSize(1);
+                addSqliteProperties(hikariConfig);
+                
+                if (dbConfig.isSqliteWal()) {
+                    hikariConfig.addDataSourceProperty("journal_mode", "WAL");
+                    hikariConfig.addDataSourceProperty("synchronous", "NORMAL");
+                }
+            } else {
+                hikariConfig.setDriverClassName("com.mysql.cj.jdbc.Driver");
+                hikariConfig.setUsername(dbConfig.getUsername());
+                hikariConfig.setPassword(dbConfig.getPassword());
+                
+                int maxConnections = Math.max(1, dbConfig.getMaxConnections());
+                hikariConfig.setMaximumPoolSize(maxConnections);
+                hikariConfig.setMinimumIdle(Math.min(Math.max(0, dbConfig.getMinConnections()), maxConnections));
+                
+                // Parse each statement once per connection on the server and reuse it
+                hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+                hikariConfig.addDataSourceProperty("prepStmtCacheSize", String.valueOf(STATEMENT_CACHE_SIZE));
+                hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", String.valueOf(STATEMENT_CACHE_SQL_LIMIT));
+                hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+                hikariConfig.addDataSourceProperty("cacheResultSetMetadata", "true");
             }
             
-            // Establish connection
-            connection = DriverManager.getConnection(
-                    dbConfig.getJdbcUrl(),
-                    dbConfig.getUsername(),
-                    dbConfig.getPassword()
-            );
+            hikariConfig.setConnectionTimeout(dbConfig.getConnectionTimeout());
+            hikariConfig.setMaxLifetime(dbConfig.getMaxLifetime());
+            hikariConfig.setMetricsTrackerFactory(new PoolMetricsTrackerFactory(plugin.getMetrics()));
+            
+            dataSource = new HikariDataSource(hikariConfig);
+            registerPoolGauges();
+            
+            if (dbConfig.isSqlite() && dbConfig.isSqliteWal()) {
+                // The write connection has switched the file to WAL, so readers no longer block on it
+                readDataSource = new HikariDataSource(createSqliteReadConfig());
+                
+                writer = new SqliteWriter(this, dbConfig.getSqliteWriteBatchSize(), plugin.getMetrics());
+                writer.start();
+                
+                Logger.info("Connected to SQLite in WAL mode (1 writer, " + 
+                        dbConfig.getSqliteReadConnections() + " readers)");
+                return true;
+            }
             
-            Logger.info("Connected to database successfully");
+            Logger.info("Connected to database successfully (pool size " +
+                    (dbConfig.isSqlite() ? 1 : dbConfig.getMaxConnections()) + ")");
             return true;
-        } catch (ClassNotFoundException | SQLException e) {
-            Logger.severe("Failed to connect to database: " + e.getMessage());
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            Logger.severe("Failed to connect to database", e);
             return false;
         }
     }
     
     /**
-     * Create database tables if they don't exist
+     * Build the pool of read-only SQLite connections used in WAL mode
+     * @return The pool configuration
      */
-    private void createTables() {
-        try (Statement statement = connection.createStatement()) {
-            // Create tables
-            statement.executeUpdate(CREATE_CATEGORIES_TABLE);
-            statement.executeUpdate(CREATE_PRODUCTS_TABLE);
-            statement.executeUpdate(CREATE_PURCHASES_TABLE);
-            statement.executeUpdate(CREATE_COUPONS_TABLE);
-            
-            Logger.info("Database tables created/verified successfully");
+    private HikariConfig createSqliteReadConfig() {
+        int readConnections = Math.max(1, dbConfig.getSqliteReadConnections());
+        
+        HikariConfig readConfig = new HikariConfig();
+        readConfig.setPoolName("FrizzlenStore-DB-Read");
+        readConfig.setJdbcUrl(dbConfig.getJdbcUrl());
+        readConfig.setDriverClassName("org.sqlite.JDBC");
+        readConfig.setMinimumIdle(readConnections);
+        readConfig.setMaximumPoolSize(readConnections);
+        readConfig.setConnectionTimeout(dbConfig.getConnectionTimeout());
+        readConfig.setMaxLifetime(dbConfig.getMaxLifetime());
+        readConfig.setConnectionInitSql("PRAGMA query_only = 1");
+        readConfig.setMetricsTrackerFactory(new PoolMetricsTrackerFactory(plugin.getMetrics()));
+        addSqliteProperties(readConfig);
+        return readConfig;
+    }
+    
+    /**
+     * Add the pragmas shared by SQLite read and write connections
+     * @param hikariConfig The pool configuration
+     */
+    private void addSqliteProperties(HikariConfig hikariConfig) {
+        hikariConfig.addDataSourceProperty("busy_timeout", String.valueOf(SQLITE_BUSY_TIMEOUT));
+        if (dbConfig.getSqliteMmapSize() > 0) {
+            hikariConfig.addDataSourceProperty("mmap_size", String.valueOf(dbConfig.getSqliteMmapSize()));
+        }
+    }
+    
+    /**
+     * Expose the pool's connection counts as gauges
+     */
+    private void registerPoolGauges() {
+        MetricsRegistry metrics = plugin.getMetrics();
+        metrics.gauge("frizzlenstore_db_connections_active", 
+                "Connections currently borrowed from the pool", this::getActiveConnections);
+        metrics.gauge("frizzlenstore_db_connections_idle", 
+                "Idle connections in the pool", this::getIdleConnections);
+        metrics.gauge("frizzlenstore_db_connections_total", 
+                "Open connections in the pool", this::getTotalConnections);
+        metrics.gauge("frizzlenstore_db_connections_pending", 
+                "Threads waiting for a connection", this::getThreadsAwaitingConnection);
+    }
+    
+    /**
+     * Apply any schema migrations the database hasn't seen yet
+     * @return True if the schema is up to date, false otherwise
+     */
+    private boolean migrate() {
+        try {
+            int applied = new MigrationRunner(this, SchemaMigrations.all()).migrate();
+            Logger.info(applied == 0 ? "Database schema is up to date" : 
+                    "Applied " + applied + " database migration(s)");
+            return true;
         } catch (SQLException e) {
-            Logger.severe("Failed to create database tables: " + e.getMessage());
-            e.printStackTrace();
+            Logger.severe("Failed to migrate database schema", e);
+            return false;
         }
     }
     
     /**
-     * Close the database connection
+     * Close the connection pool.
+     * Tasks already on the database executor are allowed to finish first, so work handed off
+     * during disable, like returning deliveries to pending, still reaches the database.
      */
     public void shutdown() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                Logger.info("Database connection closed");
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(EXECUTOR_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    Logger.warning("Database tasks did not finish within " + EXECUTOR_SHUTDOWN_TIMEOUT + 
+                                   "ms, abandoning them");
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
             }
+        }
+        
+        if (writer != null) {
+            writer.stop(WRITER_SHUTDOWN_TIMEOUT);
+        }
+        
+        if (readDataSource != null && !readDataSource.isClosed()) {
+            readDataSource.close();
+        }
+        
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
+            Logger.info("Database connection pool closed");
+        }
+    }
+    
+    /**
+     * Borrow a connection from the pool.
+     * The caller owns the connection and must close it to return it to the pool.
+     * @return A pooled database connection
+     * @throws SQLException If no connection could be obtained
+     */
+    public Connection getConnection() throws SQLException {
+        if (dataSource == null || dataSource.isClosed()) {
+            throw new SQLException("Database connection pool is not available");
+        }
+        
+        return dataSource.getConnection();
+    }
+    
+    /**
+     * Borrow a connection for reading.
+     * In SQLite WAL mode this is one of the read-only connections, which don't wait for
+     * the writer. Otherwise it is a normal pooled connection.
+     * The caller owns the connection and must close it to return it to the pool.
+     * @return A pooled database connection
+     * @throws SQLException If no connection could be obtained
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (readDataSource == null) {
+            return getConnection();
+        }
+        if (readDataSource.isClosed()) {
+            throw new SQLException("Database connection pool is not available");
+        }
+        
+        return readDataSource.getConnection();
+    }
+    
+    /**
+     * Register a named query.
+     * Registering the same name again with the same SQL returns the existing query.
+     * @param name The query name, used in logs and metrics
+     * @param sql The SQL statement
+     * @return The registered query
+     * @throws IllegalArgumentException If the name is already registered with different SQL
+     */
+    public Query register(String name, String sql) {
+        Query query = queries.computeIfAbsent(name, key -> new Query(name, sql, 
+                plugin.getMetrics().histogram("frizzlenstore_db_query_duration_seconds",
+                        "Time taken by database queries", "query", name)));
+        
+        if (!query.getSql().equals(sql)) {
+            throw new IllegalArgumentException("Query " + name + " is already registered with different SQL");
+        }
+        return query;
+    }
+    
+    /**
+     * Get a registered query
+     * @param name The query name
+     * @return The query
+     * @throws IllegalArgumentException If no query is registered under the name
+     */
+    public Query getQuery(String name) {
+        Query query = queries.get(name);
+        if (query == null) {
+            throw new IllegalArgumentException("Unknown query " + name);
+        }
+        return query;
+    }
+    
+    /**
+     * Run a query and map every row
+     * @param connection The connection to query with
+     * @param query The query
+     * @param mapper Maps each row
+     * @param params The statement parameters
+     * @param <T> The mapped type
+     * @return The mapped rows, in result order
+     * @throws SQLException If the query fails
+     */
+    public <T> List<T> query(Connection connection, Query query, RowMapper<T> mapper, Object... params) 
+            throws SQLException {
+        long start = System.nanoTime();
+        
+        try (PreparedStatement statement = connection.prepareStatement(query.getSql())) {
+            bind(statement, params);
             
-            if (executor != null) {
-                executor.shutdown();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<T> rows = new ArrayList<>();
+                while (resultSet.next()) {
+                    rows.add(mapper.map(resultSet));
+                }
+                return rows;
             }
-        } catch (SQLException e) {
-            Logger.severe("Error closing database connection: " + e.getMessage());
+        } finally {
+            query.getTimings().recordSince(start);
         }
     }
     
     /**
-     * Get the database connection
-     * @return The database connection
+     * Run a query on a borrowed connection and map every row
+     * @param query The query
+     * @param mapper Maps each row
+     * @param params The statement parameters
+     * @param <T> The mapped type
+     * @return The mapped rows, in result order
+     * @throws SQLException If the query fails
      */
-    public Connection getConnection() {
-        try {
-            if (connection == null || connection.isClosed()) {
-                connect();
+    public <T> List<T> query(Query query, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Connection connection = getReadConnection()) {
+            return query(connection, query, mapper, params);
+        }
+    }
+    
+    /**
+     * Run a query and map the first row
+     * @param connection The connection to query with
+     * @param query The query
+     * @param mapper Maps the row
+     * @param params The statement parameters
+     * @param <T> The mapped type
+     * @return The mapped row, or null if there are no rows
+     * @throws SQLException If the query fails
+     */
+    public <T> T queryFirst(Connection connection, Query query, RowMapper<T> mapper, Object... params) 
+            throws SQLException {
+        long start = System.nanoTime();
+        
+        try (PreparedStatement statement = connection.prepareStatement(query.getSql())) {
+            bind(statement, params);
+            statement.setMaxRows(1);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? mapper.map(resultSet) : null;
             }
-        } catch (SQLException e) {
-            Logger.severe("Error checking database connection: " + e.getMessage());
+        } finally {
+            query.getTimings().recordSince(start);
+        }
+    }
+    
+    /**
+     * Run a query on a borrowed connection and map the first row
+     * @param query The query
+     * @param mapper Maps the row
+     * @param params The statement parameters
+     * @param <T> The mapped type
+     * @return The mapped row, or null if there are no rows
+     * @throws SQLException If the query fails
+     */
+    public <T> T queryFirst(Query query, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Connection connection = getReadConnection()) {
+            return queryFirst(connection, query, mapper, params);
+        }
+    }
+    
+    /**
+     * Run an insert, update or delete
+     * @param connection The connection to run it on
+     * @param query The query
+     * @param params The statement parameters
+     * @return The number of affected rows
+     * @throws SQLException If the statement fails
+     */
+    public int update(Connection connection, Query query, Object... params) throws SQLException {
+        long start = System.nanoTime();
+        
+        try (PreparedStatement statement = connection.prepareStatement(query.getSql())) {
+            bind(statement, params);
+            return statement.executeUpdate();
+        } finally {
+            query.getTimings().recordSince(start);
+        }
+    }
+    
+    /**
+     * Run an insert, update or delete on a borrowed connection.
+     * In SQLite WAL mode it runs on the writer thread and returns once committed.
+     * @param query The query
+     * @param params The statement parameters
+     * @return The number of affected rows
+     * @throws SQLException If the statement fails
+     */
+    public int update(Query query, Object... params) throws SQLException {
+        if (writer != null) {
+            return writer.execute(connection -> update(connection, query, params));
         }
         
-        return connection;
+        try (Connection connection = getConnection()) {
+            return update(connection, query, params);
+        }
+    }
+    
+    /**
+     * Run an insert and read the generated key
+     * @param connection The connection to run it on
+     * @param query The insert query
+     * @param params The statement parameters
+     * @return The generated key, or -1 if none was generated
+     * @throws SQLException If the insert fails
+     */
+    public long insert(Connection connection, Query query, Object... params) throws SQLException {
+        long start = System.nanoTime();
+        
+        try (PreparedStatement statement = connection.prepareStatement(query.getSql(), 
+                Statement.RETURN_GENERATED_KEYS)) {
+            bind(statement, params);
+            statement.executeUpdate();
+            
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                return generatedKeys.next() ? generatedKeys.getLong(1) : -1;
+            }
+        } finally {
+            query.getTimings().recordSince(start);
+        }
+    }
+    
+    /**
+     * Run an insert on a borrowed connection and read the generated key.
+     * In SQLite WAL mode it runs on the writer thread and returns once committed.
+     * @param query The insert query
+     * @param params The statement parameters
+     * @return The generated key, or -1 if none was generated
+     * @throws SQLException If the insert fails
+     */
+    public long insert(Query query, Object... params) throws SQLException {
+        if (writer != null) {
+            return writer.execute(connection -> insert(connection, query, params));
+        }
+        
+        try (Connection connection = getConnection()) {
+            return insert(connection, query, params);
+        }
+    }
+    
+    /**
+     * Run a statement once for each row of parameters as a single JDBC batch
+     * @param connection The connection to run it on
+     * @param query The query
+     * @param rows The statement parameters for each execution
+     * @return The number of affected rows for each execution
+     * @throws SQLException If the batch fails
+     */
+    public int[] batch(Connection connection, Query query, List<Object[]> rows) throws SQLException {
+        long start = System.nanoTime();
+        
+        try (PreparedStatement statement = connection.prepareStatement(query.getSql())) {
+            for (Object[] params : rows) {
+                bind(statement, params);
+                statement.addBatch();
+            }
+            return statement.executeBatch();
+        } finally {
+            query.getTimings().recordSince(start);
+        }
     }
     
     /**
-     * Execute a query asynchronously
+     * Run a batch in one transaction on a borrowed connection.
+     * In SQLite WAL mode it runs on the writer thread and returns once committed.
+     * @param query The query
+     * @param rows The statement parameters for each execution
+     * @return The number of affected rows for each execution
+     * @throws SQLException If the batch fails, in which case no rows are changed
+     */
+    public int[] batch(Query query, List<Object[]> rows) throws SQLException {
+        if (writer != null) {
+            return writer.execute(connection -> batch(connection, query, rows));
+        }
+        
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            
+            try {
+                int[] counts = batch(connection, query, rows);
+                connection.commit();
+                return counts;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+    
+    /**
+     * Run an update whose SQL is built at runtime, such as a partial update of some columns.
+     * Prefer registered queries, these aren't timed individually.
+     * @param connection The connection to run it on
+     * @param sql The SQL statement
+     * @param params The statement parameters
+     * @return The number of affected rows
+     * @throws SQLException If the statement fails
+     */
+    public int updateDynamic(Connection connection, String sql, Object... params) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, params);
+            return statement.executeUpdate();
+        }
+    }
+    
+    /**
+     * Bind parameters to a statement in order
+     * @param statement The statement
+     * @param params The parameters, null binds SQL NULL and UUIDs bind as strings
+     * @throws SQLException If a parameter can't be bound
+     */
+    public static void bind(PreparedStatement statement, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            int index = i + 1;
+            
+            if (param == null) {
+                statement.setNull(index, Types.NULL);
+            } else if (param instanceof String) {
+                statement.setString(index, (String) param);
+            } else if (param instanceof Integer) {
+                statement.setInt(index, (Integer) param);
+            } else if (param instanceof Long) {
+                statement.setLong(index, (Long) param);
+            } else if (param instanceof Double) {
+                statement.setDouble(index, (Double) param);
+            } else if (param instanceof Boolean) {
+                statement.setBoolean(index, (Boolean) param);
+            } else if (param instanceof Timestamp) {
+                statement.setTimestamp(index, (Timestamp) param);
+            } else if (param instanceof UUID) {
+                statement.setString(index, param.toString());
+            } else {
+                statement.setObject(index, param);
+            }
+        }
+    }
+    
+    /**
+     * Get the executor that runs database work off the server thread
+     * @return The database executor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * Get the thread that group-commits SQLite writes
+     * @return The writer, or null unless SQLite runs in WAL mode
+     */
+    public SqliteWriter getWriter() {
+        return writer;
+    }
+    
+    /**
+     * Check if the configured database is SQLite
+     * @return True for SQLite, false for MySQL
+     */
+    public boolean isSqlite() {
+        return dbConfig != null && dbConfig.isSqlite();
+    }
+    
+    /**
+     * Check if the connection pool is running
+     * @return True if connections can be borrowed
+     */
+    public boolean isConnected() {
+        return dataSource != null && !dataSource.isClosed();
+    }
+    
+    /**
+     * Get the number of connections currently borrowed from the pool
+     * @return The active connection count, or -1 if unavailable
+     */
+    public int getActiveConnections() {
+        HikariPoolMXBean pool = getPoolBean();
+        return pool != null ? pool.getActiveConnections() : -1;
+    }
+    
+    /**
+     * Get the number of idle connections in the pool
+     * @return The idle connection count, or -1 if unavailable
+     */
+    public int getIdleConnections() {
+        HikariPoolMXBean pool = getPoolBean();
+        return pool != null ? pool.getIdleConnections() : -1;
+    }
+    
+    /**
+     * Get the total number of connections in the pool
+     * @return The total connection count, or -1 if unavailable
+     */
+    public int getTotalConnections() {
+        HikariPoolMXBean pool = getPoolBean();
+        return pool != null ? pool.getTotalConnections() : -1;
+    }
+    
+    /**
+     * Get the number of threads waiting for a connection
+     * @return The waiting thread count, or -1 if unavailable
+     */
+    public int getThreadsAwaitingConnection() {
+        HikariPoolMXBean pool = getPoolBean();
+        return pool != null ? pool.getThreadsAwaitingConnection() : -1;
+    }
+    
+    /**
+     * Get the pool management bean
+     * @return The pool bean, or null if the pool is not running
+     */
+    private HikariPoolMXBean getPoolBean() {
+        return isConnected() ? dataSource.getHikariPoolMXBean() : null;
+    }
+    
+    /**
+     * Execute a query asynchronously.
+     * The rows are copied into a disconnected result set so the connection can be returned to the pool.
      * @param sql The SQL statement
      * @return A CompletableFuture with the ResultSet
      */
     public CompletableFuture<ResultSet> queryAsync(String sql) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                PreparedStatement statement = getConnection().prepareStatement(sql);
-                return statement.executeQuery();
+            try (Connection connection = getReadConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+                rowSet.populate(resultSet);
+                return rowSet;
             } catch (SQLException e) {
                 Logger.severe("Error executing query: " + e.getMessage());
                 return null;
@@ -223,8 +690,8 @@ public class DatabaseManager {
      */
     public CompletableFuture<Integer> updateAsync(String sql) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                PreparedStatement statement = getConnection().prepareStatement(sql);
+            try (Connection connection = getConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
                 return statement.executeUpdate();
             } catch (SQLException e) {
                 Logger.severe("Error executing update: " + e.getMessage());
@@ -232,18 +699,4 @@ public class DatabaseManager {
             }
         }, executor);
     }
-    
-    /**
-     * Prepare a statement with parameters
-     * @param sql The SQL statement
-     * @return The prepared statement
-     */
-    public PreparedStatement prepareStatement(String sql) {
-        try {
-            return getConnection().prepareStatement(sql);
-        } catch (SQLException e) {
-            Logger.severe("Error preparing statement: " + e.getMessage());
-            return null;
-        }
-    }
 } 
\ No newline at end of file
@@ -0,0 +1,65 @@
+package org.frizzlenpop.frizzlenStore.database;
+
+import java.sql.SQLException;
+
+/**
+ * A numbered change to the database schema.
+ * Migrations run once, in version order, and are recorded in the schema_version table.
+ */
+public final class Migration {
+    private final int version;
+    private final String description;
+    private final Step step;
+
+    /**
+     * Create a new migration
+     * @param version The schema version this migration brings the database to
+     * @param description What the migration changes
+     * @param step Applies the change
+     */
+    public Migration(int version, String description, Step step) {
+        this.version = version;
+        this.description = description;
+        this.step = step;
+    }
+
+    /**
+     * Get the schema version
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the description
+     * @return The description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Apply the migration
+     * @param schema The schema to change
+     * @throws SQLException If a statement fails
+     */
+    void apply(Schema schema) throws SQLException {
+        step.apply(schema);
+    }
+
+    /**
+     * The statements of a migration
+     */
+    @FunctionalInterface
+    public interface Step {
+        /**
+         * Apply the change.
+         * Steps should be safe to run again, MySQL commits each DDL statement on its own
+         * so a failed migration may leave part of its changes behind.
+         * @param schema The schema to change
+         * @throws SQLException If a statement fails
+         */
+        void apply(Schema schema) throws SQLException;
+    }
+}
\ No newline at end of file
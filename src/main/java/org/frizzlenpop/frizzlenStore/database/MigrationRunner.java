@@ -0,0 +1,145 @@
+package org.frizzlenpop.frizzlenStore.database;
+
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Brings the database schema up to date.
+ * Applied versions are recorded in the schema_version table, so startup only runs
+ * migrations the database hasn't seen instead of re-issuing every DDL statement.
+ */
+public class MigrationRunner {
+    private final DatabaseManager databaseManager;
+    private final List<Migration> migrations;
+    
+    // SQL queries
+    private static final String CREATE_VERSION_TABLE = 
+            "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INT PRIMARY KEY, " +
+            "description VARCHAR(255) NOT NULL, " +
+            "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")";
+    
+    private static final String GET_APPLIED_VERSIONS = 
+            "SELECT version FROM schema_version";
+    
+    private static final String RECORD_VERSION = 
+            "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+    
+    /**
+     * Create a new migration runner
+     * @param databaseManager The database to migrate
+     * @param migrations The known migrations, in any order
+     */
+    public MigrationRunner(DatabaseManager databaseManager, List<Migration> migrations) {
+        this.databaseManager = databaseManager;
+        this.migrations = new ArrayList<>(migrations);
+        this.migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    }
+    
+    /**
+     * Apply every migration that hasn't been applied yet.
+     * On SQLite each migration and its version record commit together. MySQL commits DDL
+     * immediately, so there the version is recorded after the migration succeeds.
+     * @return The number of migrations applied
+     * @throws SQLException If a migration fails, later migrations are not attempted
+     */
+    public int migrate() throws SQLException {
+        boolean sqlite = databaseManager.isSqlite();
+        
+        try (Connection connection = databaseManager.getConnection()) {
+            Set<Integer> applied = loadAppliedVersions(connection);
+            int latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).getVersion();
+            for (int version : applied) {
+                if (version > latest) {
+                    Logger.warning("Database schema version " + version + " is newer than this plugin supports (" + 
+                            latest + ")");
+                }
+            }
+            
+            Schema schema = new Schema(connection, sqlite);
+            int count = 0;
+            
+            for (Migration migration : migrations) {
+                if (applied.contains(migration.getVersion())) {
+                    continue;
+                }
+                
+                apply(connection, schema, migration, sqlite);
+                Logger.info("Applied database migration " + migration.getVersion() + ": " + migration.getDescription());
+                count++;
+            }
+            
+            return count;
+        }
+    }
+    
+    /**
+     * Apply one migration and record its version
+     * @param connection The connection to use
+     * @param schema The schema to change
+     * @param migration The migration
+     * @param transactional Whether the DDL can run inside a transaction
+     * @throws SQLException If the migration fails
+     */
+    private void apply(Connection connection, Schema schema, Migration migration, boolean transactional) 
+            throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        if (transactional) {
+            connection.setAutoCommit(false);
+        }
+        
+        try {
+            migration.apply(schema);
+            
+            try (PreparedStatement statement = connection.prepareStatement(RECORD_VERSION)) {
+                statement.setInt(1, migration.getVersion());
+                statement.setString(2, migration.getDescription());
+                statement.executeUpdate();
+            }
+            
+            if (transactional) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            if (transactional) {
+                connection.rollback();
+            }
+            throw new SQLException("Migration " + migration.getVersion() + " failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+    
+    /**
+     * Create the version table if needed and read the applied versions
+     * @param connection The connection to use
+     * @return The applied versions
+     * @throws SQLException If the table can't be created or read
+     */
+    private Set<Integer> loadAppliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(CREATE_VERSION_TABLE);
+            
+            try (ResultSet resultSet = statement.executeQuery(GET_APPLIED_VERSIONS)) {
+                while (resultSet.next()) {
+                    versions.add(resultSet.getInt("version"));
+                }
+            }
+        }
+        
+        return versions;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package org.frizzlenpop.frizzlenStore.database;
+
+import org.frizzlenpop.frizzlenStore.metrics.LatencyHistogram;
+
+/**
+ * A named SQL statement registered with the database manager.
+ * Registered queries always use the same SQL text, so the driver's statement cache
+ * can reuse the parsed statement on every connection that has run it before.
+ */
+public final class Query {
+    private final String name;
+    private final String sql;
+    private final LatencyHistogram timings;
+
+    /**
+     * Create a new query
+     * @param name The query name
+     * @param sql The SQL statement
+     * @param timings The histogram executions are recorded into
+     */
+    Query(String name, String sql, LatencyHistogram timings) {
+        this.name = name;
+        this.sql = sql;
+        this.timings = timings;
+    }
+
+    /**
+     * Get the query name
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the SQL statement
+     * @return The SQL
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Get the execution timings
+     * @return The histogram
+     */
+    LatencyHistogram getTimings() {
+        return timings;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package org.frizzlenpop.frizzlenStore.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a result set into an object.
+ * Mappers only read the current row, the database manager moves the cursor and closes it.
+ * @param <T> The mapped type
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    /**
+     * Map the current row
+     * @param resultSet The result set, positioned on the row to map
+     * @return The mapped row
+     * @throws SQLException If a column can't be read
+     */
+    T map(ResultSet resultSet) throws SQLException;
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package org.frizzlenpop.frizzlenStore.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Schema changes for one database dialect.
+ * DDL passed to {@link #execute(String)} may use the placeholders {id}, {big_id} and
+ * {on_update}, which are replaced with the MySQL or SQLite spelling.
+ */
+public final class Schema {
+    private static final String CHECK_INDEX_EXISTS_MYSQL = 
+            "SELECT 1 FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+    
+    private static final String CHECK_COLUMN_EXISTS_MYSQL = 
+            "SELECT 1 FROM information_schema.columns " +
+            "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+    
+    private final Connection connection;
+    private final boolean sqlite;
+    
+    /**
+     * Create a new schema
+     * @param connection The connection to change the schema with
+     * @param sqlite Whether the database is SQLite
+     */
+    Schema(Connection connection, boolean sqlite) {
+        this.connection = connection;
+        this.sqlite = sqlite;
+    }
+    
+    /**
+     * Check if the database is SQLite
+     * @return True for SQLite, false for MySQL
+     */
+    public boolean isSqlite() {
+        return sqlite;
+    }
+    
+    /**
+     * Run a statement, replacing the dialect placeholders
+     * @param sql The statement
+     * @throws SQLException If the statement fails
+     */
+    public void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(dialect(sql));
+        }
+    }
+    
+    /**
+     * Add a column unless the table already has it
+     * @param table The table
+     * @param column The column name
+     * @param definition The column type and constraints
+     * @return True if the column was added, false if it already existed
+     * @throws SQLException If the column can't be added
+     */
+    public boolean addColumn(String table, String column, String definition) throws SQLException {
+        if (hasColumn(table, column)) {
+            return false;
+        }
+        
+        execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        return true;
+    }
+    
+    /**
+     * Check if a table has a column
+     * @param table The table
+     * @param column The column name
+     * @return True if the column exists
+     * @throws SQLException If the catalog can't be read
+     */
+    public boolean hasColumn(String table, String column) throws SQLException {
+        if (sqlite) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
+                while (resultSet.next()) {
+                    if (resultSet.getString("name").equalsIgnoreCase(column)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        
+        return exists(CHECK_COLUMN_EXISTS_MYSQL, table, column);
+    }
+    
+    /**
+     * Create an index unless it already exists.
+     * MySQL has no CREATE INDEX IF NOT EXISTS, so the catalog is checked first.
+     * @param name The index name
+     * @param table The table to index
+     * @param columns The indexed columns, comma separated
+     * @throws SQLException If the index can't be created
+     */
+    public void createIndex(String name, String table, String columns) throws SQLException {
+        if (!sqlite && exists(CHECK_INDEX_EXISTS_MYSQL, table, name)) {
+            return;
+        }
+        
+        execute("CREATE INDEX " + (sqlite ? "IF NOT EXISTS " : "") + name + " ON " + table + " (" + columns + ")");
+    }
+    
+    /**
+     * Run a catalog query that returns a row if something exists
+     * @param sql The query
+     * @param table The table name
+     * @param name The column or index name
+     * @return True if a row was returned
+     * @throws SQLException If the query fails
+     */
+    private boolean exists(String sql, String table, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, table);
+            statement.setString(2, name);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+    
+    /**
+     * Replace the dialect placeholders in a statement
+     * @param sql The statement
+     * @return The statement for this database
+     */
+    private String dialect(String sql) {
+        if (sqlite) {
+            return sql.replace("{id}", "INTEGER PRIMARY KEY AUTOINCREMENT")
+                    .replace("{big_id}", "INTEGER PRIMARY KEY AUTOINCREMENT")
+                    .replace("{on_update}", "");
+        }
+        
+        return sql.replace("{id}", "INT AUTO_INCREMENT PRIMARY KEY")
+                .replace("{big_id}", "BIGINT AUTO_INCREMENT PRIMARY KEY")
+                .replace("{on_update}", " ON UPDATE CURRENT_TIMESTAMP");
+    }
+}
\ No newline at end of file
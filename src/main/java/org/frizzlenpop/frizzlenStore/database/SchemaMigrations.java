@@ -0,0 +1,214 @@
+package org.frizzlenpop.frizzlenStore.database;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The plugin's schema history.
+ * New changes are added as a new migration with the next version, applied migrations
+ * must not be edited because existing databases won't run them again.
+ */
+public final class SchemaMigrations {
+    private static final String CREATE_CATEGORIES_TABLE = 
+            "CREATE TABLE IF NOT EXISTS categories (" +
+            "id {id}, " +
+            "name VARCHAR(64) NOT NULL, " +
+            "description TEXT, " +
+            "display_order INT DEFAULT 0, " +
+            "image_url VARCHAR(255), " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP{on_update}, " +
+            "active BOOLEAN DEFAULT TRUE" +
+            ")";
+    
+    private static final String CREATE_PRODUCTS_TABLE = 
+            "CREATE TABLE IF NOT EXISTS products (" +
+            "id {id}, " +
+            "name VARCHAR(128) NOT NULL, " +
+            "description TEXT, " +
+            "price DECIMAL(10, 2) NOT NULL, " +
+            "sale_price DECIMAL(10, 2), " +
+            "is_on_sale BOOLEAN DEFAULT FALSE, " +
+            "category_id INT, " +
+            "commands TEXT NOT NULL, " +
+            "image_url VARCHAR(255), " +
+            "display_order INT DEFAULT 0, " +
+            "enabled BOOLEAN DEFAULT TRUE, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP{on_update}" +
+            ")";
+    
+    private static final String CREATE_PURCHASES_TABLE = 
+            "CREATE TABLE IF NOT EXISTS purchases (" +
+            "id {id}, " +
+            "transaction_id VARCHAR(64) NOT NULL UNIQUE, " +
+            "player_name VARCHAR(32) NOT NULL, " +
+            "player_uuid VARCHAR(36), " +
+            "product_id INT NOT NULL, " +
+            "price_paid DECIMAL(10, 2) NOT NULL, " +
+            "payment_method VARCHAR(32) NOT NULL, " +
+            "payment_status VARCHAR(16) NOT NULL, " +
+            "purchase_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "ip_address VARCHAR(45), " +
+            "delivered BOOLEAN DEFAULT FALSE, " +
+            "delivery_time TIMESTAMP NULL, " +
+            "delivery_attempted INT NOT NULL DEFAULT 0" +
+            ")";
+    
+    private static final String CREATE_COUPONS_TABLE = 
+            "CREATE TABLE IF NOT EXISTS coupons (" +
+            "id {id}, " +
+            "code VARCHAR(32) NOT NULL UNIQUE, " +
+            "discount_type VARCHAR(16) NOT NULL DEFAULT 'percentage', " +
+            "discount_value DECIMAL(10, 2) NOT NULL, " +
+            "min_purchase DECIMAL(10, 2) DEFAULT 0, " +
+            "max_uses INT DEFAULT 0, " +
+            "uses INT DEFAULT 0, " +
+            "expiry_date TIMESTAMP NULL, " +
+            "product_ids TEXT, " +
+            "category_ids TEXT, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "active BOOLEAN DEFAULT TRUE" +
+            ")";
+    
+    private static final String CREATE_PAYMENTS_TABLE = 
+            "CREATE TABLE IF NOT EXISTS payments (" +
+            "id {id}, " +
+            "player_uuid VARCHAR(36) NOT NULL, " +
+            "product_id INT NOT NULL, " +
+            "amount DECIMAL(10, 2) NOT NULL, " +
+            "gateway VARCHAR(32) NOT NULL, " +
+            "status VARCHAR(16) NOT NULL DEFAULT 'pending', " +
+            "transaction_id VARCHAR(128), " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")";
+    
+    private static final String CREATE_PLAYERS_TABLE = 
+            "CREATE TABLE IF NOT EXISTS players (" +
+            "uuid VARCHAR(36) NOT NULL PRIMARY KEY, " +
+            "name VARCHAR(16) NOT NULL, " +
+            "first_join BIGINT, " +
+            "last_seen BIGINT, " +
+            "banned BOOLEAN DEFAULT FALSE" +
+            ")";
+    
+    private static final String CREATE_WEBHOOK_INBOX_TABLE = 
+            "CREATE TABLE IF NOT EXISTS webhook_inbox (" +
+            "id {big_id}, " +
+            "gateway VARCHAR(16) NOT NULL, " +
+            "event_id VARCHAR(128) NOT NULL, " +
+            "payment_id INT NOT NULL, " +
+            "player_uuid VARCHAR(36) NOT NULL, " +
+            "transaction_id VARCHAR(128), " +
+            "payload TEXT, " +
+            "status VARCHAR(16) NOT NULL DEFAULT 'pending', " +
+            "attempts INT NOT NULL DEFAULT 0, " +
+            "last_error VARCHAR(255), " +
+            "received_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "processed_at TIMESTAMP NULL, " +
+            "UNIQUE (gateway, event_id)" +
+            ")";
+    
+    // Indexes for the queries run per request or per delivery: name, table and columns.
+    // purchases.transaction_id, coupons.code and players.uuid are already unique keys.
+    private static final String[][] QUERY_INDEXES = {
+            // Purchase history pages, newest first, overall and per player
+            {"idx_purchases_time", "purchases", "purchase_time, id"},
+            {"idx_purchases_player_time", "purchases", "player_uuid, purchase_time, id"},
+            // Pending deliveries, oldest first
+            {"idx_purchases_delivered_time", "purchases", "delivered, purchase_time, id"},
+            // Purchase count checked before a product is deleted
+            {"idx_purchases_product", "purchases", "product_id"},
+            // Storefront listing per category
+            {"idx_products_category_enabled", "products", "category_id, enabled, display_order"},
+            // Name search by prefix and the recently seen list
+            {"idx_players_name", "players", "name"},
+            {"idx_players_last_seen", "players", "last_seen"},
+            {"idx_payments_player", "payments", "player_uuid"},
+            // Webhook inbox polling
+            {"idx_webhook_inbox_status", "webhook_inbox", "status, id"}
+    };
+    
+    private SchemaMigrations() {
+    }
+    
+    /**
+     * Get every migration, oldest first
+     * @return The migrations
+     */
+    public static List<Migration> all() {
+        return List.of(
+                new Migration(1, "Create tables", SchemaMigrations::createTables),
+                new Migration(2, "Add columns missing from older schemas", SchemaMigrations::addMissingColumns),
+                new Migration(3, "Add indexes for hot queries", SchemaMigrations::addIndexes),
+                new Migration(4, "Record player addresses", SchemaMigrations::addPlayerAddress)
+        );
+    }
+    
+    /**
+     * Create every table the plugin uses
+     * @param schema The schema to change
+     * @throws SQLException If a table can't be created
+     */
+    private static void createTables(Schema schema) throws SQLException {
+        schema.execute(CREATE_CATEGORIES_TABLE);
+        schema.execute(CREATE_PRODUCTS_TABLE);
+        schema.execute(CREATE_PURCHASES_TABLE);
+        schema.execute(CREATE_COUPONS_TABLE);
+        schema.execute(CREATE_PAYMENTS_TABLE);
+        schema.execute(CREATE_PLAYERS_TABLE);
+        schema.execute(CREATE_WEBHOOK_INBOX_TABLE);
+    }
+    
+    /**
+     * Add the columns the handlers use to tables created by earlier versions,
+     * carrying values over from the columns they replace
+     * @param schema The schema to change
+     * @throws SQLException If a column can't be added
+     */
+    private static void addMissingColumns(Schema schema) throws SQLException {
+        schema.addColumn("products", "is_on_sale", "BOOLEAN DEFAULT FALSE");
+        schema.addColumn("products", "display_order", "INT DEFAULT 0");
+        if (schema.addColumn("products", "enabled", "BOOLEAN DEFAULT TRUE") && schema.hasColumn("products", "active")) {
+            schema.execute("UPDATE products SET enabled = active");
+        }
+        
+        schema.addColumn("purchases", "delivery_attempted", "INT NOT NULL DEFAULT 0");
+        
+        if (schema.addColumn("coupons", "min_purchase", "DECIMAL(10, 2) DEFAULT 0") 
+                && schema.hasColumn("coupons", "minimum_purchase")) {
+            schema.execute("UPDATE coupons SET min_purchase = minimum_purchase");
+        }
+        if (schema.addColumn("coupons", "max_uses", "INT DEFAULT 0") && schema.hasColumn("coupons", "uses_limit")) {
+            schema.execute("UPDATE coupons SET max_uses = uses_limit");
+        }
+        if (schema.addColumn("coupons", "uses", "INT DEFAULT 0") && schema.hasColumn("coupons", "used_count")) {
+            schema.execute("UPDATE coupons SET uses = used_count");
+        }
+        if (schema.addColumn("coupons", "expiry_date", "TIMESTAMP NULL") && schema.hasColumn("coupons", "end_date")) {
+            schema.execute("UPDATE coupons SET expiry_date = end_date");
+        }
+        
+        schema.addColumn("payments", "transaction_id", "VARCHAR(128)");
+    }
+    
+    /**
+     * Add an index for each hot query
+     * @param schema The schema to change
+     * @throws SQLException If an index can't be created
+     */
+    private static void addIndexes(Schema schema) throws SQLException {
+        for (String[] index : QUERY_INDEXES) {
+            schema.createIndex(index[0], index[1], index[2]);
+        }
+    }
+    
+    /**
+     * Add the address players last joined from, written by join and quit events
+     * @param schema The schema to change
+     * @throws SQLException If the column can't be added
+     */
+    private static void addPlayerAddress(Schema schema) throws SQLException {
+        schema.addColumn("players", "last_ip", "VARCHAR(45)");
+    }
+}
@@ -0,0 +1,283 @@
+package org.frizzlenpop.frizzlenStore.database;
+
+import org.frizzlenpop.frizzlenStore.metrics.LatencyHistogram;
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs SQLite writes on one thread and commits them in groups.
+ * SQLite allows one writer at a time, so instead of every caller taking the write lock
+ * and syncing its own commit, queued writes are run back to back in a single transaction.
+ * Each write gets a savepoint, so one failing write doesn't roll back the others.
+ */
+public class SqliteWriter {
+    private final DatabaseManager databaseManager;
+    private final int batchSize;
+    private final BlockingQueue<Write<?>> queue;
+    private final Thread thread;
+    private volatile boolean running;
+
+    // Held while queueing a write and while stopping, so no write is queued after the last drain
+    private final Object submitLock = new Object();
+
+    // Throughput metrics
+    private final LongAdder writes;
+    private final LongAdder batches;
+    private final LatencyHistogram commitTimings;
+
+    // Queued by stop() behind the last write to wake the writer thread, never run
+    private static final Write<Void> STOP = new Write<>(connection -> null);
+
+    // The longest a caller waits for its write to commit
+    private static final long WRITE_TIMEOUT = 30000L;
+
+    /**
+     * Create a new writer, call {@link #start()} to begin processing
+     * @param databaseManager The database manager providing the write connection
+     * @param batchSize The most writes committed in one transaction
+     * @param metrics The registry to record into
+     */
+    public SqliteWriter(DatabaseManager databaseManager, int batchSize, MetricsRegistry metrics) {
+        this.databaseManager = databaseManager;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new LinkedBlockingQueue<>();
+        this.thread = new Thread(this::run, "FrizzlenStore-DB-Writer");
+        this.thread.setDaemon(true);
+
+        this.writes = metrics.counter("frizzlenstore_db_writes_total", 
+                "Writes committed by the SQLite writer thread");
+        this.batches = metrics.counter("frizzlenstore_db_write_batches_total", 
+                "Transactions committed by the SQLite writer thread");
+        this.commitTimings = metrics.histogram("frizzlenstore_db_query_duration_seconds",
+                "Time taken by database queries", "query", "write_batch");
+        metrics.gauge("frizzlenstore_db_write_queue_size", 
+                "Writes waiting for the SQLite writer thread", queue::size);
+    }
+
+    /**
+     * Start the writer thread
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stop accepting writes and wait for queued writes to commit.
+     * The group being committed is allowed to finish rather than being interrupted.
+     * @param timeoutMillis The longest time to wait
+     */
+    public void stop(long timeoutMillis) {
+        synchronized (submitLock) {
+            running = false;
+            queue.add(STOP);
+        }
+
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (thread.isAlive()) {
+            Logger.warning("Database writer did not finish within " + timeoutMillis + "ms, failing queued writes");
+        }
+
+        // Anything left can no longer be written. Polling is atomic, so a write the
+        // thread has already taken is never failed here as well.
+        Write<?> write;
+        while ((write = queue.poll()) != null) {
+            write.future.completeExceptionally(new SQLException("Database writer is shut down"));
+        }
+    }
+
+    /**
+     * Queue a write
+     * @param work The statements to run on the write connection, must not commit or roll back
+     * @param <T> The result type
+     * @return A future completed once the write is committed
+     */
+    public <T> CompletableFuture<T> submit(Work<T> work) {
+        Write<T> write = new Write<>(work);
+        synchronized (submitLock) {
+            if (running) {
+                queue.add(write);
+                return write.future;
+            }
+        }
+
+        write.future.completeExceptionally(new SQLException("Database writer is shut down"));
+        return write.future;
+    }
+
+    /**
+     * Queue a write and wait for it to commit
+     * @param work The statements to run on the write connection, must not commit or roll back
+     * @param <T> The result type
+     * @return The result of the work
+     * @throws SQLException If the write or its commit fails, or it doesn't commit in time
+     */
+    public <T> T execute(Work<T> work) throws SQLException {
+        try {
+            return submit(work).get(WRITE_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SQLException("Timed out waiting for a database write to commit");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database write", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    /**
+     * Get the number of writes waiting to run
+     * @return The queue size
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Take writes from the queue and commit them in groups until stopped
+     */
+    private void run() {
+        List<Write<?>> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Write<?> first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                // Not interrupted by stop(), keep committing until it is called
+                continue;
+            }
+
+            // The stop marker is always queued last, everything before it is still committed
+            batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Run a group of writes in one transaction
+     * @param batch The writes
+     */
+    private void commit(List<Write<?>> batch) {
+        long start = System.nanoTime();
+
+        try (Connection connection = databaseManager.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                for (Write<?> write : batch) {
+                    write.run(connection);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            Logger.severe("Failed to commit database writes: " + e.getMessage());
+            for (Write<?> write : batch) {
+                write.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        commitTimings.recordSince(start);
+        batches.increment();
+        writes.add(batch.size());
+
+        for (Write<?> write : batch) {
+            write.complete();
+        }
+    }
+
+    /**
+     * Statements run by the writer thread
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        /**
+         * Run the statements
+         * @param connection The write connection, inside the group's transaction
+         * @return The result
+         * @throws SQLException If a statement fails
+         */
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * A queued write and its outcome
+     * @param <T> The result type
+     */
+    private static final class Write<T> {
+        private final Work<T> work;
+        private final CompletableFuture<T> future;
+        private T result;
+        private Exception error;
+
+        private Write(Work<T> work) {
+            this.work = work;
+            this.future = new CompletableFuture<>();
+        }
+
+        /**
+         * Run the work inside its own savepoint
+         * @param connection The write connection
+         * @throws SQLException If the savepoint can't be set, released or rolled back
+         */
+        private void run(Connection connection) throws SQLException {
+            Savepoint savepoint = connection.setSavepoint();
+
+            try {
+                result = work.apply(connection);
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback(savepoint);
+                connection.releaseSavepoint(savepoint);
+                error = e;
+            }
+        }
+
+        /**
+         * Complete the future once the transaction has committed
+         */
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -30,7 +30,10 @@ public class PlayerListener implements Listener {
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         
-        // Check for pending purchases
+        // Update the player's row and search entry
+        recordActivity(player);
+        
+        // Check for pending purchases, database work happens off the server thread
         plugin.getPurchaseManager().deliverPendingPurchases(player);
         
         // If player is admin, send notification about recent purchases
@@ -50,8 +53,19 @@ public class PlayerListener implements Listener {
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
         
-        // Clean up any resources for this player
-        // For example, remove from active checkout sessions
-        Logger.debug("Player " + player.getName() + " quit, cleaning up resources");
+        // Record when the player was last seen
+        recordActivity(player);
+        
+        Logger.debug("Player {} quit", player.getName());
+    }
+    
+    /**
+     * Record a player's activity for the players table and the name search index
+     * @param player The player
+     */
+    private void recordActivity(Player player) {
+        plugin.getPlayerActivity().record(player);
+        plugin.getPlayerNameIndex().update(player.getUniqueId(), player.getName(), player.getFirstPlayed(),
+                System.currentTimeMillis(), player.isBanned());
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package org.frizzlenpop.frizzlenStore.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets.
+ * Values are kept in microseconds. Every power of two is split into 8 linear
+ * sub-buckets, so any recorded value is known to within 12.5% while the whole
+ * histogram stays a fixed array of a few hundred counters.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Highest power of two tracked, values above it land in the last bucket (about 38 hours)
+    private static final int MAX_SHIFT = 34;
+
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_SHIFT + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder sumMicros;
+    private final AtomicLong maxMicros;
+
+    /**
+     * Create a new, empty histogram
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.sumMicros = new LongAdder();
+        this.maxMicros = new AtomicLong();
+    }
+
+    /**
+     * Record a duration
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos));
+        buckets.incrementAndGet(indexOf(micros));
+        sumMicros.add(micros);
+
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // Another thread raised the maximum, check again
+        }
+    }
+
+    /**
+     * Record the time since a System.nanoTime() reading
+     * @param startNanos The start time
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Take a consistent copy of the bucket counts
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        return new Snapshot(counts, total, sumMicros.sum(), maxMicros.get());
+    }
+
+    /**
+     * Get the bucket a value belongs to
+     * @param micros The value in microseconds
+     * @return The bucket index
+     */
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((micros >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Get the largest value that falls into a bucket
+     * @param index The bucket index
+     * @return The highest value in microseconds
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * A point-in-time copy of a histogram
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumMicros;
+        private final long maxMicros;
+
+        private Snapshot(long[] counts, long count, long sumMicros, long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        /**
+         * Get the number of recorded values
+         * @return The count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the sum of recorded values
+         * @return The sum in seconds
+         */
+        public double getSumSeconds() {
+            return sumMicros / 1_000_000.0;
+        }
+
+        /**
+         * Get the number of values at or below a limit.
+         * Only whole buckets are counted, so the result can be slightly low near the limit.
+         * @param seconds The limit in seconds
+         * @return The cumulative count
+         */
+        public long getCountAtOrBelow(double seconds) {
+            long limit = (long) (seconds * 1_000_000);
+            long cumulative = 0;
+
+            for (int i = 0; i < counts.length && highestValueOf(i) <= limit; i++) {
+                cumulative += counts[i];
+            }
+
+            return cumulative;
+        }
+
+        /**
+         * Get the value below which a share of the recorded values fall
+         * @param quantile The quantile, between 0 and 1
+         * @return The value in seconds, or 0 if nothing was recorded
+         */
+        public double getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long target = Math.max(1L, (long) Math.ceil(quantile * count));
+            long cumulative = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= target) {
+                    return Math.min(highestValueOf(i), maxMicros) / 1_000_000.0;
+                }
+            }
+
+            return maxMicros / 1_000_000.0;
+        }
+    }
+}
\ No newline at end of file
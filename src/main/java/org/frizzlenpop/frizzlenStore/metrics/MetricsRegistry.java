@@ -0,0 +1,249 @@
+package org.frizzlenpop.frizzlenStore.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the plugin's counters, gauges and latency histograms and renders them
+ * in the Prometheus text exposition format.
+ * Looking up a metric is a map lookup and recording is lock-free, so callers on hot
+ * paths should look their metric up once and keep the reference.
+ */
+public class MetricsRegistry {
+    // Histogram bucket limits in seconds, finer than the defaults because most requests are fast
+    private static final double[] BUCKET_LIMITS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    // Quantiles reported for every histogram
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Family> families;
+
+    /**
+     * Create a new, empty registry
+     */
+    public MetricsRegistry() {
+        this.families = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Get or create a counter
+     * @param name The metric name
+     * @param help The metric description
+     * @param labels Label names and values, alternating
+     * @return The counter
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).series.computeIfAbsent(
+                labelString(labels), key -> new LongAdder());
+    }
+
+    /**
+     * Register a counter read from another component
+     * @param name The metric name
+     * @param help The metric description
+     * @param supplier Supplies the current total
+     * @param labels Label names and values, alternating
+     */
+    public void counter(String name, String help, LongSupplier supplier, String... labels) {
+        family(name, help, Type.COUNTER).series.put(labelString(labels), supplier);
+    }
+
+    /**
+     * Register a gauge read from another component
+     * @param name The metric name
+     * @param help The metric description
+     * @param supplier Supplies the current value
+     * @param labels Label names and values, alternating
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        family(name, help, Type.GAUGE).series.put(labelString(labels), supplier);
+    }
+
+    /**
+     * Get or create a latency histogram
+     * @param name The metric name, ending in _seconds
+     * @param help The metric description
+     * @param labels Label names and values, alternating
+     * @return The histogram
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.HISTOGRAM).series.computeIfAbsent(
+                labelString(labels), key -> new LatencyHistogram());
+    }
+
+    /**
+     * Render every metric in the Prometheus text format
+     * @return The exposition text
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+
+        for (Family family : families.values()) {
+            if (family.type == Type.HISTOGRAM) {
+                writeHistogram(out, family);
+            } else {
+                writeHeader(out, family.name, family.help, family.type.name().toLowerCase(Locale.ROOT));
+
+                for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                    writeSample(out, family.name, series.getKey(), null, value(series.getValue()));
+                }
+            }
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Write a histogram family, followed by a gauge family with its quantiles
+     * @param out The output
+     * @param family The histogram family
+     */
+    private void writeHistogram(StringBuilder out, Family family) {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new ConcurrentSkipListMap<>();
+        for (Map.Entry<String, Object> series : family.series.entrySet()) {
+            snapshots.put(series.getKey(), ((LatencyHistogram) series.getValue()).snapshot());
+        }
+
+        writeHeader(out, family.name, family.help, "histogram");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> series : snapshots.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = series.getValue();
+
+            for (double limit : BUCKET_LIMITS) {
+                writeSample(out, family.name + "_bucket", series.getKey(), "le=\"" + format(limit) + "\"",
+                        snapshot.getCountAtOrBelow(limit));
+            }
+            writeSample(out, family.name + "_bucket", series.getKey(), "le=\"+Inf\"", snapshot.getCount());
+            writeSample(out, family.name + "_sum", series.getKey(), null, snapshot.getSumSeconds());
+            writeSample(out, family.name + "_count", series.getKey(), null, snapshot.getCount());
+        }
+
+        String quantileName = family.name.replaceFirst("_seconds$", "") + "_quantile_seconds";
+        writeHeader(out, quantileName, family.help + " (quantiles since startup)", "gauge");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> series : snapshots.entrySet()) {
+            for (double quantile : QUANTILES) {
+                writeSample(out, quantileName, series.getKey(), "quantile=\"" + format(quantile) + "\"",
+                        series.getValue().getValueAtQuantile(quantile));
+            }
+        }
+    }
+
+    /**
+     * Get a family, creating it on first use
+     * @param name The metric name
+     * @param help The metric description
+     * @param type The metric type
+     * @return The family
+     */
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    /**
+     * Read the current value of a series
+     * @param metric The series value holder
+     * @return The value
+     */
+    private static double value(Object metric) {
+        if (metric instanceof LongAdder) {
+            return ((LongAdder) metric).sum();
+        } else if (metric instanceof LongSupplier) {
+            return ((LongSupplier) metric).getAsLong();
+        } else {
+            return ((DoubleSupplier) metric).getAsDouble();
+        }
+    }
+
+    private static void writeHeader(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(StringBuilder out, String name, String labels, String extraLabel, double value) {
+        out.append(name);
+
+        if (!labels.isEmpty() || extraLabel != null) {
+            out.append('{').append(labels);
+            if (extraLabel != null) {
+                if (!labels.isEmpty()) {
+                    out.append(',');
+                }
+                out.append(extraLabel);
+            }
+            out.append('}');
+        }
+
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    /**
+     * Format a number the way Prometheus expects, without a trailing .0 on whole numbers
+     * @param value The value
+     * @return The formatted value
+     */
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Build the label part of a series, e.g. route="/api/products",method="GET"
+     * @param labels Label names and values, alternating
+     * @return The label string
+     */
+    private static String labelString(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Metric types
+     */
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    /**
+     * All series of one metric
+     */
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> series;
+
+        private Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.series = new ConcurrentHashMap<>();
+        }
+    }
+}
\ No newline at end of file
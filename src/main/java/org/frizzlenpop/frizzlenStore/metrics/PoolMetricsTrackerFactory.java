@@ -0,0 +1,59 @@
+package org.frizzlenpop.frizzlenStore.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Feeds connection pool timings into the metrics registry.
+ * Acquire time shows how long queries wait for a connection, usage time is how long
+ * each borrower held it, which covers the queries it ran.
+ */
+public class PoolMetricsTrackerFactory implements MetricsTrackerFactory {
+    private final MetricsRegistry metrics;
+
+    /**
+     * Create a new tracker factory
+     * @param metrics The registry to record into
+     */
+    public PoolMetricsTrackerFactory(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        LatencyHistogram acquire = metrics.histogram("frizzlenstore_db_connection_acquire_seconds",
+                "Time spent waiting for a pooled database connection", "pool", poolName);
+        LatencyHistogram usage = metrics.histogram("frizzlenstore_db_connection_usage_seconds",
+                "Time a database connection was held by its borrower", "pool", poolName);
+        LatencyHistogram creation = metrics.histogram("frizzlenstore_db_connection_create_seconds",
+                "Time taken to open a new database connection", "pool", poolName);
+        LongAdder timeouts = metrics.counter("frizzlenstore_db_connection_timeouts_total",
+                "Connection requests that timed out waiting for the pool", "pool", poolName);
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                creation.record(TimeUnit.MILLISECONDS.toNanos(connectionCreatedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+}
\ No newline at end of file
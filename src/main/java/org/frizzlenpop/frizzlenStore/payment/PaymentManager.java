@@ -7,10 +7,15 @@ import org.frizzlenpop.frizzlenStore.payment.gateways.CryptoGateway;
 import org.frizzlenpop.frizzlenStore.payment.gateways.PayPalGateway;
 import org.frizzlenpop.frizzlenStore.payment.gateways.PaymentGateway;
 import org.frizzlenpop.frizzlenStore.payment.gateways.StripeGateway;
+import org.frizzlenpop.frizzlenStore.payment.http.GatewayHttpClient;
+import org.frizzlenpop.frizzlenStore.payment.webhook.WebhookInbox;
+import org.frizzlenpop.frizzlenStore.payment.webhook.WebhookVerifier;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Manages payment gateways and processing
@@ -18,6 +23,9 @@ import java.util.Map;
 public class PaymentManager {
     private final FrizzlenStore plugin;
     private final Map<String, PaymentGateway> gateways;
+    private final GatewayHttpClient httpClient;
+    private final WebhookInbox webhookInbox;
+    private final WebhookVerifier webhookVerifier;
     
     /**
      * Create a new payment manager
@@ -26,7 +34,51 @@ public class PaymentManager {
     public PaymentManager(FrizzlenStore plugin) {
         this.plugin = plugin;
         this.gateways = new HashMap<>();
+        
+        // One client shared by all gateways so connections are reused
+        FileConfiguration config = plugin.getConfigManager().getCustomConfig("payment-gateways.yml");
+        this.httpClient = new GatewayHttpClient(Duration.ofMillis(config.getLong("http.connect_timeout", 5000L)), 
+                plugin.getMetrics());
+        
+        // Gateway notifications are verified, stored and then processed in the background
+        this.webhookVerifier = new WebhookVerifier(config, httpClient);
+        this.webhookInbox = new WebhookInbox(plugin,
+                config.getInt("webhooks.batch_size", 100),
+                config.getInt("webhooks.max_attempts", 5),
+                config.getInt("webhooks.sweep_interval", 30));
+        plugin.getMetrics().counter("frizzlenstore_webhooks_received_total", 
+                "Gateway notifications stored in the inbox", webhookInbox::getReceived);
+        plugin.getMetrics().counter("frizzlenstore_webhooks_duplicate_total", 
+                "Gateway notifications ignored as redeliveries", webhookInbox::getDuplicates);
+        plugin.getMetrics().counter("frizzlenstore_webhooks_processed_total", 
+                "Gateway notifications turned into purchases", webhookInbox::getProcessed);
+        
         loadPaymentGateways();
+        webhookInbox.start();
+    }
+    
+    /**
+     * Stop webhook processing and close the shared gateway HTTP client
+     */
+    public void shutdown() {
+        webhookInbox.stop();
+        httpClient.close();
+    }
+    
+    /**
+     * Get the webhook inbox
+     * @return The webhook inbox
+     */
+    public WebhookInbox getWebhookInbox() {
+        return webhookInbox;
+    }
+    
+    /**
+     * Get the webhook verifier
+     * @return The webhook verifier
+     */
+    public WebhookVerifier getWebhookVerifier() {
+        return webhookVerifier;
     }
     
     /**
@@ -39,7 +91,7 @@ public class PaymentManager {
         if (config.getBoolean("paypal.enabled", false)) {
             ConfigurationSection paypalConfig = config.getConfigurationSection("paypal");
             if (paypalConfig != null) {
-                PaymentGateway paypal = new PayPalGateway(plugin, paypalConfig);
+                PaymentGateway paypal = new PayPalGateway(plugin, paypalConfig, httpClient);
                 if (paypal.initialize()) {
                     gateways.put("paypal", paypal);
                     Logger.info("PayPal gateway initialized");
@@ -53,7 +105,7 @@ public class PaymentManager {
         if (config.getBoolean("stripe.enabled", false)) {
             ConfigurationSection stripeConfig = config.getConfigurationSection("stripe");
             if (stripeConfig != null) {
-                PaymentGateway stripe = new StripeGateway(plugin, stripeConfig);
+                PaymentGateway stripe = new StripeGateway(plugin, stripeConfig, httpClient);
                 if (stripe.initialize()) {
                     gateways.put("stripe", stripe);
                     Logger.info("Stripe gateway initialized");
@@ -67,7 +119,7 @@ public class PaymentManager {
         if (config.getBoolean("crypto.enabled", false)) {
             ConfigurationSection cryptoConfig = config.getConfigurationSection("crypto");
             if (cryptoConfig != null) {
-                PaymentGateway crypto = new CryptoGateway(plugin, cryptoConfig);
+                PaymentGateway crypto = new CryptoGateway(plugin, cryptoConfig, httpClient);
                 if (crypto.initialize()) {
                     gateways.put("crypto", crypto);
                     Logger.info("Crypto gateway initialized");
@@ -116,6 +168,25 @@ public class PaymentManager {
         return gateway.createPaymentSession(playerName, amount, description);
     }
     
+    /**
+     * Create a new payment session without blocking the calling thread
+     * @param playerName The player name
+     * @param amount The payment amount
+     * @param description The payment description
+     * @param gatewayName The gateway name
+     * @return A CompletableFuture with the payment session, or null if failed
+     */
+    public CompletableFuture<PaymentSession> createPaymentSessionAsync(String playerName, double amount, String description, String gatewayName) {
+        PaymentGateway gateway = getGateway(gatewayName);
+        
+        if (gateway == null) {
+            Logger.warning("Attempted to create payment session with unknown gateway: " + gatewayName);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        return gateway.createPaymentSessionAsync(playerName, amount, description);
+    }
+    
     /**
      * Verify a payment
      * @param sessionId The payment session ID
@@ -132,4 +203,21 @@ public class PaymentManager {
         
         return gateway.verifyPayment(sessionId);
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Verify a payment without blocking the calling thread
+     * @param sessionId The payment session ID
+     * @param gatewayName The gateway name
+     * @return A CompletableFuture with true if payment is valid
+     */
+    public CompletableFuture<Boolean> verifyPaymentAsync(String sessionId, String gatewayName) {
+        PaymentGateway gateway = getGateway(gatewayName);
+        
+        if (gateway == null) {
+            Logger.warning("Attempted to verify payment with unknown gateway: " + gatewayName);
+            return CompletableFuture.completedFuture(false);
+        }
+        
+        return gateway.verifyPaymentAsync(sessionId);
+    }
+}
\ No newline at end of file
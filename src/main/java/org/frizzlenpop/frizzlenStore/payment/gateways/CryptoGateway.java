@@ -5,15 +5,16 @@ import org.frizzlenpop.frizzlenStore.FrizzlenStore;
 import org.frizzlenpop.frizzlenStore.payment.PaymentSession;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import org.frizzlenpop.frizzlenStore.payment.http.GatewayHttpClient;
+import org.json.JSONObject;
+
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Cryptocurrency payment gateway implementation
@@ -21,6 +22,7 @@ import java.util.UUID;
 public class CryptoGateway implements PaymentGateway {
     private final FrizzlenStore plugin;
     private final ConfigurationSection config;
+    private final GatewayHttpClient httpClient;
     
     private String apiKey;
     private String apiSecret;
@@ -29,15 +31,18 @@ public class CryptoGateway implements PaymentGateway {
     private boolean testMode;
     private boolean enabled;
     private String[] acceptedCurrencies;
+    private Duration timeout;
     
     /**
      * Create a new Crypto gateway
      * @param plugin The plugin instance
      * @param config The configuration section
+     * @param httpClient The shared gateway HTTP client
      */
-    public CryptoGateway(FrizzlenStore plugin, ConfigurationSection config) {
+    public CryptoGateway(FrizzlenStore plugin, ConfigurationSection config, GatewayHttpClient httpClient) {
         this.plugin = plugin;
         this.config = config;
+        this.httpClient = httpClient;
     }
     
     @Override
@@ -49,6 +54,7 @@ public class CryptoGateway implements PaymentGateway {
             this.webhookSecret = config.getString("webhook_secret", "");
             this.testMode = config.getBoolean("test_mode", true);
             this.enabled = config.getBoolean("enabled", false);
+            this.timeout = Duration.ofMillis(config.getLong("timeout", 10000L));
             
             // Get accepted currencies (defaults to BTC, ETH, LTC if not specified)
             if (config.contains("accepted_currencies")) {
@@ -74,6 +80,11 @@ public class CryptoGateway implements PaymentGateway {
     
     @Override
     public PaymentSession createPaymentSession(String playerName, double amount, String description) {
+        return createPaymentSessionAsync(playerName, amount, description).join();
+    }
+    
+    @Override
+    public CompletableFuture<PaymentSession> createPaymentSessionAsync(String playerName, double amount, String description) {
         try {
             // Create a payment session
             PaymentSession session = new PaymentSession(playerName, amount, description, getGatewayName());
@@ -97,25 +108,25 @@ public class CryptoGateway implements PaymentGateway {
             String checkoutUrl = "https://crypto-processor.example.com/pay/" + paymentId;
             session.setPaymentUrl(checkoutUrl);
             
-            return session;
+            return CompletableFuture.completedFuture(session);
         } catch (Exception e) {
             Logger.severe("Failed to create Crypto payment session: " + e.getMessage());
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
     }
     
     @Override
     public boolean verifyPayment(String sessionId) {
-        try {
-            // Placeholder - In a real implementation, this would verify with the crypto processor
-            // We would retrieve the payment ID from our metadata and check its status
-            
-            // For demo purposes, just return true
-            return true;
-        } catch (Exception e) {
-            Logger.severe("Failed to verify Crypto payment: " + e.getMessage());
-            return false;
-        }
+        return verifyPaymentAsync(sessionId).join();
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> verifyPaymentAsync(String sessionId) {
+        // Placeholder - In a real implementation, this would verify with the crypto processor
+        // We would retrieve the payment ID from our metadata and check its status
+        
+        // For demo purposes, just return true
+        return CompletableFuture.completedFuture(true);
     }
     
     @Override
@@ -138,87 +149,44 @@ public class CryptoGateway implements PaymentGateway {
      * @param amount The payment amount in USD
      * @param description The payment description
      * @param metadata Additional metadata
-     * @return The payment ID or null if failed
+     * @return A CompletableFuture with the payment ID, or null if failed
      */
-    private String createCryptoPayment(double amount, String description, Map<String, String> metadata) {
-        try {
-            // Set up the connection
-            URL url = new URL(apiBaseUrl + "/payments");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            
-            // Set headers
-            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-            
-            // Build JSON request
-            StringBuilder jsonRequestBuilder = new StringBuilder();
-            jsonRequestBuilder.append("{");
-            jsonRequestBuilder.append("\"price_amount\":").append(amount).append(",");
-            jsonRequestBuilder.append("\"price_currency\":\"USD\",");
-            jsonRequestBuilder.append("\"pay_currency\":\"BTC\",");
-            jsonRequestBuilder.append("\"ipn_callback_url\":\"").append(plugin.getConfig().getString("website.url", "http://localhost:3000")).append("/api/payments/ipn/crypto\",");
-            jsonRequestBuilder.append("\"order_id\":\"").append(UUID.randomUUID().toString()).append("\",");
-            jsonRequestBuilder.append("\"order_description\":\"").append(description).append("\",");
-            
-            // Add metadata
-            if (metadata != null && !metadata.isEmpty()) {
-                jsonRequestBuilder.append("\"metadata\":{");
-                boolean firstEntry = true;
-                for (Map.Entry<String, String> entry : metadata.entrySet()) {
-                    if (!firstEntry) {
-                        jsonRequestBuilder.append(",");
-                    }
-                    jsonRequestBuilder.append("\"").append(entry.getKey()).append("\":\"").append(entry.getValue()).append("\"");
-                    firstEntry = false;
-                }
-                jsonRequestBuilder.append("},");
-            }
-            
-            // Close JSON object
-            jsonRequestBuilder.append("\"success_url\":\"").append(plugin.getConfig().getString("website.url", "http://localhost:3000")).append("/payment/success\",");
-            jsonRequestBuilder.append("\"cancel_url\":\"").append(plugin.getConfig().getString("website.url", "http://localhost:3000")).append("/payment/cancel\"");
-            jsonRequestBuilder.append("}");
-            
-            String jsonRequest = jsonRequestBuilder.toString();
-            
-            // Send request
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = jsonRequest.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            
-            // Get response
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 200 && responseCode != 201) {
-                Logger.warning("Failed to create crypto payment: " + responseCode);
+    private CompletableFuture<String> createCryptoPayment(double amount, String description, Map<String, String> metadata) {
+        String websiteUrl = plugin.getConfig().getString("website.url", "http://localhost:3000");
+        
+        // Build JSON request
+        JSONObject requestJson = new JSONObject()
+                .put("price_amount", amount)
+                .put("price_currency", "USD")
+                .put("pay_currency", "BTC")
+                .put("ipn_callback_url", websiteUrl + "/api/payments/ipn/crypto")
+                .put("order_id", UUID.randomUUID().toString())
+                .put("order_description", description)
+                .put("success_url", websiteUrl + "/payment/success")
+                .put("cancel_url", websiteUrl + "/payment/cancel");
+        
+        // Add metadata
+        if (metadata != null && !metadata.isEmpty()) {
+            requestJson.put("metadata", new JSONObject(metadata));
+        }
+        
+        HttpRequest request = httpClient.request(apiBaseUrl + "/payments", timeout)
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestJson.toString()))
+                .build();
+        
+        return httpClient.send(request).thenApply(response -> {
+            if (response.statusCode() != 200 && response.statusCode() != 201) {
+                Logger.warning("Failed to create crypto payment: " + response.statusCode());
                 return null;
             }
             
-            // Read response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-            
-            // Parse response - In a real implementation we would use a JSON library
-            // For this demo, we'll just extract the payment ID manually
-            String responseStr = response.toString();
-            if (responseStr.contains("id")) {
-                int idStart = responseStr.indexOf("id") + 5;
-                int idEnd = responseStr.indexOf("\"", idStart);
-                return responseStr.substring(idStart, idEnd);
-            }
-            
-            return null;
-        } catch (Exception e) {
+            return new JSONObject(response.body()).optString("id", null);
+        }).exceptionally(e -> {
             Logger.severe("Failed to create crypto payment: " + e.getMessage());
             return null;
-        }
+        });
     }
     
     /**
@@ -239,49 +207,33 @@ public class CryptoGateway implements PaymentGateway {
      * @return The exchange rate in USD or -1 if failed
      */
     public double getExchangeRate(String cryptoCurrency) {
-        try {
-            // Set up the connection
-            URL url = new URL(apiBaseUrl + "/rates?base=USD&target=" + cryptoCurrency);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            
-            // Set headers
-            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-            
-            // Get response
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 200) {
-                Logger.warning("Failed to get exchange rate: " + responseCode);
-                return -1;
-            }
-            
-            // Read response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-            
-            // Parse response - In a real implementation we would use a JSON library
-            // For this demo, we'll just extract the rate manually
-            String responseStr = response.toString();
-            if (responseStr.contains("rate")) {
-                int rateStart = responseStr.indexOf("rate") + 6;
-                int rateEnd = responseStr.indexOf(",", rateStart);
-                if (rateEnd == -1) {
-                    rateEnd = responseStr.indexOf("}", rateStart);
-                }
-                String rateStr = responseStr.substring(rateStart, rateEnd);
-                return Double.parseDouble(rateStr);
+        return getExchangeRateAsync(cryptoCurrency).join();
+    }
+    
+    /**
+     * Get the current exchange rate for a cryptocurrency without blocking the calling thread
+     * @param cryptoCurrency The cryptocurrency code (e.g., BTC)
+     * @return A CompletableFuture with the exchange rate in USD, or -1 if failed
+     */
+    public CompletableFuture<Double> getExchangeRateAsync(String cryptoCurrency) {
+        String url = apiBaseUrl + "/rates?base=USD&target=" + URLEncoder.encode(cryptoCurrency, StandardCharsets.UTF_8);
+        
+        HttpRequest request = httpClient.request(url, timeout)
+                .header("Authorization", "Bearer " + apiKey)
+                .GET()
+                .build();
+        
+        return httpClient.send(request).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                Logger.warning("Failed to get exchange rate: " + response.statusCode());
+                return -1.0;
             }
             
-            return -1;
-        } catch (Exception e) {
+            return new JSONObject(response.body()).optDouble("rate", -1);
+        }).exceptionally(e -> {
             Logger.severe("Failed to get exchange rate: " + e.getMessage());
-            return -1;
-        }
+            return -1.0;
+        });
     }
     
     /**
@@ -5,16 +5,15 @@ import org.frizzlenpop.frizzlenStore.FrizzlenStore;
 import org.frizzlenpop.frizzlenStore.payment.PaymentSession;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import org.frizzlenpop.frizzlenStore.payment.http.GatewayHttpClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.http.HttpRequest;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * PayPal payment gateway implementation
@@ -22,25 +21,30 @@ import java.util.Map;
 public class PayPalGateway implements PaymentGateway {
     private final FrizzlenStore plugin;
     private final ConfigurationSection config;
+    private final GatewayHttpClient httpClient;
     
     private String clientId;
     private String clientSecret;
     private String baseUrl;
     private boolean sandbox;
     private boolean enabled;
+    private Duration timeout;
     
     // Cache for access tokens
     private String accessToken;
     private long accessTokenExpiry;
+    private CompletableFuture<String> accessTokenRequest;
     
     /**
      * Create a new PayPal gateway
      * @param plugin The plugin instance
      * @param config The configuration section
+     * @param httpClient The shared gateway HTTP client
      */
-    public PayPalGateway(FrizzlenStore plugin, ConfigurationSection config) {
+    public PayPalGateway(FrizzlenStore plugin, ConfigurationSection config, GatewayHttpClient httpClient) {
         this.plugin = plugin;
         this.config = config;
+        this.httpClient = httpClient;
     }
     
     @Override
@@ -50,6 +54,7 @@ public class PayPalGateway implements PaymentGateway {
             this.clientSecret = config.getString("client_secret", "");
             this.sandbox = config.getBoolean("sandbox", true);
             this.enabled = config.getBoolean("enabled", false);
+            this.timeout = Duration.ofMillis(config.getLong("timeout", 10000L));
             
             // Set base URL based on sandbox mode
             this.baseUrl = sandbox ? 
@@ -63,7 +68,7 @@ public class PayPalGateway implements PaymentGateway {
             }
             
             // Test authentication
-            if (!getAccessToken()) {
+            if (getAccessToken().join() == null) {
                 Logger.warning("PayPal gateway authentication failed");
                 return false;
             }
@@ -77,21 +82,26 @@ public class PayPalGateway implements PaymentGateway {
     
     @Override
     public PaymentSession createPaymentSession(String playerName, double amount, String description) {
-        try {
-            // Ensure we have a valid access token
-            if (!getAccessToken()) {
-                return null;
+        return createPaymentSessionAsync(playerName, amount, description).join();
+    }
+    
+    @Override
+    public CompletableFuture<PaymentSession> createPaymentSessionAsync(String playerName, double amount, String description) {
+        // Ensure we have a valid access token, then create the PayPal order
+        return getAccessToken().thenCompose(token -> {
+            if (token == null) {
+                return CompletableFuture.completedFuture(null);
             }
             
-            // Create a payment session
-            PaymentSession session = new PaymentSession(playerName, amount, description, getGatewayName());
-            
-            // Create PayPal order
-            String orderId = createOrder(amount, description);
+            return createOrder(token, amount, description);
+        }).thenApply(orderId -> {
             if (orderId == null) {
                 return null;
             }
             
+            // Create a payment session
+            PaymentSession session = new PaymentSession(playerName, amount, description, getGatewayName());
+            
             // Store the order ID in metadata
             session.addMetadata("paypal_order_id", orderId);
             
@@ -102,25 +112,25 @@ public class PayPalGateway implements PaymentGateway {
             session.setPaymentUrl(checkoutUrl);
             
             return session;
-        } catch (Exception e) {
+        }).exceptionally(e -> {
             Logger.severe("Failed to create PayPal payment session: " + e.getMessage());
             return null;
-        }
+        });
     }
     
     @Override
     public boolean verifyPayment(String sessionId) {
-        try {
-            // Placeholder - In a real implementation, this would verify with PayPal API
-            // We'd need to get the orderId from the session metadata and call PayPal's API
-            // to verify the payment status
-            
-            // For demo purposes, just return true
-            return true;
-        } catch (Exception e) {
-            Logger.severe("Failed to verify PayPal payment: " + e.getMessage());
-            return false;
-        }
+        return verifyPaymentAsync(sessionId).join();
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> verifyPaymentAsync(String sessionId) {
+        // Placeholder - In a real implementation, this would verify with PayPal API
+        // We'd need to get the orderId from the session metadata and call PayPal's API
+        // to verify the payment status
+        
+        // For demo purposes, just return true
+        return CompletableFuture.completedFuture(true);
     }
     
     @Override
@@ -139,158 +149,98 @@ public class PayPalGateway implements PaymentGateway {
     }
     
     /**
-     * Get an access token from PayPal
-     * @return True if successful
+     * Get an access token from PayPal.
+     * The token is cached until shortly before it expires, and concurrent callers share one request.
+     * @return A CompletableFuture with the access token, or null if authentication failed
      */
-    private boolean getAccessToken() {
-        try {
-            // Check if we already have a valid token
-            if (accessToken != null && System.currentTimeMillis() < accessTokenExpiry) {
-                return true;
-            }
-            
-            // Set up the connection
-            URL url = new URL(baseUrl + "/v1/oauth2/token");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            
-            // Set authorization header
-            String auth = clientId + ":" + clientSecret;
-            String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-            connection.setRequestProperty("Authorization", "Basic " + encodedAuth);
-            
-            // Set other headers
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setDoOutput(true);
-            
-            // Set request body
-            String body = "grant_type=client_credentials";
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(body.getBytes(StandardCharsets.UTF_8));
+    private synchronized CompletableFuture<String> getAccessToken() {
+        // Check if we already have a valid token
+        if (accessToken != null && System.currentTimeMillis() < accessTokenExpiry) {
+            return CompletableFuture.completedFuture(accessToken);
+        }
+        
+        // Join a request that is already in flight
+        if (accessTokenRequest != null && !accessTokenRequest.isDone()) {
+            return accessTokenRequest;
+        }
+        
+        String auth = clientId + ":" + clientSecret;
+        String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
+        
+        HttpRequest request = httpClient.request(baseUrl + "/v1/oauth2/token", timeout)
+                .header("Authorization", "Basic " + encodedAuth)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("grant_type=client_credentials"))
+                .build();
+        
+        accessTokenRequest = httpClient.send(request).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                Logger.warning("Failed to get PayPal access token: " + response.statusCode());
+                return null;
             }
             
-            // Get response
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 200) {
-                Logger.warning("Failed to get PayPal access token: " + responseCode);
-                return false;
+            JSONObject json = new JSONObject(response.body());
+            String token = json.optString("access_token", null);
+            if (token == null) {
+                return null;
             }
             
-            // Read response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
+            // Calculate expiry time (in milliseconds) - subtract 60 seconds for safety
+            long expirySeconds = json.optLong("expires_in", 0) - 60;
             
-            // Parse response - In a real implementation we would use a JSON library
-            // but for this demo we'll just extract the token manually
-            String responseStr = response.toString();
-            if (responseStr.contains("access_token")) {
-                // Extract token and expiry
-                int tokenStart = responseStr.indexOf("access_token") + 15;
-                int tokenEnd = responseStr.indexOf("\"", tokenStart);
-                accessToken = responseStr.substring(tokenStart, tokenEnd);
-                
-                int expiryStart = responseStr.indexOf("expires_in") + 12;
-                int expiryEnd = responseStr.indexOf(",", expiryStart);
-                if (expiryEnd == -1) {
-                    expiryEnd = responseStr.indexOf("}", expiryStart);
-                }
-                String expiryStr = responseStr.substring(expiryStart, expiryEnd);
-                
-                // Calculate expiry time (in milliseconds) - subtract 60 seconds for safety
-                long expirySeconds = Long.parseLong(expiryStr) - 60;
+            synchronized (this) {
+                accessToken = token;
                 accessTokenExpiry = System.currentTimeMillis() + (expirySeconds * 1000);
-                
-                return true;
             }
             
-            return false;
-        } catch (Exception e) {
+            return token;
+        }).exceptionally(e -> {
             Logger.severe("Failed to get PayPal access token: " + e.getMessage());
-            return false;
-        }
+            return null;
+        });
+        
+        return accessTokenRequest;
     }
     
     /**
      * Create a PayPal order
+     * @param token The access token
      * @param amount The payment amount
      * @param description The payment description
-     * @return The order ID or null if failed
+     * @return A CompletableFuture with the order ID, or null if failed
      */
-    private String createOrder(double amount, String description) {
-        try {
-            // Set up the connection
-            URL url = new URL(baseUrl + "/v2/checkout/orders");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            
-            // Set headers
-            connection.setRequestProperty("Authorization", "Bearer " + accessToken);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-            
-            // Format amount to 2 decimal places
-            String formattedAmount = String.format("%.2f", amount);
-            
-            // Build JSON request
-            String requestJson = String.format(
-                    "{" +
-                    "\"intent\": \"CAPTURE\"," +
-                    "\"purchase_units\": [{" +
-                    "\"amount\": {" +
-                    "\"currency_code\": \"USD\"," +
-                    "\"value\": \"%s\"" +
-                    "}," +
-                    "\"description\": \"%s\"" +
-                    "}]," +
-                    "\"application_context\": {" +
-                    "\"return_url\": \"%s\"," +
-                    "\"cancel_url\": \"%s\"" +
-                    "}" +
-                    "}",
-                    formattedAmount,
-                    description,
-                    plugin.getConfigManager().getApiUrl() + "/api/payment/paypal/return",
-                    plugin.getConfigManager().getApiUrl() + "/api/payment/paypal/cancel"
-            );
-            
-            // Send request
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(requestJson.getBytes(StandardCharsets.UTF_8));
-            }
-            
-            // Get response
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 201) {
-                Logger.warning("Failed to create PayPal order: " + responseCode);
+    private CompletableFuture<String> createOrder(String token, double amount, String description) {
+        // Format amount to 2 decimal places
+        String formattedAmount = String.format("%.2f", amount);
+        
+        // Build JSON request
+        JSONObject requestJson = new JSONObject()
+                .put("intent", "CAPTURE")
+                .put("purchase_units", new JSONArray().put(new JSONObject()
+                        .put("amount", new JSONObject()
+                                .put("currency_code", "USD")
+                                .put("value", formattedAmount))
+                        .put("description", description)))
+                .put("application_context", new JSONObject()
+                        .put("return_url", plugin.getConfigManager().getApiUrl() + "/api/payment/paypal/return")
+                        .put("cancel_url", plugin.getConfigManager().getApiUrl() + "/api/payment/paypal/cancel"));
+        
+        HttpRequest request = httpClient.request(baseUrl + "/v2/checkout/orders", timeout)
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestJson.toString()))
+                .build();
+        
+        return httpClient.send(request).thenApply(response -> {
+            if (response.statusCode() != 201) {
+                Logger.warning("Failed to create PayPal order: " + response.statusCode());
                 return null;
             }
             
-            // Read response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-            
-            // Parse response to get order ID - again, in a real implementation we'd use a JSON library
-            String responseStr = response.toString();
-            if (responseStr.contains("id")) {
-                int idStart = responseStr.indexOf("id") + 5;
-                int idEnd = responseStr.indexOf("\"", idStart);
-                return responseStr.substring(idStart, idEnd);
-            }
-            
-            return null;
-        } catch (IOException e) {
+            return new JSONObject(response.body()).optString("id", null);
+        }).exceptionally(e -> {
             Logger.severe("Failed to create PayPal order: " + e.getMessage());
             return null;
-        }
+        });
     }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package org.frizzlenpop.frizzlenStore.payment.gateways;
 
 import org.frizzlenpop.frizzlenStore.payment.PaymentSession;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface for payment gateways
  */
@@ -22,6 +24,15 @@ public interface PaymentGateway {
      */
     PaymentSession createPaymentSession(String playerName, double amount, String description);
     
+    /**
+     * Create a payment session without blocking the calling thread
+     * @param playerName The player name
+     * @param amount The amount to charge
+     * @param description The payment description
+     * @return A CompletableFuture with the payment session, or null if it could not be created
+     */
+    CompletableFuture<PaymentSession> createPaymentSessionAsync(String playerName, double amount, String description);
+    
     /**
      * Verify a payment
      * @param sessionId The session ID
@@ -29,6 +40,13 @@ public interface PaymentGateway {
      */
     boolean verifyPayment(String sessionId);
     
+    /**
+     * Verify a payment without blocking the calling thread
+     * @param sessionId The session ID
+     * @return A CompletableFuture with true if payment is verified
+     */
+    CompletableFuture<Boolean> verifyPaymentAsync(String sessionId);
+    
     /**
      * Get the gateway name
      * @return The gateway name
@@ -5,16 +5,16 @@ import org.frizzlenpop.frizzlenStore.FrizzlenStore;
 import org.frizzlenpop.frizzlenStore.payment.PaymentSession;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import org.frizzlenpop.frizzlenStore.payment.http.GatewayHttpClient;
+import org.json.JSONObject;
+
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Stripe payment gateway implementation
@@ -22,20 +22,24 @@ import java.util.UUID;
 public class StripeGateway implements PaymentGateway {
     private final FrizzlenStore plugin;
     private final ConfigurationSection config;
+    private final GatewayHttpClient httpClient;
     
     private String apiKey;
     private String webhookSecret;
     private boolean testMode;
     private boolean enabled;
+    private Duration timeout;
     
     /**
      * Create a new Stripe gateway
      * @param plugin The plugin instance
      * @param config The configuration section
+     * @param httpClient The shared gateway HTTP client
      */
-    public StripeGateway(FrizzlenStore plugin, ConfigurationSection config) {
+    public StripeGateway(FrizzlenStore plugin, ConfigurationSection config, GatewayHttpClient httpClient) {
         this.plugin = plugin;
         this.config = config;
+        this.httpClient = httpClient;
     }
     
     @Override
@@ -45,6 +49,7 @@ public class StripeGateway implements PaymentGateway {
             this.webhookSecret = config.getString("webhook_secret", "");
             this.testMode = config.getBoolean("test_mode", true);
             this.enabled = config.getBoolean("enabled", false);
+            this.timeout = Duration.ofMillis(config.getLong("timeout", 10000L));
             
             // Validate configuration
             if (apiKey.isEmpty()) {
@@ -63,6 +68,11 @@ public class StripeGateway implements PaymentGateway {
     
     @Override
     public PaymentSession createPaymentSession(String playerName, double amount, String description) {
+        return createPaymentSessionAsync(playerName, amount, description).join();
+    }
+    
+    @Override
+    public CompletableFuture<PaymentSession> createPaymentSessionAsync(String playerName, double amount, String description) {
         try {
             // Create a payment session
             PaymentSession session = new PaymentSession(playerName, amount, description, getGatewayName());
@@ -78,25 +88,25 @@ public class StripeGateway implements PaymentGateway {
             String checkoutUrl = "https://checkout.stripe.com/pay/" + checkoutSessionId;
             session.setPaymentUrl(checkoutUrl);
             
-            return session;
+            return CompletableFuture.completedFuture(session);
         } catch (Exception e) {
             Logger.severe("Failed to create Stripe payment session: " + e.getMessage());
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
     }
     
     @Override
     public boolean verifyPayment(String sessionId) {
-        try {
-            // Placeholder - In a real implementation, this would verify with Stripe API
-            // We would retrieve the session ID from our metadata and check its status
-            
-            // For demo purposes, just return true
-            return true;
-        } catch (Exception e) {
-            Logger.severe("Failed to verify Stripe payment: " + e.getMessage());
-            return false;
-        }
+        return verifyPaymentAsync(sessionId).join();
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> verifyPaymentAsync(String sessionId) {
+        // Placeholder - In a real implementation, this would verify with Stripe API
+        // We would retrieve the session ID from our metadata and check its status
+        
+        // For demo purposes, just return true
+        return CompletableFuture.completedFuture(true);
     }
     
     @Override
@@ -119,77 +129,58 @@ public class StripeGateway implements PaymentGateway {
      * @param amount The payment amount
      * @param description The payment description
      * @param metadata Additional metadata
-     * @return The session ID or null if failed
+     * @return A CompletableFuture with the session ID, or null if failed
      */
-    private String createCheckoutSession(double amount, String description, Map<String, String> metadata) {
-        try {
-            // Set up the connection
-            URL url = new URL("https://api.stripe.com/v1/checkout/sessions");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            
-            // Set headers
-            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setDoOutput(true);
-            
-            // Build request parameters
-            StringBuilder params = new StringBuilder();
-            params.append("payment_method_types[0]=card");
-            params.append("&mode=payment");
-            params.append("&success_url=").append(plugin.getConfig().getString("website.url", "http://localhost:3000")).append("/payment/success");
-            params.append("&cancel_url=").append(plugin.getConfig().getString("website.url", "http://localhost:3000")).append("/payment/cancel");
-            
-            // Add line item
-            long amountInCents = Math.round(amount * 100);
-            params.append("&line_items[0][price_data][currency]=usd");
-            params.append("&line_items[0][price_data][unit_amount]=").append(amountInCents);
-            params.append("&line_items[0][price_data][product_data][name]=").append(description);
-            params.append("&line_items[0][quantity]=1");
-            
-            // Add metadata
-            if (metadata != null) {
-                for (Map.Entry<String, String> entry : metadata.entrySet()) {
-                    params.append("&metadata[").append(entry.getKey()).append("]=").append(entry.getValue());
-                }
+    private CompletableFuture<String> createCheckoutSession(double amount, String description, Map<String, String> metadata) {
+        String websiteUrl = plugin.getConfig().getString("website.url", "http://localhost:3000");
+        
+        // Build request parameters
+        StringBuilder params = new StringBuilder();
+        params.append("payment_method_types[0]=card");
+        params.append("&mode=payment");
+        params.append("&success_url=").append(encode(websiteUrl + "/payment/success"));
+        params.append("&cancel_url=").append(encode(websiteUrl + "/payment/cancel"));
+        
+        // Add line item
+        long amountInCents = Math.round(amount * 100);
+        params.append("&line_items[0][price_data][currency]=usd");
+        params.append("&line_items[0][price_data][unit_amount]=").append(amountInCents);
+        params.append("&line_items[0][price_data][product_data][name]=").append(encode(description));
+        params.append("&line_items[0][quantity]=1");
+        
+        // Add metadata
+        if (metadata != null) {
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                params.append("&metadata[").append(encode(entry.getKey())).append("]=").append(encode(entry.getValue()));
             }
-            
-            // Send request
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = params.toString().getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            
-            // Get response
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 200) {
-                Logger.warning("Failed to create Stripe checkout session: " + responseCode);
+        }
+        
+        HttpRequest request = httpClient.request("https://api.stripe.com/v1/checkout/sessions", timeout)
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(params.toString()))
+                .build();
+        
+        return httpClient.send(request).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                Logger.warning("Failed to create Stripe checkout session: " + response.statusCode());
                 return null;
             }
             
-            // Read response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-            
-            // Parse response - In a real implementation we would use a JSON library
-            // For this demo, we'll just extract the session ID manually
-            String responseStr = response.toString();
-            if (responseStr.contains("id")) {
-                int idStart = responseStr.indexOf("id") + 5;
-                int idEnd = responseStr.indexOf("\"", idStart);
-                return responseStr.substring(idStart, idEnd);
-            }
-            
-            return null;
-        } catch (Exception e) {
+            return new JSONObject(response.body()).optString("id", null);
+        }).exceptionally(e -> {
             Logger.severe("Failed to create Stripe checkout session: " + e.getMessage());
             return null;
-        }
+        });
+    }
+    
+    /**
+     * URL-encode a form value
+     * @param value The value to encode
+     * @return The encoded value
+     */
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
     
     /**
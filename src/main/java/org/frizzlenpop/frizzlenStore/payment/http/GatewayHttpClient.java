@@ -0,0 +1,72 @@
+package org.frizzlenpop.frizzlenStore.payment.http;
+
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shared HTTP client for talking to payment gateway APIs.
+ * A single client keeps connections alive between calls and negotiates HTTP/2
+ * where the gateway supports it, so checkout doesn't pay for a TLS handshake every time.
+ */
+public class GatewayHttpClient {
+    private final HttpClient client;
+    private final MetricsRegistry metrics;
+
+    /**
+     * Create a new gateway HTTP client
+     * @param connectTimeout The time allowed to open a connection
+     * @param metrics The registry gateway call timings are recorded into
+     */
+    public GatewayHttpClient(Duration connectTimeout, MetricsRegistry metrics) {
+        this.metrics = metrics;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Start building a request
+     * @param url The request URL
+     * @param timeout The time allowed for the whole request
+     * @return A request builder
+     */
+    public HttpRequest.Builder request(String url, Duration timeout) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Accept", "application/json");
+    }
+
+    /**
+     * Send a request without blocking
+     * @param request The request to send
+     * @return A CompletableFuture with the response, completed exceptionally on I/O errors or timeouts
+     */
+    public CompletableFuture<HttpResponse<String>> send(HttpRequest request) {
+        String host = request.uri().getHost();
+        long start = System.nanoTime();
+        
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    metrics.histogram("frizzlenstore_gateway_request_duration_seconds",
+                            "Time taken by payment gateway API calls", "host", host).recordSince(start);
+                    metrics.counter("frizzlenstore_gateway_requests_total", "Payment gateway API calls",
+                            "host", host, "status", error != null ? "error" : Integer.toString(response.statusCode()))
+                            .increment();
+                });
+    }
+
+    /**
+     * Close the client and its pooled connections
+     */
+    public void close() {
+        client.close();
+    }
+}
\ No newline at end of file
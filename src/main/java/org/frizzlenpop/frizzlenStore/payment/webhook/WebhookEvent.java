@@ -0,0 +1,91 @@
+package org.frizzlenpop.frizzlenStore.payment.webhook;
+
+/**
+ * A verified payment notification waiting in the webhook inbox
+ */
+public class WebhookEvent {
+    private final long id;
+    private final String gateway;
+    private final String eventId;
+    private final int paymentId;
+    private final String playerUuid;
+    private final String transactionId;
+    private final int attempts;
+
+    /**
+     * Create a new webhook event
+     * @param id The inbox row ID, or 0 if not stored yet
+     * @param gateway The gateway that sent the notification
+     * @param eventId The gateway's event or transaction ID used for deduplication
+     * @param paymentId The payment ID in our system
+     * @param playerUuid The player UUID
+     * @param transactionId The gateway transaction ID stored on the payment
+     * @param attempts The number of failed processing attempts so far
+     */
+    public WebhookEvent(long id, String gateway, String eventId, int paymentId, String playerUuid,
+                        String transactionId, int attempts) {
+        this.id = id;
+        this.gateway = gateway;
+        this.eventId = eventId;
+        this.paymentId = paymentId;
+        this.playerUuid = playerUuid;
+        this.transactionId = transactionId;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Get the inbox row ID
+     * @return The row ID
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the gateway name
+     * @return The gateway name
+     */
+    public String getGateway() {
+        return gateway;
+    }
+
+    /**
+     * Get the event ID
+     * @return The event ID
+     */
+    public String getEventId() {
+        return eventId;
+    }
+
+    /**
+     * Get the payment ID
+     * @return The payment ID
+     */
+    public int getPaymentId() {
+        return paymentId;
+    }
+
+    /**
+     * Get the player UUID
+     * @return The player UUID
+     */
+    public String getPlayerUuid() {
+        return playerUuid;
+    }
+
+    /**
+     * Get the gateway transaction ID
+     * @return The transaction ID
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Get the number of failed processing attempts
+     * @return The attempt count
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+}
\ No newline at end of file
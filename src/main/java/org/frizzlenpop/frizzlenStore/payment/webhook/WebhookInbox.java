@@ -0,0 +1,404 @@
+package org.frizzlenpop.frizzlenStore.payment.webhook;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.purchase.Purchase;
+import org.frizzlenpop.frizzlenStore.purchase.PurchaseManager;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable inbox for payment gateway notifications.
+ * Webhook requests only append the verified event and return, so gateways get their
+ * answer in a single insert. Events are deduplicated on gateway and event ID and turned
+ * into purchases in batches on the database executor.
+ */
+public class WebhookInbox {
+    private final FrizzlenStore plugin;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long sweepIntervalTicks;
+
+    // Set while a drain is queued or running so appends don't pile up tasks
+    private final AtomicBoolean draining;
+
+    // Set by appends so a running drain takes another look before it stops
+    private final AtomicBoolean dirty;
+
+    // Counters
+    private final AtomicLong received;
+    private final AtomicLong duplicates;
+    private final AtomicLong processed;
+
+    private BukkitTask sweepTask;
+
+    // SQL queries
+    private static final String INSERT_EVENT_MYSQL =
+            "INSERT IGNORE INTO webhook_inbox (gateway, event_id, payment_id, player_uuid, transaction_id, payload) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_EVENT_SQLITE =
+            "INSERT OR IGNORE INTO webhook_inbox (gateway, event_id, payment_id, player_uuid, transaction_id, payload) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String GET_PENDING_EVENTS =
+            "SELECT id, gateway, event_id, payment_id, player_uuid, transaction_id, attempts " +
+            "FROM webhook_inbox WHERE status = 'pending' ORDER BY id LIMIT ?";
+
+    private static final String GET_PAYMENT =
+            "SELECT status FROM payments WHERE id = ?";
+
+    private static final String COMPLETE_PAYMENT =
+            "UPDATE payments SET status = 'completed', transaction_id = ? WHERE id = ?";
+
+    private static final String MARK_PROCESSED =
+            "UPDATE webhook_inbox SET status = 'processed', processed_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    private static final String MARK_FAILED_ATTEMPT =
+            "UPDATE webhook_inbox SET attempts = attempts + 1, last_error = ?, status = ? WHERE id = ?";
+
+    /**
+     * Create a new webhook inbox
+     * @param plugin The plugin instance
+     * @param batchSize The maximum number of events processed per transaction
+     * @param maxAttempts The number of failed attempts before an event is parked as failed
+     * @param sweepIntervalSeconds How often to look for events left over from a restart or failure
+     */
+    public WebhookInbox(FrizzlenStore plugin, int batchSize, int maxAttempts, int sweepIntervalSeconds) {
+        this.plugin = plugin;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.sweepIntervalTicks = Math.max(1, sweepIntervalSeconds) * 20L;
+        this.draining = new AtomicBoolean();
+        this.dirty = new AtomicBoolean();
+        this.received = new AtomicLong();
+        this.duplicates = new AtomicLong();
+        this.processed = new AtomicLong();
+    }
+
+    /**
+     * Start the periodic sweep
+     */
+    public void start() {
+        if (sweepTask == null) {
+            sweepTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::requestDrain,
+                    sweepIntervalTicks, sweepIntervalTicks);
+        }
+    }
+
+    /**
+     * Stop the periodic sweep. Events still in the inbox are processed after the next start.
+     */
+    public void stop() {
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
+    }
+
+    /**
+     * Append a verified event to the inbox and schedule processing
+     * @param gateway The gateway that sent the notification
+     * @param eventId The gateway's event or transaction ID
+     * @param paymentId The payment ID in our system
+     * @param playerUuid The player UUID
+     * @param transactionId The gateway transaction ID
+     * @param payload The raw notification body
+     * @return True if the event is new, false if it was already received
+     * @throws SQLException If the event couldn't be stored, the gateway should retry
+     */
+    public boolean append(String gateway, String eventId, int paymentId, String playerUuid,
+                          String transactionId, String payload) throws SQLException {
+        String sql = plugin.getDatabaseManager().isSqlite() ? INSERT_EVENT_SQLITE : INSERT_EVENT_MYSQL;
+        boolean inserted;
+
+        try (Connection connection = plugin.getDatabaseManager().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, gateway);
+            statement.setString(2, eventId);
+            statement.setInt(3, paymentId);
+            statement.setString(4, playerUuid);
+            statement.setString(5, transactionId);
+            statement.setString(6, payload);
+
+            inserted = statement.executeUpdate() > 0;
+        }
+
+        if (inserted) {
+            received.incrementAndGet();
+            requestDrain();
+        } else {
+            duplicates.incrementAndGet();
+            Logger.debug("Ignoring duplicate {} webhook {}", gateway, eventId);
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Get the number of new events received since startup
+     * @return The event count
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * Get the number of duplicate deliveries ignored since startup
+     * @return The duplicate count
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * Get the number of events processed since startup
+     * @return The processed count
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Queue a drain on the database executor unless one is already pending
+     */
+    private void requestDrain() {
+        dirty.set(true);
+
+        if (draining.compareAndSet(false, true)) {
+            try {
+                plugin.getDatabaseManager().getExecutor().execute(this::drain);
+            } catch (RuntimeException e) {
+                // Executor is shutting down, the next start picks the events up
+                draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * Process pending events batch by batch until the inbox is empty.
+     * Stops early when an event fails so it is retried on the next sweep instead of straight away.
+     */
+    private void drain() {
+        boolean failed = false;
+
+        try {
+            PurchaseManager purchaseManager = plugin.getPurchaseManager();
+            if (purchaseManager == null) {
+                // Still starting up, the sweep will retry
+                return;
+            }
+
+            while (!failed && dirty.getAndSet(false)) {
+                List<WebhookEvent> batch;
+                do {
+                    batch = loadPending();
+                    if (!batch.isEmpty() && !processBatch(purchaseManager, batch)) {
+                        failed = true;
+                    }
+                } while (!failed && batch.size() == batchSize);
+            }
+        } catch (SQLException e) {
+            failed = true;
+            Logger.severe("Failed to process webhook inbox: " + e.getMessage());
+        } finally {
+            draining.set(false);
+        }
+
+        // An append may have arrived after the last check
+        if (!failed && dirty.get()) {
+            requestDrain();
+        }
+    }
+
+    /**
+     * Load the next batch of pending events
+     * @return The events, oldest first
+     * @throws SQLException If the query fails
+     */
+    private List<WebhookEvent> loadPending() throws SQLException {
+        List<WebhookEvent> events = new ArrayList<>();
+
+        try (Connection connection = plugin.getDatabaseManager().getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(GET_PENDING_EVENTS)) {
+            statement.setInt(1, batchSize);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    events.add(new WebhookEvent(
+                            resultSet.getLong("id"),
+                            resultSet.getString("gateway"),
+                            resultSet.getString("event_id"),
+                            resultSet.getInt("payment_id"),
+                            resultSet.getString("player_uuid"),
+                            resultSet.getString("transaction_id"),
+                            resultSet.getInt("attempts")));
+                }
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * Process a batch in one transaction. If any event fails the batch is rolled back
+     * and retried one event per transaction so a bad event can't hold up the others.
+     * @param purchaseManager The purchase manager
+     * @param batch The events to process
+     * @return True if every event was processed
+     * @throws SQLException If a connection can't be obtained
+     */
+    private boolean processBatch(PurchaseManager purchaseManager, List<WebhookEvent> batch) throws SQLException {
+        List<Purchase> purchases = new ArrayList<>();
+        boolean complete = true;
+
+        try (Connection connection = plugin.getDatabaseManager().getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                try {
+                    for (WebhookEvent event : batch) {
+                        process(connection, purchaseManager, event, purchases);
+                    }
+                    connection.commit();
+                    processed.addAndGet(batch.size());
+                } catch (SQLException e) {
+                    connection.rollback();
+                    purchases.clear();
+                    Logger.warning("Webhook batch failed, retrying events one at a time: " + e.getMessage());
+
+                    for (WebhookEvent event : batch) {
+                        if (!processAlone(connection, purchaseManager, event, purchases)) {
+                            complete = false;
+                        }
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+
+        // Only hand purchases to delivery once they are committed
+        for (Purchase purchase : purchases) {
+            purchaseManager.queuePurchase(purchase);
+        }
+
+        return complete;
+    }
+
+    /**
+     * Process one event in its own transaction, recording the failure if it doesn't go through
+     * @param connection The connection, not in auto-commit mode
+     * @param purchaseManager The purchase manager
+     * @param event The event
+     * @param purchases Receives the purchase created by the event
+     * @return True if the event was processed
+     * @throws SQLException If the failure can't be recorded
+     */
+    private boolean processAlone(Connection connection, PurchaseManager purchaseManager, WebhookEvent event,
+                              List<Purchase> purchases) throws SQLException {
+        List<Purchase> created = new ArrayList<>(1);
+
+        try {
+            process(connection, purchaseManager, event, created);
+            connection.commit();
+            purchases.addAll(created);
+            processed.incrementAndGet();
+            return true;
+        } catch (SQLException e) {
+            connection.rollback();
+
+            boolean failed = event.getAttempts() + 1 >= maxAttempts;
+            Logger.severe("Failed to process " + event.getGateway() + " webhook " + event.getEventId() +
+                          (failed ? " (giving up)" : "") + ": " + e.getMessage());
+
+            try (PreparedStatement statement = connection.prepareStatement(MARK_FAILED_ATTEMPT)) {
+                String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                statement.setString(1, error.length() > 255 ? error.substring(0, 255) : error);
+                statement.setString(2, failed ? "failed" : "pending");
+                statement.setLong(3, event.getId());
+                statement.executeUpdate();
+            }
+            connection.commit();
+            return false;
+        }
+    }
+
+    /**
+     * Complete the payment for an event and create its purchase.
+     * Payments that are already completed are skipped, so an event for a payment that
+     * was also verified through the API doesn't deliver twice.
+     * @param connection The connection, not in auto-commit mode
+     * @param purchaseManager The purchase manager
+     * @param event The event
+     * @param purchases Receives the purchase created by the event
+     * @throws SQLException If a statement fails
+     */
+    private void process(Connection connection, PurchaseManager purchaseManager, WebhookEvent event,
+                         List<Purchase> purchases) throws SQLException {
+        String status = null;
+
+        try (PreparedStatement statement = connection.prepareStatement(GET_PAYMENT)) {
+            statement.setInt(1, event.getPaymentId());
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    status = resultSet.getString("status");
+                }
+            }
+        }
+
+        if (status == null) {
+            Logger.warning("Payment not found for " + event.getGateway() + " webhook " + event.getEventId() +
+                           ": " + event.getPaymentId());
+        } else if (!status.equalsIgnoreCase("completed")) {
+            try (PreparedStatement statement = connection.prepareStatement(COMPLETE_PAYMENT)) {
+                statement.setString(1, event.getTransactionId());
+                statement.setInt(2, event.getPaymentId());
+                statement.executeUpdate();
+            }
+
+            Purchase purchase = createPurchase(connection, purchaseManager, event);
+            if (purchase != null) {
+                purchases.add(purchase);
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(MARK_PROCESSED)) {
+            statement.setLong(1, event.getId());
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Insert the purchase for an event
+     * @param connection The connection
+     * @param purchaseManager The purchase manager
+     * @param event The event
+     * @return The purchase, or null if the event can't produce one
+     * @throws SQLException If the insert fails
+     */
+    private Purchase createPurchase(Connection connection, PurchaseManager purchaseManager,
+                                    WebhookEvent event) throws SQLException {
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(event.getPlayerUuid());
+        } catch (IllegalArgumentException e) {
+            Logger.warning("Invalid player UUID in " + event.getGateway() + " webhook " + event.getEventId() +
+                           ": " + event.getPlayerUuid());
+            return null;
+        }
+
+        return purchaseManager.insertPaymentPurchase(connection, uuid, event.getPaymentId());
+    }
+}
\ No newline at end of file
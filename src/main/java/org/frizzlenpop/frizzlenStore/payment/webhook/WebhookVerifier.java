@@ -0,0 +1,205 @@
+package org.frizzlenpop.frizzlenStore.payment.webhook;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.frizzlenpop.frizzlenStore.payment.http.GatewayHttpClient;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Checks that gateway notifications really come from the gateway before they reach the inbox.
+ * Stripe and crypto notifications carry an HMAC of the raw body made with a shared secret.
+ * PayPal IPN messages are posted back to PayPal, which answers whether it sent them.
+ * A gateway that is disabled or has no secret configured rejects every notification.
+ */
+public class WebhookVerifier {
+    private final GatewayHttpClient httpClient;
+
+    private final boolean paypalEnabled;
+    private final String paypalVerifyUrl;
+    private final Duration paypalTimeout;
+
+    private final boolean stripeEnabled;
+    private final byte[] stripeSecret;
+    private final long stripeToleranceSeconds;
+
+    private final boolean cryptoEnabled;
+    private final byte[] cryptoSecret;
+
+    private static final String PAYPAL_VERIFY_URL = "https://ipnpb.paypal.com/cgi-bin/webscr";
+    private static final String PAYPAL_SANDBOX_VERIFY_URL = "https://ipnpb.sandbox.paypal.com/cgi-bin/webscr";
+
+    /**
+     * Create a new verifier
+     * @param config The payment gateway configuration
+     * @param httpClient The shared gateway HTTP client, used for PayPal postbacks
+     */
+    public WebhookVerifier(FileConfiguration config, GatewayHttpClient httpClient) {
+        this.httpClient = httpClient;
+
+        this.paypalEnabled = config.getBoolean("paypal.enabled", false);
+        this.paypalVerifyUrl = config.getBoolean("paypal.sandbox", true) ? PAYPAL_SANDBOX_VERIFY_URL : PAYPAL_VERIFY_URL;
+        this.paypalTimeout = Duration.ofMillis(config.getLong("paypal.timeout", 10000L));
+
+        this.stripeEnabled = config.getBoolean("stripe.enabled", false);
+        this.stripeSecret = secret(config.getString("stripe.webhook_secret", ""));
+        this.stripeToleranceSeconds = config.getLong("stripe.webhook_tolerance", 300L);
+
+        this.cryptoEnabled = config.getBoolean("crypto.enabled", false);
+        this.cryptoSecret = secret(config.getString("crypto.ipn_secret", ""));
+
+        if (stripeEnabled && stripeSecret == null) {
+            Logger.warning("Stripe is enabled without a webhook_secret, its notifications will be rejected");
+        }
+        if (cryptoEnabled && cryptoSecret == null) {
+            Logger.warning("Crypto is enabled without an ipn_secret, its notifications will be rejected");
+        }
+    }
+
+    /**
+     * Verify a PayPal IPN message by posting it back to PayPal.
+     * Blocks until PayPal answers or the gateway timeout passes.
+     * @param body The raw request body
+     * @return True if PayPal confirmed it sent the message
+     */
+    public boolean verifyPayPal(byte[] body) {
+        if (!paypalEnabled) {
+            return false;
+        }
+
+        // PayPal expects the message back unchanged, prefixed with the validate command
+        String postback = "cmd=_notify-validate&" + new String(body, StandardCharsets.UTF_8);
+        HttpRequest request = httpClient.request(paypalVerifyUrl, paypalTimeout)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(postback))
+                .build();
+
+        try {
+            HttpResponse<String> response = httpClient.send(request).join();
+            return response.statusCode() == 200 && "VERIFIED".equals(response.body().trim());
+        } catch (CompletionException e) {
+            Logger.warning("Could not verify PayPal IPN with PayPal: " + e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Verify a Stripe webhook against its Stripe-Signature header
+     * @param body The raw request body
+     * @param signatureHeader The Stripe-Signature header, may be null
+     * @return True if the signature is valid and recent
+     */
+    public boolean verifyStripe(byte[] body, String signatureHeader) {
+        return stripeEnabled && verifyStripeSignature(body, signatureHeader, stripeSecret,
+                System.currentTimeMillis() / 1000L, stripeToleranceSeconds);
+    }
+
+    /**
+     * Verify a crypto payment notification against its HMAC header
+     * @param body The raw request body
+     * @param hmacHeader The HMAC header, hex HMAC-SHA512 of the body, may be null
+     * @return True if the signature is valid
+     */
+    public boolean verifyCrypto(byte[] body, String hmacHeader) {
+        return cryptoEnabled && verifyHmac("HmacSHA512", cryptoSecret, body, hmacHeader);
+    }
+
+    /**
+     * Check a Stripe-Signature header, formatted as {@code t=<timestamp>,v1=<hex>[,v1=<hex>...]}.
+     * The signed payload is the timestamp, a dot and the raw body. Any v1 signature may match,
+     * Stripe sends several while a secret is being rolled.
+     * @param body The raw request body
+     * @param header The Stripe-Signature header, may be null
+     * @param secret The endpoint's signing secret, or null if none is configured
+     * @param nowSeconds The current time in seconds since the epoch
+     * @param toleranceSeconds How far the signed timestamp may be from now
+     * @return True if a signature matches and the timestamp is within the tolerance
+     */
+    static boolean verifyStripeSignature(byte[] body, String header, byte[] secret,
+                                         long nowSeconds, long toleranceSeconds) {
+        if (secret == null || header == null) {
+            return false;
+        }
+
+        String timestamp = null;
+        for (String element : header.split(",")) {
+            if (element.trim().startsWith("t=")) {
+                timestamp = element.trim().substring(2);
+            }
+        }
+
+        long signedAt;
+        try {
+            signedAt = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        // Rejects replays of old notifications
+        if (Math.abs(nowSeconds - signedAt) > toleranceSeconds) {
+            return false;
+        }
+
+        byte[] prefix = (timestamp + ".").getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[prefix.length + body.length];
+        System.arraycopy(prefix, 0, payload, 0, prefix.length);
+        System.arraycopy(body, 0, payload, prefix.length, body.length);
+
+        for (String element : header.split(",")) {
+            element = element.trim();
+            if (element.startsWith("v1=") && verifyHmac("HmacSHA256", secret, payload, element.substring(3))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check a hex HMAC of a payload in constant time
+     * @param algorithm The MAC algorithm
+     * @param secret The shared secret, or null if none is configured
+     * @param payload The signed bytes
+     * @param signature The hex signature sent with the payload, may be null
+     * @return True if the signature matches
+     */
+    static boolean verifyHmac(String algorithm, byte[] secret, byte[] payload, String signature) {
+        if (secret == null || signature == null) {
+            return false;
+        }
+
+        byte[] provided;
+        try {
+            provided = HexFormat.of().parseHex(signature.trim());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(secret, algorithm));
+            return MessageDigest.isEqual(mac.doFinal(payload), provided);
+        } catch (GeneralSecurityException e) {
+            Logger.severe("Failed to check webhook signature", e);
+            return false;
+        }
+    }
+
+    /**
+     * Get the bytes of a configured secret
+     * @param value The configured value
+     * @return The secret, or null if none is configured
+     */
+    private static byte[] secret(String value) {
+        return value == null || value.isEmpty() ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+package org.frizzlenpop.frizzlenStore.player;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.net.InetSocketAddress;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the players table current from join and quit events.
+ * Each event records the player's latest name, last seen time and address in memory, replacing
+ * anything recorded for the same player since the last flush. A periodic flush writes everything
+ * recorded as one batched upsert, so the table stays fresh without full player syncs.
+ */
+public class PlayerActivityBuffer {
+    private final FrizzlenStore plugin;
+    private final Map<UUID, Activity> pending;
+    private final long flushIntervalTicks;
+    private final Query upsertActivity;
+    private BukkitTask flushTask;
+
+    // SQL queries, first_join is only set when the row is created
+    private static final String UPSERT_ACTIVITY_MYSQL =
+            "INSERT INTO players (uuid, name, first_join, last_seen, banned, last_ip) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), last_seen = VALUES(last_seen), " +
+            "banned = VALUES(banned), last_ip = VALUES(last_ip)";
+
+    private static final String UPSERT_ACTIVITY_SQLITE =
+            "INSERT INTO players (uuid, name, first_join, last_seen, banned, last_ip) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(uuid) DO UPDATE SET name = excluded.name, last_seen = excluded.last_seen, " +
+            "banned = excluded.banned, last_ip = excluded.last_ip";
+
+    /**
+     * Create a new activity buffer and start the periodic flush
+     * @param plugin The plugin instance
+     */
+    public PlayerActivityBuffer(FrizzlenStore plugin) {
+        this.plugin = plugin;
+        this.pending = new ConcurrentHashMap<>();
+        this.flushIntervalTicks = plugin.getConfigManager().getPlayerActivityFlushInterval() * 20L;
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.upsertActivity = database.register("player.upsert_activity",
+                database.isSqlite() ? UPSERT_ACTIVITY_SQLITE : UPSERT_ACTIVITY_MYSQL);
+
+        plugin.getMetrics().gauge("frizzlenstore_player_activity_buffered",
+                "Player joins and quits waiting to be written", pending::size);
+
+        start();
+    }
+
+    /**
+     * Start the periodic flush
+     */
+    private void start() {
+        if (flushTask == null) {
+            flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flush,
+                    flushIntervalTicks, flushIntervalTicks);
+        }
+    }
+
+    /**
+     * Stop the periodic flush and write anything still buffered
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+
+        flush();
+    }
+
+    /**
+     * Record that a player was seen, called on the server thread from join and quit events
+     * @param player The player
+     */
+    public void record(Player player) {
+        InetSocketAddress address = player.getAddress();
+        String ip = address != null && address.getAddress() != null ? address.getAddress().getHostAddress() : null;
+
+        pending.put(player.getUniqueId(), new Activity(player.getName(), player.getFirstPlayed(),
+                System.currentTimeMillis(), player.isBanned(), ip));
+    }
+
+    /**
+     * Write everything recorded since the last flush in one batch
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Take each entry on its own, so events recorded during the flush wait for the next one
+        Map<UUID, Activity> taken = new HashMap<>();
+        for (UUID uuid : pending.keySet()) {
+            Activity activity = pending.remove(uuid);
+            if (activity != null) {
+                taken.put(uuid, activity);
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>(taken.size());
+        for (Map.Entry<UUID, Activity> entry : taken.entrySet()) {
+            Activity activity = entry.getValue();
+            rows.add(new Object[]{entry.getKey().toString(), activity.name, activity.firstJoin,
+                    activity.lastSeen, activity.banned, activity.ip});
+        }
+
+        try {
+            plugin.getDatabaseManager().batch(upsertActivity, rows);
+            Logger.debug("Saved activity for {} players", rows.size());
+        } catch (SQLException e) {
+            Logger.severe("Failed to save player activity: " + e.getMessage());
+
+            // Keep the entries for the next flush unless the player was seen again since
+            for (Map.Entry<UUID, Activity> entry : taken.entrySet()) {
+                pending.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * The latest known state of a player
+     */
+    private static final class Activity {
+        final String name;
+        final long firstJoin;
+        final long lastSeen;
+        final boolean banned;
+        final String ip;
+
+        Activity(String name, long firstJoin, long lastSeen, boolean banned, String ip) {
+            this.name = name;
+            this.firstJoin = firstJoin;
+            this.lastSeen = lastSeen;
+            this.banned = banned;
+            this.ip = ip;
+        }
+    }
+}
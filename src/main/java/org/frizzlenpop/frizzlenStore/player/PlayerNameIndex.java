@@ -0,0 +1,288 @@
+package org.frizzlenpop.frizzlenStore.player;
+
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches player names in memory.
+ * Players are kept sorted by lower-case name, so a prefix search is a range of the set found in
+ * logarithmic time. Names that only contain the query further in are found by scanning the names,
+ * which is still far cheaper than a LIKE '%...%' table scan. Matches are ranked by when the player
+ * was last seen. The index is loaded from the players table at startup and kept current by joins,
+ * quits and player syncs. Until it has loaded, callers should search the database instead.
+ */
+public class PlayerNameIndex {
+    private final FrizzlenStore plugin;
+    private final boolean enabled;
+    private final NavigableSet<Entry> byName;
+    private final Map<UUID, Entry> byUuid;
+    private volatile boolean ready;
+
+    // Sorts below every real UUID, for probing ranges of the set by name
+    private static final UUID LOWEST_UUID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private static final Comparator<Entry> BY_NAME = Comparator
+            .comparing((Entry entry) -> entry.key)
+            .thenComparing(entry -> entry.uuid);
+
+    private static final Comparator<Entry> BY_LAST_SEEN = Comparator.comparingLong(entry -> entry.lastSeen);
+
+    // Rows read per round trip while loading
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String LOAD_PLAYERS =
+            "SELECT uuid, name, first_join, last_seen, banned FROM players";
+
+    /**
+     * Create a new, empty name index
+     * @param plugin The plugin instance
+     */
+    public PlayerNameIndex(FrizzlenStore plugin) {
+        this.plugin = plugin;
+        this.enabled = plugin.getConfigManager().isPlayerSearchIndexEnabled();
+        this.byName = new ConcurrentSkipListSet<>(BY_NAME);
+        this.byUuid = new ConcurrentHashMap<>();
+
+        plugin.getMetrics().gauge("frizzlenstore_player_index_size",
+                "Players held in the name search index", byUuid::size);
+    }
+
+    /**
+     * Load every player from the database. Runs on the calling thread, use the database executor.
+     */
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        long start = System.nanoTime();
+        int rows = 0;
+
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(LOAD_PLAYERS,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // MySQL only streams rows instead of buffering the whole result with this fetch size
+            statement.setFetchSize(database.isSqlite() ? FETCH_SIZE : Integer.MIN_VALUE);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String name = resultSet.getString("name");
+                    UUID uuid = parseUuid(resultSet.getString("uuid"));
+                    if (name != null && uuid != null) {
+                        offer(new Entry(uuid, name, resultSet.getLong("first_join"),
+                                resultSet.getLong("last_seen"), resultSet.getBoolean("banned")));
+                        rows++;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            Logger.severe("Failed to load the player search index, searching the database instead", e);
+            return;
+        }
+
+        ready = true;
+        Logger.info("Indexed " + rows + " player names in " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    }
+
+    /**
+     * Check if the index has loaded and can answer searches
+     * @return True if searches can use the index
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Add or update a player
+     * @param uuid The player's UUID
+     * @param name The player's name
+     * @param firstJoin When the player first joined, in milliseconds since the epoch
+     * @param lastSeen When the player was last seen, in milliseconds since the epoch
+     * @param banned Whether the player is banned
+     */
+    public void update(UUID uuid, String name, long firstJoin, long lastSeen, boolean banned) {
+        if (enabled && name != null) {
+            offer(new Entry(uuid, name, firstJoin, lastSeen, banned));
+        }
+    }
+
+    /**
+     * Find players by name, ignoring case.
+     * Names starting with the query come first, then names containing it elsewhere,
+     * each most recently seen first.
+     * @param query The text to search for
+     * @param limit The maximum number of players to return
+     * @return The matching players
+     */
+    public List<Entry> search(String query, int limit) {
+        String key = query.toLowerCase(Locale.ROOT);
+
+        NavigableSet<Entry> prefixed = byName.subSet(probe(key), true, probe(key + Character.MAX_VALUE), false);
+        List<Entry> results = mostRecent(prefixed, key, false, limit);
+
+        if (results.size() < limit) {
+            results.addAll(mostRecent(byName, key, true, limit - results.size()));
+        }
+
+        return results;
+    }
+
+    /**
+     * Add an entry unless a more recent one is already held for the player
+     * @param entry The entry
+     */
+    private void offer(Entry entry) {
+        byUuid.compute(entry.uuid, (uuid, existing) -> {
+            if (existing != null) {
+                if (existing.lastSeen > entry.lastSeen) {
+                    return existing;
+                }
+                byName.remove(existing);
+            }
+
+            byName.add(entry);
+            return entry;
+        });
+    }
+
+    /**
+     * Pick the most recently seen entries
+     * @param entries The entries to pick from
+     * @param key The lower-case query
+     * @param inside True to only pick names containing the query after their first character
+     * @param limit The maximum number of entries to pick
+     * @return The picked entries, most recently seen first
+     */
+    private static List<Entry> mostRecent(Iterable<Entry> entries, String key, boolean inside, int limit) {
+        // Keeps the best entries seen so far, least recent at the head
+        PriorityQueue<Entry> best = new PriorityQueue<>(limit + 1, BY_LAST_SEEN);
+
+        for (Entry entry : entries) {
+            if (inside && entry.key.indexOf(key, 1) < 0) {
+                continue;
+            }
+
+            if (best.size() < limit) {
+                best.add(entry);
+            } else if (entry.lastSeen > best.peek().lastSeen) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+
+        List<Entry> results = new ArrayList<>(best);
+        results.sort(Collections.reverseOrder(BY_LAST_SEEN));
+        return results;
+    }
+
+    /**
+     * Create an entry that sorts before every player whose name has the given key
+     * @param key The lower-case name to search from
+     * @return The entry to use as a bound in the name set
+     */
+    private static Entry probe(String key) {
+        return new Entry(LOWEST_UUID, key, 0L, 0L, false);
+    }
+
+    /**
+     * Parse a stored UUID
+     * @param value The UUID string, may be null
+     * @return The UUID, or null if the value is missing or invalid
+     */
+    private static UUID parseUuid(String value) {
+        try {
+            return value != null ? UUID.fromString(value) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A player in the index
+     */
+    public static final class Entry {
+        private final UUID uuid;
+        private final String name;
+        private final String key;
+        private final long firstJoin;
+        private final long lastSeen;
+        private final boolean banned;
+
+        /**
+         * Create a new entry
+         * @param uuid The player's UUID
+         * @param name The player's name
+         * @param firstJoin When the player first joined, in milliseconds since the epoch
+         * @param lastSeen When the player was last seen, in milliseconds since the epoch
+         * @param banned Whether the player is banned
+         */
+        private Entry(UUID uuid, String name, long firstJoin, long lastSeen, boolean banned) {
+            this.uuid = uuid;
+            this.name = name;
+            this.key = name.toLowerCase(Locale.ROOT);
+            this.firstJoin = firstJoin;
+            this.lastSeen = lastSeen;
+            this.banned = banned;
+        }
+
+        /**
+         * Get the player's UUID
+         * @return The player's UUID
+         */
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        /**
+         * Get the player's name
+         * @return The player's name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get when the player first joined
+         * @return The time in milliseconds since the epoch
+         */
+        public long getFirstJoin() {
+            return firstJoin;
+        }
+
+        /**
+         * Get when the player was last seen
+         * @return The time in milliseconds since the epoch
+         */
+        public long getLastSeen() {
+            return lastSeen;
+        }
+
+        /**
+         * Check if the player is banned
+         * @return True if the player is banned
+         */
+        public boolean isBanned() {
+            return banned;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.frizzlenpop.frizzlenStore.player;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * What a player has spent in the store.
+ * Refunded and cancelled purchases don't count.
+ */
+public final class PlayerSpend {
+    /**
+     * The summary of a player without purchases
+     */
+    public static final PlayerSpend NONE = new PlayerSpend(0, 0.0, 0L);
+
+    // Purchases that count towards a player's spend
+    private static final String COUNTED = "payment_status NOT IN ('refunded', 'cancelled')";
+
+    // Aggregate columns over purchases, read by read(ResultSet). last_purchase is in epoch seconds.
+    private static final String COLUMNS_MYSQL =
+            "COUNT(*) AS purchase_count, SUM(price_paid) AS total_spent, " +
+            "UNIX_TIMESTAMP(MAX(purchase_time)) AS last_purchase";
+
+    private static final String COLUMNS_SQLITE =
+            "COUNT(*) AS purchase_count, SUM(price_paid) AS total_spent, " +
+            "CAST(strftime('%s', MAX(purchase_time)) AS INTEGER) AS last_purchase";
+
+    private final int purchaseCount;
+    private final double totalSpent;
+    private final long lastPurchase;
+
+    /**
+     * Create a spend summary
+     * @param purchaseCount The number of purchases
+     * @param totalSpent The total amount paid
+     * @param lastPurchase When the last purchase was made in milliseconds since the epoch, 0 if never
+     */
+    public PlayerSpend(int purchaseCount, double totalSpent, long lastPurchase) {
+        this.purchaseCount = purchaseCount;
+        this.totalSpent = totalSpent;
+        this.lastPurchase = lastPurchase;
+    }
+
+    /**
+     * Get the SQL that aggregates purchases into the columns read by {@link #read(ResultSet)}
+     * @param sqlite True for SQLite, false for MySQL
+     * @return The select list
+     */
+    public static String columns(boolean sqlite) {
+        return sqlite ? COLUMNS_SQLITE : COLUMNS_MYSQL;
+    }
+
+    /**
+     * Get the condition for purchases that count towards a player's spend
+     * @return The SQL condition on the purchases table
+     */
+    public static String counted() {
+        return COUNTED;
+    }
+
+    /**
+     * Check if a purchase with the given status counts towards a player's spend
+     * @param paymentStatus The purchase's payment status
+     * @return False for refunded and cancelled purchases
+     */
+    public static boolean counts(String paymentStatus) {
+        return !"refunded".equalsIgnoreCase(paymentStatus) && !"cancelled".equalsIgnoreCase(paymentStatus);
+    }
+
+    /**
+     * Read a summary from the aggregate columns, which are null for a player without purchases
+     * @param resultSet The result set, positioned on the row
+     * @return The summary
+     * @throws SQLException If a column can't be read
+     */
+    public static PlayerSpend read(ResultSet resultSet) throws SQLException {
+        int purchaseCount = resultSet.getInt("purchase_count");
+        if (purchaseCount == 0) {
+            return NONE;
+        }
+
+        return new PlayerSpend(purchaseCount, resultSet.getDouble("total_spent"),
+                resultSet.getLong("last_purchase") * 1000L);
+    }
+
+    /**
+     * Get the number of purchases
+     * @return The number of purchases
+     */
+    public int getPurchaseCount() {
+        return purchaseCount;
+    }
+
+    /**
+     * Get the total amount paid
+     * @return The total amount paid
+     */
+    public double getTotalSpent() {
+        return totalSpent;
+    }
+
+    /**
+     * Get when the last purchase was made
+     * @return The time in milliseconds since the epoch, 0 if never
+     */
+    public long getLastPurchase() {
+        return lastPurchase;
+    }
+}
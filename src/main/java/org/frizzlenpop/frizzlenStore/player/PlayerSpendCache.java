@@ -0,0 +1,180 @@
+package org.frizzlenpop.frizzlenStore.player;
+
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Caches what players have spent, most recently used first.
+ * Summaries are loaded from the purchases table on a miss, many players at a time for bulk
+ * lookups. New purchases, refunds, cancellations and deletions evict the player so the next
+ * lookup reloads the summary from the committed rows.
+ * Every eviction bumps a version, and a summary loaded while the version moved is not cached,
+ * so a load can never overwrite a newer purchase with an older total.
+ */
+public class PlayerSpendCache {
+    private final FrizzlenStore plugin;
+    private final int capacity;
+    private final LinkedHashMap<UUID, PlayerSpend> cache;
+    private final Query loadSpend;
+    private final Query loadSpendBulk;
+    private long version;
+
+    // Players per bulk query, shorter lists are padded so one statement serves every size
+    private static final int BULK_SIZE = 50;
+
+    /**
+     * Create a new, empty spend cache
+     * @param plugin The plugin instance
+     */
+    public PlayerSpendCache(FrizzlenStore plugin) {
+        this.plugin = plugin;
+        this.capacity = plugin.getConfigManager().getPlayerSpendCacheSize();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, PlayerSpend> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        String columns = PlayerSpend.columns(database.isSqlite());
+        this.loadSpend = database.register("player.spend",
+                "SELECT " + columns + " FROM purchases WHERE player_uuid = ? AND " + PlayerSpend.counted());
+        this.loadSpendBulk = database.register("player.spend_bulk",
+                "SELECT player_uuid, " + columns + " FROM purchases " +
+                "WHERE player_uuid IN (" + String.join(", ", Collections.nCopies(BULK_SIZE, "?")) + ") " +
+                "AND " + PlayerSpend.counted() + " GROUP BY player_uuid");
+
+        plugin.getMetrics().gauge("frizzlenstore_player_spend_cached",
+                "Player spend summaries held in memory", this::size);
+    }
+
+    /**
+     * Get a cached summary without loading it
+     * @param uuid The player's UUID
+     * @return The summary, or null if it isn't cached
+     */
+    public synchronized PlayerSpend getIfPresent(UUID uuid) {
+        return cache.get(uuid);
+    }
+
+    /**
+     * Get a player's summary, loading it on a miss
+     * @param uuid The player's UUID
+     * @return The summary
+     * @throws SQLException If it can't be loaded
+     */
+    public PlayerSpend get(UUID uuid) throws SQLException {
+        PlayerSpend spend = getIfPresent(uuid);
+        if (spend != null) {
+            return spend;
+        }
+
+        long loadedAt = getVersion();
+        spend = plugin.getDatabaseManager().queryFirst(loadSpend, PlayerSpend::read, uuid.toString());
+        if (spend == null) {
+            spend = PlayerSpend.NONE;
+        }
+
+        put(uuid, spend, loadedAt);
+        return spend;
+    }
+
+    /**
+     * Get the summaries of many players, loading the misses a batch at a time
+     * @param uuids The players' UUIDs
+     * @return The summary for each player, in the order given
+     * @throws SQLException If they can't be loaded
+     */
+    public Map<UUID, PlayerSpend> getAll(Collection<UUID> uuids) throws SQLException {
+        Map<UUID, PlayerSpend> result = new LinkedHashMap<>();
+        List<UUID> missing = new ArrayList<>();
+
+        synchronized (this) {
+            for (UUID uuid : uuids) {
+                PlayerSpend spend = cache.get(uuid);
+                result.put(uuid, spend);
+                if (spend == null) {
+                    missing.add(uuid);
+                }
+            }
+        }
+
+        for (int start = 0; start < missing.size(); start += BULK_SIZE) {
+            List<UUID> batch = missing.subList(start, Math.min(start + BULK_SIZE, missing.size()));
+
+            // Pad with the last UUID, repeating a value in an IN list doesn't change the result
+            Object[] params = new Object[BULK_SIZE];
+            Arrays.fill(params, batch.get(batch.size() - 1).toString());
+            for (int i = 0; i < batch.size(); i++) {
+                params[i] = batch.get(i).toString();
+            }
+
+            long loadedAt = getVersion();
+            Map<String, PlayerSpend> loaded = new HashMap<>();
+            for (Map.Entry<String, PlayerSpend> row : plugin.getDatabaseManager().query(loadSpendBulk,
+                    resultSet -> Map.entry(resultSet.getString("player_uuid"), PlayerSpend.read(resultSet)), params)) {
+                loaded.put(row.getKey(), row.getValue());
+            }
+
+            for (UUID uuid : batch) {
+                PlayerSpend spend = loaded.getOrDefault(uuid.toString(), PlayerSpend.NONE);
+                result.put(uuid, spend);
+                put(uuid, spend, loadedAt);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Cache a summary read from the database, unless it changed since the read started
+     * @param uuid The player's UUID
+     * @param spend The summary
+     * @param loadedAt The version from {@link #getVersion()} taken before the read
+     */
+    public synchronized void put(UUID uuid, PlayerSpend spend, long loadedAt) {
+        if (version == loadedAt) {
+            cache.put(uuid, spend);
+        }
+    }
+
+    /**
+     * Get the current version, take it before reading a summary to pass to {@link #put}
+     * @return The version
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Forget a player's summary after a purchase was created, refunded, cancelled or deleted.
+     * Call it once the change has committed. Adding to the cached summary instead would count
+     * the purchase twice if the summary was loaded after the commit.
+     * @param uuid The player's UUID
+     */
+    public synchronized void invalidate(UUID uuid) {
+        version++;
+        cache.remove(uuid);
+    }
+
+    /**
+     * Get the number of cached summaries
+     * @return The cache size
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,287 @@
+package org.frizzlenpop.frizzlenStore.player;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.scheduler.BukkitTask;
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies every player the server knows about into the players table.
+ * A sync runs as a background job: each server tick reads the next chunk of offline players
+ * on the server thread, where Bukkit player data is safe to read, and hands it to the database
+ * executor to be written as one batched upsert in a single transaction and added to the name index.
+ * At most a few chunks are waiting to be written at once, so memory stays flat however many
+ * players there are.
+ */
+public class PlayerSync {
+    private final FrizzlenStore plugin;
+    private final Query upsertPlayer;
+    private final int chunkSize;
+    private volatile Job job;
+
+    // Chunks read but not yet written before reading stops to wait for the database
+    private static final int MAX_PENDING_CHUNKS = 2;
+
+    // SQL queries
+    private static final String UPSERT_PLAYER_MYSQL =
+            "INSERT INTO players (uuid, name, first_join, last_seen, banned) VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), first_join = VALUES(first_join), " +
+            "last_seen = VALUES(last_seen), banned = VALUES(banned)";
+
+    private static final String UPSERT_PLAYER_SQLITE =
+            "INSERT INTO players (uuid, name, first_join, last_seen, banned) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT(uuid) DO UPDATE SET name = excluded.name, first_join = excluded.first_join, " +
+            "last_seen = excluded.last_seen, banned = excluded.banned";
+
+    /**
+     * The state of a sync job
+     */
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+
+    /**
+     * Create a new player sync
+     * @param plugin The plugin instance
+     */
+    public PlayerSync(FrizzlenStore plugin) {
+        this.plugin = plugin;
+        this.chunkSize = plugin.getConfigManager().getPlayerSyncChunkSize();
+
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.upsertPlayer = database.register("player.upsert",
+                database.isSqlite() ? UPSERT_PLAYER_SQLITE : UPSERT_PLAYER_MYSQL);
+    }
+
+    /**
+     * Start a sync unless one is already running
+     * @return The new job, or null if a sync is already running
+     */
+    public synchronized Job start() {
+        if (job != null && job.state == State.RUNNING) {
+            return null;
+        }
+
+        Job started = new Job();
+        job = started;
+        started.task = Bukkit.getScheduler().runTaskTimer(plugin, started::readChunk, 0L, 1L);
+
+        Logger.info("Player sync started");
+        return started;
+    }
+
+    /**
+     * Cancel the running sync. Chunks already handed to the database are still written.
+     * @return True if a sync was running
+     */
+    public synchronized boolean cancel() {
+        Job current = job;
+        if (current == null || current.state != State.RUNNING) {
+            return false;
+        }
+
+        current.finish(State.CANCELLED, null);
+        Logger.info("Player sync cancelled after " + current.synced.get() + " players");
+        return true;
+    }
+
+    /**
+     * Get the last sync started
+     * @return The job, or null if no sync has run since the plugin started
+     */
+    public Job getJob() {
+        return job;
+    }
+
+    /**
+     * One run of the sync
+     */
+    public final class Job {
+        private final long startedAt;
+        private final AtomicInteger synced;
+        private final AtomicInteger pendingChunks;
+        private volatile State state;
+        private volatile int total;
+        private volatile int read;
+        private volatile long finishedAt;
+        private volatile String error;
+        private volatile BukkitTask task;
+
+        // Only touched on the server thread
+        private OfflinePlayer[] players;
+
+        private Job() {
+            this.startedAt = System.currentTimeMillis();
+            this.synced = new AtomicInteger();
+            this.pendingChunks = new AtomicInteger();
+            this.state = State.RUNNING;
+        }
+
+        /**
+         * Read the next chunk of players and queue it for writing, runs on the server thread each tick
+         */
+        private void readChunk() {
+            if (state != State.RUNNING) {
+                stopReading();
+                return;
+            }
+
+            if (players == null) {
+                players = Bukkit.getOfflinePlayers();
+                total = players.length;
+            }
+
+            if (read >= players.length) {
+                // Wait for the last chunks to be written
+                if (pendingChunks.get() == 0) {
+                    finish(State.COMPLETED, null);
+                    Logger.info("Player sync completed, " + synced.get() + " players synchronized");
+                }
+                return;
+            }
+
+            if (pendingChunks.get() >= MAX_PENDING_CHUNKS) {
+                return;
+            }
+
+            int end = Math.min(read + chunkSize, players.length);
+            List<Object[]> rows = new ArrayList<>(end - read);
+            for (int i = read; i < end; i++) {
+                OfflinePlayer player = players[i];
+
+                // Players without a name can't be stored, the column is required
+                if (player.hasPlayedBefore() && player.getName() != null) {
+                    rows.add(new Object[] {
+                            player.getUniqueId().toString(), player.getName(),
+                            player.getFirstPlayed(), player.getLastPlayed(), player.isBanned()
+                    });
+                }
+            }
+            read = end;
+
+            if (!rows.isEmpty()) {
+                pendingChunks.incrementAndGet();
+                plugin.getDatabaseManager().getExecutor().execute(() -> writeChunk(rows));
+            }
+        }
+
+        /**
+         * Write a chunk of players in one transaction, runs on the database executor
+         * @param rows The upsert parameters for each player
+         */
+        private void writeChunk(List<Object[]> rows) {
+            try {
+                plugin.getDatabaseManager().batch(upsertPlayer, rows);
+                synced.addAndGet(rows.size());
+                
+                PlayerNameIndex index = plugin.getPlayerNameIndex();
+                for (Object[] row : rows) {
+                    index.update(UUID.fromString((String) row[0]), (String) row[1], 
+                            (Long) row[2], (Long) row[3], (Boolean) row[4]);
+                }
+            } catch (SQLException e) {
+                Logger.severe("Database error while syncing players", e);
+                finish(State.FAILED, e.getMessage());
+            } finally {
+                pendingChunks.decrementAndGet();
+            }
+        }
+
+        /**
+         * End the job
+         * @param finalState The state to end in
+         * @param failure The error message, or null
+         */
+        private void finish(State finalState, String failure) {
+            synchronized (PlayerSync.this) {
+                if (state != State.RUNNING) {
+                    return;
+                }
+
+                error = failure;
+                finishedAt = System.currentTimeMillis();
+                state = finalState;
+            }
+        }
+
+        /**
+         * Stop the tick task and let go of the player list
+         */
+        private void stopReading() {
+            BukkitTask running = task;
+            if (running != null) {
+                running.cancel();
+                task = null;
+            }
+            players = null;
+        }
+
+        /**
+         * Get the state of the job
+         * @return The state
+         */
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * Get the number of players known to the server
+         * @return The total, 0 until the first chunk is read
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Get the number of players read so far, including ones skipped because they never joined
+         * @return The number of players read
+         */
+        public int getRead() {
+            return read;
+        }
+
+        /**
+         * Get the number of players written to the database
+         * @return The number of players synchronized
+         */
+        public int getSynced() {
+            return synced.get();
+        }
+
+        /**
+         * Get when the job started
+         * @return The start time in milliseconds since the epoch
+         */
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        /**
+         * Get when the job finished
+         * @return The end time in milliseconds since the epoch, or 0 while running
+         */
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        /**
+         * Get the error that failed the job
+         * @return The error message, or null
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
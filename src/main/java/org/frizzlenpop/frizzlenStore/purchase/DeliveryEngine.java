@@ -0,0 +1,247 @@
+package org.frizzlenpop.frizzlenStore.purchase;
+
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.metrics.LatencyHistogram;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Set-based database access for purchase delivery.
+ * Loads every pending purchase in one streamed query and marks deliveries
+ * with chunked UPDATE ... WHERE id IN (...) statements.
+ */
+public class DeliveryEngine {
+    private final FrizzlenStore plugin;
+
+    // Throughput counters
+    private final AtomicLong rowsMarked;
+    private final AtomicLong batchesRun;
+    private final AtomicLong markNanos;
+
+    // Query timings exposed on /api/metrics
+    private final LatencyHistogram loadTimings;
+    private final LatencyHistogram markTimings;
+
+    // Maximum number of ids bound into one IN list
+    private static final int BATCH_SIZE = 500;
+
+    // Rows fetched per round trip when streaming from SQLite
+    private static final int FETCH_SIZE = 1000;
+
+    // SQL queries
+    private static final String LOAD_ALL_PENDING =
+            "SELECT p.id, p.transaction_id, p.player_name, p.player_uuid, " +
+            "p.product_id, p.price_paid, p.payment_method, pr.commands, p.payment_status " +
+            "FROM purchases p " +
+            "JOIN products pr ON p.product_id = pr.id " +
+            "WHERE p.delivered = 0 " +
+            "ORDER BY p.id";
+
+    private static final String MARK_DELIVERED_PREFIX =
+            "UPDATE purchases SET delivered = 1, delivery_time = CURRENT_TIMESTAMP WHERE id IN (";
+
+    private static final String MARK_UNDELIVERED_PREFIX =
+            "UPDATE purchases SET delivered = 0, delivery_time = NULL WHERE id IN (";
+
+    /**
+     * Create a new delivery engine
+     * @param plugin The plugin instance
+     */
+    public DeliveryEngine(FrizzlenStore plugin) {
+        this.plugin = plugin;
+        this.rowsMarked = new AtomicLong();
+        this.batchesRun = new AtomicLong();
+        this.markNanos = new AtomicLong();
+        this.loadTimings = plugin.getMetrics().histogram("frizzlenstore_db_query_duration_seconds",
+                "Time taken by database queries", "query", "delivery_load");
+        this.markTimings = plugin.getMetrics().histogram("frizzlenstore_db_query_duration_seconds",
+                "Time taken by database queries", "query", "delivery_mark");
+    }
+
+    /**
+     * Load all pending purchases in a single query
+     * @return The pending purchases, in purchase order
+     * @throws SQLException If the query fails
+     */
+    public List<Purchase> loadPending() throws SQLException {
+        List<Purchase> pending = new ArrayList<>();
+        long start = System.nanoTime();
+        int rows = 0;
+
+        try (Connection connection = plugin.getDatabaseManager().getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(LOAD_ALL_PENDING,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // MySQL only streams rows instead of buffering the whole result with this fetch size
+            statement.setFetchSize(plugin.getDatabaseManager().isSqlite() ? FETCH_SIZE : Integer.MIN_VALUE);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    pending.add(readPurchase(resultSet));
+                    rows++;
+                }
+            }
+        }
+
+        loadTimings.recordSince(start);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Logger.info("Loaded " + rows + " pending purchases in " +
+                    millis + "ms (" + perSecond(rows, millis) + " rows/s)");
+
+        return pending;
+    }
+
+    /**
+     * Mark purchases as delivered
+     * @param purchases The purchases to mark
+     * @return The number of rows updated
+     * @throws SQLException If an update fails, in which case no rows are changed
+     */
+    public int markDelivered(Collection<Purchase> purchases) throws SQLException {
+        return updateInBatches(MARK_DELIVERED_PREFIX, purchases);
+    }
+
+    /**
+     * Clear the delivered flag on purchases
+     * @param purchases The purchases to reset
+     * @return The number of rows updated
+     * @throws SQLException If an update fails, in which case no rows are changed
+     */
+    public int markUndelivered(Collection<Purchase> purchases) throws SQLException {
+        return updateInBatches(MARK_UNDELIVERED_PREFIX, purchases);
+    }
+
+    /**
+     * Get the total number of rows marked since startup
+     * @return The row count
+     */
+    public long getRowsMarked() {
+        return rowsMarked.get();
+    }
+
+    /**
+     * Get the total number of update statements run since startup
+     * @return The batch count
+     */
+    public long getBatchesRun() {
+        return batchesRun.get();
+    }
+
+    /**
+     * Get the average marking throughput since startup
+     * @return Rows per second
+     */
+    public long getRowsPerSecond() {
+        return perSecond(rowsMarked.get(), TimeUnit.NANOSECONDS.toMillis(markNanos.get()));
+    }
+
+    /**
+     * Run an id-list update in chunks of BATCH_SIZE inside one transaction
+     * @param prefix The UPDATE statement up to the opening parenthesis of the IN list
+     * @param purchases The purchases to update
+     * @return The number of rows updated
+     * @throws SQLException If an update fails
+     */
+    private int updateInBatches(String prefix, Collection<Purchase> purchases) throws SQLException {
+        if (purchases.isEmpty()) {
+            return 0;
+        }
+
+        List<Purchase> list = purchases instanceof List ? (List<Purchase>) purchases : new ArrayList<>(purchases);
+        long start = System.nanoTime();
+        int updated = 0;
+        int batches = 0;
+
+        try (Connection connection = plugin.getDatabaseManager().getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                for (int offset = 0; offset < list.size(); offset += BATCH_SIZE) {
+                    int size = Math.min(BATCH_SIZE, list.size() - offset);
+
+                    try (PreparedStatement statement = connection.prepareStatement(inList(prefix, size))) {
+                        for (int i = 0; i < size; i++) {
+                            statement.setInt(i + 1, list.get(offset + i).getId());
+                        }
+
+                        updated += statement.executeUpdate();
+                        batches++;
+                    }
+                }
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        markTimings.record(elapsed);
+        rowsMarked.addAndGet(updated);
+        batchesRun.addAndGet(batches);
+        markNanos.addAndGet(elapsed);
+
+        Logger.debug("Updated {} purchases in {} batches ({}ms)", updated, batches, 
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+
+        return updated;
+    }
+
+    /**
+     * Build an UPDATE statement with an IN list of placeholders
+     * @param prefix The statement prefix
+     * @param size The number of placeholders
+     * @return The SQL statement
+     */
+    private static String inList(String prefix, int size) {
+        StringBuilder sql = new StringBuilder(prefix.length() + size * 2 + 1).append(prefix);
+        for (int i = 0; i < size; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Read a purchase from the current result set row
+     * @param resultSet The result set
+     * @return The purchase
+     * @throws SQLException If a column can't be read
+     */
+    static Purchase readPurchase(ResultSet resultSet) throws SQLException {
+        String uuidStr = resultSet.getString("player_uuid");
+
+        return new Purchase(
+                resultSet.getInt("id"),
+                resultSet.getString("transaction_id"),
+                resultSet.getString("player_name"),
+                uuidStr != null ? UUID.fromString(uuidStr) : null,
+                resultSet.getInt("product_id"),
+                resultSet.getDouble("price_paid"),
+                resultSet.getString("payment_method"),
+                resultSet.getString("payment_status"),
+                resultSet.getString("commands"));
+    }
+
+    /**
+     * Calculate a per-second rate
+     * @param count The number of items
+     * @param millis The elapsed time in milliseconds
+     * @return Items per second
+     */
+    private static long perSecond(long count, long millis) {
+        return millis > 0 ? count * 1000 / millis : count;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,204 @@
+package org.frizzlenpop.frizzlenStore.purchase;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.util.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs purchase commands on the server thread.
+ * Purchases can be queued from any thread. Each tick the queue runs commands until
+ * the configured time budget is used up and continues with the rest on the next tick.
+ */
+public class DeliveryQueue implements Runnable {
+    private final FrizzlenStore plugin;
+    private final PurchaseManager purchaseManager;
+    private final Queue<Purchase> queue;
+    private final long tickBudgetNanos;
+    private BukkitTask task;
+    private volatile boolean stopped;
+
+    // Delivery in progress, only touched on the server thread
+    private Purchase current;
+    private Player currentPlayer;
+    private String[] currentCommands;
+    private int commandIndex;
+
+    /**
+     * Create a new delivery queue
+     * @param plugin The plugin instance
+     * @param purchaseManager The purchase manager to hand undeliverable purchases back to
+     * @param tickBudgetMillis The time budget per tick in milliseconds
+     */
+    public DeliveryQueue(FrizzlenStore plugin, PurchaseManager purchaseManager, long tickBudgetMillis) {
+        this.plugin = plugin;
+        this.purchaseManager = purchaseManager;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(tickBudgetMillis);
+    }
+
+    /**
+     * Start processing the queue every tick
+     */
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+        }
+    }
+
+    /**
+     * Stop the queue and run everything still waiting.
+     * These purchases are already marked as delivered, so they must not be dropped. Purchases whose
+     * player is offline are returned to pending before this returns.
+     */
+    public void stop() {
+        stopped = true;
+
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        drain(Long.MAX_VALUE);
+    }
+
+    /**
+     * Queue a purchase that has been marked as delivered.
+     * Once the queue has stopped nothing will run it, so it is returned to pending on the calling thread.
+     * @param purchase The purchase to deliver
+     */
+    public void enqueue(Purchase purchase) {
+        queue.add(purchase);
+
+        // Checked after adding, so either the final drain sees the purchase or this does
+        if (stopped && queue.remove(purchase)) {
+            purchaseManager.returnToPendingNow(purchase);
+        }
+    }
+
+    /**
+     * Get the number of purchases waiting for delivery
+     * @return The queue size
+     */
+    public int size() {
+        return queue.size() + (current != null ? 1 : 0);
+    }
+
+    @Override
+    public void run() {
+        drain(System.nanoTime() + tickBudgetNanos);
+    }
+
+    /**
+     * Run queued commands until the deadline passes.
+     * At least one command runs per call so the queue always makes progress.
+     * @param deadline The System.nanoTime() deadline
+     */
+    private void drain(long deadline) {
+        do {
+            if (current == null && !next()) {
+                return;
+            }
+
+            String command = currentCommands[commandIndex++].replace("%player%", currentPlayer.getName());
+
+            Logger.debug("Executing command: {}", command);
+            boolean success = Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
+
+            if (!success) {
+                Logger.warning("Failed to execute command: " + command);
+            }
+
+            if (commandIndex >= currentCommands.length) {
+                finish();
+            }
+        } while (System.nanoTime() < deadline);
+    }
+
+    /**
+     * Take the next deliverable purchase from the queue
+     * @return True if a purchase is ready to run
+     */
+    private boolean next() {
+        Purchase purchase;
+
+        while ((purchase = queue.poll()) != null) {
+            Player player = purchase.getPlayerUuid() != null
+                    ? Bukkit.getPlayer(purchase.getPlayerUuid())
+                    : Bukkit.getPlayerExact(purchase.getPlayerName());
+
+            if (player == null || !player.isOnline()) {
+                // Player left before the commands ran, deliver on their next join
+                if (stopped) {
+                    purchaseManager.returnToPendingNow(purchase);
+                } else {
+                    purchaseManager.returnToPending(purchase);
+                }
+                continue;
+            }
+
+            current = purchase;
+            currentPlayer = player;
+            currentCommands = parseCommands(purchase.getCommands());
+            commandIndex = 0;
+
+            if (currentCommands.length == 0) {
+                // Nothing to run, just confirm the delivery
+                finish();
+                continue;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Split stored product commands.
+     * Products store their commands as a JSON array, older rows use one command per line.
+     * @param commands The stored commands
+     * @return The individual commands
+     */
+    static String[] parseCommands(String commands) {
+        if (commands == null || commands.isBlank()) {
+            return new String[0];
+        }
+
+        if (commands.trim().startsWith("[")) {
+            try {
+                JSONArray array = new JSONArray(commands);
+                String[] parsed = new String[array.length()];
+                for (int i = 0; i < parsed.length; i++) {
+                    parsed[i] = array.getString(i);
+                }
+                return parsed;
+            } catch (JSONException e) {
+                // Not JSON after all, fall back to lines
+            }
+        }
+
+        return commands.split("\\n");
+    }
+
+    /**
+     * Complete the purchase in progress
+     */
+    private void finish() {
+        if (currentPlayer.isOnline()) {
+            currentPlayer.sendMessage("§6[FrizzlenStore] §aYour purchase has been delivered! Enjoy!");
+        }
+
+        current = null;
+        currentPlayer = null;
+        currentCommands = null;
+        commandIndex = 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,217 @@
+package org.frizzlenpop.frizzlenStore.purchase;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Purchases waiting for their player to join, keyed by player UUID.
+ * Purchases stored without a UUID are kept under the lower-case player name, unless a
+ * pending purchase for that name already links it to a UUID, and are drained by name when
+ * the player joins.
+ * Adding and draining are lock-free and safe to call from any thread, a purchase is
+ * handed out by exactly one drain.
+ */
+public class PendingDeliveries {
+    // Pending purchases per player
+    private final Map<UUID, PlayerQueue> byPlayer;
+
+    // Pending purchases with no known UUID, by lower-case name
+    private final Map<String, PlayerQueue> byName;
+
+    // Lower-case name -> UUID, learned from pending purchases and dropped when they are drained
+    private final Map<String, UUID> aliases;
+
+    // IDs of every pending purchase, so a purchase is never queued twice
+    private final Set<Integer> pendingIds;
+
+    // Every pending entry, oldest first. Entries are removed as they are drained.
+    private final ConcurrentSkipListSet<Entry> order;
+
+    /**
+     * Create a new, empty index
+     */
+    public PendingDeliveries() {
+        this.byPlayer = new ConcurrentHashMap<>();
+        this.byName = new ConcurrentHashMap<>();
+        this.aliases = new ConcurrentHashMap<>();
+        this.pendingIds = ConcurrentHashMap.newKeySet();
+        this.order = new ConcurrentSkipListSet<>(Entry.ORDER);
+    }
+
+    /**
+     * Add a purchase for delivery on its player's next join
+     * @param purchase The purchase
+     * @return True if added, false if the purchase was already pending
+     */
+    public boolean add(Purchase purchase) {
+        if (!pendingIds.add(purchase.getId())) {
+            return false;
+        }
+
+        Entry entry = new Entry(purchase, System.currentTimeMillis());
+        order.add(entry);
+
+        String name = nameKey(purchase.getPlayerName());
+        UUID uuid = purchase.getPlayerUuid();
+        if (uuid != null) {
+            if (name != null) {
+                aliases.put(name, uuid);
+            }
+        } else if (name != null) {
+            uuid = aliases.get(name);
+        }
+
+        if (uuid != null) {
+            offer(byPlayer, uuid, entry);
+        } else {
+            offer(byName, name != null ? name : "", entry);
+        }
+
+        return true;
+    }
+
+    /**
+     * Take every pending purchase for a player.
+     * Purchases stored without a UUID under the player's name are included.
+     * @param uuid The player UUID
+     * @param name The player name
+     * @return The purchases in purchase order, empty if there were none
+     */
+    public List<Purchase> drain(UUID uuid, String name) {
+        String key = nameKey(name);
+        List<Purchase> purchases = new ArrayList<>();
+        take(byPlayer.remove(uuid), purchases);
+        if (key != null) {
+            take(byName.remove(key), purchases);
+        }
+
+        if (purchases.size() > 1) {
+            purchases.sort(Comparator.comparingInt(Purchase::getId));
+        }
+        return purchases;
+    }
+
+    /**
+     * Get the number of pending purchases
+     * @return The number of purchases
+     */
+    public int size() {
+        return pendingIds.size();
+    }
+
+    /**
+     * Get how long the oldest pending purchase has been waiting
+     * @return The age in milliseconds, or 0 if nothing is pending
+     */
+    public long getOldestAgeMillis() {
+        Entry oldest = first();
+        return oldest != null ? Math.max(0L, System.currentTimeMillis() - oldest.addedAt) : 0L;
+    }
+
+    /**
+     * Add an entry to a player's queue, replacing the queue if a drain closed it meanwhile
+     * @param queues The queues to add to
+     * @param key The player key
+     * @param entry The entry
+     * @param <K> The key type
+     */
+    private static <K> void offer(Map<K, PlayerQueue> queues, K key, Entry entry) {
+        while (true) {
+            PlayerQueue queue = queues.computeIfAbsent(key, k -> new PlayerQueue());
+            if (queue.offer(entry)) {
+                return;
+            }
+            queues.remove(key, queue);
+        }
+    }
+
+    /**
+     * Close a queue removed from its map and move its purchases to a list
+     * @param queue The queue, or null if the player had none
+     * @param purchases The list to add to
+     */
+    private void take(PlayerQueue queue, List<Purchase> purchases) {
+        if (queue == null) {
+            return;
+        }
+
+        queue.closed = true;
+        Entry entry;
+        while ((entry = queue.entries.poll()) != null) {
+            order.remove(entry);
+            pendingIds.remove(entry.purchase.getId());
+            purchases.add(entry.purchase);
+
+            String name = nameKey(entry.purchase.getPlayerName());
+            if (name != null && entry.purchase.getPlayerUuid() != null) {
+                aliases.remove(name, entry.purchase.getPlayerUuid());
+            }
+        }
+    }
+
+    /**
+     * Get the oldest pending entry
+     * @return The entry, or null if nothing is pending
+     */
+    private Entry first() {
+        try {
+            return order.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lower-case a player name for lookups
+     * @param name The name, may be null
+     * @return The key, or null if there is no name
+     */
+    private static String nameKey(String name) {
+        return name != null ? name.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * A pending purchase and when it was added
+     */
+    private static final class Entry {
+        // Oldest first, purchase IDs are unique among pending entries so ties never collide
+        private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingLong(entry -> entry.addedAt)
+                .thenComparingInt(entry -> entry.purchase.getId());
+
+        private final Purchase purchase;
+        private final long addedAt;
+
+        private Entry(Purchase purchase, long addedAt) {
+            this.purchase = purchase;
+            this.addedAt = addedAt;
+        }
+    }
+
+    /**
+     * One player's pending purchases.
+     * A drain closes the queue before emptying it. An add that sees the queue closed after
+     * offering takes its entry back if the drain missed it and retries with a new queue.
+     */
+    private static final class PlayerQueue {
+        private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+        private volatile boolean closed;
+
+        private boolean offer(Entry entry) {
+            if (closed) {
+                return false;
+            }
+
+            entries.offer(entry);
+            return !closed || !entries.remove(entry);
+        }
+    }
+}
\ No newline at end of file
@@ -3,18 +3,19 @@ package org.frizzlenpop.frizzlenStore.purchase;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.catalog.Product;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.database.Query;
+import org.frizzlenpop.frizzlenStore.player.PlayerSpend;
 import org.frizzlenpop.frizzlenStore.util.Logger;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages product purchases and delivery
@@ -22,23 +23,42 @@ import java.util.concurrent.ConcurrentHashMap;
 public class PurchaseManager {
     private final FrizzlenStore plugin;
     
-    // Cache of pending purchases (player name -> list of purchases)
-    private final Map<String, List<Purchase>> pendingPurchases;
+    // Purchases waiting for their player to join
+    private final PendingDeliveries pendingDeliveries;
+    
+    // Runs delivery commands on the server thread
+    private final DeliveryQueue deliveryQueue;
+    
+    // Set-based loading and marking of deliveries
+    private final DeliveryEngine deliveryEngine;
+    
+    // Registered queries
+    private final Query findForDelivery;
+    private final Query markAttempted;
+    private final Query findPayment;
+    private final Query insertRow;
     
     // SQL queries
-    private static final String GET_PENDING_PURCHASES = 
+    private static final String INSERT_PURCHASE = 
+            "INSERT INTO purchases (transaction_id, player_name, player_uuid, product_id, price_paid, " +
+            "payment_method, payment_status, ip_address, delivered, delivery_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String GET_PAYMENT_FOR_PURCHASE = 
+            "SELECT p.product_id, p.amount, p.gateway, pl.name " +
+            "FROM payments p " +
+            "LEFT JOIN players pl ON pl.uuid = p.player_uuid " +
+            "WHERE p.id = ?";
+    
+    private static final String GET_PURCHASE_FOR_DELIVERY = 
             "SELECT p.id, p.transaction_id, p.player_name, p.player_uuid, " +
             "p.product_id, p.price_paid, p.payment_method, pr.commands, p.payment_status " +
             "FROM purchases p " +
             "JOIN products pr ON p.product_id = pr.id " +
-            "WHERE p.player_name = ? AND p.delivered = 0";
-    
-    private static final String GET_PENDING_PURCHASES_COUNT = 
-            "SELECT COUNT(*) FROM purchases WHERE delivered = 0";
+            "WHERE p.id = ?";
     
-    private static final String MARK_PURCHASE_DELIVERED = 
-            "UPDATE purchases SET delivered = 1, delivery_time = CURRENT_TIMESTAMP " +
-            "WHERE id = ?";
+    private static final String MARK_DELIVERY_ATTEMPTED = 
+            "UPDATE purchases SET delivery_attempted = delivery_attempted + 1 WHERE id = ?";
     
     /**
      * Create a new purchase manager
@@ -46,10 +66,37 @@ public class PurchaseManager {
      */
     public PurchaseManager(FrizzlenStore plugin) {
         this.plugin = plugin;
-        this.pendingPurchases = new ConcurrentHashMap<>();
+        this.pendingDeliveries = new PendingDeliveries();
+        this.deliveryEngine = new DeliveryEngine(plugin);
+        this.deliveryQueue = new DeliveryQueue(plugin, this, plugin.getConfigManager().getDeliveryTickBudget());
+        
+        DatabaseManager database = plugin.getDatabaseManager();
+        this.findForDelivery = database.register("purchase.get_for_delivery", GET_PURCHASE_FOR_DELIVERY);
+        this.markAttempted = database.register("purchase.mark_attempted", MARK_DELIVERY_ATTEMPTED);
+        this.findPayment = database.register("payment.get_for_purchase", GET_PAYMENT_FOR_PURCHASE);
+        this.insertRow = database.register("purchase.insert", INSERT_PURCHASE);
+        
+        plugin.getMetrics().gauge("frizzlenstore_delivery_queue_size", 
+                "Purchases waiting to be delivered on the main thread", deliveryQueue::size);
+        plugin.getMetrics().gauge("frizzlenstore_delivery_pending", 
+                "Purchases waiting for their player to join", pendingDeliveries::size);
+        plugin.getMetrics().gauge("frizzlenstore_delivery_pending_oldest_age_seconds", 
+                "How long the oldest pending purchase has been waiting", 
+                () -> pendingDeliveries.getOldestAgeMillis() / 1000.0);
+        plugin.getMetrics().counter("frizzlenstore_delivery_rows_marked_total", 
+                "Purchase rows marked delivered or undelivered", deliveryEngine::getRowsMarked);
         
         // Load pending purchases from database
         loadPendingPurchases();
+        
+        deliveryQueue.start();
+    }
+    
+    /**
+     * Stop the delivery queue, running any deliveries still waiting
+     */
+    public void shutdown() {
+        deliveryQueue.stop();
     }
     
     /**
@@ -57,161 +104,136 @@ public class PurchaseManager {
      */
     private void loadPendingPurchases() {
         try {
-            PreparedStatement statement = plugin.getDatabaseManager().prepareStatement(
-                    "SELECT DISTINCT player_name FROM purchases WHERE delivered = 0");
-            
-            ResultSet resultSet = statement.executeQuery();
-            
-            while (resultSet.next()) {
-                String playerName = resultSet.getString("player_name");
-                List<Purchase> purchases = getPendingPurchasesForPlayer(playerName);
-                
-                if (!purchases.isEmpty()) {
-                    pendingPurchases.put(playerName.toLowerCase(), purchases);
-                }
-            }
-            
-            resultSet.close();
-            statement.close();
-            
-            Logger.info("Loaded pending purchases for " + pendingPurchases.size() + " players");
+            deliveryEngine.loadPending().forEach(pendingDeliveries::add);
         } catch (SQLException e) {
             Logger.severe("Failed to load pending purchases: " + e.getMessage());
         }
     }
     
     /**
-     * Get pending purchases for a player
-     * @param playerName The player name
-     * @return List of pending purchases
+     * Get the delivery engine
+     * @return The delivery engine
      */
-    private List<Purchase> getPendingPurchasesForPlayer(String playerName) {
-        List<Purchase> purchases = new ArrayList<>();
-        
-        try {
-            PreparedStatement statement = plugin.getDatabaseManager().prepareStatement(GET_PENDING_PURCHASES);
-            statement.setString(1, playerName);
-            
-            ResultSet resultSet = statement.executeQuery();
-            
-            while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String transactionId = resultSet.getString("transaction_id");
-                String name = resultSet.getString("player_name");
-                String uuidStr = resultSet.getString("player_uuid");
-                UUID uuid = uuidStr != null ? UUID.fromString(uuidStr) : null;
-                int productId = resultSet.getInt("product_id");
-                double pricePaid = resultSet.getDouble("price_paid");
-                String paymentMethod = resultSet.getString("payment_method");
-                String commands = resultSet.getString("commands");
-                String paymentStatus = resultSet.getString("payment_status");
-                
-                Purchase purchase = new Purchase(id, transactionId, name, uuid, productId, 
-                                                 pricePaid, paymentMethod, paymentStatus, commands);
-                purchases.add(purchase);
-            }
-            
-            resultSet.close();
-            statement.close();
-        } catch (SQLException e) {
-            Logger.severe("Failed to get pending purchases for player " + playerName + ": " + e.getMessage());
-        }
-        
-        return purchases;
+    public DeliveryEngine getDeliveryEngine() {
+        return deliveryEngine;
+    }
+    
+    /**
+     * Get the purchases waiting for their player to join
+     * @return The pending deliveries
+     */
+    public PendingDeliveries getPendingDeliveries() {
+        return pendingDeliveries;
+    }
+    
+    /**
+     * Get the delivery queue
+     * @return The delivery queue
+     */
+    public DeliveryQueue getDeliveryQueue() {
+        return deliveryQueue;
     }
     
     /**
      * Get the number of pending purchases
-     * @return The number of pending purchases
+     * @return The number of purchases waiting for their player to join
      */
     public int getPendingPurchasesCount() {
-        try {
-            PreparedStatement statement = plugin.getDatabaseManager().prepareStatement(GET_PENDING_PURCHASES_COUNT);
-            ResultSet resultSet = statement.executeQuery();
-            
-            if (resultSet.next()) {
-                return resultSet.getInt(1);
-            }
-            
-            resultSet.close();
-            statement.close();
-        } catch (SQLException e) {
-            Logger.severe("Failed to get pending purchases count: " + e.getMessage());
-        }
-        
-        return 0;
+        return pendingDeliveries.size();
     }
     
     /**
-     * Deliver pending purchases to a player
+     * Deliver pending purchases to a player.
+     * The purchases are marked as delivered on the database executor and their
+     * commands are then run on the server thread by the delivery queue.
      * @param player The player to deliver to
      */
     public void deliverPendingPurchases(Player player) {
-        String playerName = player.getName().toLowerCase();
+        // Take the player's pending purchases so a second join can't deliver them twice
+        List<Purchase> purchases = pendingDeliveries.drain(player.getUniqueId(), player.getName());
         
-        // Check if player has pending purchases
-        if (!pendingPurchases.containsKey(playerName)) {
+        if (purchases.isEmpty()) {
             return;
         }
         
-        List<Purchase> purchases = pendingPurchases.get(playerName);
-        List<Purchase> deliveredPurchases = new ArrayList<>();
-        
-        for (Purchase purchase : purchases) {
-            // Attempt to deliver the purchase
-            if (deliverPurchase(player, purchase)) {
-                deliveredPurchases.add(purchase);
+        plugin.getDatabaseManager().getExecutor().execute(() -> {
+            try {
+                deliveryEngine.markDelivered(purchases);
+            } catch (SQLException e) {
+                Logger.severe("Failed to deliver pending purchases to player " + player.getName() + 
+                              ": " + e.getMessage());
+                
+                // Keep them pending for the next join
+                purchases.forEach(this::addPendingPurchase);
+                return;
             }
-        }
-        
-        // Remove delivered purchases from cache
-        purchases.removeAll(deliveredPurchases);
-        
-        // If no more pending purchases, remove from map
-        if (purchases.isEmpty()) {
-            pendingPurchases.remove(playerName);
-        }
+            
+            purchases.forEach(deliveryQueue::enqueue);
+        });
     }
     
     /**
-     * Deliver a purchase to a player
+     * Deliver a purchase to a player.
+     * The purchase is marked as delivered on the calling thread, which should not be the
+     * server thread. Its commands are run on the server thread by the delivery queue.
      * @param player The player to deliver to
      * @param purchase The purchase to deliver
-     * @return True if delivery was successful
+     * @return True if the purchase was queued for delivery
      */
     public boolean deliverPurchase(Player player, Purchase purchase) {
+        // Mark as delivered in the database first
         try {
-            // Mark as delivered in the database first
-            PreparedStatement statement = plugin.getDatabaseManager().prepareStatement(MARK_PURCHASE_DELIVERED);
-            statement.setInt(1, purchase.getId());
-            statement.executeUpdate();
-            statement.close();
-            
-            // Execute commands
-            String[] commands = purchase.getCommands().split("\\n");
-            
-            for (String command : commands) {
-                // Replace placeholders
-                command = command.replace("%player%", player.getName());
-                
-                // Execute command
-                Logger.debug("Executing command: " + command);
-                boolean success = Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
-                
-                if (!success) {
-                    Logger.warning("Failed to execute command: " + command);
-                }
-            }
-            
-            // Send confirmation message to player
-            player.sendMessage("§6[FrizzlenStore] §aYour purchase has been delivered! Enjoy!");
-            
-            return true;
+            deliveryEngine.markDelivered(Collections.singletonList(purchase));
         } catch (SQLException e) {
             Logger.severe("Failed to deliver purchase " + purchase.getTransactionId() + 
                           " to player " + player.getName() + ": " + e.getMessage());
             return false;
         }
+        
+        deliveryQueue.enqueue(purchase);
+        return true;
+    }
+    
+    /**
+     * Put a purchase that could not be delivered back into the pending deliveries
+     * and clear its delivered flag on the database executor
+     * @param purchase The purchase to return
+     */
+    void returnToPending(Purchase purchase) {
+        addPendingPurchase(purchase);
+        
+        plugin.getDatabaseManager().getExecutor().execute(() -> markUndelivered(purchase));
+    }
+    
+    /**
+     * Clear a purchase's delivered flag on the calling thread.
+     * Used while shutting down, when work handed to the executor might not run before the database closes.
+     * @param purchase The purchase to return
+     */
+    void returnToPendingNow(Purchase purchase) {
+        addPendingPurchase(purchase);
+        markUndelivered(purchase);
+    }
+    
+    /**
+     * Clear a purchase's delivered flag so it is delivered on the player's next join
+     * @param purchase The purchase
+     */
+    private void markUndelivered(Purchase purchase) {
+        try {
+            deliveryEngine.markUndelivered(Collections.singletonList(purchase));
+        } catch (SQLException e) {
+            Logger.severe("Failed to return purchase " + purchase.getTransactionId() + 
+                          " to pending: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Add a purchase to the pending deliveries
+     * @param purchase The purchase to add
+     */
+    private void addPendingPurchase(Purchase purchase) {
+        pendingDeliveries.add(purchase);
     }
     
     /**
@@ -220,70 +242,41 @@ public class PurchaseManager {
      * @return True if delivery was successful
      */
     public boolean deliverPurchase(int purchaseId) {
-        try {
+        Purchase purchase;
+        Player player;
+        
+        DatabaseManager database = plugin.getDatabaseManager();
+        try (Connection connection = database.getConnection()) {
             // Get the purchase from the database
-            PreparedStatement getStatement = plugin.getDatabaseManager().prepareStatement(
-                    "SELECT p.id, p.transaction_id, p.player_name, p.player_uuid, " +
-                    "p.product_id, p.price_paid, p.payment_method, pr.commands, p.payment_status " +
-                    "FROM purchases p " +
-                    "JOIN products pr ON p.product_id = pr.id " +
-                    "WHERE p.id = ?");
-            getStatement.setInt(1, purchaseId);
+            purchase = database.queryFirst(connection, findForDelivery, DeliveryEngine::readPurchase, purchaseId);
             
-            ResultSet resultSet = getStatement.executeQuery();
+            if (purchase == null) {
+                Logger.warning("Could not find purchase with ID " + purchaseId);
+                return false;
+            }
             
-            if (resultSet.next()) {
-                String transactionId = resultSet.getString("transaction_id");
-                String playerName = resultSet.getString("player_name");
-                String uuidStr = resultSet.getString("player_uuid");
-                UUID playerUuid = uuidStr != null ? UUID.fromString(uuidStr) : null;
-                int productId = resultSet.getInt("product_id");
-                double pricePaid = resultSet.getDouble("price_paid");
-                String paymentMethod = resultSet.getString("payment_method");
-                String commands = resultSet.getString("commands");
-                String paymentStatus = resultSet.getString("payment_status");
-                
-                resultSet.close();
-                getStatement.close();
-                
-                // Create purchase object
-                Purchase purchase = new Purchase(purchaseId, transactionId, playerName, playerUuid, 
-                                               productId, pricePaid, paymentMethod, paymentStatus, commands);
+            // If player is online, deliver immediately
+            player = purchase.getPlayerUuid() != null 
+                    ? Bukkit.getPlayer(purchase.getPlayerUuid()) 
+                    : Bukkit.getPlayerExact(purchase.getPlayerName());
+            
+            if (player == null || !player.isOnline()) {
+                // Mark as still pending in the database
+                database.update(connection, markAttempted, purchaseId);
                 
-                // If player is online, deliver immediately
-                Player player = playerUuid != null ? Bukkit.getPlayer(playerUuid) : Bukkit.getPlayerExact(playerName);
+                // Add to pending deliveries
+                addPendingPurchase(purchase);
                 
-                if (player != null && player.isOnline()) {
-                    return deliverPurchase(player, purchase);
-                } else {
-                    // Mark as still pending in the database
-                    PreparedStatement markStatement = plugin.getDatabaseManager().prepareStatement(
-                            "UPDATE purchases SET delivery_attempted = delivery_attempted + 1 " +
-                            "WHERE id = ?");
-                    markStatement.setInt(1, purchaseId);
-                    markStatement.executeUpdate();
-                    markStatement.close();
-                    
-                    // Add to pending purchases cache
-                    if (!pendingPurchases.containsKey(playerName.toLowerCase())) {
-                        pendingPurchases.put(playerName.toLowerCase(), new ArrayList<>());
-                    }
-                    
-                    pendingPurchases.get(playerName.toLowerCase()).add(purchase);
-                    
-                    // Schedule delivery for when player logs in
-                    return false;
-                }
-            } else {
-                resultSet.close();
-                getStatement.close();
-                Logger.warning("Could not find purchase with ID " + purchaseId);
+                // Schedule delivery for when player logs in
                 return false;
             }
         } catch (SQLException e) {
             Logger.severe("Failed to deliver purchase " + purchaseId + ": " + e.getMessage());
             return false;
         }
+        
+        // Deliver after the lookup connection has been returned to the pool
+        return deliverPurchase(player, purchase);
     }
     
     /**
@@ -298,203 +291,224 @@ public class PurchaseManager {
      */
     public boolean createPurchase(String playerName, int productId, double pricePaid, 
                                  String paymentMethod, String paymentStatus, String transactionId) {
-        try {
-            // Get player UUID if online
-            Player player = Bukkit.getPlayerExact(playerName);
-            String uuidStr = player != null ? player.getUniqueId().toString() : null;
-            String ipAddress = player != null ? player.getAddress().getAddress().getHostAddress() : null;
-            
-            // Create SQL statement
-            String sql = "INSERT INTO purchases (transaction_id, player_name, player_uuid, " +
-                         "product_id, price_paid, payment_method, payment_status, ip_address) " +
-                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            PreparedStatement statement = plugin.getDatabaseManager().prepareStatement(sql);
-            statement.setString(1, transactionId);
-            statement.setString(2, playerName);
-            statement.setString(3, uuidStr);
-            statement.setInt(4, productId);
-            statement.setDouble(5, pricePaid);
-            statement.setString(6, paymentMethod);
-            statement.setString(7, paymentStatus);
-            statement.setString(8, ipAddress);
-            
-            int result = statement.executeUpdate();
-            statement.close();
-            
-            if (result > 0) {
-                // Get product commands
-                String getProductSql = "SELECT commands FROM products WHERE id = ?";
-                PreparedStatement productStatement = plugin.getDatabaseManager().prepareStatement(getProductSql);
-                productStatement.setInt(1, productId);
-                
-                ResultSet resultSet = productStatement.executeQuery();
-                String commands = null;
-                
-                if (resultSet.next()) {
-                    commands = resultSet.getString("commands");
-                }
-                
-                resultSet.close();
-                productStatement.close();
-                
-                // If player is online, deliver immediately
-                if (player != null && commands != null) {
-                    // Get the purchase ID
-                    PreparedStatement idStatement = plugin.getDatabaseManager().prepareStatement(
-                            "SELECT id FROM purchases WHERE transaction_id = ?");
-                    idStatement.setString(1, transactionId);
-                    
-                    ResultSet idResult = idStatement.executeQuery();
-                    if (idResult.next()) {
-                        int purchaseId = idResult.getInt("id");
-                        
-                        // Create purchase object and deliver
-                        Purchase purchase = new Purchase(purchaseId, transactionId, playerName, 
-                                                        player.getUniqueId(), productId, pricePaid, 
-                                                        paymentMethod, paymentStatus, commands);
-                        
-                        deliverPurchase(player, purchase);
-                    }
-                    
-                    idResult.close();
-                    idStatement.close();
-                } else if (commands != null) {
-                    // Add to pending purchases
-                    // Get the purchase ID
-                    PreparedStatement idStatement = plugin.getDatabaseManager().prepareStatement(
-                            "SELECT id FROM purchases WHERE transaction_id = ?");
-                    idStatement.setString(1, transactionId);
-                    
-                    ResultSet idResult = idStatement.executeQuery();
-                    if (idResult.next()) {
-                        int purchaseId = idResult.getInt("id");
-                        
-                        // Create purchase object
-                        Purchase purchase = new Purchase(purchaseId, transactionId, playerName, 
-                                                        null, productId, pricePaid, 
-                                                        paymentMethod, paymentStatus, commands);
-                        
-                        // Add to pending purchases
-                        if (!pendingPurchases.containsKey(playerName.toLowerCase())) {
-                            pendingPurchases.put(playerName.toLowerCase(), new ArrayList<>());
-                        }
-                        
-                        pendingPurchases.get(playerName.toLowerCase()).add(purchase);
-                    }
-                    
-                    idResult.close();
-                    idStatement.close();
-                }
-                
-                return true;
-            }
-            
-            return false;
+        Player player = Bukkit.getPlayerExact(playerName);
+        UUID playerUuid = player != null ? player.getUniqueId() : null;
+        
+        return createPurchase(playerName, playerUuid, productId, pricePaid, 
+                              paymentMethod, paymentStatus, transactionId) > 0;
+    }
+    
+    /**
+     * Create a new purchase record and queue it for delivery
+     * @param playerName The player name
+     * @param playerUuid The player UUID, or null if unknown
+     * @param productId The product ID
+     * @param pricePaid The price paid
+     * @param paymentMethod The payment method
+     * @param paymentStatus The payment status
+     * @param transactionId The transaction ID
+     * @return The purchase ID, or -1 if failed
+     */
+    public int createPurchase(String playerName, UUID playerUuid, int productId, double pricePaid, 
+                              String paymentMethod, String paymentStatus, String transactionId) {
+        Product product = plugin.getCatalogCache().getSnapshot().getProduct(productId);
+        if (product == null) {
+            Logger.warning("Product not found: " + productId);
+            return -1;
+        }
+        
+        Player player = playerUuid != null ? Bukkit.getPlayer(playerUuid) : Bukkit.getPlayerExact(playerName);
+        
+        Purchase purchase;
+        try (Connection connection = plugin.getDatabaseManager().getConnection()) {
+            purchase = insertPurchase(connection, transactionId, playerName, playerUuid, player, 
+                                      product, pricePaid, paymentMethod, paymentStatus);
         } catch (SQLException e) {
             Logger.severe("Failed to create purchase: " + e.getMessage());
-            return false;
+            return -1;
         }
+        
+        queueNewPurchase(purchase, player);
+        return purchase.getId();
     }
     
     /**
      * Create a new purchase record from a payment
      * @param playerUuid The player UUID
-     * @param productId The product ID
      * @param paymentId The payment ID
      * @return The purchase ID, or -1 if failed
      */
-    public int createPurchase(String playerUuid, int productId, int paymentId) {
+    public int createPurchase(String playerUuid, int paymentId) {
+        try (Connection connection = plugin.getDatabaseManager().getConnection()) {
+            return createPurchase(connection, playerUuid, paymentId);
+        } catch (SQLException e) {
+            Logger.severe("Failed to create purchase from payment: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * Create a new purchase record from a payment using a connection the caller already holds.
+     * The payment lookup and insert run in one transaction on that connection.
+     * @param connection The connection to use, must be in auto-commit mode
+     * @param playerUuid The player UUID
+     * @param paymentId The payment ID
+     * @return The purchase ID, or -1 if failed
+     */
+    public int createPurchase(Connection connection, String playerUuid, int paymentId) {
+        UUID uuid;
         try {
-            // Get payment details
-            PreparedStatement paymentStatement = plugin.getDatabaseManager().prepareStatement(
-                    "SELECT amount, gateway FROM payments WHERE id = ?");
-            paymentStatement.setInt(1, paymentId);
-            ResultSet paymentResult = paymentStatement.executeQuery();
-            
-            if (!paymentResult.next()) {
-                paymentResult.close();
-                paymentStatement.close();
-                Logger.warning("Payment not found: " + paymentId);
-                return -1;
-            }
-            
-            double amount = paymentResult.getDouble("amount");
-            String gateway = paymentResult.getString("gateway");
-            paymentResult.close();
-            paymentStatement.close();
-            
-            // Get player name from UUID
-            String playerName = null;
-            PreparedStatement playerStatement = plugin.getDatabaseManager().prepareStatement(
-                    "SELECT name FROM players WHERE uuid = ?");
-            playerStatement.setString(1, playerUuid);
-            ResultSet playerResult = playerStatement.executeQuery();
-            
-            if (playerResult.next()) {
-                playerName = playerResult.getString("name");
-            }
-            
-            playerResult.close();
-            playerStatement.close();
-            
-            if (playerName == null) {
-                // Try to get from Bukkit API
-                Player player = Bukkit.getPlayer(UUID.fromString(playerUuid));
-                if (player != null) {
-                    playerName = player.getName();
-                } else {
-                    Logger.warning("Could not find player name for UUID: " + playerUuid);
-                    playerName = "Unknown"; // Fallback
-                }
-            }
-            
-            // Get product details
-            PreparedStatement productStatement = plugin.getDatabaseManager().prepareStatement(
-                    "SELECT name, commands FROM products WHERE id = ?");
-            productStatement.setInt(1, productId);
-            ResultSet productResult = productStatement.executeQuery();
-            
-            if (!productResult.next()) {
-                productResult.close();
-                productStatement.close();
-                Logger.warning("Product not found: " + productId);
-                return -1;
-            }
-            
-            String productName = productResult.getString("name");
-            String commands = productResult.getString("commands");
-            productResult.close();
-            productStatement.close();
-            
-            // Create transaction ID
-            String transactionId = "PAY-" + paymentId;
-            
-            // Call the other createPurchase method
-            boolean success = createPurchase(playerName, productId, amount, gateway, "completed", transactionId);
+            uuid = UUID.fromString(playerUuid);
+        } catch (IllegalArgumentException e) {
+            Logger.warning("Invalid player UUID for payment " + paymentId + ": " + playerUuid);
+            return -1;
+        }
+        
+        Purchase purchase;
+        
+        try {
+            connection.setAutoCommit(false);
             
-            if (success) {
-                // Get the purchase ID
-                PreparedStatement idStatement = plugin.getDatabaseManager().prepareStatement(
-                        "SELECT id FROM purchases WHERE transaction_id = ?");
-                idStatement.setString(1, transactionId);
+            try {
+                purchase = insertPaymentPurchase(connection, uuid, paymentId);
                 
-                ResultSet idResult = idStatement.executeQuery();
-                if (idResult.next()) {
-                    int purchaseId = idResult.getInt("id");
-                    idResult.close();
-                    idStatement.close();
-                    return purchaseId;
+                if (purchase == null) {
+                    connection.rollback();
+                    return -1;
                 }
                 
-                idResult.close();
-                idStatement.close();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
             }
-            
-            return -1;
         } catch (SQLException e) {
             Logger.severe("Failed to create purchase from payment: " + e.getMessage());
             return -1;
         }
+        
+        queuePurchase(purchase);
+        return purchase.getId();
+    }
+    
+    /**
+     * Insert the purchase for a completed payment without committing or queueing it.
+     * Callers run this inside their own transaction and call {@link #queuePurchase(Purchase)} after committing.
+     * @param connection The connection to use
+     * @param playerUuid The player UUID
+     * @param paymentId The payment ID
+     * @return The new purchase, or null if the payment or its product doesn't exist
+     * @throws SQLException If a query fails
+     */
+    public Purchase insertPaymentPurchase(Connection connection, UUID playerUuid, int paymentId) throws SQLException {
+        // Get payment details and the stored player name together
+        PaymentDetails payment = plugin.getDatabaseManager().queryFirst(connection, findPayment, 
+                PaymentDetails::new, paymentId);
+        
+        if (payment == null) {
+            Logger.warning("Payment not found: " + paymentId);
+            return null;
+        }
+        
+        int productId = payment.productId;
+        String playerName = payment.playerName;
+        
+        Product product = plugin.getCatalogCache().getSnapshot().getProduct(productId);
+        if (product == null) {
+            Logger.warning("Product not found: " + productId);
+            return null;
+        }
+        
+        Player player = Bukkit.getPlayer(playerUuid);
+        if (player != null) {
+            playerName = player.getName();
+        } else if (playerName == null) {
+            Logger.warning("Could not find player name for UUID: " + playerUuid);
+            playerName = "Unknown"; // Fallback
+        }
+        
+        return insertPurchase(connection, "PAY-" + paymentId, playerName, playerUuid, player, 
+                              product, payment.amount, payment.gateway, "completed");
+    }
+    
+    /**
+     * Hand a committed purchase to delivery, either straight away or on the player's next join
+     * @param purchase The purchase
+     */
+    public void queuePurchase(Purchase purchase) {
+        Player player = purchase.getPlayerUuid() != null ? Bukkit.getPlayer(purchase.getPlayerUuid()) : null;
+        queueNewPurchase(purchase, player);
+    }
+    
+    /**
+     * Insert a purchase row.
+     * Purchases for online players are stored as delivered straight away because their
+     * commands are queued as soon as the row exists.
+     * @param connection The connection to insert with
+     * @param transactionId The transaction ID
+     * @param playerName The player name
+     * @param playerUuid The player UUID, or null if unknown
+     * @param player The online player, or null if offline
+     * @param product The product bought
+     * @param pricePaid The price paid
+     * @param paymentMethod The payment method
+     * @param paymentStatus The payment status
+     * @return The new purchase
+     * @throws SQLException If the insert fails
+     */
+    private Purchase insertPurchase(Connection connection, String transactionId, String playerName, UUID playerUuid,
+                                    Player player, Product product, double pricePaid, 
+                                    String paymentMethod, String paymentStatus) throws SQLException {
+        String ipAddress = player != null && player.getAddress() != null 
+                ? player.getAddress().getAddress().getHostAddress() : null;
+        
+        long purchaseId = plugin.getDatabaseManager().insert(connection, insertRow, 
+                transactionId, playerName, playerUuid, product.getId(), pricePaid, paymentMethod, paymentStatus, 
+                ipAddress, player != null, player != null ? new Timestamp(System.currentTimeMillis()) : null);
+        
+        if (purchaseId < 0) {
+            throw new SQLException("No purchase ID returned for transaction " + transactionId);
+        }
+        
+        return new Purchase((int) purchaseId, transactionId, playerName, playerUuid, 
+                            product.getId(), pricePaid, paymentMethod, paymentStatus, product.getCommands());
+    }
+    
+    /**
+     * Hand a newly created purchase to delivery and refresh the player's spend
+     * @param purchase The purchase
+     * @param player The online player, or null if offline
+     */
+    private void queueNewPurchase(Purchase purchase, Player player) {
+        if (purchase.getPlayerUuid() != null && PlayerSpend.counts(purchase.getPaymentStatus())) {
+            plugin.getPlayerSpendCache().invalidate(purchase.getPlayerUuid());
+        }
+        
+        if (player != null) {
+            // Already stored as delivered, run the commands on the next tick
+            deliveryQueue.enqueue(purchase);
+        } else {
+            // Deliver when the player next joins
+            addPendingPurchase(purchase);
+        }
+    }
+    
+    /**
+     * The payment columns needed to create its purchase
+     */
+    private static class PaymentDetails {
+        private final int productId;
+        private final double amount;
+        private final String gateway;
+        private final String playerName;
+        
+        private PaymentDetails(ResultSet resultSet) throws SQLException {
+            this.productId = resultSet.getInt("product_id");
+            this.amount = resultSet.getDouble("amount");
+            this.gateway = resultSet.getString("gateway");
+            this.playerName = resultSet.getString("name");
+        }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,260 @@
+package org.frizzlenpop.frizzlenStore.util;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Writes log events on a background thread.
+ * Events are handed over through a fixed-size ring buffer. When the buffer is full the event is
+ * dropped and counted rather than making the caller wait, so logging never blocks a request or tick.
+ * Events go to the server log and, if configured, to a JSON-lines file with one object per event.
+ */
+class LogAppender {
+    // Most events written before the JSON file is flushed
+    private static final int BATCH_SIZE = 256;
+
+    private final java.util.logging.Logger logger;
+    private final String prefix;
+    private final BlockingQueue<LogEvent> buffer;
+    private final Thread thread;
+    private final LongAdder dropped;
+    private volatile boolean running;
+
+    // Only used by the appender thread, swapped through pendingJsonFile
+    private Writer jsonWriter;
+    private volatile File pendingJsonFile;
+    private volatile boolean jsonFileChanged;
+
+    /**
+     * Create a new appender, call {@link #start()} to begin writing
+     * @param logger The server logger
+     * @param prefix The prefix for server log messages
+     * @param capacity The number of events the buffer holds
+     */
+    LogAppender(java.util.logging.Logger logger, String prefix, int capacity) {
+        this.logger = logger;
+        this.prefix = prefix;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::run, "FrizzlenStore-Logger");
+        this.thread.setDaemon(true);
+        this.dropped = new LongAdder();
+    }
+
+    /**
+     * Start the appender thread
+     */
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stop accepting events and wait for buffered events to be written
+     * @param timeoutMillis The longest time to wait
+     */
+    void stop(long timeoutMillis) {
+        running = false;
+
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hand an event to the appender thread
+     * @param event The event
+     * @return False if the appender is stopped and the caller should write the event itself
+     */
+    boolean append(LogEvent event) {
+        if (!running) {
+            return false;
+        }
+
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Set the JSON-lines file, the appender thread opens it before writing its next batch
+     * @param file The file, or null to stop writing one
+     */
+    void setJsonFile(File file) {
+        pendingJsonFile = file;
+        jsonFileChanged = true;
+    }
+
+    /**
+     * Get the number of events dropped because the buffer was full
+     * @return The dropped count
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Write an event to the server log
+     * @param event The event
+     */
+    void writeToServerLog(LogEvent event) {
+        Level level;
+        String message;
+
+        switch (event.getLevel()) {
+            case DEBUG:
+                level = Level.INFO;
+                message = prefix + "[DEBUG] " + event.getMessage();
+                break;
+            case WARNING:
+                level = Level.WARNING;
+                message = prefix + event.getMessage();
+                break;
+            case SEVERE:
+                level = Level.SEVERE;
+                message = prefix + event.getMessage();
+                break;
+            default:
+                level = Level.INFO;
+                message = prefix + event.getMessage();
+                break;
+        }
+
+        if (event.getError() != null) {
+            logger.log(level, message, event.getError());
+        } else {
+            logger.log(level, message);
+        }
+    }
+
+    /**
+     * Take events from the buffer and write them in batches until stopped
+     */
+    private void run() {
+        List<LogEvent> batch = new ArrayList<>(BATCH_SIZE);
+        long reportedDrops = 0;
+
+        while (running || !buffer.isEmpty()) {
+            try {
+                LogEvent first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (jsonFileChanged) {
+                    openJsonFile();
+                }
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                buffer.drainTo(batch, BATCH_SIZE - 1);
+
+                for (LogEvent event : batch) {
+                    write(event);
+                }
+
+                long drops = dropped.sum();
+                if (drops > reportedDrops) {
+                    logger.warning(prefix + "Log buffer full, dropped " + (drops - reportedDrops) + " messages");
+                    reportedDrops = drops;
+                }
+
+                if (jsonWriter != null) {
+                    jsonWriter.flush();
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                logger.severe(prefix + "Failed to write the JSON log file: " + e.getMessage());
+                closeJsonFile();
+            } finally {
+                batch.clear();
+            }
+        }
+
+        closeJsonFile();
+    }
+
+    /**
+     * Write an event to the server log and the JSON file
+     * @param event The event
+     * @throws IOException If the JSON file can't be written
+     */
+    private void write(LogEvent event) throws IOException {
+        writeToServerLog(event);
+
+        if (jsonWriter != null) {
+            JSONObject line = new JSONObject()
+                    .put("time", Instant.ofEpochMilli(event.getTime()).toString())
+                    .put("level", event.getLevel().name())
+                    .put("thread", event.getThread())
+                    .put("message", event.getMessage());
+
+            if (event.getError() != null) {
+                StringWriter trace = new StringWriter();
+                event.getError().printStackTrace(new PrintWriter(trace));
+                line.put("error", trace.toString());
+            }
+
+            jsonWriter.write(line.toString());
+            jsonWriter.write('\n');
+        }
+    }
+
+    /**
+     * Replace the JSON writer with one for the configured file
+     */
+    private void openJsonFile() {
+        jsonFileChanged = false;
+        closeJsonFile();
+
+        File file = pendingJsonFile;
+        if (file == null) {
+            return;
+        }
+
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+
+            jsonWriter = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            logger.severe(prefix + "Failed to open the JSON log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close the JSON writer, if open
+     */
+    private void closeJsonFile() {
+        if (jsonWriter == null) {
+            return;
+        }
+
+        try {
+            jsonWriter.close();
+        } catch (IOException e) {
+            logger.severe(prefix + "Failed to close the JSON log file: " + e.getMessage());
+        }
+        jsonWriter = null;
+    }
+}
\ No newline at end of file
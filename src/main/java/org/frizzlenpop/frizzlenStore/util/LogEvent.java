@@ -0,0 +1,84 @@
+package org.frizzlenpop.frizzlenStore.util;
+
+/**
+ * A log message waiting for the appender thread.
+ * The message is kept as a pattern and arguments so it is only formatted off the calling thread.
+ */
+class LogEvent {
+    private final Logger.Level level;
+    private final long time;
+    private final String thread;
+    private final String pattern;
+    private final Object[] arguments;
+    private final Throwable error;
+
+    /**
+     * Create a new log event, captured on the calling thread
+     * @param level The level
+     * @param pattern The message, with {} where arguments go
+     * @param arguments The arguments, or null
+     * @param error The error to log with the message, or null
+     */
+    LogEvent(Logger.Level level, String pattern, Object[] arguments, Throwable error) {
+        this.level = level;
+        this.time = System.currentTimeMillis();
+        this.thread = Thread.currentThread().getName();
+        this.pattern = pattern;
+        this.arguments = arguments;
+        this.error = error;
+    }
+
+    /**
+     * Get the level
+     * @return The level
+     */
+    Logger.Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the time the event was logged
+     * @return The time in epoch milliseconds
+     */
+    long getTime() {
+        return time;
+    }
+
+    /**
+     * Get the name of the thread that logged the event
+     * @return The thread name
+     */
+    String getThread() {
+        return thread;
+    }
+
+    /**
+     * Get the error logged with the message
+     * @return The error, or null
+     */
+    Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Build the message, replacing each {} in the pattern with the next argument
+     * @return The message
+     */
+    String getMessage() {
+        if (arguments == null || arguments.length == 0) {
+            return pattern;
+        }
+
+        StringBuilder message = new StringBuilder(pattern.length() + arguments.length * 16);
+        int argument = 0;
+        int start = 0;
+        int index;
+
+        while (argument < arguments.length && (index = pattern.indexOf("{}", start)) >= 0) {
+            message.append(pattern, start, index).append(arguments[argument++]);
+            start = index + 2;
+        }
+
+        return message.append(pattern, start, pattern.length()).toString();
+    }
+}
\ No newline at end of file
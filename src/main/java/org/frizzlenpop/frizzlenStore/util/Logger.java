@@ -2,22 +2,81 @@ package org.frizzlenpop.frizzlenStore.util;
 
 import org.bukkit.plugin.Plugin;
 
-import java.util.logging.Level;
+import java.io.File;
+import java.util.function.Supplier;
 
 /**
- * Utility class for standardized logging across the plugin
+ * Utility class for standardized logging across the plugin.
+ * Messages below the configured level are discarded before any string is built. Others are
+ * handed to a background appender, so callers never wait on the server log or the JSON file.
+ * Use {} placeholders or a supplier instead of concatenating, the message is then only built
+ * when it is written. Arguments are formatted on the appender thread, so pass values that
+ * won't change afterwards.
  */
 public class Logger {
-    private static java.util.logging.Logger logger;
-    private static String prefix;
+    // Number of messages the appender buffer holds before new ones are dropped
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final String PREFIX = "[FrizzlenStore] ";
+
+    private static volatile LogAppender appender;
+    private static volatile Level level = Level.INFO;
 
     /**
      * Initialize the logger with the plugin instance
      * @param plugin The plugin instance
      */
     public static void init(Plugin plugin) {
-        logger = plugin.getLogger();
-        prefix = "[FrizzlenStore] ";
+        LogAppender previous = appender;
+        if (previous != null) {
+            previous.stop(1000L);
+        }
+
+        LogAppender created = new LogAppender(plugin.getLogger(), PREFIX, BUFFER_SIZE);
+        created.start();
+        appender = created;
+    }
+
+    /**
+     * Apply the logging configuration
+     * @param debug Whether debug messages are logged
+     * @param jsonFile The JSON-lines file to also write to, or null for none
+     */
+    public static void configure(boolean debug, File jsonFile) {
+        level = debug ? Level.DEBUG : Level.INFO;
+
+        LogAppender current = appender;
+        if (current != null) {
+            current.setJsonFile(jsonFile);
+        }
+    }
+
+    /**
+     * Write out buffered messages and stop the appender thread.
+     * Messages logged afterwards are written on the calling thread.
+     */
+    public static void shutdown() {
+        LogAppender current = appender;
+        if (current != null) {
+            current.stop(5000L);
+        }
+    }
+
+    /**
+     * Check if debug messages are logged
+     * @return True if debug is enabled
+     */
+    public static boolean isDebugEnabled() {
+        return level == Level.DEBUG;
+    }
+
+    /**
+     * Get the number of messages dropped because the buffer was full
+     * @return The dropped count
+     */
+    public static long getDropped() {
+        LogAppender current = appender;
+        return current != null ? current.getDropped() : 0L;
     }
 
     /**
@@ -25,7 +84,16 @@ public class Logger {
      * @param message The message to log
      */
     public static void info(String message) {
-        logger.info(prefix + message);
+        log(Level.INFO, message, null, null);
+    }
+
+    /**
+     * Log an info message
+     * @param pattern The message, with {} where arguments go
+     * @param arguments The arguments
+     */
+    public static void info(String pattern, Object... arguments) {
+        log(Level.INFO, pattern, arguments, null);
     }
 
     /**
@@ -33,7 +101,16 @@ public class Logger {
      * @param message The message to log
      */
     public static void warning(String message) {
-        logger.warning(prefix + message);
+        log(Level.WARNING, message, null, null);
+    }
+
+    /**
+     * Log a warning message
+     * @param pattern The message, with {} where arguments go
+     * @param arguments The arguments
+     */
+    public static void warning(String pattern, Object... arguments) {
+        log(Level.WARNING, pattern, arguments, null);
     }
 
     /**
@@ -41,7 +118,16 @@ public class Logger {
      * @param message The message to log
      */
     public static void severe(String message) {
-        logger.severe(prefix + message);
+        log(Level.SEVERE, message, null, null);
+    }
+
+    /**
+     * Log a severe message with the error that caused it, including its stack trace
+     * @param message The message to log
+     * @param error The error
+     */
+    public static void severe(String message, Throwable error) {
+        log(Level.SEVERE, message, null, error);
     }
 
     /**
@@ -49,6 +135,55 @@ public class Logger {
      * @param message The message to log
      */
     public static void debug(String message) {
-        logger.log(Level.INFO, prefix + "[DEBUG] " + message);
+        log(Level.DEBUG, message, null, null);
+    }
+
+    /**
+     * Log a debug message (only when debug is enabled)
+     * @param pattern The message, with {} where arguments go
+     * @param arguments The arguments
+     */
+    public static void debug(String pattern, Object... arguments) {
+        log(Level.DEBUG, pattern, arguments, null);
+    }
+
+    /**
+     * Log a debug message (only when debug is enabled)
+     * @param message Supplies the message, only called when debug is enabled
+     */
+    public static void debug(Supplier<String> message) {
+        if (isDebugEnabled()) {
+            log(Level.DEBUG, message.get(), null, null);
+        }
+    }
+
+    /**
+     * Hand a message to the appender if its level is enabled
+     * @param messageLevel The level of the message
+     * @param pattern The message
+     * @param arguments The arguments, or null
+     * @param error The error, or null
+     */
+    private static void log(Level messageLevel, String pattern, Object[] arguments, Throwable error) {
+        if (messageLevel.ordinal() < level.ordinal()) {
+            return;
+        }
+
+        LogAppender current = appender;
+        if (current == null) {
+            return;
+        }
+
+        LogEvent event = new LogEvent(messageLevel, pattern, arguments, error);
+        if (!current.append(event)) {
+            current.writeToServerLog(event);
+        }
+    }
+
+    /**
+     * Log levels, in increasing severity
+     */
+    public enum Level {
+        DEBUG, INFO, WARNING, SEVERE
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
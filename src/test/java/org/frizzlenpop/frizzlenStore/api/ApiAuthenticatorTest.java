@@ -0,0 +1,92 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.frizzlenpop.frizzlenStore.config.ConfigManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class ApiAuthenticatorTest {
+    private static final InetSocketAddress CLIENT = new InetSocketAddress("127.0.0.1", 50000);
+
+    private ConfigManager config;
+    private ApiAuthenticator authenticator;
+
+    @BeforeEach
+    void setUp() {
+        config = mock(ConfigManager.class, withSettings().stubOnly());
+        when(config.getApiAdminTokens()).thenReturn(List.of("admin-token", "shared-token"));
+        when(config.getApiReadTokens()).thenReturn(List.of("read-token", "shared-token"));
+        authenticator = new ApiAuthenticator(config);
+    }
+
+    @Test
+    void grantsTheAccessOfTheToken() {
+        assertEquals(Access.ADMIN, authenticator.authenticate(exchange("Bearer admin-token", CLIENT)));
+        assertEquals(Access.READ, authenticator.authenticate(exchange("Bearer read-token", CLIENT)));
+    }
+
+    @Test
+    void missingOrUnknownTokensArePublic() {
+        assertEquals(Access.PUBLIC, authenticator.authenticate(exchange(null, CLIENT)));
+        assertEquals(Access.PUBLIC, authenticator.authenticate(exchange("Bearer wrong-token", CLIENT)));
+        assertEquals(Access.PUBLIC, authenticator.authenticate(exchange("admin-token", CLIENT)));
+        assertEquals(Access.PUBLIC, authenticator.authenticate(exchange("Bearer admin-toke", CLIENT)));
+        assertEquals(Access.PUBLIC, authenticator.authenticate(exchange("Basic admin-token", CLIENT)));
+    }
+
+    @Test
+    void tokenInBothListsGrantsTheHighestAccess() {
+        assertEquals(Access.ADMIN, authenticator.authenticate(exchange("Bearer shared-token", CLIENT)));
+    }
+
+    @Test
+    void cachedConnectionIsCheckedAgainWhenItsHeaderChanges() {
+        assertEquals(Access.ADMIN, authenticator.authenticate(exchange("Bearer admin-token", CLIENT)));
+        assertEquals(Access.PUBLIC, authenticator.authenticate(exchange("Bearer wrong-token", CLIENT)));
+        assertEquals(Access.READ, authenticator.authenticate(exchange("Bearer read-token", CLIENT)));
+        assertEquals(Access.PUBLIC, authenticator.authenticate(exchange(null, CLIENT)));
+    }
+
+    @Test
+    void manyConnectionsKeepBeingAuthenticated() {
+        for (int port = 1; port <= 3000; port++) {
+            InetSocketAddress client = new InetSocketAddress("127.0.0.1", port);
+            assertEquals(Access.READ, authenticator.authenticate(exchange("Bearer read-token", client)));
+        }
+        assertEquals(Access.READ, authenticator.authenticate(exchange("Bearer read-token", CLIENT)));
+    }
+
+    @Test
+    void reloadForgetsRemovedTokens() {
+        assertEquals(Access.ADMIN, authenticator.authenticate(exchange("Bearer admin-token", CLIENT)));
+
+        when(config.getApiAdminTokens()).thenReturn(List.of("rotated-token"));
+        when(config.getApiReadTokens()).thenReturn(List.of());
+        authenticator.reload();
+
+        // The cached decision for this connection must not survive the reload
+        assertEquals(Access.PUBLIC, authenticator.authenticate(exchange("Bearer admin-token", CLIENT)));
+        assertEquals(Access.ADMIN, authenticator.authenticate(exchange("Bearer rotated-token", CLIENT)));
+    }
+
+    private static HttpExchange exchange(String authorization, InetSocketAddress client) {
+        Headers headers = new Headers();
+        if (authorization != null) {
+            headers.set("Authorization", authorization);
+        }
+
+        HttpExchange exchange = mock(HttpExchange.class, withSettings().stubOnly());
+        when(exchange.getRequestHeaders()).thenReturn(headers);
+        when(exchange.getRemoteAddress()).thenReturn(client);
+        return exchange;
+    }
+}
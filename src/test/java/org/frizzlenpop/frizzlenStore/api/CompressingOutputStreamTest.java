@@ -0,0 +1,126 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressingOutputStreamTest {
+
+    @Test
+    void gzipRoundTrips() throws IOException {
+        byte[] body = body(100_000);
+        byte[] compressed = compress(body, true);
+
+        assertTrue(compressed.length < body.length);
+        assertArrayEquals(body, gunzip(compressed));
+    }
+
+    @Test
+    void deflateRoundTrips() throws IOException {
+        byte[] body = body(100_000);
+        assertArrayEquals(body, inflate(compress(body, false)));
+    }
+
+    @Test
+    void incompressibleBodiesRoundTrip() throws IOException {
+        // Random bytes make the deflater emit more than its buffer holds per call
+        byte[] body = new byte[50_000];
+        new Random(1).nextBytes(body);
+
+        assertArrayEquals(body, gunzip(compress(body, true)));
+        assertArrayEquals(body, inflate(compress(body, false)));
+    }
+
+    @Test
+    void pooledDeflatersStartClean() throws IOException {
+        // Alternate kinds and sizes so pooled deflaters and buffers are reused across streams
+        for (int i = 0; i < 100; i++) {
+            byte[] body = body(1 + i * 997);
+            boolean gzip = i % 2 == 0;
+            byte[] compressed = compress(body, gzip);
+            assertArrayEquals(body, gzip ? gunzip(compressed) : inflate(compressed));
+        }
+    }
+
+    @Test
+    void flushSendsEverythingWrittenSoFar() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] first = "[{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+        try (CompressingOutputStream stream = new CompressingOutputStream(out, false)) {
+            stream.write(first);
+            stream.flush();
+
+            // A streaming client can already decode the first part
+            InputStream partial = new InflaterInputStream(new ByteArrayInputStream(out.toByteArray()));
+            assertArrayEquals(first, partial.readNBytes(first.length));
+
+            stream.write(']');
+        }
+
+        assertEquals("[{\"id\":1}]", new String(inflate(out.toByteArray()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void closeClosesTheUnderlyingStreamOnce() throws IOException {
+        int[] closes = new int[1];
+        OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closes[0]++;
+            }
+        };
+
+        CompressingOutputStream stream = new CompressingOutputStream(out, true);
+        stream.write(body(10));
+        stream.close();
+        stream.close();
+
+        assertEquals(1, closes[0]);
+        assertThrows(IOException.class, () -> stream.write(1));
+    }
+
+    private static byte[] compress(byte[] body, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CompressingOutputStream stream = new CompressingOutputStream(out, gzip)) {
+            // Write in uneven pieces to cover partial input
+            for (int offset = 0; offset < body.length; offset += 3001) {
+                stream.write(body, offset, Math.min(3001, body.length - offset));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] body(int length) {
+        StringBuilder json = new StringBuilder(length + 64);
+        for (int i = 0; json.length() < length; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"Product ").append(i).append("\"},");
+        }
+        return json.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+}
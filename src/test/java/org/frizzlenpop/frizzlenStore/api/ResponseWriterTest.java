@@ -0,0 +1,46 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseWriterTest {
+
+    @Test
+    void missingHeaderMeansIdentity() {
+        assertEquals(ResponseWriter.Encoding.IDENTITY, ResponseWriter.negotiate(null));
+        assertEquals(ResponseWriter.Encoding.IDENTITY, ResponseWriter.negotiate(List.of("")));
+        assertEquals(ResponseWriter.Encoding.IDENTITY, ResponseWriter.negotiate(List.of("br, identity")));
+    }
+
+    @Test
+    void prefersGzipOnTies() {
+        assertEquals(ResponseWriter.Encoding.GZIP, ResponseWriter.negotiate(List.of("gzip, deflate, br")));
+        assertEquals(ResponseWriter.Encoding.GZIP, ResponseWriter.negotiate(List.of("deflate", "x-gzip")));
+        assertEquals(ResponseWriter.Encoding.GZIP, ResponseWriter.negotiate(List.of("*")));
+    }
+
+    @Test
+    void picksTheHighestQuality() {
+        assertEquals(ResponseWriter.Encoding.DEFLATE,
+                ResponseWriter.negotiate(List.of("gzip;q=0.5, deflate;q=0.8")));
+        assertEquals(ResponseWriter.Encoding.GZIP,
+                ResponseWriter.negotiate(List.of("GZIP;q=0.9, deflate;q=0.1")));
+    }
+
+    @Test
+    void zeroQualityRefusesACoding() {
+        assertEquals(ResponseWriter.Encoding.DEFLATE, ResponseWriter.negotiate(List.of("gzip;q=0, deflate")));
+        assertEquals(ResponseWriter.Encoding.IDENTITY, ResponseWriter.negotiate(List.of("gzip;q=0, deflate;q=0")));
+        assertEquals(ResponseWriter.Encoding.IDENTITY, ResponseWriter.negotiate(List.of("gzip;q=abc")));
+    }
+
+    @Test
+    void wildcardOnlyCoversUnlistedCodings() {
+        assertEquals(ResponseWriter.Encoding.DEFLATE, ResponseWriter.negotiate(List.of("gzip;q=0, *")));
+        assertEquals(ResponseWriter.Encoding.IDENTITY, ResponseWriter.negotiate(List.of("*;q=0")));
+        assertEquals(ResponseWriter.Encoding.GZIP, ResponseWriter.negotiate(List.of("*;q=0, gzip")));
+    }
+}
@@ -0,0 +1,103 @@
+package org.frizzlenpop.frizzlenStore.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RouterTest {
+    private static final Route NOOP = (exchange, params) -> { };
+
+    @Test
+    void matchesLiteralRoutes() {
+        Router router = new Router();
+        router.get("/api/products", Access.PUBLIC, NOOP);
+
+        assertEquals("/api/products", router.match("/api/products").getPattern());
+        assertEquals("/api/products", router.match("/api/products/").getPattern());
+        assertNull(router.match("/api/product"));
+        assertNull(router.match("/api/products/extra"));
+        assertNull(router.match("/api"));
+    }
+
+    @Test
+    void readsIntAndStringParameters() {
+        Router router = new Router();
+        router.get("/api/products/{id:int}", Access.PUBLIC, NOOP);
+        router.get("/api/players/{name}/purchases", Access.READ, NOOP);
+
+        Router.Match product = router.match("/api/products/42");
+        assertNotNull(product);
+        assertEquals(42, product.getParams().getInt("id"));
+
+        Router.Match player = router.match("/api/players/Steve/purchases");
+        assertNotNull(player);
+        assertEquals("Steve", player.getParams().get("name"));
+    }
+
+    @Test
+    void intParametersOnlyMatchNonNegativeInts() {
+        Router router = new Router();
+        router.get("/api/products/{id:int}", Access.PUBLIC, NOOP);
+
+        assertNull(router.match("/api/products/abc"));
+        assertNull(router.match("/api/products/-1"));
+        assertNull(router.match("/api/products/2147483648"));
+        assertNull(router.match("/api/products/"));
+        assertEquals(Integer.MAX_VALUE, router.match("/api/products/2147483647").getParams().getInt("id"));
+    }
+
+    @Test
+    void literalSegmentsWinOverParameters() {
+        Router router = new Router();
+        router.get("/api/purchases/{id:int}", Access.READ, NOOP);
+        router.post("/api/purchases/{id:int}/refund", Access.ADMIN, NOOP);
+        router.get("/api/purchases/pending", Access.READ, NOOP);
+
+        assertEquals("/api/purchases/pending", router.match("/api/purchases/pending").getPattern());
+        assertEquals("/api/purchases/{id:int}", router.match("/api/purchases/7").getPattern());
+    }
+
+    @Test
+    void backtracksWhenALiteralBranchDoesNotMatch() {
+        Router router = new Router();
+        router.get("/api/players/search", Access.READ, NOOP);
+        router.get("/api/players/{name}/stats", Access.READ, NOOP);
+
+        Router.Match match = router.match("/api/players/search/stats");
+        assertNotNull(match);
+        assertEquals("search", match.getParams().get("name"));
+    }
+
+    @Test
+    void methodsShareOneRouteNode() {
+        Router router = new Router();
+        router.get("/api/products/{id:int}", Access.PUBLIC, NOOP);
+        router.put("/api/products/{id:int}", Access.ADMIN, NOOP);
+        router.delete("/api/products/{id:int}", Access.ADMIN, NOOP);
+
+        Router.Node node = router.match("/api/products/1").getNode();
+        assertEquals(Access.PUBLIC, node.find("GET").access);
+        assertEquals(Access.ADMIN, node.find("delete").access);
+        assertNull(node.find("POST"));
+        assertEquals("GET, PUT, DELETE, OPTIONS", node.getAllowedMethods());
+        assertEquals(1, router.getRouteNodes().size());
+    }
+
+    @Test
+    void rejectsDuplicateAndConflictingRoutes() {
+        Router router = new Router();
+        router.get("/api/products/{id:int}", Access.PUBLIC, NOOP);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> router.get("/api/products/{id:int}", Access.PUBLIC, NOOP));
+        assertThrows(IllegalArgumentException.class,
+                () -> router.get("/api/products/{productId:int}/stock", Access.PUBLIC, NOOP));
+        assertThrows(IllegalArgumentException.class,
+                () -> router.get("/api/products/{id}/stock", Access.PUBLIC, NOOP));
+        assertThrows(IllegalArgumentException.class,
+                () -> router.get("/api/coupons/{code:uuid}", Access.PUBLIC, NOOP));
+    }
+}
@@ -0,0 +1,110 @@
+package org.frizzlenpop.frizzlenStore.coupon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CouponUsageTest {
+
+    @Test
+    void limitIsNeverExceededUnderContention() throws Exception {
+        int threads = 16;
+        int attemptsPerThread = 1_000;
+        int maxUses = 2_500;
+
+        CouponUsage usage = new CouponUsage(0);
+        AtomicInteger reserved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        if (usage.tryReserve(maxUses)) {
+                            reserved.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(maxUses, reserved.get());
+        assertEquals(maxUses, usage.getUses());
+        assertEquals(maxUses, usage.takeUnflushed());
+    }
+
+    @Test
+    void storedUsesCountTowardsTheLimit() {
+        CouponUsage usage = new CouponUsage(9);
+
+        assertTrue(usage.tryReserve(10));
+        assertFalse(usage.tryReserve(10));
+        assertEquals(10, usage.getUses());
+        assertEquals(1, usage.takeUnflushed());
+    }
+
+    @Test
+    void zeroLimitIsUnlimited() {
+        CouponUsage usage = new CouponUsage(0);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(usage.tryReserve(0));
+        }
+        assertEquals(100, usage.getUses());
+    }
+
+    @Test
+    void failedFlushIsRetried() {
+        CouponUsage usage = new CouponUsage(0);
+        usage.tryReserve(0);
+        usage.tryReserve(0);
+
+        int taken = usage.takeUnflushed();
+        assertEquals(2, taken);
+        assertEquals(0, usage.takeUnflushed());
+
+        usage.tryReserve(0);
+        usage.restoreUnflushed(taken);
+        assertEquals(3, usage.takeUnflushed());
+    }
+
+    @Test
+    void syncNeverForgetsRedemptionsMadeInMemory() {
+        CouponUsage usage = new CouponUsage(5);
+        usage.tryReserve(0);
+        usage.tryReserve(0);
+
+        // The database hasn't seen the two unflushed redemptions yet
+        usage.sync(5);
+        assertEquals(7, usage.getUses());
+
+        // Another server redeemed the coupon meanwhile
+        usage.sync(10);
+        assertEquals(12, usage.getUses());
+
+        usage.sync(0);
+        assertEquals(12, usage.getUses());
+    }
+}
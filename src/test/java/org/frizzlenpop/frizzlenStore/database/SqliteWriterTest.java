@@ -0,0 +1,289 @@
+package org.frizzlenpop.frizzlenStore.database;
+
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class SqliteWriterTest {
+    private static final int BATCH_SIZE = 16;
+
+    @TempDir
+    Path folder;
+
+    private String url;
+    private MetricsRegistry metrics;
+    private SqliteWriter writer;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:sqlite:" + folder.resolve("writer.db");
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE entries (id INTEGER PRIMARY KEY AUTOINCREMENT, value INTEGER UNIQUE)");
+        }
+
+        DatabaseManager databaseManager = mock(DatabaseManager.class, withSettings().stubOnly());
+        when(databaseManager.getConnection()).thenAnswer(invocation -> DriverManager.getConnection(url));
+
+        metrics = new MetricsRegistry();
+        writer = new SqliteWriter(databaseManager, BATCH_SIZE, metrics);
+        writer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop(5000L);
+    }
+
+    @Test
+    void queuedWritesAreCommittedTogetherInOrder() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Hold the writer thread so the next writes queue up behind it
+        CompletableFuture<Integer> first = writer.submit(connection -> {
+            blocked.countDown();
+            await(release);
+            return insert(connection, 0);
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        List<CompletableFuture<Integer>> queued = new ArrayList<>();
+        for (int i = 1; i <= BATCH_SIZE; i++) {
+            int value = i;
+            queued.add(writer.submit(connection -> insert(connection, value)));
+        }
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Integer> future : queued) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(values(0, BATCH_SIZE), readValues());
+        assertEquals(BATCH_SIZE + 1, counter("frizzlenstore_db_writes_total"));
+        // The first write alone, then everything queued behind it in one transaction
+        assertEquals(2, counter("frizzlenstore_db_write_batches_total"));
+    }
+
+    @Test
+    void failingWriteOnlyRollsBackItself() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        writer.submit(connection -> {
+            blocked.countDown();
+            await(release);
+            return insert(connection, 1);
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> before = writer.submit(connection -> insert(connection, 2));
+        CompletableFuture<Integer> failing = writer.submit(connection -> {
+            insert(connection, 3);
+            // Breaks the unique key after a successful statement, both must be undone
+            return insert(connection, 2);
+        });
+        CompletableFuture<Integer> after = writer.submit(connection -> insert(connection, 4));
+        release.countDown();
+
+        before.get(5, TimeUnit.SECONDS);
+        after.get(5, TimeUnit.SECONDS);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SQLException.class, error.getCause());
+
+        assertEquals(List.of(1, 2, 4), readValues());
+    }
+
+    @Test
+    void executeReturnsTheResultOnceCommitted() throws Exception {
+        int id = writer.execute(connection -> insert(connection, 7));
+
+        assertTrue(id > 0);
+        assertEquals(List.of(7), readValues());
+    }
+
+    @Test
+    void executeRethrowsTheWriteError() {
+        SQLException error = assertThrows(SQLException.class,
+                () -> writer.execute(connection -> {
+                    throw new SQLException("broken");
+                }));
+        assertEquals("broken", error.getMessage());
+    }
+
+    @Test
+    void stopCommitsQueuedWritesAndRejectsNewOnes() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        writer.submit(connection -> {
+            blocked.countDown();
+            await(release);
+            return insert(connection, 1);
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> queued = writer.submit(connection -> insert(connection, 2));
+
+        Thread stopper = new Thread(() -> writer.stop(5000L));
+        stopper.start();
+        release.countDown();
+        stopper.join(10_000L);
+
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 2), readValues());
+
+        CompletableFuture<Integer> late = writer.submit(connection -> insert(connection, 3));
+        assertTrue(late.isCompletedExceptionally());
+        assertThrows(SQLException.class, () -> writer.execute(connection -> insert(connection, 4)));
+    }
+
+    @Test
+    void stopLetsTheRunningWriteFinishWithoutInterrupting() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        CompletableFuture<Integer> slow = writer.submit(connection -> {
+            blocked.countDown();
+            try {
+                Thread.sleep(300L);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                Thread.currentThread().interrupt();
+            }
+            return insert(connection, 1);
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        writer.stop(5000L);
+
+        assertFalse(interrupted.get());
+        slow.get(0, TimeUnit.SECONDS);
+        assertEquals(List.of(1), readValues());
+    }
+
+    @Test
+    void everyWriteCompletesWhenStoppedDuringSubmits() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        try {
+            List<Future<List<CompletableFuture<Integer>>>> submitters = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                submitters.add(executor.submit(() -> {
+                    List<CompletableFuture<Integer>> submitted = new ArrayList<>();
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        int value = thread * perThread + i;
+                        submitted.add(writer.submit(connection -> insert(connection, value)));
+                    }
+                    return submitted;
+                }));
+            }
+
+            start.countDown();
+            writer.stop(5000L);
+
+            for (Future<List<CompletableFuture<Integer>>> submitter : submitters) {
+                futures.addAll(submitter.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Each write is either committed or rejected, none is left waiting
+        int committed = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                committed++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(SQLException.class, e.getCause());
+            }
+        }
+
+        assertEquals(threads * perThread, futures.size());
+        assertEquals(committed, readValues().size());
+        assertEquals(0, writer.getQueueSize());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Test latch was never released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int insert(Connection connection, int value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO entries (value) VALUES (?)", Statement.RETURN_GENERATED_KEYS)) {
+            statement.setInt(1, value);
+            statement.executeUpdate();
+
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                return keys.next() ? keys.getInt(1) : -1;
+            }
+        }
+    }
+
+    private List<Integer> readValues() throws SQLException {
+        List<Integer> values = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT value FROM entries ORDER BY id")) {
+            while (resultSet.next()) {
+                values.add(resultSet.getInt("value"));
+            }
+        }
+        return values;
+    }
+
+    private long counter(String name) {
+        return metrics.counter(name, "").sum();
+    }
+
+    private static List<Integer> values(int from, int to) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+}
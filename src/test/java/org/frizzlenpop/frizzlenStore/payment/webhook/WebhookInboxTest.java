@@ -0,0 +1,112 @@
+package org.frizzlenpop.frizzlenStore.payment.webhook;
+
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class WebhookInboxTest {
+    private static final String PLAYER = "069a79f4-44e9-4726-a5be-fca90e38aaf5";
+
+    @TempDir
+    Path folder;
+
+    private String url;
+    private AtomicInteger drains;
+    private WebhookInbox inbox;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:sqlite:" + folder.resolve("inbox.db");
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE webhook_inbox (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "gateway VARCHAR(16) NOT NULL, " +
+                    "event_id VARCHAR(128) NOT NULL, " +
+                    "payment_id INT NOT NULL, " +
+                    "player_uuid VARCHAR(36) NOT NULL, " +
+                    "transaction_id VARCHAR(128), " +
+                    "payload TEXT, " +
+                    "status VARCHAR(16) NOT NULL DEFAULT 'pending', " +
+                    "attempts INT NOT NULL DEFAULT 0, " +
+                    "last_error VARCHAR(255), " +
+                    "received_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "processed_at TIMESTAMP NULL, " +
+                    "UNIQUE (gateway, event_id))");
+        }
+
+        // Drains are counted instead of run
+        drains = new AtomicInteger();
+        ExecutorService executor = mock(ExecutorService.class, withSettings().stubOnly());
+        doAnswer(invocation -> drains.incrementAndGet()).when(executor).execute(any());
+
+        DatabaseManager database = mock(DatabaseManager.class, withSettings().stubOnly());
+        when(database.isSqlite()).thenReturn(true);
+        when(database.getConnection()).thenAnswer(invocation -> DriverManager.getConnection(url));
+        when(database.getExecutor()).thenReturn(executor);
+
+        FrizzlenStore plugin = mock(FrizzlenStore.class, withSettings().stubOnly());
+        when(plugin.getDatabaseManager()).thenReturn(database);
+
+        inbox = new WebhookInbox(plugin, 10, 3, 60);
+    }
+
+    @Test
+    void repeatedDeliveryIsStoredOnce() throws SQLException {
+        assertTrue(inbox.append("stripe", "evt_1", 1, PLAYER, "pi_1", "{}"));
+        assertFalse(inbox.append("stripe", "evt_1", 1, PLAYER, "pi_1", "{}"));
+        assertFalse(inbox.append("stripe", "evt_1", 1, PLAYER, "pi_1", "{\"retry\":true}"));
+
+        assertEquals(1, inbox.getReceived());
+        assertEquals(2, inbox.getDuplicates());
+        assertEquals(1, countEvents());
+    }
+
+    @Test
+    void eventIdsAreOnlyUniquePerGateway() throws SQLException {
+        assertTrue(inbox.append("stripe", "42", 1, PLAYER, "pi_1", "{}"));
+        assertTrue(inbox.append("paypal", "42", 2, PLAYER, "txn_2", "{}"));
+
+        assertEquals(2, inbox.getReceived());
+        assertEquals(0, inbox.getDuplicates());
+        assertEquals(2, countEvents());
+    }
+
+    @Test
+    void appendsShareOnePendingDrain() throws SQLException {
+        inbox.append("stripe", "evt_1", 1, PLAYER, "pi_1", "{}");
+        inbox.append("stripe", "evt_2", 2, PLAYER, "pi_2", "{}");
+        inbox.append("stripe", "evt_1", 1, PLAYER, "pi_1", "{}");
+
+        assertEquals(1, drains.get());
+    }
+
+    private int countEvents() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM webhook_inbox")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.frizzlenpop.frizzlenStore.payment.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebhookVerifierTest {
+    private static final byte[] SECRET = "whsec_test".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BODY = "{\"id\":\"evt_1\",\"type\":\"checkout.session.completed\"}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final long NOW = 1_700_000_000L;
+
+    @Test
+    void acceptsAValidStripeSignature() throws Exception {
+        String header = "t=" + NOW + ",v1=" + stripeSignature(NOW, BODY, SECRET);
+        assertTrue(WebhookVerifier.verifyStripeSignature(BODY, header, SECRET, NOW + 10, 300));
+    }
+
+    @Test
+    void acceptsAnyV1SignatureWhileASecretIsRolled() throws Exception {
+        byte[] oldSecret = "whsec_old".getBytes(StandardCharsets.UTF_8);
+        String header = "t=" + NOW + ",v1=" + stripeSignature(NOW, BODY, oldSecret) +
+                ", v1=" + stripeSignature(NOW, BODY, SECRET) + ",v0=ignored";
+        assertTrue(WebhookVerifier.verifyStripeSignature(BODY, header, SECRET, NOW, 300));
+    }
+
+    @Test
+    void rejectsATamperedStripeBody() throws Exception {
+        String header = "t=" + NOW + ",v1=" + stripeSignature(NOW, BODY, SECRET);
+        byte[] tampered = "{\"id\":\"evt_2\",\"type\":\"checkout.session.completed\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        assertFalse(WebhookVerifier.verifyStripeSignature(tampered, header, SECRET, NOW, 300));
+    }
+
+    @Test
+    void rejectsAReplayedStripeNotification() throws Exception {
+        String header = "t=" + NOW + ",v1=" + stripeSignature(NOW, BODY, SECRET);
+        assertFalse(WebhookVerifier.verifyStripeSignature(BODY, header, SECRET, NOW + 301, 300));
+        assertFalse(WebhookVerifier.verifyStripeSignature(BODY, header, SECRET, NOW - 301, 300));
+    }
+
+    @Test
+    void rejectsMalformedStripeHeaders() throws Exception {
+        String signature = stripeSignature(NOW, BODY, SECRET);
+        assertFalse(WebhookVerifier.verifyStripeSignature(BODY, null, SECRET, NOW, 300));
+        assertFalse(WebhookVerifier.verifyStripeSignature(BODY, "v1=" + signature, SECRET, NOW, 300));
+        assertFalse(WebhookVerifier.verifyStripeSignature(BODY, "t=abc,v1=" + signature, SECRET, NOW, 300));
+        assertFalse(WebhookVerifier.verifyStripeSignature(BODY, "t=" + NOW, SECRET, NOW, 300));
+        assertFalse(WebhookVerifier.verifyStripeSignature(BODY, "t=" + NOW + ",v1=zz", SECRET, NOW, 300));
+    }
+
+    @Test
+    void rejectsEveryStripeNotificationWithoutASecret() throws Exception {
+        String header = "t=" + NOW + ",v1=" + stripeSignature(NOW, BODY, SECRET);
+        assertFalse(WebhookVerifier.verifyStripeSignature(BODY, header, null, NOW, 300));
+    }
+
+    @Test
+    void checksHmacSignatures() throws Exception {
+        String signature = hmac("HmacSHA512", SECRET, BODY);
+
+        assertTrue(WebhookVerifier.verifyHmac("HmacSHA512", SECRET, BODY, signature));
+        assertTrue(WebhookVerifier.verifyHmac("HmacSHA512", SECRET, BODY, " " + signature.toUpperCase() + " "));
+        assertFalse(WebhookVerifier.verifyHmac("HmacSHA512", "other".getBytes(StandardCharsets.UTF_8),
+                BODY, signature));
+        assertFalse(WebhookVerifier.verifyHmac("HmacSHA512", SECRET, BODY, signature.substring(2)));
+        assertFalse(WebhookVerifier.verifyHmac("HmacSHA512", SECRET, BODY, null));
+        assertFalse(WebhookVerifier.verifyHmac("HmacSHA512", null, BODY, signature));
+    }
+
+    private static String stripeSignature(long timestamp, byte[] body, byte[] secret) throws Exception {
+        byte[] prefix = (timestamp + ".").getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[prefix.length + body.length];
+        System.arraycopy(prefix, 0, payload, 0, prefix.length);
+        System.arraycopy(body, 0, payload, prefix.length, body.length);
+        return hmac("HmacSHA256", secret, payload);
+    }
+
+    private static String hmac(String algorithm, byte[] secret, byte[] payload) throws Exception {
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(secret, algorithm));
+        return HexFormat.of().formatHex(mac.doFinal(payload));
+    }
+}
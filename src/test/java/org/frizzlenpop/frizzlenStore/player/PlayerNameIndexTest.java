@@ -0,0 +1,94 @@
+package org.frizzlenpop.frizzlenStore.player;
+
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.config.ConfigManager;
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class PlayerNameIndexTest {
+
+    @Test
+    void prefixMatchesComeBeforeMatchesInsideTheName() {
+        PlayerNameIndex index = index(true);
+        index.update(UUID.randomUUID(), "xSteve", 0L, 300L, false);
+        index.update(UUID.randomUUID(), "Steve", 0L, 100L, false);
+        index.update(UUID.randomUUID(), "steven_", 0L, 200L, false);
+        index.update(UUID.randomUUID(), "Alex", 0L, 400L, false);
+
+        // Prefix matches most recent first, then the rest
+        assertEquals(List.of("steven_", "Steve", "xSteve"), names(index.search("STEVE", 10)));
+    }
+
+    @Test
+    void limitKeepsTheMostRecentlySeen() {
+        PlayerNameIndex index = index(true);
+        for (int i = 0; i < 50; i++) {
+            index.update(UUID.randomUUID(), "Player" + i, 0L, i, false);
+        }
+
+        assertEquals(List.of("Player49", "Player48", "Player47"), names(index.search("player", 3)));
+        assertEquals(List.of("Player19", "Player18", "Player17"), names(index.search("player1", 3)));
+    }
+
+    @Test
+    void renamedPlayerIsOnlyFoundByTheNewName() {
+        PlayerNameIndex index = index(true);
+        UUID uuid = UUID.randomUUID();
+        index.update(uuid, "OldName", 0L, 100L, false);
+        index.update(uuid, "NewName", 0L, 200L, false);
+
+        assertTrue(index.search("old", 10).isEmpty());
+        List<PlayerNameIndex.Entry> found = index.search("new", 10);
+        assertEquals(1, found.size());
+        assertEquals(uuid, found.get(0).getUuid());
+        assertEquals(200L, found.get(0).getLastSeen());
+    }
+
+    @Test
+    void olderUpdatesDoNotReplaceNewerOnes() {
+        PlayerNameIndex index = index(true);
+        UUID uuid = UUID.randomUUID();
+        index.update(uuid, "NewName", 0L, 200L, true);
+        index.update(uuid, "OldName", 0L, 100L, false);
+
+        assertTrue(index.search("old", 10).isEmpty());
+        assertTrue(index.search("new", 10).get(0).isBanned());
+    }
+
+    @Test
+    void disabledIndexHoldsNothing() {
+        PlayerNameIndex index = index(false);
+        index.update(UUID.randomUUID(), "Steve", 0L, 100L, false);
+
+        assertFalse(index.isReady());
+        assertTrue(index.search("steve", 10).isEmpty());
+    }
+
+    private static PlayerNameIndex index(boolean enabled) {
+        FrizzlenStore plugin = mock(FrizzlenStore.class, withSettings().stubOnly());
+        ConfigManager configManager = mock(ConfigManager.class, withSettings().stubOnly());
+        when(configManager.isPlayerSearchIndexEnabled()).thenReturn(enabled);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        when(plugin.getMetrics()).thenReturn(new MetricsRegistry());
+        return new PlayerNameIndex(plugin);
+    }
+
+    private static List<String> names(List<PlayerNameIndex.Entry> entries) {
+        List<String> names = new ArrayList<>();
+        for (PlayerNameIndex.Entry entry : entries) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,153 @@
+package org.frizzlenpop.frizzlenStore.player;
+
+import org.frizzlenpop.frizzlenStore.FrizzlenStore;
+import org.frizzlenpop.frizzlenStore.config.ConfigManager;
+import org.frizzlenpop.frizzlenStore.database.DatabaseManager;
+import org.frizzlenpop.frizzlenStore.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class PlayerSpendCacheTest {
+    private static final UUID PLAYER = UUID.randomUUID();
+    private static final PlayerSpend SPEND = new PlayerSpend(2, 10.0, 1000L);
+
+    private DatabaseManager database;
+    private PlayerSpendCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        database = mock(DatabaseManager.class, withSettings().stubOnly());
+        when(database.isSqlite()).thenReturn(true);
+        cache = cache(2);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void loadsOnceThenServesFromMemory() throws Exception {
+        when(database.queryFirst(any(), any(), anyString())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            return SPEND;
+        });
+
+        assertSame(SPEND, cache.get(PLAYER));
+        assertSame(SPEND, cache.get(PLAYER));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void playerWithoutPurchasesIsCachedToo() throws Exception {
+        when(database.queryFirst(any(), any(), anyString())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        assertSame(PlayerSpend.NONE, cache.get(PLAYER));
+        assertSame(PlayerSpend.NONE, cache.get(PLAYER));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidateMakesTheNextLookupReload() throws Exception {
+        PlayerSpend after = new PlayerSpend(3, 15.0, 2000L);
+        when(database.queryFirst(any(), any(), anyString())).thenReturn(SPEND, after);
+
+        assertSame(SPEND, cache.get(PLAYER));
+        cache.invalidate(PLAYER);
+        assertNull(cache.getIfPresent(PLAYER));
+        assertSame(after, cache.get(PLAYER));
+    }
+
+    @Test
+    void loadRacingAPurchaseIsNotCached() throws Exception {
+        PlayerSpend after = new PlayerSpend(3, 15.0, 2000L);
+        when(database.queryFirst(any(), any(), anyString())).thenAnswer(invocation -> {
+            if (loads.incrementAndGet() == 1) {
+                // A purchase commits and evicts the player while this read is in flight
+                cache.invalidate(PLAYER);
+                return SPEND;
+            }
+            return after;
+        });
+
+        assertSame(SPEND, cache.get(PLAYER));
+        assertNull(cache.getIfPresent(PLAYER));
+        assertSame(after, cache.get(PLAYER));
+        assertSame(after, cache.getIfPresent(PLAYER));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsed() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        cache.put(first, SPEND, cache.getVersion());
+        cache.put(second, SPEND, cache.getVersion());
+        cache.getIfPresent(first);
+        cache.put(third, SPEND, cache.getVersion());
+
+        assertEquals(2, cache.size());
+        assertSame(SPEND, cache.getIfPresent(first));
+        assertNull(cache.getIfPresent(second));
+    }
+
+    @Test
+    void getAllLoadsMissesInOnePaddedQuery() throws Exception {
+        PlayerSpendCache cache = cache(100);
+        UUID cached = UUID.randomUUID();
+        UUID bought = UUID.randomUUID();
+        UUID never = UUID.randomUUID();
+        cache.put(cached, SPEND, cache.getVersion());
+
+        PlayerSpend loaded = new PlayerSpend(1, 4.0, 3000L);
+        List<Object[]> queries = new ArrayList<>();
+        when(database.query(any(), any(), any(Object[].class))).thenAnswer(invocation -> {
+            queries.add((Object[]) invocation.getRawArguments()[2]);
+            return List.of(Map.entry(bought.toString(), loaded));
+        });
+
+        Map<UUID, PlayerSpend> result = cache.getAll(List.of(never, cached, bought));
+
+        assertEquals(List.of(never, cached, bought), new ArrayList<>(result.keySet()));
+        assertSame(PlayerSpend.NONE, result.get(never));
+        assertSame(SPEND, result.get(cached));
+        assertSame(loaded, result.get(bought));
+
+        // One statement for every size, padded with the last UUID
+        assertEquals(1, queries.size());
+        Object[] params = queries.get(0);
+        assertEquals(50, params.length);
+        assertEquals(never.toString(), params[0]);
+        assertEquals(bought.toString(), params[1]);
+        assertEquals(bought.toString(), params[49]);
+
+        assertSame(loaded, cache.getIfPresent(bought));
+        assertSame(PlayerSpend.NONE, cache.getIfPresent(never));
+    }
+
+    private PlayerSpendCache cache(int capacity) {
+        FrizzlenStore plugin = mock(FrizzlenStore.class, withSettings().stubOnly());
+        ConfigManager configManager = mock(ConfigManager.class, withSettings().stubOnly());
+        when(configManager.getPlayerSpendCacheSize()).thenReturn(capacity);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        when(plugin.getDatabaseManager()).thenReturn(database);
+        when(plugin.getMetrics()).thenReturn(new MetricsRegistry());
+        return new PlayerSpendCache(plugin);
+    }
+}
@@ -0,0 +1,235 @@
+package org.frizzlenpop.frizzlenStore.purchase;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingDeliveriesTest {
+
+    @Test
+    void drainReturnsPurchasesInPurchaseOrder() {
+        PendingDeliveries pending = new PendingDeliveries();
+        UUID uuid = UUID.randomUUID();
+
+        pending.add(purchase(3, "Steve", uuid));
+        pending.add(purchase(1, "Steve", uuid));
+        pending.add(purchase(2, "Steve", uuid));
+
+        assertEquals(List.of(1, 2, 3), ids(pending.drain(uuid, "Steve")));
+        assertTrue(pending.drain(uuid, "Steve").isEmpty());
+        assertEquals(0, pending.size());
+    }
+
+    @Test
+    void purchaseIsOnlyQueuedOnce() {
+        PendingDeliveries pending = new PendingDeliveries();
+        UUID uuid = UUID.randomUUID();
+
+        assertTrue(pending.add(purchase(1, "Steve", uuid)));
+        assertFalse(pending.add(purchase(1, "Steve", uuid)));
+        assertEquals(1, pending.size());
+        assertEquals(List.of(1), ids(pending.drain(uuid, "Steve")));
+    }
+
+    @Test
+    void purchasesWithoutUuidAreDrainedByName() {
+        PendingDeliveries pending = new PendingDeliveries();
+        UUID uuid = UUID.randomUUID();
+
+        pending.add(purchase(1, "Steve", null));
+        pending.add(purchase(2, "Steve", uuid));
+
+        assertEquals(List.of(1, 2), ids(pending.drain(uuid, "STEVE")));
+        assertEquals(0, pending.size());
+    }
+
+    @Test
+    void nameLinkedByAnEarlierPurchaseIsFiledUnderTheUuid() {
+        PendingDeliveries pending = new PendingDeliveries();
+        UUID uuid = UUID.randomUUID();
+
+        pending.add(purchase(1, "Steve", uuid));
+        pending.add(purchase(2, "steve", null));
+
+        // The name key is gone, only the UUID finds them
+        assertEquals(List.of(1, 2), ids(pending.drain(uuid, null)));
+    }
+
+    @Test
+    void oldestAgeFollowsTheOldestPendingPurchase() throws InterruptedException {
+        PendingDeliveries pending = new PendingDeliveries();
+        UUID oldPlayer = UUID.randomUUID();
+        UUID newPlayer = UUID.randomUUID();
+        assertEquals(0L, pending.getOldestAgeMillis());
+
+        pending.add(purchase(1, "Old", oldPlayer));
+        Thread.sleep(200L);
+        pending.add(purchase(2, "New", newPlayer));
+        assertTrue(pending.getOldestAgeMillis() >= 200L);
+
+        pending.drain(oldPlayer, "Old");
+        assertTrue(pending.getOldestAgeMillis() < 200L);
+
+        pending.drain(newPlayer, "New");
+        assertEquals(0L, pending.getOldestAgeMillis());
+    }
+
+    @Test
+    void drainedEntriesBehindAnOldPurchaseAreReleased() throws Exception {
+        PendingDeliveries pending = new PendingDeliveries();
+        UUID waiting = UUID.randomUUID();
+        UUID online = UUID.randomUUID();
+
+        // A purchase for a player who never joins stays at the head of the index
+        pending.add(purchase(1, "Waiting", waiting));
+
+        for (int id = 2; id < 10_002; id++) {
+            pending.add(purchase(id, "Online", online));
+            pending.drain(online, "Online");
+        }
+
+        assertEquals(1, pending.size());
+        assertEquals(1, order(pending).size());
+    }
+
+    @Test
+    void namesAreOnlyLinkedWhilePurchasesArePending() throws Exception {
+        PendingDeliveries pending = new PendingDeliveries();
+
+        // Joins without pending purchases remember nothing
+        for (int i = 0; i < 10_000; i++) {
+            pending.drain(UUID.randomUUID(), "Player" + i);
+        }
+        assertEquals(0, aliases(pending).size());
+
+        UUID uuid = UUID.randomUUID();
+        pending.add(purchase(1, "Steve", uuid));
+        assertEquals(1, aliases(pending).size());
+
+        pending.drain(uuid, "Steve");
+        assertEquals(0, aliases(pending).size());
+
+        // With the link gone, a purchase without a UUID waits under the name again
+        pending.add(purchase(2, "Steve", null));
+        assertTrue(pending.drain(uuid, null).isEmpty());
+        assertEquals(List.of(2), ids(pending.drain(uuid, "Steve")));
+    }
+
+    @Test
+    void concurrentAddsAndDrainsHandOutEveryPurchaseOnce() throws Exception {
+        PendingDeliveries pending = new PendingDeliveries();
+        int players = 8;
+        int perPlayer = 2_000;
+        UUID[] uuids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+        }
+
+        Set<Integer> delivered = ConcurrentHashMap.newKeySet();
+        AtomicBoolean duplicate = new AtomicBoolean();
+        AtomicBoolean adding = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(players * 2);
+
+        try {
+            List<Future<?>> adders = new ArrayList<>();
+            for (int p = 0; p < players; p++) {
+                int player = p;
+                adders.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perPlayer; i++) {
+                        // Every other purchase has no UUID and must be found through the name
+                        UUID uuid = i % 2 == 0 ? uuids[player] : null;
+                        pending.add(purchase(player * perPlayer + i, "Player" + player, uuid));
+                    }
+                    return null;
+                }));
+            }
+
+            List<Future<?>> drainers = new ArrayList<>();
+            for (int p = 0; p < players; p++) {
+                int player = p;
+                drainers.add(executor.submit(() -> {
+                    start.await();
+                    while (adding.get()) {
+                        drainInto(pending, uuids[player], "Player" + player, delivered, duplicate);
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> adder : adders) {
+                adder.get(30, TimeUnit.SECONDS);
+            }
+            adding.set(false);
+            for (Future<?> drainer : drainers) {
+                drainer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int p = 0; p < players; p++) {
+            drainInto(pending, uuids[p], "Player" + p, delivered, duplicate);
+        }
+
+        assertFalse(duplicate.get());
+        assertEquals(players * perPlayer, delivered.size());
+        assertEquals(0, pending.size());
+        assertEquals(0, order(pending).size());
+        assertEquals(0, aliases(pending).size());
+        assertEquals(0L, pending.getOldestAgeMillis());
+    }
+
+    private static void drainInto(PendingDeliveries pending, UUID uuid, String name,
+                                  Set<Integer> delivered, AtomicBoolean duplicate) {
+        for (Purchase purchase : pending.drain(uuid, name)) {
+            if (!delivered.add(purchase.getId())) {
+                duplicate.set(true);
+            }
+        }
+    }
+
+    private static Collection<?> order(PendingDeliveries pending) throws Exception {
+        Field field = PendingDeliveries.class.getDeclaredField("order");
+        field.setAccessible(true);
+        return (Collection<?>) field.get(pending);
+    }
+
+    private static Map<?, ?> aliases(PendingDeliveries pending) throws Exception {
+        Field field = PendingDeliveries.class.getDeclaredField("aliases");
+        field.setAccessible(true);
+        return (Map<?, ?>) field.get(pending);
+    }
+
+    private static List<Integer> ids(List<Purchase> purchases) {
+        List<Integer> ids = new ArrayList<>();
+        for (Purchase purchase : purchases) {
+            ids.add(purchase.getId());
+        }
+        return ids;
+    }
+
+    private static Purchase purchase(int id, String playerName, UUID playerUuid) {
+        return new Purchase(id, "tx-" + id, playerName, playerUuid, 1, 5.0,
+                "paypal", "completed", "say hi");
+    }
+}